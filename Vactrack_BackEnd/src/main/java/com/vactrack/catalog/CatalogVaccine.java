@@ -0,0 +1,107 @@
+package com.vactrack.catalog;
+
+import com.vactrack.model.Vaccine;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Bản sao bất biến của một Vaccine trong danh mục; serialize ra JSON giống hệt entity.
+ */
+public final class CatalogVaccine {
+
+    private final Long id;
+    private final String name;
+    private final String manufacturer;
+    private final String category;
+    private final String ageGroup;
+    private final String dosage;
+    private final BigDecimal price;
+    private final Integer inStock;
+    private final LocalDate expiryDate;
+    private final String description;
+    private final String imageUrl;
+
+    private CatalogVaccine(Vaccine vaccine) {
+        this.id = vaccine.getId();
+        this.name = vaccine.getName();
+        this.manufacturer = vaccine.getManufacturer();
+        this.category = vaccine.getCategory();
+        this.ageGroup = vaccine.getAgeGroup();
+        this.dosage = vaccine.getDosage();
+        this.price = vaccine.getPrice();
+        this.inStock = vaccine.getInStock();
+        this.expiryDate = vaccine.getExpiryDate();
+        this.description = vaccine.getDescription();
+        this.imageUrl = vaccine.getImageUrl();
+    }
+
+    private CatalogVaccine(CatalogVaccine source, Integer inStock) {
+        this.id = source.id;
+        this.name = source.name;
+        this.manufacturer = source.manufacturer;
+        this.category = source.category;
+        this.ageGroup = source.ageGroup;
+        this.dosage = source.dosage;
+        this.price = source.price;
+        this.inStock = inStock;
+        this.expiryDate = source.expiryDate;
+        this.description = source.description;
+        this.imageUrl = source.imageUrl;
+    }
+
+    public static CatalogVaccine from(Vaccine vaccine) {
+        return new CatalogVaccine(vaccine);
+    }
+
+    /**
+     * Bản sao chỉ khác số tồn kho
+     */
+    public CatalogVaccine withStock(Integer inStock) {
+        return new CatalogVaccine(this, inStock);
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getManufacturer() {
+        return manufacturer;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public String getAgeGroup() {
+        return ageGroup;
+    }
+
+    public String getDosage() {
+        return dosage;
+    }
+
+    public BigDecimal getPrice() {
+        return price;
+    }
+
+    public Integer getInStock() {
+        return inStock;
+    }
+
+    public LocalDate getExpiryDate() {
+        return expiryDate;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public String getImageUrl() {
+        return imageUrl;
+    }
+}
@@ -0,0 +1,229 @@
+package com.vactrack.catalog;
+
+import com.vactrack.model.Vaccine;
+import com.vactrack.repository.VaccineRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Danh mục vaccine trong bộ nhớ, đọc không khóa.
+ * Mỗi lần ghi dựng một snapshot mới (theo id, theo loại, đã sắp theo tên) rồi thay thế nguyên khối,
+ * nên người đọc luôn thấy một trạng thái nhất quán và trang kết quả chỉ là một lát cắt của mảng dựng sẵn.
+ * Ghi một vaccine chỉ chép lại và sửa đúng mục đó; chỉ khi tên hoặc loại đổi mới dời mục sang vị trí mới,
+ * không sắp xếp lại toàn bộ.
+ */
+@Component
+public class VaccineCatalog {
+
+    private static final Logger logger = LoggerFactory.getLogger(VaccineCatalog.class);
+
+    // Cùng thứ tự với Sort.by("name").ascending() trước đây; cùng tên thì theo id
+    private static final Comparator<CatalogVaccine> BY_NAME = Comparator
+            .comparing(CatalogVaccine::getName, Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER))
+            .thenComparing(CatalogVaccine::getId);
+
+    private final VaccineRepository vaccineRepository;
+
+    // null cho tới khi nạp xong lần đầu
+    private volatile Snapshot snapshot;
+
+    public VaccineCatalog(VaccineRepository vaccineRepository) {
+        this.vaccineRepository = vaccineRepository;
+    }
+
+    private static final class Snapshot {
+        final Map<Long, CatalogVaccine> byId;
+        final List<CatalogVaccine> byName;
+        final Map<String, List<CatalogVaccine>> byCategory;
+
+        private Snapshot(Map<Long, CatalogVaccine> byId, List<CatalogVaccine> byName,
+                         Map<String, List<CatalogVaccine>> byCategory) {
+            this.byId = byId;
+            this.byName = byName;
+            this.byCategory = byCategory;
+        }
+
+        Snapshot(Collection<CatalogVaccine> vaccines) {
+            Map<Long, CatalogVaccine> ids = new HashMap<>(vaccines.size() * 2);
+            CatalogVaccine[] sorted = vaccines.toArray(new CatalogVaccine[0]);
+            Arrays.sort(sorted, BY_NAME);
+
+            Map<String, List<CatalogVaccine>> categories = new HashMap<>();
+            for (CatalogVaccine vaccine : sorted) {
+                ids.put(vaccine.getId(), vaccine);
+                if (vaccine.getCategory() != null) {
+                    categories.computeIfAbsent(vaccine.getCategory(), key -> new ArrayList<>()).add(vaccine);
+                }
+            }
+            categories.replaceAll((category, list) -> Collections.unmodifiableList(Arrays.asList(list.toArray(new CatalogVaccine[0]))));
+
+            this.byId = Collections.unmodifiableMap(ids);
+            this.byName = Collections.unmodifiableList(Arrays.asList(sorted));
+            this.byCategory = Collections.unmodifiableMap(categories);
+        }
+
+        // Thay (hoặc thêm khi added mới, bỏ khi added là null) đúng một vaccine, các mục khác dùng lại
+        Snapshot with(CatalogVaccine old, CatalogVaccine added) {
+            Map<Long, CatalogVaccine> ids = new HashMap<>(byId);
+            if (added != null) {
+                ids.put(added.getId(), added);
+            } else {
+                ids.remove(old.getId());
+            }
+
+            String oldCategory = old != null ? old.getCategory() : null;
+            String newCategory = added != null ? added.getCategory() : null;
+            Map<String, List<CatalogVaccine>> categories = new HashMap<>(byCategory);
+            if (Objects.equals(oldCategory, newCategory)) {
+                if (newCategory != null) {
+                    categories.put(newCategory, replace(byCategory.get(newCategory), old, added));
+                }
+            } else {
+                if (oldCategory != null) {
+                    List<CatalogVaccine> remaining = replace(byCategory.get(oldCategory), old, null);
+                    if (remaining.isEmpty()) {
+                        categories.remove(oldCategory);
+                    } else {
+                        categories.put(oldCategory, remaining);
+                    }
+                }
+                if (newCategory != null) {
+                    categories.put(newCategory,
+                            replace(byCategory.getOrDefault(newCategory, Collections.emptyList()), null, added));
+                }
+            }
+
+            return new Snapshot(Collections.unmodifiableMap(ids), replace(byName, old, added),
+                    Collections.unmodifiableMap(categories));
+        }
+
+        // Bản sao của danh sách đã sắp với old được thay bằng added; cùng khóa sắp xếp thì thay tại chỗ,
+        // khác thì bỏ mục cũ và chèn mục mới bằng tìm kiếm nhị phân
+        private static List<CatalogVaccine> replace(List<CatalogVaccine> sorted, CatalogVaccine old, CatalogVaccine added) {
+            CatalogVaccine[] array = sorted.toArray(new CatalogVaccine[0]);
+            if (old != null && added != null && BY_NAME.compare(old, added) == 0) {
+                array[Arrays.binarySearch(array, old, BY_NAME)] = added;
+                return Collections.unmodifiableList(Arrays.asList(array));
+            }
+
+            List<CatalogVaccine> result = new ArrayList<>(Arrays.asList(array));
+            if (old != null) {
+                result.remove(Collections.binarySearch(result, old, BY_NAME));
+            }
+            if (added != null) {
+                int index = Collections.binarySearch(result, added, BY_NAME);
+                result.add(index < 0 ? -index - 1 : index, added);
+            }
+            return Collections.unmodifiableList(result);
+        }
+    }
+
+    public boolean isReady() {
+        return snapshot != null;
+    }
+
+    public Optional<CatalogVaccine> findById(long id) {
+        Snapshot current = snapshot;
+        return current != null ? Optional.ofNullable(current.byId.get(id)) : Optional.empty();
+    }
+
+    /**
+     * Trang vaccine sắp theo tên, lọc theo loại nếu có; không tạo bản sao danh sách
+     */
+    public Page<CatalogVaccine> findPage(String category, Pageable pageable) {
+        Snapshot current = snapshot;
+        if (current == null) {
+            return Page.empty(pageable);
+        }
+
+        List<CatalogVaccine> source = category == null
+                ? current.byName
+                : current.byCategory.getOrDefault(category, Collections.emptyList());
+
+        int from = (int) Math.min(pageable.getOffset(), source.size());
+        int to = Math.min(from + pageable.getPageSize(), source.size());
+        return new PageImpl<>(source.subList(from, to), pageable, source.size());
+    }
+
+    /**
+     * Các vaccine theo đúng thứ tự id truyền vào, bỏ qua id không còn tồn tại
+     */
+    public List<CatalogVaccine> findAllById(List<Long> ids) {
+        Snapshot current = snapshot;
+        if (current == null) {
+            return Collections.emptyList();
+        }
+        List<CatalogVaccine> result = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            CatalogVaccine vaccine = current.byId.get(id);
+            if (vaccine != null) {
+                result.add(vaccine);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Thêm hoặc thay thế một vaccine sau khi ghi DB (tạo mới, cập nhật, đổi tồn kho)
+     */
+    public synchronized void put(Vaccine vaccine) {
+        Snapshot current = snapshot;
+        if (current == null || vaccine.getId() == null) {
+            return; // lần nạp đầu tiên sẽ đọc vaccine này từ DB
+        }
+        snapshot = current.with(current.byId.get(vaccine.getId()), CatalogVaccine.from(vaccine));
+    }
+
+    /**
+     * Chỉ đổi số tồn kho của một vaccine (đặt lịch, hoàn kho); vị trí trong danh mục giữ nguyên
+     */
+    public synchronized void updateStock(long vaccineId, Integer inStock) {
+        Snapshot current = snapshot;
+        CatalogVaccine old = current != null ? current.byId.get(vaccineId) : null;
+        if (old == null || Objects.equals(old.getInStock(), inStock)) {
+            return;
+        }
+        snapshot = current.with(old, old.withStock(inStock));
+    }
+
+    public synchronized void remove(long vaccineId) {
+        Snapshot current = snapshot;
+        if (current == null || !current.byId.containsKey(vaccineId)) {
+            return;
+        }
+        snapshot = current.with(current.byId.get(vaccineId), null);
+    }
+
+    /**
+     * Nạp lại toàn bộ danh mục từ DB, dùng khi khởi động hoặc sau khi dữ liệu bị sửa ngoài VaccineService
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void reload() {
+        long start = System.currentTimeMillis();
+
+        List<CatalogVaccine> vaccines = new ArrayList<>();
+        for (Vaccine vaccine : vaccineRepository.findAll()) {
+            vaccines.add(CatalogVaccine.from(vaccine));
+        }
+        snapshot = new Snapshot(vaccines);
+
+        logger.info("Loaded {} vaccines into catalogue in {} ms", vaccines.size(), System.currentTimeMillis() - start);
+    }
+}
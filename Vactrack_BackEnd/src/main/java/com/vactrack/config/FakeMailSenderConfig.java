@@ -0,0 +1,69 @@
+package com.vactrack.config;
+
+import jakarta.mail.Address;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * SMTP giả cho môi trường local: ghi log email thay vì gửi thật, có thể giả lập độ trễ của SMTP server
+ */
+@Configuration
+@ConditionalOnProperty(name = "mail.fake.enabled", havingValue = "true")
+public class FakeMailSenderConfig {
+
+    @Bean
+    public JavaMailSender javaMailSender(@Value("${mail.fake.latency-ms:0}") long latencyMs) {
+        return new FakeMailSender(latencyMs);
+    }
+
+    static class FakeMailSender extends JavaMailSenderImpl {
+
+        private static final Logger logger = LoggerFactory.getLogger(FakeMailSender.class);
+
+        private final long latencyMs;
+
+        FakeMailSender(long latencyMs) {
+            this.latencyMs = latencyMs;
+        }
+
+        @Override
+        protected void doSend(MimeMessage[] mimeMessages, Object[] originalMessages) {
+            // Một lần trễ cho cả lô, giống chi phí mở một kết nối SMTP
+            if (latencyMs > 0) {
+                try {
+                    Thread.sleep(latencyMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new MailSendException("Fake SMTP interrupted", e);
+                }
+            }
+
+            Map<Object, Exception> failedMessages = new LinkedHashMap<>();
+            for (MimeMessage message : mimeMessages) {
+                try {
+                    Address[] recipients = message.getAllRecipients();
+                    logger.info("[fake-smtp] to={} subject={}", Arrays.toString(recipients), message.getSubject());
+                } catch (MessagingException e) {
+                    failedMessages.put(message, e);
+                }
+            }
+
+            if (!failedMessages.isEmpty()) {
+                throw new MailSendException(failedMessages);
+            }
+        }
+    }
+}
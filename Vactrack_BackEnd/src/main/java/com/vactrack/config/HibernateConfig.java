@@ -0,0 +1,37 @@
+package com.vactrack.config;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.id.SequenceMismatchStrategy;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Thiết lập Hibernate mà code phụ thuộc vào, đặt trong code để luôn có hiệu lực dù file properties nằm ở đâu.
+ * Giá trị spring.jpa.properties.* cùng tên (nếu có) vẫn được ưu tiên.
+ */
+@Configuration
+public class HibernateConfig {
+
+    @Bean
+    public HibernatePropertiesCustomizer batchingPropertiesCustomizer() {
+        return properties -> {
+            // Gom INSERT/UPDATE thành JDBC batch, nhập booking hàng loạt dựa vào đây
+            properties.putIfAbsent(AvailableSettings.STATEMENT_BATCH_SIZE, 50);
+            properties.putIfAbsent(AvailableSettings.ORDER_INSERTS, true);
+            properties.putIfAbsent(AvailableSettings.ORDER_UPDATES, true);
+        };
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer idPropertiesCustomizer() {
+        return properties -> {
+            // Số id mỗi lần lấy từ sequence cho các bảng ghi nhiều (PooledSequenceGenerator)
+            properties.putIfAbsent(PooledSequenceGenerator.ALLOCATION_SIZE_SETTING,
+                    PooledSequenceGenerator.DEFAULT_ALLOCATION_SIZE);
+            // Sequence đã có với increment khác allocation-size thì dùng increment của DB thay vì dừng khởi động
+            properties.putIfAbsent(AvailableSettings.SEQUENCE_INCREMENT_SIZE_MISMATCH_STRATEGY,
+                    SequenceMismatchStrategy.FIX);
+        };
+    }
+}
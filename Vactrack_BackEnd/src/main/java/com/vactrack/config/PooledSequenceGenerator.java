@@ -0,0 +1,34 @@
+package com.vactrack.config;
+
+import org.hibernate.MappingException;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.config.spi.StandardConverters;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.id.enhanced.StandardOptimizerDescriptor;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.util.Properties;
+
+/**
+ * Sinh id từ sequence với bộ tối ưu pooled: mỗi lần gọi DB cấp một khối allocation-size id,
+ * nên Hibernate không phải chờ id sau từng INSERT và có thể gom INSERT thành JDBC batch.
+ * Kích thước khối đọc từ thiết lập Hibernate vactrack.id.allocation-size (mặc định trong HibernateConfig).
+ * CSDL không có sequence (MySQL) thì Hibernate tự dùng một bảng một dòng thay cho sequence (hi/lo theo bảng).
+ */
+public class PooledSequenceGenerator extends SequenceStyleGenerator {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final String ALLOCATION_SIZE_SETTING = "vactrack.id.allocation-size";
+    public static final int DEFAULT_ALLOCATION_SIZE = 50;
+
+    @Override
+    public void configure(Type type, Properties parameters, ServiceRegistry serviceRegistry) throws MappingException {
+        int allocationSize = serviceRegistry.getService(ConfigurationService.class)
+                .getSetting(ALLOCATION_SIZE_SETTING, StandardConverters.INTEGER, DEFAULT_ALLOCATION_SIZE);
+        parameters.put(INCREMENT_PARAM, String.valueOf(allocationSize));
+        parameters.putIfAbsent(OPT_PARAM, StandardOptimizerDescriptor.POOLED.getExternalName());
+        super.configure(type, parameters, serviceRegistry);
+    }
+}
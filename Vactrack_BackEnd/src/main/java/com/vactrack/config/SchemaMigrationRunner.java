@@ -0,0 +1,162 @@
+package com.vactrack.config;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Migration có đánh số phiên bản cho các index mà ddl-auto=update không thêm vào bảng đã tồn tại.
+ * Phiên bản đã chạy được ghi trong bảng schema_version; trước khi tạo index kiểm tra qua JDBC metadata
+ * xem đã có index cùng tên hoặc cùng danh sách cột chưa, nên chạy lại hay chạy song song trên nhiều node đều an toàn.
+ * Chạy sau khi Hibernate cập nhật schema và trước khi web server nhận request.
+ */
+@Component
+public class SchemaMigrationRunner implements SmartInitializingSingleton {
+
+    private static final Logger logger = LoggerFactory.getLogger(SchemaMigrationRunner.class);
+
+    private static final class IndexMigration {
+        final int version;
+        final String table;
+        final String name;
+        final List<String> columns;
+        final String description;
+
+        IndexMigration(int version, String table, String name, String description, String... columns) {
+            this.version = version;
+            this.table = table;
+            this.name = name;
+            this.columns = List.of(columns);
+            this.description = description;
+        }
+    }
+
+    // Chỉ thêm vào cuối, không sửa migration đã phát hành
+    private static final List<IndexMigration> MIGRATIONS = List.of(
+            new IndexMigration(1, "bookings", "idx_bookings_user_id",
+                    "BookingRepository.findByUserId", "user_id"),
+            new IndexMigration(2, "bookings", "idx_bookings_date_time",
+                    "BookingRepository.countActiveByDateGroupByTime", "appointment_date", "appointment_time"),
+            new IndexMigration(3, "children", "idx_children_user_id",
+                    "ChildRepository.findByUserId / findByIdAndUserId", "user_id"),
+            new IndexMigration(4, "appointments", "idx_appointments_status_date",
+                    "AppointmentRepository.countByStatus / findWithFilters theo trạng thái và khoảng ngày",
+                    "status", "appointment_date"),
+            new IndexMigration(5, "feedback", "idx_feedback_published_rating_created",
+                    "FeedbackRepository.findByPublishedTrueAndRatingGreaterThanEqual sắp theo createdAt",
+                    "published", "rating", "created_at"),
+            new IndexMigration(6, "feedback", "idx_feedback_created_at",
+                    "FeedbackRepository.findAll sắp theo createdAt", "created_at"),
+            new IndexMigration(7, "contacts", "idx_contacts_status_created",
+                    "ContactRepository.findByStatus sắp theo createdAt", "status", "created_at")
+    );
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // entityManagerFactory chỉ để chắc chắn Hibernate đã tạo bảng trước khi chạy
+    public SchemaMigrationRunner(DataSource dataSource, EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS schema_version (" +
+                "version INT NOT NULL PRIMARY KEY, " +
+                "description VARCHAR(255) NOT NULL, " +
+                "applied_at TIMESTAMP NOT NULL)");
+
+        Integer current = jdbcTemplate.queryForObject("SELECT MAX(version) FROM schema_version", Integer.class);
+        int applied = 0;
+        for (IndexMigration migration : MIGRATIONS) {
+            if (current != null && migration.version <= current) {
+                continue;
+            }
+            apply(migration);
+            applied++;
+        }
+        if (applied > 0) {
+            logger.info("Applied {} schema migrations, schema version is now {}",
+                    applied, MIGRATIONS.get(MIGRATIONS.size() - 1).version);
+        }
+    }
+
+    private void apply(IndexMigration migration) {
+        if (!indexExists(migration)) {
+            try {
+                jdbcTemplate.execute("CREATE INDEX " + migration.name + " ON " + migration.table
+                        + " (" + String.join(", ", migration.columns) + ")");
+                logger.info("V{}: created index {} on {}({})", migration.version, migration.name,
+                        migration.table, String.join(", ", migration.columns));
+            } catch (Exception e) {
+                // Node khác có thể vừa tạo cùng index
+                if (!indexExists(migration)) {
+                    throw new IllegalStateException("Schema migration V" + migration.version + " failed", e);
+                }
+            }
+        }
+
+        try {
+            jdbcTemplate.update("INSERT INTO schema_version (version, description, applied_at) VALUES (?, ?, ?)",
+                    migration.version, migration.name + ": " + migration.description,
+                    new Timestamp(System.currentTimeMillis()));
+        } catch (Exception e) {
+            logger.debug("Schema version {} already recorded", migration.version);
+        }
+    }
+
+    /**
+     * Có index cùng tên, hoặc index khác có đúng các cột này ở đầu (vd. do @Index của entity tạo ra)
+     */
+    private boolean indexExists(IndexMigration migration) {
+        return Boolean.TRUE.equals(jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> {
+            DatabaseMetaData metaData = connection.getMetaData();
+            String table = metaData.storesUpperCaseIdentifiers()
+                    ? migration.table.toUpperCase(Locale.ROOT)
+                    : migration.table;
+
+            Map<String, List<String>> indexes = new LinkedHashMap<>();
+            try (ResultSet rs = metaData.getIndexInfo(connection.getCatalog(), null, table, false, true)) {
+                while (rs.next()) {
+                    String name = rs.getString("INDEX_NAME");
+                    String column = rs.getString("COLUMN_NAME");
+                    if (name == null || column == null) {
+                        continue;
+                    }
+                    List<String> columns = indexes.computeIfAbsent(name.toLowerCase(Locale.ROOT), key -> new ArrayList<>());
+                    int position = rs.getInt("ORDINAL_POSITION");
+                    while (columns.size() < position) {
+                        columns.add(null);
+                    }
+                    columns.set(position - 1, column.toLowerCase(Locale.ROOT));
+                }
+            }
+
+            if (indexes.containsKey(migration.name.toLowerCase(Locale.ROOT))) {
+                return true;
+            }
+            Set<List<String>> seen = new HashSet<>();
+            for (List<String> columns : indexes.values()) {
+                if (columns.size() >= migration.columns.size()) {
+                    seen.add(columns.subList(0, migration.columns.size()));
+                }
+            }
+            return seen.contains(migration.columns);
+        }));
+    }
+}
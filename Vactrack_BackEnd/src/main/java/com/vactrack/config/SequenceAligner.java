@@ -0,0 +1,90 @@
+package com.vactrack.config;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Đẩy các sequence cấp id theo khối lên trên id lớn nhất đang có trong bảng.
+ * Bảng cũ dùng IDENTITY/AUTO_INCREMENT nên sequence do ddl-auto tạo ra bắt đầu từ 1 và sẽ trùng id cũ.
+ * H2 dùng ALTER SEQUENCE; MySQL không có sequence nên Hibernate dùng bảng một dòng (cột next_val) và được cập nhật trực tiếp.
+ * Chạy sau khi Hibernate cập nhật schema và trước khi web server nhận request.
+ */
+@Component
+public class SequenceAligner implements SmartInitializingSingleton {
+
+    private static final Logger logger = LoggerFactory.getLogger(SequenceAligner.class);
+
+    // Bảng -> sequence, phải khớp các entity dùng PooledSequenceGenerator
+    private static final Map<String, String> SEQUENCES = new LinkedHashMap<>();
+
+    static {
+        SEQUENCES.put("bookings", "bookings_seq");
+        SEQUENCES.put("appointments", "appointments_seq");
+        SEQUENCES.put("children", "children_seq");
+        SEQUENCES.put("contacts", "contacts_seq");
+        SEQUENCES.put("feedback", "feedback_seq");
+        SEQUENCES.put("mail_outbox", "mail_outbox_seq");
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int allocationSize;
+
+    // entityManagerFactory chỉ để chắc chắn schema đã được cập nhật trước khi chạy
+    public SequenceAligner(DataSource dataSource, EntityManagerFactory entityManagerFactory,
+                           @Value("${spring.jpa.properties." + PooledSequenceGenerator.ALLOCATION_SIZE_SETTING + ":"
+                                   + PooledSequenceGenerator.DEFAULT_ALLOCATION_SIZE + "}") int allocationSize) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.allocationSize = allocationSize;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        String product = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                connection.getMetaData().getDatabaseProductName());
+        boolean tableBacked = product != null && product.toLowerCase(Locale.ROOT).contains("mysql");
+        SEQUENCES.forEach((table, sequence) -> align(table, sequence, tableBacked));
+    }
+
+    /**
+     * Bộ tối ưu pooled coi giá trị sequence là cận trên của khối, nên giá trị kế tiếp
+     * phải lớn hơn hoặc bằng max(id) + allocationSize thì cả khối đầu tiên mới không trùng.
+     */
+    private void align(String table, String sequence, boolean tableBacked) {
+        try {
+            Long maxId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM " + table, Long.class);
+            if (maxId == null) {
+                return;
+            }
+            long required = maxId + allocationSize;
+
+            Long next = tableBacked
+                    ? jdbcTemplate.queryForObject("SELECT MAX(next_val) FROM " + sequence, Long.class)
+                    : jdbcTemplate.queryForObject(
+                            "SELECT BASE_VALUE FROM INFORMATION_SCHEMA.SEQUENCES WHERE UPPER(SEQUENCE_NAME) = UPPER(?)",
+                            Long.class, sequence);
+            if (next != null && next >= required) {
+                return;
+            }
+
+            if (tableBacked) {
+                jdbcTemplate.update("UPDATE " + sequence + " SET next_val = ?", required);
+            } else {
+                jdbcTemplate.execute("ALTER SEQUENCE " + sequence + " RESTART WITH " + required);
+            }
+            logger.info("Sequence {} moved to {} (max {}.id = {})", sequence, required, table, maxId);
+        } catch (Exception e) {
+            logger.warn("Could not align sequence {} with table {}: {}", sequence, table, e.getMessage());
+        }
+    }
+}
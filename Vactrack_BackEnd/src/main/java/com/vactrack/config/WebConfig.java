@@ -1,14 +1,37 @@
 package com.vactrack.config;
 
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
+import java.net.http.HttpClient;
+import java.time.Duration;
+
 @Configuration
 public class WebConfig {
 
+    /**
+     * HttpClient dùng chung cho các lời gọi ra ngoài, chạy trên executor tác vụ của Spring Boot
+     * (virtual thread khi spring.threads.virtual.enabled=true, không thì thread pool spring.task.execution.pool.*)
+     */
+    @Bean
+    public HttpClient httpClient(@Qualifier("applicationTaskExecutor") AsyncTaskExecutor taskExecutor,
+                                 @Value("${http.client.connect-timeout-ms:5000}") long connectTimeoutMs) {
+        return HttpClient.newBuilder()
+                .executor(taskExecutor)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .build();
+    }
+
     @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
+    public RestTemplate restTemplate(HttpClient httpClient,
+                                     @Value("${http.client.read-timeout-ms:30000}") long readTimeoutMs) {
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient);
+        requestFactory.setReadTimeout(Duration.ofMillis(readTimeoutMs));
+        return new RestTemplate(requestFactory);
     }
 }
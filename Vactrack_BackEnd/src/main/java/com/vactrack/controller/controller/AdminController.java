@@ -2,7 +2,10 @@ package com.vactrack.controller;
 
 import com.vactrack.model.Appointment;
 import com.vactrack.service.AppointmentService;
+import com.vactrack.service.StatisticsService;
 import com.vactrack.service.VaccinationService;
+import com.vactrack.util.KeysetCursor;
+import com.vactrack.util.SingleFlight;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.format.annotation.DateTimeFormat;
@@ -25,11 +28,16 @@ public class AdminController {
 
     private final AppointmentService appointmentService;
     private final VaccinationService vaccinationService;
+    private final StatisticsService statisticsService;
+    private final SingleFlight singleFlight;
 
     @Autowired
-    public AdminController(AppointmentService appointmentService, VaccinationService vaccinationService) {
+    public AdminController(AppointmentService appointmentService, VaccinationService vaccinationService,
+                           StatisticsService statisticsService, SingleFlight singleFlight) {
         this.appointmentService = appointmentService;
         this.vaccinationService = vaccinationService;
+        this.statisticsService = statisticsService;
+        this.singleFlight = singleFlight;
     }
 
     // Dashboard endpoint
@@ -38,11 +46,12 @@ public class AdminController {
         Map<String, Object> response = new HashMap<>();
 
         // Thống kê
-        Map<String, Integer> stats = new HashMap<>();
-        stats.put("totalAppointments", appointmentService.countTotal());
-        stats.put("completedAppointments", appointmentService.countByStatus("completed"));
-        stats.put("canceledAppointments", appointmentService.countByStatus("canceled"));
-        stats.put("pendingAppointments", appointmentService.countByStatus("pending"));
+        Map<String, Long> counts = appointmentService.getStatusCounts();
+        Map<String, Long> stats = new HashMap<>();
+        stats.put("totalAppointments", counts.get("total"));
+        stats.put("completedAppointments", counts.getOrDefault("completed", 0L));
+        stats.put("canceledAppointments", counts.getOrDefault("canceled", 0L));
+        stats.put("pendingAppointments", counts.getOrDefault("pending", 0L));
 
         // Các cuộc hẹn gần đây
         List<Map<String, Object>> recentAppointments = appointmentService.getRecentAppointments(5)
@@ -83,6 +92,51 @@ public class AdminController {
         return ResponseEntity.ok(response);
     }
 
+    // Appointments list with keyset (cursor) pagination, no COUNT query per page
+    @GetMapping("/appointments/cursor")
+    public ResponseEntity<Map<String, Object>> getAppointmentsByCursor(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) String search,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate fromDate,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate toDate,
+            @RequestParam(defaultValue = "false") boolean includeTotal) {
+
+        int limit = Math.max(1, Math.min(size, 100));
+        KeysetCursor after = cursor != null && !cursor.isEmpty() ? KeysetCursor.decode(cursor) : null;
+
+        // Lấy dư một bản ghi để biết còn trang sau hay không
+        List<Appointment> appointments = appointmentService.findAppointmentsAfter(
+                after, limit + 1, status, search, fromDate, toDate);
+        boolean hasMore = appointments.size() > limit;
+        if (hasMore) {
+            appointments = appointments.subList(0, limit);
+        }
+
+        Map<String, Object> response = new HashMap<>();
+
+        List<Map<String, Object>> content = appointments.stream()
+                .map(this::convertToDetailedDto)
+                .collect(Collectors.toList());
+
+        String nextCursor = null;
+        if (hasMore) {
+            Appointment last = appointments.get(appointments.size() - 1);
+            nextCursor = new KeysetCursor(last.getAppointmentDate(), last.getAppointmentTime(), last.getId()).encode();
+        }
+
+        response.put("content", content);
+        response.put("size", limit);
+        response.put("hasMore", hasMore);
+        response.put("nextCursor", nextCursor);
+        if (includeTotal) {
+            response.put("approximateTotal", appointmentService.approximateCount(status, search, fromDate, toDate));
+        }
+
+        return ResponseEntity.ok(response);
+    }
+
     // Get appointment details by ID
     @GetMapping("/appointments/{id}")
     public ResponseEntity<?> getAppointmentById(@PathVariable Long id) {
@@ -118,6 +172,12 @@ public class AdminController {
         }
     }
 
+    // Appointment counts by status
+    @GetMapping("/appointments/status-counts")
+    public ResponseEntity<Map<String, Long>> getAppointmentStatusCounts() {
+        return ResponseEntity.ok(appointmentService.getStatusCounts());
+    }
+
     // Vaccination statistics
     @GetMapping("/statistics/vaccinations")
     public ResponseEntity<?> getVaccinationStatistics(
@@ -125,28 +185,32 @@ public class AdminController {
             @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate startDate,
             @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate endDate) {
 
+        // Nhiều admin mở dashboard cùng lúc với cùng tham số thì chỉ tính một lần
+        String key = period.toLowerCase() + "|" + startDate + "|" + endDate;
+        return ResponseEntity.ok(singleFlight.execute("vaccination-statistics", key,
+                () -> buildVaccinationStatistics(period, startDate, endDate)));
+    }
+
+    private Map<String, Object> buildVaccinationStatistics(String period, LocalDate startDate, LocalDate endDate) {
         Map<String, Object> statistics = new HashMap<>();
 
         // Thống kê tổng quan
-        long totalVaccinations = appointmentService.countTotal();
-        long completedVaccinations = appointmentService.countByStatus("completed");
-        long pendingVaccinations = appointmentService.countByStatus("pending");
-        long canceledVaccinations = appointmentService.countByStatus("canceled");
+        Map<String, Long> counts = appointmentService.getStatusCounts();
 
-        statistics.put("totalVaccinations", totalVaccinations);
-        statistics.put("completedVaccinations", completedVaccinations);
-        statistics.put("pendingVaccinations", pendingVaccinations);
-        statistics.put("canceledVaccinations", canceledVaccinations);
+        statistics.put("totalVaccinations", counts.get("total"));
+        statistics.put("completedVaccinations", counts.getOrDefault("completed", 0L));
+        statistics.put("pendingVaccinations", counts.getOrDefault("pending", 0L));
+        statistics.put("canceledVaccinations", counts.getOrDefault("canceled", 0L));
 
         // Dữ liệu theo thời gian
-        List<Map<String, Object>> timeSeriesData = vaccinationService.getMonthlyData();
+        List<Map<String, Object>> timeSeriesData = vaccinationService.getTrendData(period, startDate, endDate);
         statistics.put("timeSeriesData", timeSeriesData);
 
         // Phân phối theo dịch vụ
-        List<Map<String, Object>> vaccineDistribution = vaccinationService.getDistributionByService();
+        List<Map<String, Object>> vaccineDistribution = vaccinationService.getDistributionByService(startDate, endDate);
         statistics.put("vaccineDistribution", vaccineDistribution);
 
-        return ResponseEntity.ok(statistics);
+        return statistics;
     }
 
     // Revenue statistics
@@ -156,23 +220,23 @@ public class AdminController {
             @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate startDate,
             @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate endDate) {
 
-        Map<String, Object> statistics = new HashMap<>();
-
-        // Giả lập tổng doanh thu
-        double totalRevenue = 15000000;
-        statistics.put("totalRevenue", totalRevenue);
+        LocalDate to = endDate != null ? endDate : LocalDate.now();
+        LocalDate from = startDate != null ? startDate : statisticsService.defaultStart(period, to);
 
-        // Dữ liệu doanh thu theo thời gian
-        List<Map<String, Object>> timeSeriesData = getRevenueTimeSeriesData(period);
-        statistics.put("timeSeriesData", timeSeriesData);
-
-        // Phân phối theo gói dịch vụ
-        List<Map<String, Object>> packageDistribution = getPackageDistribution();
-        statistics.put("packageDistribution", packageDistribution);
+        // Tổng doanh thu, doanh thu theo thời gian và theo gói dịch vụ
+        String key = period.toLowerCase() + "|" + from + "|" + to;
+        Map<String, Object> statistics = singleFlight.execute("revenue-statistics", key,
+                () -> statisticsService.getRevenue(period, from, to));
 
         return ResponseEntity.ok(statistics);
     }
 
+    // Dựng lại bảng thống kê từ dữ liệu gốc
+    @PostMapping("/statistics/rebuild")
+    public ResponseEntity<?> rebuildStatistics() {
+        return ResponseEntity.ok(statisticsService.rebuild());
+    }
+
     // Helper methods for data conversion
 
     private Map<String, Object> convertToDto(Appointment appointment) {
@@ -202,58 +266,4 @@ public class AdminController {
         if (time == null) return null;
         return time.format(DateTimeFormatter.ofPattern("HH:mm"));
     }
-
-    // Helper methods for revenue statistics (for demonstration)
-
-    private List<Map<String, Object>> getRevenueTimeSeriesData(String period) {
-        List<Map<String, Object>> result = new ArrayList<>();
-        LocalDate startDate;
-        LocalDate endDate = LocalDate.now();
-
-        if ("day".equals(period)) {
-            startDate = endDate.minusDays(30);
-        } else if ("week".equals(period)) {
-            startDate = endDate.minusWeeks(12);
-        } else if ("year".equals(period)) {
-            startDate = endDate.minusYears(5);
-        } else { // month (default)
-            startDate = endDate.minusMonths(12);
-        }
-
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-        LocalDate current = startDate;
-
-        while (!current.isAfter(endDate)) {
-            Map<String, Object> point = new HashMap<>();
-            point.put("date", current.format(formatter));
-            point.put("amount", (int) (Math.random() * 1000000)); // Random revenue data
-            result.add(point);
-
-            if ("day".equals(period)) {
-                current = current.plusDays(1);
-            } else if ("week".equals(period)) {
-                current = current.plusWeeks(1);
-            } else if ("year".equals(period)) {
-                current = current.plusYears(1);
-            } else { // month
-                current = current.plusMonths(1);
-            }
-        }
-
-        return result;
-    }
-
-    private List<Map<String, Object>> getPackageDistribution() {
-        List<Map<String, Object>> result = new ArrayList<>();
-
-        String[] packages = {"Gói cơ bản", "Gói nâng cao", "Gói đầy đủ", "Gói trẻ sơ sinh", "Gói trẻ em"};
-        for (String pkg : packages) {
-            Map<String, Object> item = new HashMap<>();
-            item.put("name", pkg);
-            item.put("amount", (int) (Math.random() * 5000000)); // Random revenue data
-            result.add(item);
-        }
-
-        return result;
-    }
 }
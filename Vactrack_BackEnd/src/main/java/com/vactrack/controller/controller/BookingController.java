@@ -2,23 +2,33 @@ package com.vactrack.controller;
 
 import com.vactrack.dto.BookingRequest;
 import com.vactrack.dto.BookingResponse;
+import com.vactrack.service.BookingImportService;
 import com.vactrack.service.BookingService;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/bookings")
 public class BookingController {
 
     private final BookingService bookingService;
+    private final BookingImportService bookingImportService;
 
     @Autowired
-    public BookingController(BookingService bookingService) {
+    public BookingController(BookingService bookingService, BookingImportService bookingImportService) {
         this.bookingService = bookingService;
+        this.bookingImportService = bookingImportService;
     }
 
     @GetMapping
@@ -26,6 +36,26 @@ public class BookingController {
         return ResponseEntity.ok(bookingService.getAllBookings());
     }
 
+    /**
+     * Nhập hàng loạt (chỉ ADMIN): body là CSV có dòng tiêu đề (text/csv) hoặc mỗi dòng một booking JSON (application/x-ndjson)
+     */
+    @PreAuthorize("hasAuthority('ADMIN')")
+    @PostMapping(value = "/import", consumes = {"text/csv", "application/x-ndjson"})
+    public ResponseEntity<Map<String, Object>> importBookings(HttpServletRequest request) throws IOException {
+        String format = request.getContentType().startsWith("text/csv")
+                ? BookingImportService.FORMAT_CSV
+                : BookingImportService.FORMAT_JSON_LINES;
+        Reader reader = new InputStreamReader(request.getInputStream(), StandardCharsets.UTF_8);
+        return ResponseEntity.ok(bookingImportService.importBookings(reader, format));
+    }
+
+    @GetMapping("/slots")
+    public ResponseEntity<List<Map<String, Object>>> getAvailableSlots(
+            @RequestParam String from,
+            @RequestParam(required = false) String to) {
+        return ResponseEntity.ok(bookingService.getAvailableSlots(from, to));
+    }
+
     @GetMapping("/{bookingId}")
     public ResponseEntity<BookingResponse> getBookingById(@PathVariable String bookingId) {
         return ResponseEntity.ok(bookingService.getBookingById(bookingId));
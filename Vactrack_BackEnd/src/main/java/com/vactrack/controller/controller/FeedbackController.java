@@ -4,13 +4,16 @@ import com.vactrack.dto.ApiResponse;
 import com.vactrack.dto.FeedbackListResponse;
 import com.vactrack.dto.FeedbackRequest;
 import com.vactrack.service.FeedbackService;
+import com.vactrack.util.ResourceVersions;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.BindingResult;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 import java.util.stream.Collectors;
@@ -22,6 +25,9 @@ public class FeedbackController {
     @Autowired
     private FeedbackService feedbackService;
 
+    @Autowired
+    private ResourceVersions resourceVersions;
+
     /**
      * Gửi phản hồi - công khai truy cập
      */
@@ -78,11 +84,12 @@ public class FeedbackController {
             @RequestParam(defaultValue = "1") int page,
             @RequestParam(defaultValue = "10") int limit,
             @RequestParam(defaultValue = "createdAt") String sortBy,
-            @RequestParam(defaultValue = "desc") String order) {
+            @RequestParam(defaultValue = "desc") String order,
+            WebRequest webRequest) {
 
         try {
-            FeedbackListResponse response = feedbackService.getPublicFeedback(page, limit, sortBy, order);
-            return ResponseEntity.ok(response);
+            return resourceVersions.conditional(webRequest, ResourceVersions.Resource.FEEDBACK,
+                    CacheControl.noCache(), () -> feedbackService.getPublicFeedback(page, limit, sortBy, order));
         } catch (Exception e) {
             return ResponseEntity
                     .status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -1,10 +1,13 @@
 package com.vactrack.controller;
 
 import com.vactrack.service.SystemSettingService;
+import com.vactrack.util.ResourceVersions;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.Map;
 
@@ -15,16 +18,18 @@ import java.util.Map;
 public class SystemSettingController {
 
     private final SystemSettingService systemSettingService;
+    private final ResourceVersions resourceVersions;
 
     @Autowired
-    public SystemSettingController(SystemSettingService systemSettingService) {
+    public SystemSettingController(SystemSettingService systemSettingService, ResourceVersions resourceVersions) {
         this.systemSettingService = systemSettingService;
+        this.resourceVersions = resourceVersions;
     }
 
     @GetMapping
-    public ResponseEntity<?> getSystemSettings() {
-        Map<String, Object> settings = systemSettingService.getSettings();
-        return ResponseEntity.ok(settings);
+    public ResponseEntity<?> getSystemSettings(WebRequest webRequest) {
+        return resourceVersions.conditional(webRequest, ResourceVersions.Resource.SETTINGS,
+                CacheControl.noCache().cachePrivate(), systemSettingService::getSettings);
     }
 
     @PutMapping
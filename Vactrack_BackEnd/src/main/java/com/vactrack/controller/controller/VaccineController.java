@@ -1,16 +1,23 @@
 package com.vactrack.controller;
 
+import com.vactrack.catalog.CatalogVaccine;
 import com.vactrack.model.Vaccine;
+import com.vactrack.model.VaccineLot;
 import com.vactrack.service.VaccineService;
+import com.vactrack.util.ResourceVersions;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -20,10 +27,12 @@ import java.util.Map;
 public class VaccineController {
 
     private final VaccineService vaccineService;
+    private final ResourceVersions resourceVersions;
 
     @Autowired
-    public VaccineController(VaccineService vaccineService) {
+    public VaccineController(VaccineService vaccineService, ResourceVersions resourceVersions) {
         this.vaccineService = vaccineService;
+        this.resourceVersions = resourceVersions;
     }
 
     @GetMapping
@@ -31,16 +40,20 @@ public class VaccineController {
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
             @RequestParam(required = false) String category,
-            @RequestParam(required = false) String search) {
+            @RequestParam(required = false) String search,
+            WebRequest webRequest) {
 
-        Page<Vaccine> vaccinePage = vaccineService.findVaccines(page, size, category, search);
+        // Mỗi tổ hợp tham số là một URL riêng, nên chỉ cần phiên bản của danh mục vaccine
+        return resourceVersions.conditional(webRequest, ResourceVersions.Resource.VACCINES,
+                CacheControl.noCache().cachePrivate(), () -> {
+                    Page<CatalogVaccine> vaccinePage = vaccineService.findVaccines(page, size, category, search);
 
-        Map<String, Object> response = new HashMap<>();
-        response.put("content", vaccinePage.getContent());
-        response.put("totalElements", vaccinePage.getTotalElements());
-        response.put("totalPages", vaccinePage.getTotalPages());
-
-        return ResponseEntity.ok(response);
+                    Map<String, Object> response = new HashMap<>();
+                    response.put("content", vaccinePage.getContent());
+                    response.put("totalElements", vaccinePage.getTotalElements());
+                    response.put("totalPages", vaccinePage.getTotalPages());
+                    return response;
+                });
     }
 
     @GetMapping("/{id}")
@@ -78,11 +91,19 @@ public class VaccineController {
         try {
             Integer quantity = Integer.valueOf(stockUpdate.get("quantity").toString());
             String action = (String) stockUpdate.get("action");
+            String lotNumber = (String) stockUpdate.get("lotNumber");
+            Object expiry = stockUpdate.get("expiryDate");
+            LocalDate expiryDate = expiry != null ? LocalDate.parse(expiry.toString()) : null;
 
-            Vaccine updatedVaccine = vaccineService.updateStock(id, quantity, action);
+            Vaccine updatedVaccine = vaccineService.updateStock(id, quantity, action, lotNumber, expiryDate);
             return ResponseEntity.ok(updatedVaccine);
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
         }
     }
+
+    @GetMapping("/{id}/lots")
+    public ResponseEntity<List<VaccineLot>> getVaccineLots(@PathVariable Long id) {
+        return ResponseEntity.ok(vaccineService.findLots(id));
+    }
 }
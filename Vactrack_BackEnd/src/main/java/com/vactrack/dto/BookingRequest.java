@@ -6,6 +6,7 @@ public class BookingRequest {
     private String patientDob;
     private String serviceType;
     private String packageType;
+    private Long vaccineId;
     private String appointmentDate;
     private String appointmentTime;
     private String status;
@@ -55,6 +56,14 @@ public class BookingRequest {
         this.packageType = packageType;
     }
 
+    public Long getVaccineId() {
+        return vaccineId;
+    }
+
+    public void setVaccineId(Long vaccineId) {
+        this.vaccineId = vaccineId;
+    }
+
     public String getAppointmentDate() {
         return appointmentDate;
     }
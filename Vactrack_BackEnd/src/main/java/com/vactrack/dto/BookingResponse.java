@@ -7,6 +7,7 @@ public class BookingResponse {
     private String patientDob;
     private String serviceType;
     private String packageType;
+    private Long vaccineId;
     private String appointmentDate;
     private String appointmentTime;
     private String status;
@@ -81,6 +82,14 @@ public class BookingResponse {
         this.packageType = packageType;
     }
 
+    public Long getVaccineId() {
+        return vaccineId;
+    }
+
+    public void setVaccineId(Long vaccineId) {
+        this.vaccineId = vaccineId;
+    }
+
     public String getAppointmentDate() {
         return appointmentDate;
     }
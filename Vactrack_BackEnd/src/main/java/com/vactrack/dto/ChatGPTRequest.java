@@ -9,6 +9,7 @@ public class ChatGPTRequest {
     private List<Message> messages;
     private double temperature;
     private int max_tokens;
+    private boolean stream;
 
     public ChatGPTRequest() {}
 
@@ -44,4 +45,12 @@ public class ChatGPTRequest {
     public void setMax_tokens(int max_tokens) {
         this.max_tokens = max_tokens;
     }
+
+    public boolean isStream() {
+        return stream;
+    }
+
+    public void setStream(boolean stream) {
+        this.stream = stream;
+    }
 }
@@ -0,0 +1,44 @@
+package com.vactrack.inventory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+
+/**
+ * Định kỳ loại các lô vaccine đã hết hạn theo từng đợt, mỗi đợt một transaction ngắn
+ */
+@Component
+public class LotExpirySweeper {
+
+    private static final Logger logger = LoggerFactory.getLogger(LotExpirySweeper.class);
+
+    private final LotInventoryService lotInventoryService;
+    private final StockReservationService stockReservationService;
+    private final int batchSize;
+
+    public LotExpirySweeper(LotInventoryService lotInventoryService,
+                            StockReservationService stockReservationService,
+                            @Value("${inventory.lots.sweep-batch-size:500}") int batchSize) {
+        this.lotInventoryService = lotInventoryService;
+        this.stockReservationService = stockReservationService;
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(fixedDelayString = "${inventory.lots.sweep-interval-ms:3600000}", initialDelay = 60000)
+    public void sweep() {
+        Set<Long> vaccineIds;
+        do {
+            try {
+                vaccineIds = lotInventoryService.retireExpired(batchSize);
+            } catch (Exception e) {
+                logger.error("Expired lot sweep failed", e);
+                return;
+            }
+            vaccineIds.forEach(stockReservationService::refresh);
+        } while (!vaccineIds.isEmpty());
+    }
+}
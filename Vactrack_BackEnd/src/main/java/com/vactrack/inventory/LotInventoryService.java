@@ -0,0 +1,432 @@
+package com.vactrack.inventory;
+
+import com.vactrack.exception.ApiException;
+import com.vactrack.model.VaccineLot;
+import com.vactrack.repository.VaccineLotRepository;
+import com.vactrack.repository.VaccineRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Tồn kho theo lô với nguyên tắc hết hạn trước xuất trước (FEFO).
+ * Mỗi vaccine giữ các lô còn dùng được trong một tập sắp theo hạn dùng,
+ * nên lấy lô kế tiếp là O(log n) và không phải quét danh sách lô.
+ * Số liều được giữ trong bộ nhớ trước khi trừ trong DB nên các lần cấp phát đồng thời không chọn trùng phần của nhau;
+ * DB từ chối hoặc transaction rollback thì phần giữ được trả lại.
+ * Vaccine.inStock vẫn là tổng tồn kho (gồm cả phần nhập trước khi có quản lý lô) để luồng giữ chỗ dùng tiếp.
+ */
+@Service
+public class LotInventoryService {
+
+    private static final Logger logger = LoggerFactory.getLogger(LotInventoryService.class);
+
+    private static final Comparator<LotState> FEFO = Comparator
+            .comparing((LotState lot) -> lot.expiryDate)
+            .thenComparingLong(lot -> lot.id);
+
+    private final VaccineLotRepository vaccineLotRepository;
+    private final VaccineRepository vaccineRepository;
+
+    // Nạp lười theo vaccine; bị bỏ đi khi lệch với DB để lần sau đọc lại
+    private final Map<Long, LotBook> lotsByVaccine = new ConcurrentHashMap<>();
+
+    public LotInventoryService(VaccineLotRepository vaccineLotRepository, VaccineRepository vaccineRepository) {
+        this.vaccineLotRepository = vaccineLotRepository;
+        this.vaccineRepository = vaccineRepository;
+    }
+
+    private static final class LotState {
+        final long id;
+        final String lotNumber;
+        final LocalDate expiryDate;
+        // Còn có thể cấp = số liều đã commit trừ phần đang giữ bởi transaction chưa kết thúc
+        int remaining;
+        int pending;
+        boolean retired;
+
+        LotState(VaccineLot lot) {
+            this.id = lot.getId();
+            this.lotNumber = lot.getLotNumber();
+            this.expiryDate = lot.getExpiryDate();
+            this.remaining = lot.getQuantity();
+        }
+
+        LotState(Object[] row) {
+            this.id = (Long) row[0];
+            this.lotNumber = (String) row[1];
+            this.expiryDate = (LocalDate) row[2];
+            this.remaining = (Integer) row[3];
+        }
+    }
+
+    /**
+     * Các lô còn dùng được của một vaccine, sắp theo FEFO. Mọi truy cập đều synchronized trên chính đối tượng.
+     */
+    private static final class LotBook {
+        private final TreeSet<LotState> lots = new TreeSet<>(FEFO);
+        private final Map<Long, LotState> byId = new HashMap<>();
+
+        synchronized void add(LotState lot) {
+            if (!lot.retired && lot.remaining > 0 && byId.putIfAbsent(lot.id, lot) == null) {
+                lots.add(lot);
+            }
+        }
+
+        // Giữ tối đa quantity liều theo FEFO, trừ ngay số liều còn lại; lô về 0 rời khỏi tập
+        synchronized List<Allocation> reserve(int quantity, LocalDate today) {
+            List<Allocation> reserved = new ArrayList<>();
+            int remaining = quantity;
+            Iterator<LotState> iterator = lots.iterator();
+            while (remaining > 0 && iterator.hasNext()) {
+                LotState lot = iterator.next();
+                if (lot.expiryDate.isBefore(today)) {
+                    // để đợt quét hết hạn xử lý
+                    retire(lot, iterator);
+                    continue;
+                }
+                int taken = Math.min(lot.remaining, remaining);
+                remaining -= taken;
+                lot.remaining -= taken;
+                lot.pending += taken;
+                if (lot.remaining == 0) {
+                    iterator.remove();
+                    byId.remove(lot.id);
+                }
+                reserved.add(new Allocation(lot, taken, lot.remaining == 0));
+            }
+            return reserved;
+        }
+
+        synchronized void committed(List<Allocation> allocations) {
+            for (Allocation allocation : allocations) {
+                allocation.lot.pending -= allocation.quantity;
+            }
+        }
+
+        // Trả lại phần đã giữ khi DB từ chối hoặc transaction rollback
+        synchronized void cancel(Allocation allocation) {
+            LotState lot = allocation.lot;
+            lot.pending -= allocation.quantity;
+            lot.remaining += allocation.quantity;
+            add(lot);
+        }
+
+        // DB còn ít liều hơn bản trong bộ nhớ (lô bị node khác trừ): lấy số đã commit trừ phần đang giữ ở node này.
+        // ownConsumed là phần chính transaction đang chạy đã trừ trong DB, đã nằm trong committedQuantity
+        synchronized void correct(LotState lot, Integer committedQuantity, int ownConsumed) {
+            if (committedQuantity == null) {
+                retire(lot, null);
+                return;
+            }
+            lot.remaining = Math.max(0, committedQuantity - (lot.pending - ownConsumed));
+            if (lot.remaining == 0) {
+                lots.remove(lot);
+                byId.remove(lot.id);
+            } else {
+                add(lot);
+            }
+        }
+
+        synchronized void removeExpired(LocalDate today) {
+            while (!lots.isEmpty() && lots.first().expiryDate.isBefore(today)) {
+                retire(lots.first(), null);
+            }
+        }
+
+        private void retire(LotState lot, Iterator<LotState> iterator) {
+            lot.retired = true;
+            if (iterator != null) {
+                iterator.remove();
+            } else {
+                lots.remove(lot);
+            }
+            byId.remove(lot.id);
+        }
+    }
+
+    /**
+     * Một phần số lượng được lấy từ một lô
+     */
+    public static final class Allocation {
+        private final LotState lot;
+        private final Long lotId;
+        private final String lotNumber;
+        private final LocalDate expiryDate;
+        private final int quantity;
+        private final boolean lotEmptied;
+
+        private Allocation(LotState lot, int quantity, boolean lotEmptied) {
+            this.lot = lot;
+            this.lotId = lot.id;
+            this.lotNumber = lot.lotNumber;
+            this.expiryDate = lot.expiryDate;
+            this.quantity = quantity;
+            this.lotEmptied = lotEmptied;
+        }
+
+        public Long getLotId() {
+            return lotId;
+        }
+
+        public String getLotNumber() {
+            return lotNumber;
+        }
+
+        public LocalDate getExpiryDate() {
+            return expiryDate;
+        }
+
+        public int getQuantity() {
+            return quantity;
+        }
+
+        /**
+         * Phần này lấy hết số liều còn lại của lô, hạn dùng gần nhất của vaccine có thể đã đổi
+         */
+        public boolean isLotEmptied() {
+            return lotEmptied;
+        }
+    }
+
+    /**
+     * Nhập một lô mới và cộng vào tổng tồn kho của vaccine
+     */
+    @Transactional
+    public VaccineLot receive(long vaccineId, int quantity, String lotNumber, LocalDate expiryDate) {
+        if (quantity <= 0) {
+            throw new ApiException("Invalid quantity: " + quantity, HttpStatus.BAD_REQUEST);
+        }
+        if (lotNumber == null || lotNumber.isBlank()) {
+            throw new ApiException("Lot number is required", HttpStatus.BAD_REQUEST);
+        }
+        if (expiryDate == null || expiryDate.isBefore(LocalDate.now())) {
+            throw new ApiException("Lot is already expired", HttpStatus.BAD_REQUEST);
+        }
+        if (vaccineRepository.incrementStock(vaccineId, quantity) == 0) {
+            throw new ApiException("Vaccine not found with id: " + vaccineId, HttpStatus.NOT_FOUND);
+        }
+
+        VaccineLot lot = new VaccineLot();
+        lot.setVaccineId(vaccineId);
+        lot.setLotNumber(lotNumber.trim());
+        lot.setQuantity(quantity);
+        lot.setExpiryDate(expiryDate);
+        lot.setReceivedAt(LocalDateTime.now());
+        lot.setStatus("active");
+        VaccineLot saved = vaccineLotRepository.save(lot);
+
+        LotState state = new LotState(saved);
+        afterCommit(() -> {
+            LotBook book = lotsByVaccine.get(vaccineId);
+            if (book != null) {
+                book.add(state);
+            }
+        });
+        refreshExpiryDate(vaccineId);
+        return saved;
+    }
+
+    /**
+     * Lấy quantity liều từ các lô còn hạn, lô hết hạn sớm nhất trước.
+     * Phải chạy trong transaction đã trừ Vaccine.inStock; phần vượt tổng các lô
+     * được coi là tồn kho nhập trước khi có quản lý lô và không gắn với lô nào.
+     * Số liều được giữ trong bộ nhớ trước khi trừ trong DB; lô bị node khác trừ trước thì chỉ đọc lại lô đó
+     * rồi chọn tiếp phần còn thiếu. Hạn dùng của vaccine chỉ được tính lại khi có lô bị lấy hết.
+     */
+    @Transactional
+    public List<Allocation> allocate(long vaccineId, int quantity) {
+        LotBook book = book(vaccineId);
+        List<Allocation> allocations = new ArrayList<>();
+        try {
+            reserveAndConsume(book, quantity, allocations);
+        } catch (RuntimeException e) {
+            allocations.forEach(book::cancel);
+            throw e;
+        }
+
+        onCompletion(committed -> {
+            if (committed) {
+                book.committed(allocations);
+            } else {
+                allocations.forEach(book::cancel);
+            }
+        });
+        if (allocations.stream().anyMatch(Allocation::isLotEmptied)) {
+            refreshExpiryDate(vaccineId);
+        }
+        return allocations;
+    }
+
+    // Giữ rồi trừ trong DB tới khi đủ quantity hoặc hết lô; phần đã trừ được thêm vào allocations
+    private void reserveAndConsume(LotBook book, int quantity, List<Allocation> allocations) {
+        int remaining = quantity;
+        while (remaining > 0) {
+            List<Allocation> reserved = book.reserve(remaining, LocalDate.now());
+            if (reserved.isEmpty()) {
+                break; // phần còn lại là tồn kho nhập trước khi có quản lý lô
+            }
+
+            Allocation conflict = null;
+            for (int i = 0; i < reserved.size(); i++) {
+                Allocation allocation = reserved.get(i);
+                if (conflict != null) {
+                    book.cancel(allocation);
+                    continue;
+                }
+                try {
+                    if (vaccineLotRepository.consume(allocation.lotId, allocation.quantity) == 0) {
+                        conflict = allocation;
+                        book.cancel(allocation);
+                        continue;
+                    }
+                } catch (RuntimeException e) {
+                    reserved.subList(i, reserved.size()).forEach(book::cancel);
+                    throw e;
+                }
+                allocations.add(allocation);
+                remaining -= allocation.quantity;
+            }
+
+            if (conflict != null) {
+                book.correct(conflict.lot, vaccineLotRepository.findActiveQuantity(conflict.lotId),
+                        consumedFrom(allocations, conflict.lot));
+            }
+        }
+    }
+
+    /**
+     * Các lô còn dùng được của vaccine theo thứ tự sẽ xuất
+     */
+    public List<VaccineLot> findAllocatableLots(long vaccineId) {
+        return vaccineLotRepository.findAllocatable(vaccineId, LocalDate.now());
+    }
+
+    /**
+     * Loại một đợt tối đa batchSize lô đã hết hạn: đánh dấu "expired" và trừ số liều còn lại khỏi tồn kho.
+     * Trả về id các vaccine bị ảnh hưởng; tập rỗng nghĩa là không còn lô hết hạn.
+     */
+    @Transactional
+    public Set<Long> retireExpired(int batchSize) {
+        LocalDate today = LocalDate.now();
+        List<Long> ids = vaccineLotRepository.findExpiredIds(today, PageRequest.of(0, batchSize));
+        if (ids.isEmpty()) {
+            return Collections.emptySet();
+        }
+
+        Set<Long> vaccineIds = new HashSet<>();
+        for (Object[] row : vaccineLotRepository.sumQuantityByVaccine(ids)) {
+            long vaccineId = (Long) row[0];
+            vaccineIds.add(vaccineId);
+
+            // Bỏ các lô hết hạn khỏi bộ nhớ trước khi đọc số lượng để không còn bị cấp phát
+            LotBook book = lotsByVaccine.get(vaccineId);
+            if (book != null) {
+                book.removeExpired(today);
+            }
+        }
+
+        // Đọc lại tổng sau khi đã gỡ khỏi bộ nhớ, tránh lệch với lần cấp phát đang diễn ra
+        for (Object[] row : vaccineLotRepository.sumQuantityByVaccine(ids)) {
+            int expiredQuantity = ((Number) row[1]).intValue();
+            if (expiredQuantity > 0) {
+                vaccineRepository.reduceStock((Long) row[0], expiredQuantity);
+            }
+        }
+        int retired = vaccineLotRepository.markExpired(ids);
+        for (Long vaccineId : vaccineIds) {
+            refreshExpiryDate(vaccineId);
+            evictOnRollback(vaccineId);
+        }
+
+        logger.info("Retired {} expired lots across {} vaccines", retired, vaccineIds.size());
+        return vaccineIds;
+    }
+
+    private static int consumedFrom(List<Allocation> allocations, LotState lot) {
+        int consumed = 0;
+        for (Allocation allocation : allocations) {
+            if (allocation.lot == lot) {
+                consumed += allocation.quantity;
+            }
+        }
+        return consumed;
+    }
+
+    private LotBook book(long vaccineId) {
+        return lotsByVaccine.computeIfAbsent(vaccineId, this::load);
+    }
+
+    private LotBook load(long vaccineId) {
+        LotBook book = new LotBook();
+        for (Object[] row : vaccineLotRepository.findAllocatableRows(vaccineId, LocalDate.now())) {
+            book.add(new LotState(row));
+        }
+        return book;
+    }
+
+    // Hạn dùng hiển thị của vaccine là hạn gần nhất trong các lô còn hàng; hết lô thì bỏ hạn dùng cũ
+    private void refreshExpiryDate(long vaccineId) {
+        vaccineRepository.updateExpiryDate(vaccineId, vaccineLotRepository.findNearestExpiry(vaccineId));
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    // Chạy sau khi transaction kết thúc với kết quả có commit hay không; ngoài transaction coi như đã commit
+    private void onCompletion(Consumer<Boolean> action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    action.accept(status == STATUS_COMMITTED);
+                }
+            });
+        } else {
+            action.accept(true);
+        }
+    }
+
+    private void evictOnRollback(long vaccineId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_ROLLED_BACK) {
+                        lotsByVaccine.remove(vaccineId);
+                    }
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package com.vactrack.inventory;
+
+import com.vactrack.catalog.VaccineCatalog;
+import com.vactrack.exception.ApiException;
+import com.vactrack.repository.VaccineRepository;
+import com.vactrack.util.ResourceVersions;
+import com.vactrack.util.TimerWheel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Giữ chỗ tồn kho vaccine cho đặt lịch: reserve khi tạo booking, confirm khi booking được xác nhận,
+ * release khi hủy hoặc khi giữ chỗ quá hạn.
+ * Bộ đếm chia ô trong bộ nhớ loại nhanh các yêu cầu vượt tồn kho mà không chạm DB;
+ * tính đúng cuối cùng do câu UPDATE có điều kiện (in_stock >= quantity) ở DB đảm bảo.
+ * Đổi tồn kho do đặt lịch chỉ sửa số tồn kho trong danh mục và không tăng phiên bản VACCINES,
+ * nên client không phải tải lại cả danh mục sau mỗi lượt đặt; số tồn kho trong bản client đã cache chỉ là gần đúng.
+ */
+@Service
+public class StockReservationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(StockReservationService.class);
+
+    private static final long TICK_MILLIS = 1000;
+
+    private final VaccineRepository vaccineRepository;
+    private final LotInventoryService lotInventoryService;
+    private final VaccineCatalog vaccineCatalog;
+    private final ResourceVersions resourceVersions;
+
+    private final Map<Long, StripedStockCounter> counters = new ConcurrentHashMap<>();
+    private final Map<Long, AtomicInteger> reservedByVaccine = new ConcurrentHashMap<>();
+    private final Map<String, Reservation> reservations = new ConcurrentHashMap<>();
+    private final TimerWheel<Reservation> expiryWheel;
+
+    private final long ttlMillis;
+    private final int stripes;
+
+    public StockReservationService(VaccineRepository vaccineRepository,
+                                   LotInventoryService lotInventoryService,
+                                   VaccineCatalog vaccineCatalog,
+                                   ResourceVersions resourceVersions,
+                                   @Value("${inventory.reservation.ttl-seconds:900}") long ttlSeconds,
+                                   @Value("${inventory.reservation.stripes:8}") int stripes) {
+        this.vaccineRepository = vaccineRepository;
+        this.lotInventoryService = lotInventoryService;
+        this.vaccineCatalog = vaccineCatalog;
+        this.resourceVersions = resourceVersions;
+        this.ttlMillis = ttlSeconds * 1000;
+        this.stripes = stripes;
+        this.expiryWheel = new TimerWheel<>((int) (ttlMillis / TICK_MILLIS) + 2, TICK_MILLIS);
+    }
+
+    private static final class Reservation {
+        final String bookingId;
+        final long vaccineId;
+        final int quantity;
+        final long expiresAt;
+
+        Reservation(String bookingId, long vaccineId, int quantity, long expiresAt) {
+            this.bookingId = bookingId;
+            this.vaccineId = vaccineId;
+            this.quantity = quantity;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * Giữ chỗ quantity liều cho booking; ném CONFLICT nếu không đủ tồn kho.
+     * Nếu transaction hiện tại rollback thì giữ chỗ được trả lại.
+     */
+    public void reserve(String bookingId, long vaccineId, int quantity) {
+        if (quantity <= 0) {
+            throw new ApiException("Invalid quantity: " + quantity, HttpStatus.BAD_REQUEST);
+        }
+
+        StripedStockCounter counter = counter(vaccineId);
+        if (!counter.tryAcquire(quantity)) {
+            throw new ApiException("Vaccine is out of stock", HttpStatus.CONFLICT);
+        }
+
+        Reservation reservation = new Reservation(bookingId, vaccineId, quantity, System.currentTimeMillis() + ttlMillis);
+        Reservation previous = reservations.put(bookingId, reservation);
+        reserved(vaccineId).addAndGet(quantity);
+        if (previous != null) {
+            giveBack(previous);
+        }
+        expiryWheel.schedule(reservation, reservation.expiresAt);
+
+        onRollback(() -> {
+            if (reservations.remove(bookingId, reservation)) {
+                giveBack(reservation);
+            }
+        });
+    }
+
+    /**
+     * Trừ tồn kho thật trong DB cho booking. Phải chạy trong transaction của booking.
+     * Giữ chỗ đã hết hạn (hoặc mất sau khi restart) được giữ lại từ bộ đếm trước khi trừ.
+     * Số liều được lấy từ các lô theo FEFO.
+     */
+    public void confirm(String bookingId, long vaccineId, int quantity) {
+        Reservation reservation = reservations.remove(bookingId);
+        int held = reservation != null ? reservation.quantity : quantity;
+        if (reservation == null) {
+            if (!counter(vaccineId).tryAcquire(quantity)) {
+                throw new ApiException("Vaccine is out of stock", HttpStatus.CONFLICT);
+            }
+            reserved(vaccineId).addAndGet(quantity);
+        }
+
+        // Phần đã giữ vẫn tính vào reserved tới khi transaction kết thúc: resync ở thread khác
+        // đọc tồn kho đã commit (chưa bị trừ) nên phải trừ cả phần này mới không cấp dư
+        if (vaccineRepository.decrementStock(vaccineId, quantity) == 0) {
+            reserved(vaccineId).addAndGet(-held);
+            resync(vaccineId);
+            throw new ApiException("Vaccine is out of stock", HttpStatus.CONFLICT);
+        }
+        // Lấy hết một lô thì hạn dùng gần nhất có thể đã đổi, phải đưa cả bản ghi lên danh mục
+        boolean expiryChanged = lotInventoryService.allocate(vaccineId, quantity).stream()
+                .anyMatch(LotInventoryService.Allocation::isLotEmptied);
+
+        // Bộ đếm đã trừ phần này từ lúc giữ chỗ nên commit không cần resync; rollback thì trả lại
+        onCompletion(committed -> {
+            reserved(vaccineId).addAndGet(-held);
+            if (committed && expiryChanged) {
+                publishVaccine(vaccineId);
+            } else if (committed) {
+                publishStock(vaccineId);
+            } else {
+                counter(vaccineId).release(held);
+            }
+        });
+    }
+
+    /**
+     * Hủy giữ chỗ chưa xác nhận, trả số lượng về bộ đếm
+     */
+    public void release(String bookingId) {
+        Reservation reservation = reservations.remove(bookingId);
+        if (reservation != null) {
+            giveBack(reservation);
+        }
+    }
+
+    /**
+     * Hoàn lại tồn kho đã trừ khi một booking đã xác nhận bị hủy.
+     * Booking không lưu lô đã cấp nên phần hoàn lại không gắn với lô nào.
+     */
+    public void restock(long vaccineId, int quantity) {
+        if (vaccineRepository.incrementStock(vaccineId, quantity) > 0) {
+            afterCompletion(() -> stockChanged(vaccineId));
+        }
+    }
+
+    /**
+     * Đồng bộ lại bộ đếm sau khi tồn kho đổi ngoài luồng giữ chỗ (nhập/xuất kho thủ công)
+     */
+    public void resync(long vaccineId) {
+        StripedStockCounter counter = counters.get(vaccineId);
+        if (counter != null) {
+            counter.reset(loadAvailable(vaccineId));
+        }
+    }
+
+    /**
+     * Đồng bộ bộ đếm, danh mục và phiên bản sau khi tồn kho và hạn dùng đổi ngoài request (vd. đợt quét lô hết hạn)
+     */
+    public void refresh(long vaccineId) {
+        resync(vaccineId);
+        publishVaccine(vaccineId);
+    }
+
+    public int available(long vaccineId) {
+        return counter(vaccineId).available();
+    }
+
+    @Scheduled(fixedRate = TICK_MILLIS)
+    public void expire() {
+        expiryWheel.advance(System.currentTimeMillis(), reservation -> {
+            if (reservations.remove(reservation.bookingId, reservation)) {
+                giveBack(reservation);
+                logger.debug("Reservation for booking {} expired", reservation.bookingId);
+            }
+        });
+    }
+
+    private void giveBack(Reservation reservation) {
+        reserved(reservation.vaccineId).addAndGet(-reservation.quantity);
+        counter(reservation.vaccineId).release(reservation.quantity);
+    }
+
+    private StripedStockCounter counter(long vaccineId) {
+        return counters.computeIfAbsent(vaccineId, id -> new StripedStockCounter(stripes, loadAvailable(id)));
+    }
+
+    private AtomicInteger reserved(long vaccineId) {
+        return reservedByVaccine.computeIfAbsent(vaccineId, id -> new AtomicInteger());
+    }
+
+    // Còn có thể giữ chỗ = tồn kho trong DB trừ các giữ chỗ chưa xác nhận
+    private int loadAvailable(long vaccineId) {
+        Integer inStock = vaccineRepository.findStockById(vaccineId);
+        if (inStock == null) {
+            throw new ApiException("Vaccine not found with id: " + vaccineId, HttpStatus.NOT_FOUND);
+        }
+        AtomicInteger reserved = reservedByVaccine.get(vaccineId);
+        return inStock - (reserved != null ? reserved.get() : 0);
+    }
+
+    private void stockChanged(long vaccineId) {
+        resync(vaccineId);
+        publishStock(vaccineId);
+    }
+
+    private void publishVaccine(long vaccineId) {
+        vaccineRepository.findById(vaccineId).ifPresent(vaccineCatalog::put);
+        resourceVersions.bump(ResourceVersions.Resource.VACCINES);
+    }
+
+    private void publishStock(long vaccineId) {
+        Integer inStock = vaccineRepository.findStockById(vaccineId);
+        if (inStock != null) {
+            vaccineCatalog.updateStock(vaccineId, inStock);
+        }
+    }
+
+    private void onRollback(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_ROLLED_BACK) {
+                        action.run();
+                    }
+                }
+            });
+        }
+    }
+
+    // Chạy sau khi transaction kết thúc với kết quả có commit hay không; ngoài transaction coi như đã commit
+    private void onCompletion(Consumer<Boolean> action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    action.accept(status == STATUS_COMMITTED);
+                }
+            });
+        } else {
+            action.accept(true);
+        }
+    }
+
+    // Chạy sau khi transaction kết thúc (commit hay rollback đều phải đồng bộ lại bộ đếm)
+    private void afterCompletion(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.vactrack.inventory;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Số lượng còn có thể giữ chỗ của một vaccine, chia thành nhiều ô để các thread không cùng CAS một biến.
+ * Mỗi thread lấy từ ô "nhà" trước, hết thì thử các ô khác; chỉ khi tồn kho bị chia nhỏ giữa các ô
+ * mới phải gom dưới khóa. Không ô nào xuống dưới 0 nên bộ đếm không bao giờ cấp quá số đang có.
+ */
+class StripedStockCounter {
+
+    private final AtomicIntegerArray cells;
+
+    StripedStockCounter(int stripes, int initial) {
+        this.cells = new AtomicIntegerArray(Math.max(1, stripes));
+        reset(initial);
+    }
+
+    boolean tryAcquire(int quantity) {
+        int n = cells.length();
+        int home = homeCell();
+
+        for (int i = 0; i < n; i++) {
+            int index = (home + i) % n;
+            int current;
+            while ((current = cells.get(index)) >= quantity) {
+                if (cells.compareAndSet(index, current, current - quantity)) {
+                    return true;
+                }
+            }
+        }
+        return acquireAcrossCells(quantity);
+    }
+
+    // Đường chậm: gom từ nhiều ô, trả lại phần đã lấy nếu không đủ
+    private synchronized boolean acquireAcrossCells(int quantity) {
+        int remaining = quantity;
+        for (int index = 0; index < cells.length() && remaining > 0; index++) {
+            int current;
+            while ((current = cells.get(index)) > 0 && remaining > 0) {
+                int take = Math.min(current, remaining);
+                if (cells.compareAndSet(index, current, current - take)) {
+                    remaining -= take;
+                }
+            }
+        }
+        if (remaining > 0) {
+            release(quantity - remaining);
+            return false;
+        }
+        return true;
+    }
+
+    void release(int quantity) {
+        if (quantity > 0) {
+            cells.addAndGet(homeCell(), quantity);
+        }
+    }
+
+    int available() {
+        int total = 0;
+        for (int i = 0; i < cells.length(); i++) {
+            total += cells.get(i);
+        }
+        return total;
+    }
+
+    /**
+     * Đặt lại tổng số lượng, chia đều cho các ô
+     */
+    synchronized void reset(int total) {
+        int n = cells.length();
+        int value = Math.max(0, total);
+        for (int i = 0; i < n; i++) {
+            cells.set(i, value / n + (i < value % n ? 1 : 0));
+        }
+    }
+
+    private int homeCell() {
+        return (int) (Thread.currentThread().getId() % cells.length());
+    }
+}
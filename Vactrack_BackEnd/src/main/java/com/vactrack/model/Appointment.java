@@ -1,14 +1,22 @@
 package com.vactrack.model;
 
+import com.vactrack.config.PooledSequenceGenerator;
 import jakarta.persistence.*;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 import java.time.LocalDate;
 import java.time.LocalTime;
 
 @Entity
-@Table(name = "appointments")
+@Table(name = "appointments", indexes = {
+        @Index(name = "idx_appointments_status", columnList = "status"),
+        @Index(name = "idx_appointments_date_time_id", columnList = "appointment_date, appointment_time, id")
+})
 public class Appointment {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(generator = "appointments_seq")
+    @GenericGenerator(name = "appointments_seq", type = PooledSequenceGenerator.class,
+            parameters = @Parameter(name = "sequence_name", value = "appointments_seq"))
     private Long id;
 
     private String patientName;
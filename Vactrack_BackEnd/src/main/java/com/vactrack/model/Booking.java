@@ -1,6 +1,9 @@
 package com.vactrack.model;
 
+import com.vactrack.config.PooledSequenceGenerator;
 import jakarta.persistence.*;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
@@ -8,8 +11,11 @@ import java.time.LocalTime;
 @Entity
 @Table(name = "bookings")
 public class Booking {
+    // Sequence cấp theo khối để Hibernate gom nhiều INSERT thành một JDBC batch (IDENTITY không cho phép)
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(generator = "bookings_seq")
+    @GenericGenerator(name = "bookings_seq", type = PooledSequenceGenerator.class,
+            parameters = @Parameter(name = "sequence_name", value = "bookings_seq"))
     private Long id;
 
     @Column(name = "booking_id", unique = true)
@@ -22,6 +28,9 @@ public class Booking {
     private LocalDate patientDob;
     private String serviceType;
     private String packageType;
+
+    @Column(name = "vaccine_id")
+    private Long vaccineId;
     private LocalDate appointmentDate;
     private LocalTime appointmentTime;
     private String status;
@@ -87,6 +96,14 @@ public class Booking {
         this.packageType = packageType;
     }
 
+    public Long getVaccineId() {
+        return vaccineId;
+    }
+
+    public void setVaccineId(Long vaccineId) {
+        this.vaccineId = vaccineId;
+    }
+
     public LocalDate getAppointmentDate() {
         return appointmentDate;
     }
@@ -1,12 +1,17 @@
 package com.vactrack.model;
 
+import com.vactrack.config.PooledSequenceGenerator;
 import jakarta.persistence.*;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 
 @Entity
 @Table(name = "children")
 public class Child {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(generator = "children_seq")
+    @GenericGenerator(name = "children_seq", type = PooledSequenceGenerator.class,
+            parameters = @Parameter(name = "sequence_name", value = "children_seq"))
     private Long id;
 
     private String name;
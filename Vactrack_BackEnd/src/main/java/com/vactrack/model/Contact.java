@@ -1,6 +1,9 @@
 package com.vactrack.model;
 
+import com.vactrack.config.PooledSequenceGenerator;
 import jakarta.persistence.*;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -14,7 +17,9 @@ import java.time.LocalDateTime;
 public class Contact {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(generator = "contacts_seq")
+    @GenericGenerator(name = "contacts_seq", type = PooledSequenceGenerator.class,
+            parameters = @Parameter(name = "sequence_name", value = "contacts_seq"))
     private Long id;
 
     @Column(nullable = false)
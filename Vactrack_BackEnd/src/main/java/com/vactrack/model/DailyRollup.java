@@ -0,0 +1,94 @@
+package com.vactrack.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDate;
+
+/**
+ * Số lượng cuộc hẹn / đặt lịch đã cộng dồn theo ngày, dịch vụ, trạng thái và gói.
+ * Được cập nhật tăng dần mỗi khi ghi Appointment hoặc Booking, thống kê chỉ đọc bảng này.
+ */
+@Entity
+@Table(name = "daily_rollups",
+        uniqueConstraints = @UniqueConstraint(name = "uk_daily_rollup_key",
+                columnNames = {"source", "rollup_date", "service", "status", "package_type"}),
+        indexes = @Index(name = "idx_daily_rollup_source_date", columnList = "source, rollup_date"))
+public class DailyRollup {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 20)
+    private String source; // "appointment", "booking"
+
+    @Column(name = "rollup_date", nullable = false)
+    private LocalDate rollupDate;
+
+    @Column(nullable = false)
+    private String service;
+
+    @Column(nullable = false, length = 50)
+    private String status;
+
+    @Column(name = "package_type", nullable = false)
+    private String packageType;
+
+    @Column(name = "record_count", nullable = false)
+    private Long recordCount;
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public void setSource(String source) {
+        this.source = source;
+    }
+
+    public LocalDate getRollupDate() {
+        return rollupDate;
+    }
+
+    public void setRollupDate(LocalDate rollupDate) {
+        this.rollupDate = rollupDate;
+    }
+
+    public String getService() {
+        return service;
+    }
+
+    public void setService(String service) {
+        this.service = service;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public String getPackageType() {
+        return packageType;
+    }
+
+    public void setPackageType(String packageType) {
+        this.packageType = packageType;
+    }
+
+    public Long getRecordCount() {
+        return recordCount;
+    }
+
+    public void setRecordCount(Long recordCount) {
+        this.recordCount = recordCount;
+    }
+}
@@ -1,13 +1,18 @@
 package com.vactrack.model;
 
+import com.vactrack.config.PooledSequenceGenerator;
 import jakarta.persistence.*;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "feedback")
 public class Feedback {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(generator = "feedback_seq")
+    @GenericGenerator(name = "feedback_seq", type = PooledSequenceGenerator.class,
+            parameters = @Parameter(name = "sequence_name", value = "feedback_seq"))
     private Long id;
 
     @Column(nullable = false)
@@ -0,0 +1,47 @@
+package com.vactrack.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Mã node đang được một instance ứng dụng giữ để sinh mã booking.
+ * Instance gia hạn định kỳ; hết hạn mà không gia hạn thì instance khác được lấy lại mã node này.
+ */
+@Entity
+@Table(name = "node_leases")
+public class NodeLease {
+    @Id
+    @Column(name = "node_id")
+    private Integer nodeId;
+
+    @Column(nullable = false, length = 100)
+    private String owner;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+
+    // Getters and Setters
+    public Integer getNodeId() {
+        return nodeId;
+    }
+
+    public void setNodeId(Integer nodeId) {
+        this.nodeId = nodeId;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public void setOwner(String owner) {
+        this.owner = owner;
+    }
+
+    public LocalDateTime getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(LocalDateTime expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+}
@@ -0,0 +1,260 @@
+package com.vactrack.model;
+
+import java.time.DayOfWeek;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Ảnh chụp bất biến của cài đặt hệ thống, được parse một lần khi nạp hoặc khi cập nhật.
+ * Giữ song song bản có kiểu (giờ làm việc, thông báo, gói dịch vụ) và bản Map dựng sẵn để trả về API.
+ */
+public final class SettingsSnapshot {
+
+    private final long version;
+    private final long lastModified;
+    private final WorkingHours workingHours;
+    private final Notifications notifications;
+    private final List<ServicePackage> servicePackages;
+    private final Map<String, Object> view;
+
+    public SettingsSnapshot(long version, long lastModified,
+                            Map<String, Object> workingHoursMap,
+                            Map<String, Object> notificationsMap,
+                            List<Map<String, Object>> servicePackagesList) {
+        this.version = version;
+        this.lastModified = lastModified;
+        this.workingHours = WorkingHours.from(workingHoursMap);
+        this.notifications = Notifications.from(notificationsMap);
+
+        List<ServicePackage> packages = new ArrayList<>(servicePackagesList.size());
+        for (Map<String, Object> pkg : servicePackagesList) {
+            packages.add(ServicePackage.from(pkg));
+        }
+        this.servicePackages = Collections.unmodifiableList(packages);
+
+        Map<String, Object> settings = new LinkedHashMap<>();
+        settings.put("workingHours", deepCopy(workingHoursMap));
+        settings.put("notifications", deepCopy(notificationsMap));
+        settings.put("servicePackages", deepCopy(servicePackagesList));
+        this.view = Collections.unmodifiableMap(settings);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public WorkingHours getWorkingHours() {
+        return workingHours;
+    }
+
+    public Notifications getNotifications() {
+        return notifications;
+    }
+
+    public List<ServicePackage> getServicePackages() {
+        return servicePackages;
+    }
+
+    /**
+     * Dạng Map bất biến, cùng cấu trúc JSON mà API cài đặt vẫn trả về
+     */
+    public Map<String, Object> asMap() {
+        return view;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object deepCopy(Object value) {
+        if (value instanceof Map) {
+            Map<String, Object> copy = new LinkedHashMap<>();
+            ((Map<String, Object>) value).forEach((k, v) -> copy.put(k, deepCopy(v)));
+            return Collections.unmodifiableMap(copy);
+        }
+        if (value instanceof List) {
+            List<Object> copy = new ArrayList<>();
+            ((List<Object>) value).forEach(v -> copy.add(deepCopy(v)));
+            return Collections.unmodifiableList(copy);
+        }
+        return value;
+    }
+
+    /**
+     * Giờ làm việc theo từng thứ trong tuần, lưu dạng phút trong ngày
+     */
+    public static final class WorkingHours {
+        private static final int DEFAULT_OPEN = 8 * 60;
+        private static final int DEFAULT_CLOSE = 17 * 60;
+
+        private final int[] openMinutes = new int[7];
+        private final int[] closeMinutes = new int[7];
+        private final boolean[] closed = new boolean[7];
+
+        @SuppressWarnings("unchecked")
+        static WorkingHours from(Map<String, Object> map) {
+            WorkingHours hours = new WorkingHours();
+            for (DayOfWeek day : DayOfWeek.values()) {
+                int i = day.getValue() - 1;
+                Object value = map.get(day.name().toLowerCase(Locale.ROOT));
+                Map<String, Object> daySettings = value instanceof Map ? (Map<String, Object>) value : Map.of();
+
+                hours.openMinutes[i] = parseMinutes(daySettings.get("start"), DEFAULT_OPEN);
+                hours.closeMinutes[i] = parseMinutes(daySettings.get("end"), DEFAULT_CLOSE);
+                hours.closed[i] = Boolean.TRUE.equals(daySettings.get("closed"))
+                        || "true".equals(String.valueOf(daySettings.get("closed")));
+            }
+            return hours;
+        }
+
+        public boolean isClosed(DayOfWeek day) {
+            return closed[day.getValue() - 1];
+        }
+
+        public int getOpenMinute(DayOfWeek day) {
+            return openMinutes[day.getValue() - 1];
+        }
+
+        public int getCloseMinute(DayOfWeek day) {
+            return closeMinutes[day.getValue() - 1];
+        }
+
+        public LocalTime getOpen(DayOfWeek day) {
+            return toLocalTime(getOpenMinute(day));
+        }
+
+        /**
+         * Giờ đóng cửa; "24:00" (đóng lúc nửa đêm) được trả về là LocalTime.MAX
+         */
+        public LocalTime getClose(DayOfWeek day) {
+            return toLocalTime(getCloseMinute(day));
+        }
+
+        private static LocalTime toLocalTime(int minutes) {
+            return minutes >= 24 * 60 ? LocalTime.MAX : LocalTime.of(minutes / 60, minutes % 60);
+        }
+
+        private static int parseMinutes(Object value, int defaultValue) {
+            if (!(value instanceof String)) {
+                return defaultValue;
+            }
+            String time = (String) value;
+            int colon = time.indexOf(':');
+            if (colon <= 0) {
+                return defaultValue;
+            }
+            try {
+                int hour = Integer.parseInt(time.substring(0, colon).trim());
+                int minute = Integer.parseInt(time.substring(colon + 1).trim());
+                // Chỉ nhận "24:00" cho giờ 24, nghĩa là hết ngày
+                if (hour < 0 || hour > 24 || minute < 0 || minute > 59 || (hour == 24 && minute > 0)) {
+                    return defaultValue;
+                }
+                return hour * 60 + minute;
+            } catch (NumberFormatException e) {
+                return defaultValue;
+            }
+        }
+    }
+
+    public static final class Notifications {
+        private final boolean emailEnabled;
+        private final boolean smsEnabled;
+        private final int reminderHours;
+
+        private Notifications(boolean emailEnabled, boolean smsEnabled, int reminderHours) {
+            this.emailEnabled = emailEnabled;
+            this.smsEnabled = smsEnabled;
+            this.reminderHours = reminderHours;
+        }
+
+        static Notifications from(Map<String, Object> map) {
+            Object reminder = map.get("reminderHours");
+            int reminderHours = reminder instanceof Number ? ((Number) reminder).intValue() : 24;
+            return new Notifications(
+                    !Boolean.FALSE.equals(map.get("emailEnabled")),
+                    Boolean.TRUE.equals(map.get("smsEnabled")),
+                    reminderHours
+            );
+        }
+
+        public boolean isEmailEnabled() {
+            return emailEnabled;
+        }
+
+        public boolean isSmsEnabled() {
+            return smsEnabled;
+        }
+
+        public int getReminderHours() {
+            return reminderHours;
+        }
+    }
+
+    public static final class ServicePackage {
+        private final String id;
+        private final String name;
+        private final String description;
+        private final double price;
+        private final boolean active;
+
+        private ServicePackage(String id, String name, String description, double price, boolean active) {
+            this.id = id;
+            this.name = name;
+            this.description = description;
+            this.price = price;
+            this.active = active;
+        }
+
+        static ServicePackage from(Map<String, Object> map) {
+            Object price = map.get("price");
+            double priceValue = 0;
+            if (price instanceof Number) {
+                priceValue = ((Number) price).doubleValue();
+            } else if (price != null) {
+                try {
+                    priceValue = Double.parseDouble(price.toString());
+                } catch (NumberFormatException ignored) {
+                    // giữ giá 0 cho dữ liệu không hợp lệ
+                }
+            }
+            return new ServicePackage(
+                    asString(map.get("id")),
+                    asString(map.get("name")),
+                    asString(map.get("description")),
+                    priceValue,
+                    !Boolean.FALSE.equals(map.get("active"))
+            );
+        }
+
+        private static String asString(Object value) {
+            return value != null ? value.toString() : null;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        public double getPrice() {
+            return price;
+        }
+
+        public boolean isActive() {
+            return active;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.vactrack.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+/**
+ * Số chỗ đã dùng của một khung giờ đặt lịch. Được giành bằng UPDATE có điều kiện
+ * nên sức chứa vẫn đúng khi nhiều node cùng nhận booking cho một khung.
+ */
+@Entity
+@Table(name = "slot_claims",
+        uniqueConstraints = @UniqueConstraint(name = "uk_slot_claim_slot", columnNames = {"slot_date", "slot_time"}))
+public class SlotClaim {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "slot_date", nullable = false)
+    private LocalDate slotDate;
+
+    @Column(name = "slot_time", nullable = false)
+    private LocalTime slotTime; // giờ bắt đầu khung
+
+    @Column(name = "used_count", nullable = false)
+    private Integer used;
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public LocalDate getSlotDate() {
+        return slotDate;
+    }
+
+    public void setSlotDate(LocalDate slotDate) {
+        this.slotDate = slotDate;
+    }
+
+    public LocalTime getSlotTime() {
+        return slotTime;
+    }
+
+    public void setSlotTime(LocalTime slotTime) {
+        this.slotTime = slotTime;
+    }
+
+    public Integer getUsed() {
+        return used;
+    }
+
+    public void setUsed(Integer used) {
+        this.used = used;
+    }
+}
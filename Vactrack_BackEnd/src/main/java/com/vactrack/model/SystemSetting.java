@@ -5,10 +5,12 @@ import jakarta.persistence.*;
 @Entity
 @Table(name = "system_settings")
 public class SystemSetting {
+    // KEY/VALUE là từ khóa trong H2 2.x và MySQL nên đặt tên cột riêng
     @Id
+    @Column(name = "setting_key")
     private String key;
 
-    @Column(columnDefinition = "TEXT")
+    @Column(name = "setting_value", columnDefinition = "TEXT")
     private String value;
 
     // Getters and Setters
@@ -1,6 +1,7 @@
 package com.vactrack.model;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.ColumnDefault;
 
 @Entity
 @Table(name = "users")
@@ -20,6 +21,11 @@ public class User {
 
     private String avatar;
 
+    // Tăng khi đổi mật khẩu để thu hồi mọi token đã phát hành (claim "ver")
+    @ColumnDefault("0")
+    @Column(name = "token_version", nullable = false)
+    private int tokenVersion;
+
     // Getters and Setters
     public Long getId() {
         return id;
@@ -68,4 +74,12 @@ public class User {
     public void setAvatar(String avatar) {
         this.avatar = avatar;
     }
+
+    public int getTokenVersion() {
+        return tokenVersion;
+    }
+
+    public void setTokenVersion(int tokenVersion) {
+        this.tokenVersion = tokenVersion;
+    }
 }
@@ -9,12 +9,17 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface AppointmentRepository extends JpaRepository<Appointment, Long> {
     long countByStatus(String status);
 
+    @Query("SELECT a.status, COUNT(a) FROM Appointment a GROUP BY a.status")
+    List<Object[]> countGroupByStatus();
+
     List<Appointment> findTop5ByOrderByAppointmentDateDescAppointmentTimeDesc();
 
     @Query("SELECT a FROM Appointment a WHERE " +
@@ -29,6 +34,91 @@ public interface AppointmentRepository extends JpaRepository<Appointment, Long>
             @Param("toDate") LocalDate toDate,
             Pageable pageable);
 
+    // Lọc theo danh sách id đã tìm được từ PatientNameIndex thay cho LIKE trên patientName
+    @Query("SELECT a FROM Appointment a WHERE " +
+            "a.id IN :ids AND " +
+            "(:status IS NULL OR a.status = :status) AND " +
+            "(:fromDate IS NULL OR a.appointmentDate >= :fromDate) AND " +
+            "(:toDate IS NULL OR a.appointmentDate <= :toDate)")
+    Page<Appointment> findWithFiltersByIds(
+            @Param("ids") Collection<Long> ids,
+            @Param("status") String status,
+            @Param("fromDate") LocalDate fromDate,
+            @Param("toDate") LocalDate toDate,
+            Pageable pageable);
+
+    // Dùng để dựng PatientNameIndex theo từng lô
+    @Query("SELECT a.id, a.patientName FROM Appointment a WHERE a.id > :afterId ORDER BY a.id")
+    List<Object[]> findIdAndPatientNameAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    // Phân trang keyset theo (appointmentDate, appointmentTime, id) giảm dần, không cần truy vấn COUNT
+    @Query("SELECT a FROM Appointment a WHERE " +
+            "a.appointmentDate IS NOT NULL AND a.appointmentTime IS NOT NULL AND " +
+            "(:status IS NULL OR a.status = :status) AND " +
+            "(:search IS NULL OR a.patientName LIKE %:search%) AND " +
+            "(:fromDate IS NULL OR a.appointmentDate >= :fromDate) AND " +
+            "(:toDate IS NULL OR a.appointmentDate <= :toDate) " +
+            "ORDER BY a.appointmentDate DESC, a.appointmentTime DESC, a.id DESC")
+    List<Appointment> findFirstKeysetPage(
+            @Param("status") String status,
+            @Param("search") String search,
+            @Param("fromDate") LocalDate fromDate,
+            @Param("toDate") LocalDate toDate,
+            Pageable pageable);
+
+    @Query("SELECT a FROM Appointment a WHERE " +
+            "a.appointmentDate IS NOT NULL AND a.appointmentTime IS NOT NULL AND " +
+            "(a.appointmentDate < :cursorDate OR (a.appointmentDate = :cursorDate AND " +
+            "(a.appointmentTime < :cursorTime OR (a.appointmentTime = :cursorTime AND a.id < :cursorId)))) AND " +
+            "(:status IS NULL OR a.status = :status) AND " +
+            "(:search IS NULL OR a.patientName LIKE %:search%) AND " +
+            "(:fromDate IS NULL OR a.appointmentDate >= :fromDate) AND " +
+            "(:toDate IS NULL OR a.appointmentDate <= :toDate) " +
+            "ORDER BY a.appointmentDate DESC, a.appointmentTime DESC, a.id DESC")
+    List<Appointment> findKeysetPageAfter(
+            @Param("cursorDate") LocalDate cursorDate,
+            @Param("cursorTime") LocalTime cursorTime,
+            @Param("cursorId") Long cursorId,
+            @Param("status") String status,
+            @Param("search") String search,
+            @Param("fromDate") LocalDate fromDate,
+            @Param("toDate") LocalDate toDate,
+            Pageable pageable);
+
+    // Hai truy vấn keyset trên nhưng lọc theo id từ PatientNameIndex thay cho LIKE
+    @Query("SELECT a FROM Appointment a WHERE " +
+            "a.id IN :ids AND " +
+            "a.appointmentDate IS NOT NULL AND a.appointmentTime IS NOT NULL AND " +
+            "(:status IS NULL OR a.status = :status) AND " +
+            "(:fromDate IS NULL OR a.appointmentDate >= :fromDate) AND " +
+            "(:toDate IS NULL OR a.appointmentDate <= :toDate) " +
+            "ORDER BY a.appointmentDate DESC, a.appointmentTime DESC, a.id DESC")
+    List<Appointment> findFirstKeysetPageByIds(
+            @Param("ids") Collection<Long> ids,
+            @Param("status") String status,
+            @Param("fromDate") LocalDate fromDate,
+            @Param("toDate") LocalDate toDate,
+            Pageable pageable);
+
+    @Query("SELECT a FROM Appointment a WHERE " +
+            "a.id IN :ids AND " +
+            "a.appointmentDate IS NOT NULL AND a.appointmentTime IS NOT NULL AND " +
+            "(a.appointmentDate < :cursorDate OR (a.appointmentDate = :cursorDate AND " +
+            "(a.appointmentTime < :cursorTime OR (a.appointmentTime = :cursorTime AND a.id < :cursorId)))) AND " +
+            "(:status IS NULL OR a.status = :status) AND " +
+            "(:fromDate IS NULL OR a.appointmentDate >= :fromDate) AND " +
+            "(:toDate IS NULL OR a.appointmentDate <= :toDate) " +
+            "ORDER BY a.appointmentDate DESC, a.appointmentTime DESC, a.id DESC")
+    List<Appointment> findKeysetPageAfterByIds(
+            @Param("ids") Collection<Long> ids,
+            @Param("cursorDate") LocalDate cursorDate,
+            @Param("cursorTime") LocalTime cursorTime,
+            @Param("cursorId") Long cursorId,
+            @Param("status") String status,
+            @Param("fromDate") LocalDate fromDate,
+            @Param("toDate") LocalDate toDate,
+            Pageable pageable);
+
     @Query("SELECT FUNCTION('MONTH', a.appointmentDate) as month, COUNT(a) as count " +
             "FROM Appointment a " +
             "WHERE a.appointmentDate >= :startDate " +
@@ -39,4 +129,11 @@ public interface AppointmentRepository extends JpaRepository<Appointment, Long>
             "FROM Appointment a " +
             "GROUP BY a.service")
     List<Object[]> countByService();
+
+    // Dùng cho backfill bảng daily_rollups
+    @Query("SELECT a.appointmentDate, a.service, a.status, COUNT(a) " +
+            "FROM Appointment a " +
+            "WHERE a.appointmentDate IS NOT NULL " +
+            "GROUP BY a.appointmentDate, a.service, a.status")
+    List<Object[]> countByDateServiceAndStatus();
 }
@@ -2,8 +2,11 @@ package com.vactrack.repository;
 
 import com.vactrack.model.Booking;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
 
@@ -11,9 +14,24 @@ import java.util.Optional;
 public interface BookingRepository extends JpaRepository<Booking, Long> {
     List<Booking> findByUserId(Long userId);
 
+    long countByUserId(Long userId);
+
     Optional<Booking> findByBookingId(String bookingId);
 
     Optional<Booking> findByBookingIdAndUserId(String bookingId, Long userId);
 
     boolean existsByBookingIdAndUserId(String bookingId, Long userId);
+
+    // Dùng cho backfill bảng daily_rollups
+    @Query("SELECT b.appointmentDate, b.serviceType, b.status, b.packageType, COUNT(b) " +
+            "FROM Booking b " +
+            "WHERE b.appointmentDate IS NOT NULL " +
+            "GROUP BY b.appointmentDate, b.serviceType, b.status, b.packageType")
+    List<Object[]> countByDateServiceStatusAndPackage();
+
+    // Số booking còn hiệu lực theo giờ hẹn trong một ngày, dùng để dựng lưới khung giờ
+    @Query("SELECT b.appointmentTime, COUNT(b) FROM Booking b " +
+            "WHERE b.appointmentDate = :date AND (b.status IS NULL OR LOWER(b.status) NOT IN ('canceled', 'cancelled')) " +
+            "GROUP BY b.appointmentTime")
+    List<Object[]> countActiveByDateGroupByTime(@Param("date") LocalDate date);
 }
@@ -0,0 +1,60 @@
+package com.vactrack.repository;
+
+import com.vactrack.model.DailyRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface DailyRollupRepository extends JpaRepository<DailyRollup, Long> {
+
+    @Modifying
+    @Query("UPDATE DailyRollup r SET r.recordCount = r.recordCount + :delta " +
+            "WHERE r.source = :source AND r.rollupDate = :date AND r.service = :service " +
+            "AND r.status = :status AND r.packageType = :packageType")
+    int increment(@Param("source") String source,
+                  @Param("date") LocalDate date,
+                  @Param("service") String service,
+                  @Param("status") String status,
+                  @Param("packageType") String packageType,
+                  @Param("delta") long delta);
+
+    @Query("SELECT r.rollupDate, SUM(r.recordCount) FROM DailyRollup r " +
+            "WHERE r.source = :source AND r.rollupDate BETWEEN :from AND :to " +
+            "GROUP BY r.rollupDate ORDER BY r.rollupDate")
+    List<Object[]> sumByDate(@Param("source") String source,
+                             @Param("from") LocalDate from,
+                             @Param("to") LocalDate to);
+
+    @Query("SELECT r.rollupDate, r.packageType, SUM(r.recordCount) FROM DailyRollup r " +
+            "WHERE r.source = :source AND r.status NOT IN :excludedStatuses AND r.rollupDate BETWEEN :from AND :to " +
+            "GROUP BY r.rollupDate, r.packageType ORDER BY r.rollupDate")
+    List<Object[]> sumByDateAndPackage(@Param("source") String source,
+                                       @Param("excludedStatuses") Collection<String> excludedStatuses,
+                                       @Param("from") LocalDate from,
+                                       @Param("to") LocalDate to);
+
+    @Query("SELECT r.service, SUM(r.recordCount) FROM DailyRollup r " +
+            "WHERE r.source = :source AND r.rollupDate BETWEEN :from AND :to " +
+            "GROUP BY r.service")
+    List<Object[]> sumByService(@Param("source") String source,
+                                @Param("from") LocalDate from,
+                                @Param("to") LocalDate to);
+
+    @Query("SELECT r.status, SUM(r.recordCount) FROM DailyRollup r " +
+            "WHERE r.source = :source AND r.rollupDate BETWEEN :from AND :to " +
+            "GROUP BY r.status")
+    List<Object[]> sumByStatus(@Param("source") String source,
+                               @Param("from") LocalDate from,
+                               @Param("to") LocalDate to);
+
+    @Modifying
+    @Query("DELETE FROM DailyRollup r WHERE r.source = :source")
+    int deleteBySource(@Param("source") String source);
+}
@@ -0,0 +1,36 @@
+package com.vactrack.repository;
+
+import com.vactrack.model.MailOutbox;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface MailOutboxRepository extends JpaRepository<MailOutbox, Long> {
+
+    // 'sending' quá hạn giữ nghĩa là node đã nhận email đó bị dừng giữa chừng
+    @Query("SELECT m.id FROM MailOutbox m " +
+            "WHERE m.status IN ('pending', 'sending') AND m.nextAttemptAt <= :now " +
+            "ORDER BY m.nextAttemptAt ASC, m.id ASC")
+    List<Long> findDueIds(@Param("now") LocalDateTime now, Pageable pageable);
+
+    /**
+     * Nhận các email còn đến hạn cho một lượt gửi; chạy và commit riêng để node khác thấy ngay.
+     * Email node khác vừa nhận đã có nextAttemptAt ở tương lai nên không khớp điều kiện nữa.
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE MailOutbox m SET m.status = 'sending', m.claimedBy = :claim, m.nextAttemptAt = :leaseUntil " +
+            "WHERE m.id IN :ids AND m.status IN ('pending', 'sending') AND m.nextAttemptAt <= :now")
+    int claim(@Param("ids") List<Long> ids, @Param("claim") String claim,
+              @Param("now") LocalDateTime now, @Param("leaseUntil") LocalDateTime leaseUntil);
+
+    List<MailOutbox> findByClaimedByAndStatus(String claimedBy, String status);
+}
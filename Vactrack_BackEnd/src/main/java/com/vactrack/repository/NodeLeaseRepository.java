@@ -0,0 +1,40 @@
+package com.vactrack.repository;
+
+import com.vactrack.model.NodeLease;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface NodeLeaseRepository extends JpaRepository<NodeLease, Integer> {
+
+    @Query("SELECT l.nodeId FROM NodeLease l ORDER BY l.nodeId")
+    List<Integer> findNodeIds();
+
+    // INSERT thay vì save(): save với id tự gán sẽ merge và ghi đè hợp đồng instance khác vừa tạo
+    @Modifying
+    @Query("INSERT INTO NodeLease (nodeId, owner, expiresAt) VALUES (:nodeId, :owner, :until)")
+    int insert(@Param("nodeId") Integer nodeId,
+               @Param("owner") String owner,
+               @Param("until") LocalDateTime until);
+
+    // Lấy lại mã node mà instance trước đã bỏ hoặc không gia hạn kịp
+    @Modifying
+    @Query("UPDATE NodeLease l SET l.owner = :owner, l.expiresAt = :until " +
+            "WHERE l.nodeId = :nodeId AND l.expiresAt < :now")
+    int takeOver(@Param("nodeId") Integer nodeId,
+                 @Param("owner") String owner,
+                 @Param("now") LocalDateTime now,
+                 @Param("until") LocalDateTime until);
+
+    @Modifying
+    @Query("UPDATE NodeLease l SET l.expiresAt = :until WHERE l.nodeId = :nodeId AND l.owner = :owner")
+    int renew(@Param("nodeId") Integer nodeId,
+              @Param("owner") String owner,
+              @Param("until") LocalDateTime until);
+}
@@ -0,0 +1,35 @@
+package com.vactrack.repository;
+
+import com.vactrack.model.SlotClaim;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+@Repository
+public interface SlotClaimRepository extends JpaRepository<SlotClaim, Long> {
+
+    // Giành một chỗ nếu khung còn dưới sức chứa; 0 khi khung đầy hoặc chưa có dòng
+    @Modifying
+    @Query("UPDATE SlotClaim s SET s.used = s.used + 1 " +
+            "WHERE s.slotDate = :date AND s.slotTime = :time AND s.used < :capacity")
+    int claim(@Param("date") LocalDate date, @Param("time") LocalTime time, @Param("capacity") int capacity);
+
+    @Modifying
+    @Query("UPDATE SlotClaim s SET s.used = s.used - 1 " +
+            "WHERE s.slotDate = :date AND s.slotTime = :time AND s.used > 0")
+    int release(@Param("date") LocalDate date, @Param("time") LocalTime time);
+
+    boolean existsBySlotDateAndSlotTime(LocalDate slotDate, LocalTime slotTime);
+
+    @Query("SELECT s.used FROM SlotClaim s WHERE s.slotDate = :date AND s.slotTime = :time")
+    Integer findUsed(@Param("date") LocalDate date, @Param("time") LocalTime time);
+
+    @Modifying
+    @Query("DELETE FROM SlotClaim s WHERE s.slotDate < :date")
+    int deleteBefore(@Param("date") LocalDate date);
+}
@@ -0,0 +1,52 @@
+package com.vactrack.repository;
+
+import com.vactrack.model.VaccineLot;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface VaccineLotRepository extends JpaRepository<VaccineLot, Long> {
+
+    @Query("SELECT l FROM VaccineLot l WHERE l.vaccineId = :vaccineId AND l.status = 'active' " +
+            "AND l.quantity > 0 AND l.expiryDate >= :today ORDER BY l.expiryDate, l.id")
+    List<VaccineLot> findAllocatable(@Param("vaccineId") Long vaccineId, @Param("today") LocalDate today);
+
+    // Như findAllocatable nhưng trả về giá trị cột (id, lotNumber, expiryDate, quantity), luôn đọc từ DB
+    // thay vì lấy lại entity đã nạp trong persistence context
+    @Query("SELECT l.id, l.lotNumber, l.expiryDate, l.quantity FROM VaccineLot l WHERE l.vaccineId = :vaccineId " +
+            "AND l.status = 'active' AND l.quantity > 0 AND l.expiryDate >= :today ORDER BY l.expiryDate, l.id")
+    List<Object[]> findAllocatableRows(@Param("vaccineId") Long vaccineId, @Param("today") LocalDate today);
+
+    // Trừ số liều của lô, chuyển sang "depleted" khi về 0
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE VaccineLot l SET l.quantity = l.quantity - :quantity, " +
+            "l.status = CASE WHEN l.quantity = :quantity THEN 'depleted' ELSE l.status END " +
+            "WHERE l.id = :id AND l.status = 'active' AND l.quantity >= :quantity")
+    int consume(@Param("id") Long id, @Param("quantity") int quantity);
+
+    // Số liều còn lại của một lô còn dùng được, đọc thẳng từ DB
+    @Query("SELECT l.quantity FROM VaccineLot l WHERE l.id = :id AND l.status = 'active'")
+    Integer findActiveQuantity(@Param("id") Long id);
+
+    @Query("SELECT l.id FROM VaccineLot l WHERE l.status = 'active' AND l.expiryDate < :today ORDER BY l.id")
+    List<Long> findExpiredIds(@Param("today") LocalDate today, Pageable pageable);
+
+    @Query("SELECT l.vaccineId, SUM(l.quantity) FROM VaccineLot l WHERE l.id IN :ids GROUP BY l.vaccineId")
+    List<Object[]> sumQuantityByVaccine(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query("UPDATE VaccineLot l SET l.status = 'expired' WHERE l.id IN :ids AND l.status = 'active'")
+    int markExpired(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT MIN(l.expiryDate) FROM VaccineLot l WHERE l.vaccineId = :vaccineId " +
+            "AND l.status = 'active' AND l.quantity > 0")
+    LocalDate findNearestExpiry(@Param("vaccineId") Long vaccineId);
+}
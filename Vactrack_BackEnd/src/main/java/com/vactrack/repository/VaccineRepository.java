@@ -4,10 +4,13 @@ import com.vactrack.model.Vaccine;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDate;
+
 @Repository
 public interface VaccineRepository extends JpaRepository<Vaccine, Long> {
 
@@ -19,4 +22,26 @@ public interface VaccineRepository extends JpaRepository<Vaccine, Long> {
             @Param("category") String category,
             @Param("search") String search,
             Pageable pageable);
+
+    // Trừ tồn kho nguyên tử: trả về 0 nếu không đủ hàng, không thể bán vượt dù nhiều request cùng lúc
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Vaccine v SET v.inStock = v.inStock - :quantity WHERE v.id = :id AND v.inStock >= :quantity")
+    int decrementStock(@Param("id") Long id, @Param("quantity") int quantity);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Vaccine v SET v.inStock = v.inStock + :quantity WHERE v.id = :id")
+    int incrementStock(@Param("id") Long id, @Param("quantity") int quantity);
+
+    // Trừ phần tồn kho đã hết hạn, không để âm nếu tồn kho tổng đã lệch với các lô
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Vaccine v SET v.inStock = CASE WHEN v.inStock > :quantity THEN v.inStock - :quantity ELSE 0 END " +
+            "WHERE v.id = :id")
+    int reduceStock(@Param("id") Long id, @Param("quantity") int quantity);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Vaccine v SET v.expiryDate = :expiryDate WHERE v.id = :id")
+    int updateExpiryDate(@Param("id") Long id, @Param("expiryDate") LocalDate expiryDate);
+
+    @Query("SELECT v.inStock FROM Vaccine v WHERE v.id = :id")
+    Integer findStockById(@Param("id") Long id);
 }
\ No newline at end of file
@@ -0,0 +1,110 @@
+package com.vactrack.resilience;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Cầu dao cho một dịch vụ ngoài: đóng (cho qua), mở (từ chối ngay) và nửa mở (cho vài lời gọi thử).
+ * Mở sau failureThreshold lỗi liên tiếp; hết openMillis thì chuyển nửa mở,
+ * đủ halfOpenProbes lời gọi thử thành công thì đóng lại, một lần thử lỗi thì mở lại.
+ * Mỗi lần đổi trạng thái tăng generation để bỏ qua kết quả của các lời gọi bắt đầu từ trạng thái cũ.
+ */
+final class CircuitBreaker {
+
+    private static final Logger logger = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    static final long REJECTED = -1;
+
+    private final String name;
+    private final int failureThreshold;
+    private final long openMillis;
+    private final int halfOpenProbes;
+
+    private State state = State.CLOSED;
+    private long generation;
+    private int consecutiveFailures;
+    private long openedAt;
+    private int probesInFlight;
+    private int probeSuccesses;
+
+    CircuitBreaker(String name, int failureThreshold, long openMillis, int halfOpenProbes) {
+        this.name = name;
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+        this.halfOpenProbes = halfOpenProbes;
+    }
+
+    /**
+     * Generation của lời gọi được phép, REJECTED nếu cầu dao đang mở hoặc đã đủ lời gọi thử
+     */
+    synchronized long tryAcquire(long now) {
+        if (state == State.OPEN) {
+            if (now - openedAt < openMillis) {
+                return REJECTED;
+            }
+            transition(State.HALF_OPEN);
+        }
+        if (state == State.HALF_OPEN) {
+            if (probesInFlight >= halfOpenProbes) {
+                return REJECTED;
+            }
+            probesInFlight++;
+        }
+        return generation;
+    }
+
+    synchronized void onSuccess(long callGeneration) {
+        if (callGeneration != generation) {
+            return;
+        }
+        if (state == State.HALF_OPEN) {
+            probesInFlight--;
+            if (++probeSuccesses >= halfOpenProbes) {
+                transition(State.CLOSED);
+                logger.info("Circuit for {} closed", name);
+            }
+        } else {
+            consecutiveFailures = 0;
+        }
+    }
+
+    synchronized void onFailure(long callGeneration, long now) {
+        if (callGeneration != generation) {
+            return;
+        }
+        if (state == State.HALF_OPEN || ++consecutiveFailures >= failureThreshold) {
+            open(now);
+        }
+    }
+
+    /**
+     * Lời gọi kết thúc mà không nói lên gì về sức khỏe dịch vụ (vd. client hủy): chỉ trả lại lượt thử
+     */
+    synchronized void onIgnored(long callGeneration) {
+        if (callGeneration == generation && state == State.HALF_OPEN) {
+            probesInFlight--;
+        }
+    }
+
+    synchronized State state() {
+        return state;
+    }
+
+    private void open(long now) {
+        transition(State.OPEN);
+        openedAt = now;
+        logger.warn("Circuit for {} opened, failing fast for {} ms", name, openMillis);
+    }
+
+    private void transition(State next) {
+        state = next;
+        generation++;
+        consecutiveFailures = 0;
+        probesInFlight = 0;
+        probeSuccesses = 0;
+    }
+}
@@ -0,0 +1,42 @@
+package com.vactrack.resilience;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Danh sách các dịch vụ ngoài, mỗi dịch vụ cấu hình bằng resilience.&lt;tên&gt;.* trong application.properties
+ */
+@Component
+public class Dependencies {
+
+    public static final String OPENAI = "openai";
+    public static final String SMTP = "smtp";
+
+    private final Environment environment;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Dependency> dependencies = new ConcurrentHashMap<>();
+
+    public Dependencies(Environment environment, MeterRegistry meterRegistry) {
+        this.environment = environment;
+        this.meterRegistry = meterRegistry;
+    }
+
+    public Dependency get(String name) {
+        return dependencies.computeIfAbsent(name, this::create);
+    }
+
+    private Dependency create(String name) {
+        String prefix = "resilience." + name + ".";
+        return new Dependency(name,
+                environment.getProperty(prefix + "max-concurrent", Integer.class, 50),
+                environment.getProperty(prefix + "max-wait-ms", Long.class, 100L),
+                environment.getProperty(prefix + "failure-threshold", Integer.class, 5),
+                environment.getProperty(prefix + "open-ms", Long.class, 30000L),
+                environment.getProperty(prefix + "half-open-probes", Integer.class, 2),
+                meterRegistry);
+    }
+}
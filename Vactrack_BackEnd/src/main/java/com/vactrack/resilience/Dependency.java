@@ -0,0 +1,174 @@
+package com.vactrack.resilience;
+
+import com.vactrack.exception.ApiException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.http.HttpStatus;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Một dịch vụ ngoài (OpenAI, SMTP...) với bulkhead giới hạn số lời gọi đồng thời và cầu dao riêng.
+ * Dịch vụ chậm chỉ chiếm hết phần của nó, không kéo theo các API khác;
+ * dịch vụ lỗi liên tục thì bị từ chối ngay thay vì để request chờ tới timeout.
+ */
+public class Dependency {
+
+    private final String name;
+    private final Semaphore bulkhead;
+    private final long maxWaitMs;
+    private final CircuitBreaker circuitBreaker;
+
+    private final Counter successes;
+    private final Counter failures;
+    private final Counter bulkheadRejections;
+    private final Counter circuitRejections;
+
+    Dependency(String name, int maxConcurrent, long maxWaitMs, int failureThreshold, long openMs,
+               int halfOpenProbes, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.bulkhead = new Semaphore(maxConcurrent);
+        this.maxWaitMs = maxWaitMs;
+        this.circuitBreaker = new CircuitBreaker(name, failureThreshold, openMs, halfOpenProbes);
+
+        this.successes = outcomeCounter(meterRegistry, "success");
+        this.failures = outcomeCounter(meterRegistry, "failure");
+        this.bulkheadRejections = outcomeCounter(meterRegistry, "bulkhead_full");
+        this.circuitRejections = outcomeCounter(meterRegistry, "circuit_open");
+        Gauge.builder("resilience.bulkhead.available", bulkhead, Semaphore::availablePermits)
+                .tag("dependency", name).register(meterRegistry);
+        // 0 = đóng, 1 = mở, 2 = nửa mở
+        Gauge.builder("resilience.circuit.state", circuitBreaker, breaker -> breaker.state().ordinal())
+                .tag("dependency", name).register(meterRegistry);
+    }
+
+    private Counter outcomeCounter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("resilience.calls")
+                .tag("dependency", name)
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Xin lượt gọi; null nếu cầu dao đang mở hoặc bulkhead đầy quá maxWaitMs.
+     * Lượt gọi phải được kết thúc bằng đúng một trong success/failure/release.
+     */
+    public Permit tryAcquire() {
+        long callGeneration = circuitBreaker.tryAcquire(System.currentTimeMillis());
+        if (callGeneration == CircuitBreaker.REJECTED) {
+            circuitRejections.increment();
+            return null;
+        }
+
+        boolean acquired;
+        try {
+            acquired = bulkhead.tryAcquire(maxWaitMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            circuitBreaker.onIgnored(callGeneration);
+            bulkheadRejections.increment();
+            return null;
+        }
+        return new Permit(callGeneration);
+    }
+
+    /**
+     * Như tryAcquire nhưng ném SERVICE_UNAVAILABLE khi bị từ chối
+     */
+    public Permit acquire() {
+        Permit permit = tryAcquire();
+        if (permit == null) {
+            throw unavailable();
+        }
+        return permit;
+    }
+
+    /**
+     * Chạy work trong bulkhead và cầu dao; mọi exception đều tính là lỗi của dịch vụ
+     */
+    public <T> T call(Supplier<T> work) {
+        return call(work, e -> true);
+    }
+
+    /**
+     * Chạy work trong bulkhead và cầu dao; isFailure quyết định exception nào tính là lỗi của dịch vụ
+     * (vd. 4xx do request sai thì dịch vụ vẫn khỏe)
+     */
+    public <T> T call(Supplier<T> work, Predicate<RuntimeException> isFailure) {
+        Permit permit = acquire();
+        try {
+            T result = work.get();
+            permit.success();
+            return result;
+        } catch (RuntimeException e) {
+            if (isFailure.test(e)) {
+                permit.failure();
+            } else {
+                permit.success();
+            }
+            throw e;
+        } finally {
+            permit.release();
+        }
+    }
+
+    public ApiException unavailable() {
+        return new ApiException(name + " is temporarily unavailable, please retry shortly",
+                HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    /**
+     * Một lượt gọi đã được cấp. Chỉ lần kết thúc đầu tiên có hiệu lực nên gọi lặp lại là an toàn.
+     */
+    public final class Permit {
+        private final long callGeneration;
+        private final AtomicBoolean finished = new AtomicBoolean();
+
+        private Permit(long callGeneration) {
+            this.callGeneration = callGeneration;
+        }
+
+        public void success() {
+            if (finish()) {
+                successes.increment();
+                circuitBreaker.onSuccess(callGeneration);
+            }
+        }
+
+        public void failure() {
+            if (finish()) {
+                failures.increment();
+                circuitBreaker.onFailure(callGeneration, System.currentTimeMillis());
+            }
+        }
+
+        /**
+         * Trả lượt gọi mà không ghi nhận kết quả (client hủy, lỗi phía mình)
+         */
+        public void release() {
+            if (finish()) {
+                circuitBreaker.onIgnored(callGeneration);
+            }
+        }
+
+        private boolean finish() {
+            if (finished.compareAndSet(false, true)) {
+                bulkhead.release();
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.vactrack.security;
+
+import com.vactrack.util.TimerWheel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * OtpStore trong bộ nhớ: ConcurrentHashMap không khóa toàn cục, hết hạn bằng timer wheel thay vì quét,
+ * so sánh OTP thời gian hằng số, đếm số lần thử và giới hạn số lần cấp OTP theo email.
+ * Mỗi OTP chỉ tốn một entry nhỏ (mã dạng int) nên bộ nhớ tỉ lệ tuyến tính và dự đoán được.
+ */
+@Component
+@ConditionalOnProperty(name = "otp.store", havingValue = "memory", matchIfMissing = true)
+public class InMemoryOtpStore implements OtpStore {
+
+    private static final long TICK_MILLIS = 1000;
+
+    private final Map<String, OtpEntry> otps = new ConcurrentHashMap<>();
+    private final Map<String, IssueWindow> issueWindows = new ConcurrentHashMap<>();
+    private final TimerWheel<Expiry> expiryWheel;
+
+    private final long ttlMillis;
+    private final int maxAttempts;
+    private final int maxIssuesPerWindow;
+    private final long issueWindowMillis;
+
+    public InMemoryOtpStore(@Value("${otp.ttl-seconds:300}") long ttlSeconds,
+                            @Value("${otp.max-attempts:5}") int maxAttempts,
+                            @Value("${otp.rate-limit.max-issues:3}") int maxIssuesPerWindow,
+                            @Value("${otp.rate-limit.window-seconds:900}") long issueWindowSeconds) {
+        this.ttlMillis = ttlSeconds * 1000;
+        this.maxAttempts = maxAttempts;
+        this.maxIssuesPerWindow = maxIssuesPerWindow;
+        this.issueWindowMillis = issueWindowSeconds * 1000;
+
+        // Wheel phủ được khoảng thời gian dài nhất để mỗi phần tử chỉ đi qua một vòng
+        long horizon = Math.max(ttlMillis, issueWindowMillis);
+        this.expiryWheel = new TimerWheel<>((int) (horizon / TICK_MILLIS) + 2, TICK_MILLIS);
+    }
+
+    @Override
+    public boolean tryAcquireIssue(String email) {
+        String key = normalize(email);
+        long now = System.currentTimeMillis();
+
+        // Một cửa sổ cho mỗi email trong suốt thời gian của nó, để lịch hết hạn xóa đúng entry đang nằm trong map
+        IssueWindow window = issueWindows.compute(key, (k, current) ->
+                current == null || current.startedAt + issueWindowMillis <= now ? new IssueWindow(now) : current);
+        int count = window.count.incrementAndGet();
+        if (count == 1) {
+            expiryWheel.schedule(new Expiry(key, window), window.startedAt + issueWindowMillis);
+        }
+        return count <= maxIssuesPerWindow;
+    }
+
+    @Override
+    public void store(String email, int code) {
+        String key = normalize(email);
+        OtpEntry entry = new OtpEntry(code, System.currentTimeMillis() + ttlMillis);
+        otps.put(key, entry);
+        expiryWheel.schedule(new Expiry(key, entry), entry.expiresAt);
+    }
+
+    @Override
+    public VerifyResult verify(String email, int code) {
+        String key = normalize(email);
+        OtpEntry entry = otps.get(key);
+        if (entry == null || entry.expiresAt <= System.currentTimeMillis()) {
+            return VerifyResult.NOT_FOUND;
+        }
+
+        if (OtpEntry.ATTEMPTS.incrementAndGet(entry) > maxAttempts) {
+            otps.remove(key, entry);
+            return VerifyResult.TOO_MANY_ATTEMPTS;
+        }
+
+        // So sánh không rẽ nhánh theo từng chữ số để không lộ thông tin qua thời gian phản hồi
+        return (entry.code ^ code) == 0 ? VerifyResult.VALID : VerifyResult.INVALID;
+    }
+
+    @Override
+    public void remove(String email) {
+        otps.remove(normalize(email));
+    }
+
+    @Scheduled(fixedRate = TICK_MILLIS)
+    public void expire() {
+        expire(System.currentTimeMillis());
+    }
+
+    void expire(long now) {
+        expiryWheel.advance(now, timeout -> {
+            // Chỉ xóa đúng entry đã đăng ký, OTP cấp lại sau đó có lịch hết hạn riêng
+            if (timeout.value instanceof OtpEntry) {
+                otps.remove(timeout.key, timeout.value);
+            } else {
+                issueWindows.remove(timeout.key, timeout.value);
+            }
+        });
+    }
+
+    public int size() {
+        return otps.size();
+    }
+
+    private String normalize(String email) {
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static final class OtpEntry {
+        private static final AtomicIntegerFieldUpdater<OtpEntry> ATTEMPTS =
+                AtomicIntegerFieldUpdater.newUpdater(OtpEntry.class, "attempts");
+
+        private final int code;
+        private final long expiresAt;
+        private volatile int attempts;
+
+        private OtpEntry(int code, long expiresAt) {
+            this.code = code;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private static final class IssueWindow {
+        private final long startedAt;
+        private final AtomicInteger count = new AtomicInteger();
+
+        private IssueWindow(long startedAt) {
+            this.startedAt = startedAt;
+        }
+    }
+
+    private static final class Expiry {
+        private final String key;
+        private final Object value;
+
+        private Expiry(String key, Object value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+}
@@ -4,29 +4,33 @@ import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
 
 @Component
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtTokenProvider jwtTokenProvider;
     private final UserDetailsService userDetailsService;
+    private final VerifiedTokenCache tokenCache;
+    private final TokenVersionRegistry tokenVersions;
+    private final boolean stateless;
 
-    public JwtAuthenticationFilter(JwtTokenProvider jwtTokenProvider, UserDetailsService userDetailsService) {
+    public JwtAuthenticationFilter(JwtTokenProvider jwtTokenProvider, UserDetailsService userDetailsService,
+                                   VerifiedTokenCache tokenCache, TokenVersionRegistry tokenVersions,
+                                   @Value("${jwt.stateless:false}") boolean stateless) {
         this.jwtTokenProvider = jwtTokenProvider;
         this.userDetailsService = userDetailsService;
+        this.tokenCache = tokenCache;
+        this.tokenVersions = tokenVersions;
+        this.stateless = stateless;
     }
 
     @Override
@@ -35,7 +39,6 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
         final String authHeader = request.getHeader("Authorization");
         final String jwt;
-        final String userEmail;
 
         if (authHeader == null || !authHeader.startsWith("Bearer")) {
             filterChain.doFilter(request, response);
@@ -43,42 +46,64 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         }
 
         jwt = authHeader.substring(7);
-        userEmail = jwtTokenProvider.extractEmail(jwt);
 
-        if (userEmail != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            UserDetails userDetails = this.userDetailsService.loadUserByUsername(userEmail);
-
-            if (jwtTokenProvider.validateToken(jwt)) {
-                String role = jwtTokenProvider.extractRole(jwt);
-
-                // Trích xuất userId từ token
-                String userIdString = jwtTokenProvider.extractUserId(jwt);
-                Long userId = null;
-                if (userIdString != null) {
-                    try {
-                        userId = Long.parseLong(userIdString);
-                    } catch (NumberFormatException e) {
-                        logger.error("Failed to parse userId from token", e);
-                    }
-                }
+        if (SecurityContextHolder.getContext().getAuthentication() == null) {
+            // Token đã xác thực trước đó: không cần verify lại và không truy vấn DB
+            JwtPrincipal principal = tokenCache.get(jwt);
+            if (principal == null) {
+                principal = verifyAndCache(jwt);
+            }
 
-                // Tạo đối tượng chi tiết tùy chỉnh
-                Map<String, Object> details = new HashMap<>();
-                details.put("userId", userId);
+            if (principal != null && !checkTokenVersion(principal)) {
+                principal = null;
+            }
 
+            if (principal != null) {
                 UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
-                        userDetails,
+                        principal,
                         null,
-                        Collections.singletonList(new SimpleGrantedAuthority(role))
+                        principal.getAuthorities()
                 );
 
-                // Lưu details vào authentication
-                authToken.setDetails(details);
-
                 SecurityContextHolder.getContext().setAuthentication(authToken);
             }
         }
 
         filterChain.doFilter(request, response);
     }
+
+    /**
+     * Verify và decode token một lần rồi lưu vào cache.
+     * Ở chế độ stateless, principal được dựng hoàn toàn từ claims, không truy vấn bảng users.
+     */
+    private JwtPrincipal verifyAndCache(String jwt) {
+        JwtPrincipal principal = jwtTokenProvider.verifyClaims(jwt);
+        if (principal == null) {
+            return null;
+        }
+
+        if (!stateless) {
+            this.userDetailsService.loadUserByUsername(principal.getEmail());
+        }
+
+        tokenCache.put(jwt, principal);
+        return principal;
+    }
+
+    /**
+     * So phiên bản token với cột users.token_version (qua bộ đệm ngắn hạn của TokenVersionRegistry).
+     * Phiên bản mới hơn bộ đệm nghĩa là node khác vừa đổi mật khẩu: đọc lại từ DB rồi so lần nữa.
+     */
+    private boolean checkTokenVersion(JwtPrincipal principal) {
+        int current = tokenVersions.current(principal.getUserId());
+        if (principal.getTokenVersion() > current) {
+            current = tokenVersions.reload(principal.getUserId());
+        }
+        if (principal.getTokenVersion() == current) {
+            return true;
+        }
+
+        tokenCache.invalidateUser(principal.getEmail());
+        return false;
+    }
 }
\ No newline at end of file
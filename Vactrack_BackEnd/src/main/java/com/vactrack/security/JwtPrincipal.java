@@ -0,0 +1,72 @@
+package com.vactrack.security;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.security.Principal;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Claims đã được verify của một JWT, decode đúng một lần.
+ * Được lưu làm principal trong SecurityContext để các service đọc lại mà không cần parse token.
+ */
+public final class JwtPrincipal implements Principal {
+
+    private final long userId;
+    private final String email;
+    private final String role;
+    private final long expiresAt;
+    private final int tokenVersion;
+    private final List<GrantedAuthority> authorities;
+
+    public JwtPrincipal(long userId, String email, String role, long expiresAt, int tokenVersion) {
+        this.userId = userId;
+        this.email = email;
+        this.role = role;
+        this.expiresAt = expiresAt;
+        this.tokenVersion = tokenVersion;
+        this.authorities = role != null
+                ? Collections.singletonList(new SimpleGrantedAuthority(role))
+                : Collections.emptyList();
+    }
+
+    public long getUserId() {
+        return userId;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public String getRole() {
+        return role;
+    }
+
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+
+    public int getTokenVersion() {
+        return tokenVersion;
+    }
+
+    public Collection<GrantedAuthority> getAuthorities() {
+        return authorities;
+    }
+
+    public boolean isExpired(long now) {
+        return expiresAt <= now;
+    }
+
+    @Override
+    public String getName() {
+        return email;
+    }
+
+    @Override
+    public String toString() {
+        return "JwtPrincipal{userId=" + userId + ", email='" + email + "', role='" + role + "'}";
+    }
+}
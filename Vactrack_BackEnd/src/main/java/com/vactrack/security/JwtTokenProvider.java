@@ -72,6 +72,7 @@ public class JwtTokenProvider {
                     .withSubject(user.getEmail())
                     .withClaim("userId", user.getId().toString())
                     .withClaim("role", user.getRole())
+                    .withClaim("ver", user.getTokenVersion())
                     .withIssuedAt(now)
                     .withExpiresAt(expiryDate)
                     .sign(algorithm);
@@ -127,24 +128,63 @@ public class JwtTokenProvider {
         }
     }
 
-    private Boolean isTokenExpired(String token) {
-        final Date expiration = extractExpiration(token);
+    private boolean isTokenExpired(DecodedJWT jwt) {
+        final Date expiration = jwt.getExpiresAt();
         return expiration != null && expiration.before(new Date());
     }
 
-    public Boolean validateToken(String token) {
+    /**
+     * Verify chữ ký và hạn của token, chỉ decode một lần.
+     * Trả về null nếu token không hợp lệ.
+     */
+    public DecodedJWT verify(String token) {
         try {
-            // First verify the token signature
-            verifier.verify(token);
-            // Then check if it's expired
-            boolean expired = isTokenExpired(token);
-            if (expired) {
+            DecodedJWT jwt = verifier.verify(token);
+            if (isTokenExpired(jwt)) {
                 logger.info("Token is expired");
+                return null;
             }
-            return !expired;
+            return jwt;
         } catch (Exception e) {
             logger.warning("Token validation failed: " + e.getMessage());
-            return false;
+            return null;
         }
     }
+
+    /**
+     * Verify token và đọc toàn bộ claims trong một lần decode.
+     * Trả về null nếu token không hợp lệ hoặc thiếu claims bắt buộc.
+     */
+    public JwtPrincipal verifyClaims(String token) {
+        DecodedJWT jwt = verify(token);
+        if (jwt == null || jwt.getSubject() == null || jwt.getExpiresAt() == null) {
+            return null;
+        }
+
+        String userIdString = jwt.getClaim("userId").asString();
+        if (userIdString == null) {
+            logger.warning("Token has no userId claim");
+            return null;
+        }
+
+        // Token phát hành trước khi có claim "ver" được coi là phiên bản 0
+        Integer version = jwt.getClaim("ver").asInt();
+
+        try {
+            return new JwtPrincipal(
+                    Long.parseLong(userIdString),
+                    jwt.getSubject(),
+                    jwt.getClaim("role").asString(),
+                    jwt.getExpiresAt().getTime(),
+                    version != null ? version : 0
+            );
+        } catch (NumberFormatException e) {
+            logger.warning("Failed to parse userId from token: " + e.getMessage());
+            return null;
+        }
+    }
+
+    public Boolean validateToken(String token) {
+        return verify(token) != null;
+    }
 }
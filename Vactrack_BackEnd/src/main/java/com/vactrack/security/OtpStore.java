@@ -0,0 +1,34 @@
+package com.vactrack.security;
+
+/**
+ * Kho lưu OTP đặt lại mật khẩu.
+ * Bản mặc định nằm trong JVM (InMemoryOtpStore); khi chạy cluster có thể thay bằng backend dùng chung
+ * bằng cách khai báo một bean OtpStore khác và đặt otp.store khác "memory".
+ */
+public interface OtpStore {
+
+    enum VerifyResult {
+        VALID,
+        INVALID,
+        NOT_FOUND,
+        TOO_MANY_ATTEMPTS
+    }
+
+    /**
+     * Tính một lần cấp OTP cho email vào giới hạn.
+     * Trả về false nếu email đã vượt giới hạn số lần cấp OTP trong cửa sổ thời gian.
+     */
+    boolean tryAcquireIssue(String email);
+
+    /**
+     * Lưu OTP mới cho email, thay thế OTP cũ
+     */
+    void store(String email, int code);
+
+    /**
+     * Kiểm tra OTP, mỗi lần sai được tính vào số lần thử
+     */
+    VerifyResult verify(String email, int code);
+
+    void remove(String email);
+}
@@ -0,0 +1,71 @@
+package com.vactrack.security;
+
+import com.vactrack.model.User;
+import com.vactrack.repository.UserRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.logging.Logger;
+
+/**
+ * Điểm thu hồi token tập trung: tăng users.token_version và xóa cache khi thông tin đăng nhập của user thay đổi
+ */
+@Service
+public class TokenRevocationService {
+
+    private static final Logger logger = Logger.getLogger(TokenRevocationService.class.getName());
+
+    private final UserRepository userRepository;
+    private final TokenVersionRegistry tokenVersions;
+    private final VerifiedTokenCache tokenCache;
+
+    public TokenRevocationService(UserRepository userRepository, TokenVersionRegistry tokenVersions,
+                                  VerifiedTokenCache tokenCache) {
+        this.userRepository = userRepository;
+        this.tokenVersions = tokenVersions;
+        this.tokenCache = tokenCache;
+    }
+
+    /**
+     * Gọi khi đặt lại mật khẩu, trong cùng transaction với việc ghi mật khẩu mới
+     */
+    @Transactional
+    public void onPasswordReset(User user) {
+        revoke(user, "password reset");
+    }
+
+    /**
+     * Gọi khi đổi role của user, trong cùng transaction với việc ghi role mới.
+     * Token cũ mang claim role cũ nên phải bị thu hồi, kể cả bản đã xác thực nằm trong cache.
+     */
+    @Transactional
+    public void onRoleChange(User user) {
+        revoke(user, "role change");
+    }
+
+    private void revoke(User user, String reason) {
+        if (user.getId() == null) {
+            return;
+        }
+        userRepository.incrementTokenVersion(user.getId());
+
+        // Xóa bộ đệm sau commit, xóa sớm hơn có thể nạp lại phiên bản cũ
+        Runnable evict = () -> {
+            tokenVersions.evict(user.getId());
+            tokenCache.invalidateUser(user.getEmail());
+            logger.info("Revoked tokens of user " + user.getEmail() + " after " + reason);
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict.run();
+                }
+            });
+        } else {
+            evict.run();
+        }
+    }
+}
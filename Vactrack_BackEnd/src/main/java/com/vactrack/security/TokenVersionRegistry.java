@@ -0,0 +1,63 @@
+package com.vactrack.security;
+
+import com.vactrack.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Phiên bản token của từng user, đọc từ cột users.token_version và giữ trong bộ nhớ tối đa ttl.
+ * Token mang claim "ver" lúc phát hành; tăng phiên bản trong DB sẽ thu hồi mọi token cũ của user.
+ * Node đổi mật khẩu xóa bộ đệm ngay sau commit; các node khác thấy thay đổi chậm nhất sau một ttl.
+ */
+@Component
+public class TokenVersionRegistry {
+
+    // User không còn tồn tại: không token nào khớp
+    private static final int UNKNOWN_USER = -1;
+
+    private final UserRepository userRepository;
+    private final long ttlMillis;
+
+    private final Map<Long, CachedVersion> versions = new ConcurrentHashMap<>();
+
+    public TokenVersionRegistry(UserRepository userRepository,
+                                @Value("${jwt.token-version.cache-seconds:30}") long cacheSeconds) {
+        this.userRepository = userRepository;
+        this.ttlMillis = cacheSeconds * 1000;
+    }
+
+    private static final class CachedVersion {
+        final int version;
+        final long loadedAt;
+
+        CachedVersion(int version, long loadedAt) {
+            this.version = version;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    public int current(long userId) {
+        CachedVersion cached = versions.get(userId);
+        if (cached != null && System.currentTimeMillis() - cached.loadedAt < ttlMillis) {
+            return cached.version;
+        }
+        return reload(userId);
+    }
+
+    /**
+     * Đọc lại phiên bản từ DB, bỏ qua bộ đệm
+     */
+    public int reload(long userId) {
+        Integer version = userRepository.findTokenVersionById(userId);
+        int current = version != null ? version : UNKNOWN_USER;
+        versions.put(userId, new CachedVersion(current, System.currentTimeMillis()));
+        return current;
+    }
+
+    public void evict(long userId) {
+        versions.remove(userId);
+    }
+}
@@ -0,0 +1,157 @@
+package com.vactrack.security;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+
+/**
+ * Cache các token đã được xác thực chữ ký, tránh verify HMAC và truy vấn user lặp lại mỗi request.
+ * Chia thành nhiều ngăn, mỗi ngăn là một LinkedHashMap theo thứ tự truy cập có giới hạn riêng:
+ * khi đầy thì bỏ token lâu nhất chưa dùng, không phải quét cả cache.
+ * Mỗi ngăn giữ thêm chỉ mục theo email để thu hồi token của một user mà không duyệt mọi entry.
+ */
+@Component
+public class VerifiedTokenCache {
+
+    private static final Logger logger = Logger.getLogger(VerifiedTokenCache.class.getName());
+
+    private static final int SEGMENTS = 16;
+
+    private final Segment[] segments;
+
+    public VerifiedTokenCache(@Value("${jwt.cache.max-size:10000}") int maxSize) {
+        if (maxSize <= 0) {
+            this.segments = new Segment[0];
+            return;
+        }
+        int count = Math.min(SEGMENTS, maxSize);
+        this.segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            segments[i] = new Segment((maxSize + count - 1) / count);
+        }
+    }
+
+    private static final class Segment {
+        private final Map<String, Set<String>> tokensByEmail = new HashMap<>();
+        private final LinkedHashMap<String, JwtPrincipal> entries;
+
+        Segment(int capacity) {
+            this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, JwtPrincipal> eldest) {
+                    if (size() <= capacity) {
+                        return false;
+                    }
+                    unindex(eldest.getKey(), eldest.getValue());
+                    return true;
+                }
+            };
+        }
+
+        synchronized JwtPrincipal get(String token, long now) {
+            JwtPrincipal entry = entries.get(token);
+            if (entry != null && entry.isExpired(now)) {
+                entries.remove(token);
+                unindex(token, entry);
+                return null;
+            }
+            return entry;
+        }
+
+        synchronized void put(String token, JwtPrincipal entry) {
+            JwtPrincipal previous = entries.put(token, entry);
+            if (previous != null) {
+                unindex(token, previous);
+            }
+            tokensByEmail.computeIfAbsent(emailKey(entry.getEmail()), key -> new HashSet<>()).add(token);
+        }
+
+        synchronized int invalidate(String emailKey) {
+            Set<String> tokens = tokensByEmail.remove(emailKey);
+            if (tokens == null) {
+                return 0;
+            }
+            tokens.forEach(entries::remove);
+            return tokens.size();
+        }
+
+        synchronized void clear() {
+            entries.clear();
+            tokensByEmail.clear();
+        }
+
+        synchronized int size() {
+            return entries.size();
+        }
+
+        private void unindex(String token, JwtPrincipal entry) {
+            String key = emailKey(entry.getEmail());
+            Set<String> tokens = tokensByEmail.get(key);
+            if (tokens != null && tokens.remove(token) && tokens.isEmpty()) {
+                tokensByEmail.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Trả về entry của token nếu còn hạn, ngược lại trả về null
+     */
+    public JwtPrincipal get(String token) {
+        Segment segment = segmentFor(token);
+        return segment != null ? segment.get(token, System.currentTimeMillis()) : null;
+    }
+
+    public void put(String token, JwtPrincipal entry) {
+        Segment segment = segmentFor(token);
+        if (segment != null) {
+            segment.put(token, entry);
+        }
+    }
+
+    /**
+     * Xóa mọi token đã cache của user
+     */
+    public void invalidateUser(String email) {
+        if (email == null) {
+            return;
+        }
+        String key = emailKey(email);
+        int removed = 0;
+        for (Segment segment : segments) {
+            removed += segment.invalidate(key);
+        }
+        logger.fine("Invalidated " + removed + " cached tokens for user: " + email);
+    }
+
+    public void invalidateAll() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    private Segment segmentFor(String token) {
+        if (segments.length == 0) {
+            return null;
+        }
+        return segments[(token.hashCode() & Integer.MAX_VALUE) % segments.length];
+    }
+
+    private static String emailKey(String email) {
+        return email != null ? email.toLowerCase(Locale.ROOT) : "";
+    }
+}
@@ -2,16 +2,19 @@ package com.vactrack.service;
 
 import com.vactrack.model.Appointment;
 import com.vactrack.repository.AppointmentRepository;
+import com.vactrack.util.KeysetCursor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;  // Thêm import này
 import java.util.Optional;
@@ -21,18 +24,34 @@ import java.util.HashMap;
 public class AppointmentService {
 
     private final AppointmentRepository appointmentRepository;
+    private final StatisticsService statisticsService;
+    private final AppointmentStatusCounters statusCounters;
+    private final PatientNameIndex patientNameIndex;
 
     @Autowired
-    public AppointmentService(AppointmentRepository appointmentRepository) {
+    public AppointmentService(AppointmentRepository appointmentRepository, StatisticsService statisticsService,
+                              AppointmentStatusCounters statusCounters, PatientNameIndex patientNameIndex) {
         this.appointmentRepository = appointmentRepository;
+        this.statisticsService = statisticsService;
+        this.statusCounters = statusCounters;
+        this.patientNameIndex = patientNameIndex;
     }
 
     public int countTotal() {
-        return (int) appointmentRepository.count();
+        return (int) getStatusCounts().get("total").longValue();
     }
 
     public int countByStatus(String status) {
-        return (int) appointmentRepository.countByStatus(status);
+        return (int) statusCounters.count(status);
+    }
+
+    /**
+     * Số cuộc hẹn theo từng trạng thái kèm tổng ("total"), đọc từ bộ đếm trong bộ nhớ
+     */
+    public Map<String, Long> getStatusCounts() {
+        Map<String, Long> counts = new HashMap<>(statusCounters.snapshot());
+        counts.put("total", counts.values().stream().mapToLong(Long::longValue).sum());
+        return counts;
     }
 
     public List<Appointment> getRecentAppointments(int limit) {
@@ -45,13 +64,88 @@ public class AppointmentService {
         Pageable pageable = PageRequest.of(page, size, Sort.by("appointmentDate").descending()
                 .and(Sort.by("appointmentTime").descending()));
 
+        // Tìm tên qua chỉ mục trigram; chỉ dùng LIKE khi chỉ mục chưa sẵn sàng hoặc chuỗi tìm quá rộng
+        List<Long> ids = searchIds(search);
+        if (ids != null) {
+            if (ids.isEmpty()) {
+                return Page.empty(pageable);
+            }
+            return appointmentRepository.findWithFiltersByIds(ids, status, fromDate, toDate, pageable);
+        }
+
         return appointmentRepository.findWithFilters(status, search, fromDate, toDate, pageable);
     }
 
+    /**
+     * Lấy tối đa size cuộc hẹn đứng sau cursor (null: trang đầu), sắp theo ngày, giờ hẹn và id giảm dần
+     */
+    public List<Appointment> findAppointmentsAfter(KeysetCursor cursor, int size, String status,
+                                                   String search, LocalDate fromDate, LocalDate toDate) {
+        Pageable limit = PageRequest.of(0, size);
+
+        List<Long> ids = searchIds(search);
+        if (ids != null) {
+            if (ids.isEmpty()) {
+                return List.of();
+            }
+            if (cursor == null) {
+                return appointmentRepository.findFirstKeysetPageByIds(ids, status, fromDate, toDate, limit);
+            }
+            return appointmentRepository.findKeysetPageAfterByIds(ids, cursor.getDate(), cursor.getTime(),
+                    cursor.getId(), status, fromDate, toDate, limit);
+        }
+
+        if (cursor == null) {
+            return appointmentRepository.findFirstKeysetPage(status, search, fromDate, toDate, limit);
+        }
+        return appointmentRepository.findKeysetPageAfter(cursor.getDate(), cursor.getTime(), cursor.getId(),
+                status, search, fromDate, toDate, limit);
+    }
+
+    // Id khớp tên từ chỉ mục trigram; null khi không tìm theo tên hoặc phải dùng LIKE
+    private List<Long> searchIds(String search) {
+        if (search == null || search.isBlank()) {
+            return null;
+        }
+        long[] ids = patientNameIndex.search(search);
+        if (ids == null) {
+            return null;
+        }
+        List<Long> result = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            result.add(id);
+        }
+        return result;
+    }
+
+    /**
+     * Tổng gần đúng không quét bảng appointments: lấy từ bộ đếm trạng thái, hoặc từ rollup theo ngày
+     * khi có lọc ngày. Trả về null khi có tìm kiếm theo tên vì không có số liệu dựng sẵn.
+     */
+    public Long approximateCount(String status, String search, LocalDate fromDate, LocalDate toDate) {
+        if (search != null && !search.isEmpty()) {
+            return null;
+        }
+
+        if (fromDate == null && toDate == null) {
+            Map<String, Long> counts = getStatusCounts();
+            return status == null ? counts.get("total") : statusCounters.count(status);
+        }
+
+        Map<String, Long> byStatus = statisticsService.getAppointmentCountsByStatus(
+                fromDate != null ? fromDate : LocalDate.of(1900, 1, 1),
+                toDate != null ? toDate : LocalDate.of(9999, 12, 31));
+        if (status == null) {
+            return byStatus.values().stream().mapToLong(Long::longValue).sum();
+        }
+        return byStatus.getOrDefault(StatisticsService.normalizeStatus(status), 0L);
+    }
+
     public Optional<Appointment> findById(Long id) {
         return appointmentRepository.findById(id);
     }
 
+    @Transactional
     public Appointment createAppointment(Map<String, Object> appointmentData) {
         Appointment appointment = new Appointment();
 
@@ -94,15 +188,25 @@ public class AppointmentService {
             appointment.setNotes((String) appointmentData.get("notes"));
         }
 
-        return appointmentRepository.save(appointment);
+        Appointment saved = appointmentRepository.save(appointment);
+        statisticsService.move(StatisticsService.SOURCE_APPOINTMENT, null, StatisticsService.RollupKey.of(saved));
+        statusCounters.created(saved.getStatus());
+        patientNameIndex.index(saved.getId(), saved.getPatientName());
+        return saved;
     }
 
+    @Transactional
     public Appointment updateStatus(Long id, String status) {
         Appointment appointment = appointmentRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Không tìm thấy cuộc hẹn với ID: " + id));
 
+        StatisticsService.RollupKey before = StatisticsService.RollupKey.of(appointment);
+        String previousStatus = appointment.getStatus();
         appointment.setStatus(status);
-        return appointmentRepository.save(appointment);
+        Appointment saved = appointmentRepository.save(appointment);
+        statisticsService.move(StatisticsService.SOURCE_APPOINTMENT, before, StatisticsService.RollupKey.of(saved));
+        statusCounters.move(previousStatus, status);
+        return saved;
     }
 
     public String formatDate(LocalDate date) {
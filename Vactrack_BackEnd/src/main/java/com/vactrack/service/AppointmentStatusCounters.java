@@ -0,0 +1,122 @@
+package com.vactrack.service;
+
+import com.vactrack.repository.AppointmentRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Số cuộc hẹn theo trạng thái, giữ trong bộ nhớ để dashboard không phải COUNT bảng appointments.
+ * Nạp bằng một truy vấn GROUP BY, sau đó cộng trừ theo từng lần ghi đã commit
+ * và đối chiếu lại định kỳ với DB để bắt các thay đổi ghi trực tiếp vào bảng.
+ * Trạng thái được chuẩn hóa giống rollup (StatisticsService.normalizeStatus) nên hai nguồn số liệu khớp khóa với nhau.
+ */
+@Component
+public class AppointmentStatusCounters {
+
+    private static final Logger logger = LoggerFactory.getLogger(AppointmentStatusCounters.class);
+
+    private final AppointmentRepository appointmentRepository;
+
+    // null cho tới lần đọc đầu tiên
+    private volatile Map<String, LongAdder> counters;
+
+    public AppointmentStatusCounters(AppointmentRepository appointmentRepository) {
+        this.appointmentRepository = appointmentRepository;
+    }
+
+    /**
+     * Số lượng theo từng trạng thái
+     */
+    public Map<String, Long> snapshot() {
+        Map<String, LongAdder> current = counters;
+        if (current == null) {
+            current = load();
+        }
+
+        Map<String, Long> result = new LinkedHashMap<>();
+        current.forEach((status, count) -> result.put(status, count.sum()));
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * Số lượng của một trạng thái, trạng thái được chuẩn hóa trước khi tra
+     */
+    public long count(String status) {
+        return snapshot().getOrDefault(StatisticsService.normalizeStatus(status), 0L);
+    }
+
+    /**
+     * Ghi nhận một cuộc hẹn mới; áp dụng sau khi transaction commit
+     */
+    public void created(String status) {
+        afterCommit(null, StatisticsService.normalizeStatus(status));
+    }
+
+    /**
+     * Ghi nhận một cuộc hẹn chuyển trạng thái; áp dụng sau khi transaction commit
+     */
+    public void move(String before, String after) {
+        String from = StatisticsService.normalizeStatus(before);
+        String to = StatisticsService.normalizeStatus(after);
+        if (!from.equals(to)) {
+            afterCommit(from, to);
+        }
+    }
+
+    private void afterCommit(String from, String to) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply(from, to);
+                }
+            });
+        } else {
+            apply(from, to);
+        }
+    }
+
+    private void apply(String before, String after) {
+        Map<String, LongAdder> current = counters;
+        if (current == null) {
+            return; // chưa nạp, lần nạp đầu sẽ đọc trực tiếp từ DB
+        }
+        if (before != null) {
+            current.computeIfAbsent(before, key -> new LongAdder()).decrement();
+        }
+        if (after != null) {
+            current.computeIfAbsent(after, key -> new LongAdder()).increment();
+        }
+    }
+
+    private synchronized Map<String, LongAdder> load() {
+        Map<String, LongAdder> current = counters;
+        return current != null ? current : reload();
+    }
+
+    /**
+     * Đọc lại toàn bộ số lượng từ DB bằng một truy vấn GROUP BY
+     */
+    @Scheduled(fixedDelayString = "${statistics.status-counters.resync-ms:300000}",
+            initialDelayString = "${statistics.status-counters.resync-ms:300000}")
+    public synchronized Map<String, LongAdder> reload() {
+        Map<String, LongAdder> loaded = new ConcurrentHashMap<>();
+        for (Object[] row : appointmentRepository.countGroupByStatus()) {
+            String status = StatisticsService.normalizeStatus((String) row[0]);
+            loaded.computeIfAbsent(status, key -> new LongAdder()).add(((Number) row[1]).longValue());
+        }
+        counters = loaded;
+        logger.debug("Reloaded appointment status counters: {}", loaded);
+        return loaded;
+    }
+}
@@ -0,0 +1,340 @@
+package com.vactrack.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vactrack.dto.BookingRequest;
+import com.vactrack.exception.ApiException;
+import com.vactrack.model.Booking;
+import com.vactrack.repository.BookingRepository;
+import com.vactrack.util.SecurityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Nhập hàng loạt booking từ CSV (dòng đầu là tên cột) hoặc JSON lines (mỗi dòng một BookingRequest).
+ * Đọc dạng luồng, parse từng dòng rồi ghi theo khối, mỗi khối một transaction và các INSERT được gom batch.
+ * Dòng lỗi được ghi lại kèm số dòng và không làm hỏng các dòng khác.
+ * Mỗi người dùng chỉ chạy một lần nhập tại một thời điểm và tổng booking của họ không vượt max-bookings-per-user.
+ */
+@Service
+public class BookingImportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BookingImportService.class);
+
+    public static final String FORMAT_CSV = "csv";
+    public static final String FORMAT_JSON_LINES = "jsonl";
+
+    private static final int MAX_REPORTED_ERRORS = 1000;
+
+    private final BookingService bookingService;
+    private final BookingRepository bookingRepository;
+    private final SecurityUtils securityUtils;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+    private final int maxRows;
+    private final long maxBookingsPerUser;
+
+    private final Set<Long> importingUsers = ConcurrentHashMap.newKeySet();
+
+    public BookingImportService(BookingService bookingService,
+                                BookingRepository bookingRepository,
+                                SecurityUtils securityUtils,
+                                ObjectMapper objectMapper,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${booking.import.chunk-size:500}") int chunkSize,
+                                @Value("${booking.import.max-rows:50000}") int maxRows,
+                                @Value("${booking.import.max-bookings-per-user:50000}") long maxBookingsPerUser) {
+        this.bookingService = bookingService;
+        this.bookingRepository = bookingRepository;
+        this.securityUtils = securityUtils;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+        this.maxRows = maxRows;
+        this.maxBookingsPerUser = maxBookingsPerUser;
+    }
+
+    private static final class ImportResult {
+        int total;
+        int created;
+        int failed;
+        final List<Map<String, Object>> errors = new ArrayList<>();
+
+        void fail(int line, String message) {
+            failed++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                Map<String, Object> error = new LinkedHashMap<>();
+                error.put("line", line);
+                error.put("message", message);
+                errors.add(error);
+            }
+        }
+
+        Map<String, Object> asMap() {
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("total", total);
+            result.put("created", created);
+            result.put("failed", failed);
+            result.put("errors", errors);
+            return result;
+        }
+    }
+
+    /**
+     * Nhập booking cho người dùng hiện tại; trả về số dòng đã tạo, số dòng lỗi và lỗi theo từng dòng
+     */
+    public Map<String, Object> importBookings(Reader input, String format) {
+        Long currentUserId = securityUtils.getCurrentUserId();
+        if (!importingUsers.add(currentUserId)) {
+            throw new ApiException("Another import is already running for this user", HttpStatus.CONFLICT);
+        }
+        try {
+            long remaining = maxBookingsPerUser - bookingRepository.countByUserId(currentUserId);
+            if (remaining <= 0) {
+                throw new ApiException("User already has " + maxBookingsPerUser + " bookings, import is not allowed",
+                        HttpStatus.TOO_MANY_REQUESTS);
+            }
+            return importBookings(input, format, currentUserId, (int) Math.min(maxRows, remaining));
+        } finally {
+            importingUsers.remove(currentUserId);
+        }
+    }
+
+    private Map<String, Object> importBookings(Reader input, String format, Long currentUserId, int rowLimit) {
+        boolean csv = FORMAT_CSV.equals(format);
+        ImportResult result = new ImportResult();
+        long start = System.currentTimeMillis();
+
+        List<Booking> chunk = new ArrayList<>(chunkSize);
+        Map<Booking, Integer> lines = new IdentityHashMap<>();
+        Map<String, Integer> columns = null;
+
+        try (BufferedReader reader = new BufferedReader(input)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                if (csv && columns == null) {
+                    columns = parseHeader(line);
+                    continue;
+                }
+                if (result.total >= rowLimit) {
+                    result.fail(lineNumber, "Import is limited to " + rowLimit + " rows, remaining lines were skipped");
+                    break;
+                }
+                result.total++;
+
+                try {
+                    BookingRequest request = csv ? parseCsvRow(line, columns) : objectMapper.readValue(line, BookingRequest.class);
+                    Booking booking = toBooking(request, currentUserId);
+                    chunk.add(booking);
+                    lines.put(booking, lineNumber);
+                } catch (IllegalArgumentException | IOException | DateTimeException e) {
+                    result.fail(lineNumber, e.getMessage());
+                }
+
+                if (chunk.size() >= chunkSize) {
+                    flush(chunk, lines, result);
+                }
+            }
+            flush(chunk, lines, result);
+        } catch (IOException e) {
+            throw new ApiException("Error reading import data: " + e.getMessage(), HttpStatus.BAD_REQUEST);
+        }
+
+        logger.info("Imported {} of {} bookings ({} failed) in {} ms",
+                result.created, result.total, result.failed, System.currentTimeMillis() - start);
+        return result.asMap();
+    }
+
+    /**
+     * Ghi một khối trong một transaction; nếu cả khối lỗi ở DB thì ghi lại từng dòng riêng để tìm dòng hỏng
+     */
+    private void flush(List<Booking> chunk, Map<Booking, Integer> lines, ImportResult result) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        List<Map.Entry<Booking, String>> rejected = new ArrayList<>();
+        try {
+            Integer created = transactionTemplate.execute(status ->
+                    bookingService.insertBatch(chunk, (booking, message) -> rejected.add(Map.entry(booking, message))));
+            result.created += created != null ? created : 0;
+            for (Map.Entry<Booking, String> entry : rejected) {
+                result.fail(lines.get(entry.getKey()), entry.getValue());
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Import chunk of {} rows failed, retrying row by row: {}", chunk.size(), e.getMessage());
+            for (Booking booking : chunk) {
+                result.created += insertOne(booking, lines.get(booking), result);
+            }
+        }
+        chunk.clear();
+        lines.clear();
+    }
+
+    private int insertOne(Booking booking, int line, ImportResult result) {
+        booking.setId(null);
+        try {
+            Integer created = transactionTemplate.execute(status ->
+                    bookingService.insertBatch(Collections.singletonList(booking),
+                            (rejectedBooking, message) -> result.fail(line, message)));
+            return created != null ? created : 0;
+        } catch (RuntimeException e) {
+            result.fail(line, e.getMessage());
+            return 0;
+        }
+    }
+
+    private Booking toBooking(BookingRequest request, Long userId) {
+        Booking booking = new Booking();
+        booking.setUserId(userId);
+        booking.setPatientName(required(request.getPatientName(), "patientName"));
+        booking.setPatientDob(parseDate(required(request.getPatientDob(), "patientDob")));
+        booking.setServiceType(request.getServiceType());
+        booking.setPackageType(request.getPackageType());
+        booking.setVaccineId(request.getVaccineId());
+        booking.setAppointmentDate(parseDate(required(request.getAppointmentDate(), "appointmentDate")));
+        booking.setAppointmentTime(parseTime(required(request.getAppointmentTime(), "appointmentTime")));
+        booking.setStatus(request.getStatus() != null ? request.getStatus() : "pending");
+        booking.setNotes(request.getNotes());
+        booking.setCreatedAt(LocalDateTime.now());
+        return booking;
+    }
+
+    private static String required(String value, String field) {
+        if (value == null || value.isBlank()) {
+            throw new IllegalArgumentException("Missing " + field);
+        }
+        return value.trim();
+    }
+
+    // yyyy-MM-dd, đọc trực tiếp từng chữ số thay vì dùng DateTimeFormatter cho mỗi dòng
+    static LocalDate parseDate(String text) {
+        if (text.length() != 10 || text.charAt(4) != '-' || text.charAt(7) != '-') {
+            throw new IllegalArgumentException("Invalid date '" + text + "', expected yyyy-MM-dd");
+        }
+        return LocalDate.of(digits(text, 0, 4), digits(text, 5, 7), digits(text, 8, 10));
+    }
+
+    // HH:mm hoặc H:mm
+    static LocalTime parseTime(String text) {
+        int colon = text.indexOf(':');
+        if ((colon != 1 && colon != 2) || text.length() != colon + 3) {
+            throw new IllegalArgumentException("Invalid time '" + text + "', expected HH:mm");
+        }
+        return LocalTime.of(digits(text, 0, colon), digits(text, colon + 1, colon + 3));
+    }
+
+    private static int digits(String text, int from, int to) {
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                throw new IllegalArgumentException("Invalid number in '" + text + "'");
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static Map<String, Integer> parseHeader(String line) {
+        List<String> names = splitCsv(line);
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < names.size(); i++) {
+            columns.put(names.get(i).trim().toLowerCase(Locale.ROOT), i);
+        }
+        for (String name : new String[]{"patientname", "patientdob", "appointmentdate", "appointmenttime"}) {
+            if (!columns.containsKey(name)) {
+                throw new ApiException("CSV header is missing column " + name, HttpStatus.BAD_REQUEST);
+            }
+        }
+        return columns;
+    }
+
+    private static BookingRequest parseCsvRow(String line, Map<String, Integer> columns) {
+        List<String> values = splitCsv(line);
+        BookingRequest request = new BookingRequest();
+        request.setPatientName(column(values, columns, "patientname"));
+        request.setPatientDob(column(values, columns, "patientdob"));
+        request.setServiceType(column(values, columns, "servicetype"));
+        request.setPackageType(column(values, columns, "packagetype"));
+        request.setAppointmentDate(column(values, columns, "appointmentdate"));
+        request.setAppointmentTime(column(values, columns, "appointmenttime"));
+        request.setStatus(column(values, columns, "status"));
+        request.setNotes(column(values, columns, "notes"));
+
+        String vaccineId = column(values, columns, "vaccineid");
+        if (vaccineId != null) {
+            try {
+                request.setVaccineId(Long.valueOf(vaccineId));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid vaccineId '" + vaccineId + "'");
+            }
+        }
+        return request;
+    }
+
+    private static String column(List<String> values, Map<String, Integer> columns, String name) {
+        Integer index = columns.get(name);
+        if (index == null || index >= values.size()) {
+            return null;
+        }
+        String value = values.get(index).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    // Tách một dòng CSV, hỗ trợ giá trị trong ngoặc kép và "" là dấu ngoặc kép
+    private static List<String> splitCsv(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    current.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        values.add(current.toString());
+        return values;
+    }
+}
@@ -3,8 +3,11 @@ package com.vactrack.service;
 import com.vactrack.dto.BookingRequest;
 import com.vactrack.dto.BookingResponse;
 import com.vactrack.exception.ApiException;
+import com.vactrack.inventory.StockReservationService;
 import com.vactrack.model.Booking;
 import com.vactrack.repository.BookingRepository;
+import com.vactrack.slot.SlotCapacityService;
+import com.vactrack.util.BookingIdGenerator;
 import com.vactrack.util.SecurityUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
@@ -16,8 +19,12 @@ import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-import java.util.UUID;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
 
 @Service
@@ -25,15 +32,26 @@ public class BookingService {
 
     private final BookingRepository bookingRepository;
     private final SecurityUtils securityUtils;
+    private final StatisticsService statisticsService;
+    private final StockReservationService stockReservationService;
+    private final SlotCapacityService slotCapacityService;
+    private final BookingIdGenerator bookingIdGenerator;
 
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
     private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("HH:mm");
     private static final DateTimeFormatter DATETIME_FORMATTER = DateTimeFormatter.ISO_DATE_TIME;
+    private static final int MAX_SLOT_RANGE_DAYS = 31;
 
     @Autowired
-    public BookingService(BookingRepository bookingRepository, SecurityUtils securityUtils) {
+    public BookingService(BookingRepository bookingRepository, SecurityUtils securityUtils,
+                          StatisticsService statisticsService, StockReservationService stockReservationService,
+                          SlotCapacityService slotCapacityService, BookingIdGenerator bookingIdGenerator) {
         this.bookingRepository = bookingRepository;
         this.securityUtils = securityUtils;
+        this.statisticsService = statisticsService;
+        this.stockReservationService = stockReservationService;
+        this.slotCapacityService = slotCapacityService;
+        this.bookingIdGenerator = bookingIdGenerator;
     }
 
     /**
@@ -69,8 +87,8 @@ public class BookingService {
         try {
             Booking booking = new Booking();
 
-            // Tạo booking ID (BK + random string)
-            String bookingId = "BK" + UUID.randomUUID().toString().substring(0, 4).toUpperCase();
+            // Tạo booking ID (BK + thời gian, node, số thứ tự), không trùng giữa các node
+            String bookingId = bookingIdGenerator.nextId();
             booking.setBookingId(bookingId);
 
             // Thiết lập user ID từ thông tin xác thực
@@ -81,6 +99,7 @@ public class BookingService {
             booking.setPatientDob(LocalDate.parse(bookingRequest.getPatientDob(), DATE_FORMATTER));
             booking.setServiceType(bookingRequest.getServiceType());
             booking.setPackageType(bookingRequest.getPackageType());
+            booking.setVaccineId(bookingRequest.getVaccineId());
             booking.setAppointmentDate(LocalDate.parse(bookingRequest.getAppointmentDate(), DATE_FORMATTER));
             booking.setAppointmentTime(LocalTime.parse(bookingRequest.getAppointmentTime(), TIME_FORMATTER));
             booking.setStatus(bookingRequest.getStatus() != null ? bookingRequest.getStatus() : "pending");
@@ -89,12 +108,20 @@ public class BookingService {
             // Thiết lập thời gian tạo
             booking.setCreatedAt(LocalDateTime.now());
 
+            // Giành chỗ trong khung giờ trước khi ghi, khung đầy thì dừng sớm
+            applySlotTransition(null, null, null,
+                    booking.getAppointmentDate(), booking.getAppointmentTime(), booking.getStatus());
+
             Booking savedBooking = bookingRepository.save(booking);
+            statisticsService.move(StatisticsService.SOURCE_BOOKING, null, StatisticsService.RollupKey.of(savedBooking));
+            applyStockTransition(bookingId, null, null, savedBooking.getVaccineId(), savedBooking.getStatus());
             return mapToBookingResponse(savedBooking);
 
         } catch (DateTimeParseException e) {
             throw new ApiException("Invalid date or time format. Use yyyy-MM-dd for dates and HH:mm for times.",
                     HttpStatus.BAD_REQUEST);
+        } catch (ApiException e) {
+            throw e;
         } catch (Exception e) {
             throw new ApiException("Error creating booking: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
         }
@@ -110,6 +137,11 @@ public class BookingService {
         try {
             Booking booking = bookingRepository.findByBookingIdAndUserId(bookingId, currentUserId)
                     .orElseThrow(() -> new ApiException("Booking not found with id: " + bookingId, HttpStatus.NOT_FOUND));
+            StatisticsService.RollupKey before = StatisticsService.RollupKey.of(booking);
+            Long previousVaccineId = booking.getVaccineId();
+            String previousStatus = booking.getStatus();
+            LocalDate previousDate = booking.getAppointmentDate();
+            LocalTime previousTime = booking.getAppointmentTime();
 
             // Cập nhật các trường từ request
             if (bookingRequest.getPatientName() != null) {
@@ -128,6 +160,10 @@ public class BookingService {
                 booking.setPackageType(bookingRequest.getPackageType());
             }
 
+            if (bookingRequest.getVaccineId() != null) {
+                booking.setVaccineId(bookingRequest.getVaccineId());
+            }
+
             if (bookingRequest.getAppointmentDate() != null) {
                 booking.setAppointmentDate(LocalDate.parse(bookingRequest.getAppointmentDate(), DATE_FORMATTER));
             }
@@ -144,7 +180,13 @@ public class BookingService {
                 booking.setNotes(bookingRequest.getNotes());
             }
 
+            applySlotTransition(previousDate, previousTime, previousStatus,
+                    booking.getAppointmentDate(), booking.getAppointmentTime(), booking.getStatus());
+
             Booking updatedBooking = bookingRepository.save(booking);
+            statisticsService.move(StatisticsService.SOURCE_BOOKING, before, StatisticsService.RollupKey.of(updatedBooking));
+            applyStockTransition(bookingId, previousVaccineId, previousStatus,
+                    updatedBooking.getVaccineId(), updatedBooking.getStatus());
             return mapToBookingResponse(updatedBooking);
 
         } catch (DateTimeParseException e) {
@@ -168,13 +210,155 @@ public class BookingService {
                 .orElseThrow(() -> new ApiException("Booking not found with id: " + bookingId, HttpStatus.NOT_FOUND));
 
         bookingRepository.delete(booking);
+        statisticsService.move(StatisticsService.SOURCE_BOOKING, StatisticsService.RollupKey.of(booking), null);
+
+        // Booking bị xóa không còn giữ tồn kho và khung giờ
+        applyStockTransition(bookingId, booking.getVaccineId(), booking.getStatus(), null, null);
+        applySlotTransition(booking.getAppointmentDate(), booking.getAppointmentTime(), booking.getStatus(),
+                null, null, null);
+    }
+
+    /**
+     * Ghi một khối booking đã parse sẵn trong transaction hiện tại (dùng cho nhập hàng loạt).
+     * Từng booking giành khung giờ và giữ tồn kho như khi tạo lẻ; booking bị từ chối được báo qua onRejected
+     * và bỏ khỏi khối. Id lấy từ sequence nên saveAll được gom thành các JDBC batch.
+     */
+    int insertBatch(List<Booking> bookings, BiConsumer<Booking, String> onRejected) {
+        List<Booking> accepted = new ArrayList<>(bookings.size());
+        Map<StatisticsService.RollupKey, Long> counts = new HashMap<>();
+
+        for (Booking booking : bookings) {
+            booking.setBookingId(bookingIdGenerator.nextId());
+            try {
+                applySlotTransition(null, null, null,
+                        booking.getAppointmentDate(), booking.getAppointmentTime(), booking.getStatus());
+                try {
+                    applyStockTransition(booking.getBookingId(), null, null, booking.getVaccineId(), booking.getStatus());
+                } catch (ApiException e) {
+                    applySlotTransition(booking.getAppointmentDate(), booking.getAppointmentTime(), booking.getStatus(),
+                            null, null, null);
+                    throw e;
+                }
+            } catch (ApiException e) {
+                onRejected.accept(booking, e.getMessage());
+                continue;
+            }
+            accepted.add(booking);
+            StatisticsService.RollupKey key = StatisticsService.RollupKey.of(booking);
+            if (key != null) {
+                counts.merge(key, 1L, Long::sum);
+            }
+        }
+
+        bookingRepository.saveAll(accepted);
+        bookingRepository.flush();
+        statisticsService.addAll(StatisticsService.SOURCE_BOOKING, counts);
+        return accepted.size();
+    }
+
+    /**
+     * Khung giờ còn chỗ trong khoảng ngày, tối đa MAX_SLOT_RANGE_DAYS ngày
+     */
+    public List<Map<String, Object>> getAvailableSlots(String from, String to) {
+        try {
+            LocalDate fromDate = LocalDate.parse(from, DATE_FORMATTER);
+            LocalDate toDate = to != null ? LocalDate.parse(to, DATE_FORMATTER) : fromDate;
+            if (toDate.isBefore(fromDate) || toDate.isAfter(fromDate.plusDays(MAX_SLOT_RANGE_DAYS - 1))) {
+                throw new ApiException("Date range must cover 1 to " + MAX_SLOT_RANGE_DAYS + " days",
+                        HttpStatus.BAD_REQUEST);
+            }
+            return slotCapacityService.findAvailable(fromDate, toDate);
+        } catch (DateTimeParseException e) {
+            throw new ApiException("Invalid date format. Use yyyy-MM-dd.", HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    private static boolean holdsSlot(LocalDate date, String status) {
+        if (date == null) {
+            return false;
+        }
+        String normalized = status != null ? status.toLowerCase() : "";
+        return !normalized.equals("canceled") && !normalized.equals("cancelled");
+    }
+
+    /**
+     * Đồng bộ chỗ trong khung giờ: booking chưa hủy giữ một chỗ tại ngày/giờ hẹn.
+     * Giành chỗ mới trước rồi mới trả chỗ cũ (trả sau khi commit).
+     */
+    private void applySlotTransition(LocalDate previousDate, LocalTime previousTime, String previousStatus,
+                                     LocalDate date, LocalTime time, String status) {
+        boolean before = holdsSlot(previousDate, previousStatus);
+        boolean after = holdsSlot(date, status);
+
+        if (before && after && previousDate.equals(date) && Objects.equals(previousTime, time)) {
+            return;
+        }
+        if (after) {
+            slotCapacityService.claim(date, time);
+        }
+        if (before) {
+            slotCapacityService.release(previousDate, previousTime);
+        }
+    }
+
+    private enum StockState {
+        NONE, RESERVED, CONSUMED
+    }
+
+    private StockState stockState(Long vaccineId, String status) {
+        if (vaccineId == null) {
+            return StockState.NONE;
+        }
+        switch (status != null ? status.toLowerCase() : "") {
+            case "confirmed":
+            case "completed":
+                return StockState.CONSUMED;
+            case "canceled":
+            case "cancelled":
+                return StockState.NONE;
+            default:
+                return StockState.RESERVED;
+        }
+    }
+
+    /**
+     * Đồng bộ giữ chỗ tồn kho theo trạng thái booking: chờ xử lý giữ chỗ, xác nhận/hoàn thành trừ kho thật,
+     * hủy thì trả lại. Vaccine null nghĩa là booking không giữ tồn kho (vừa tạo hoặc đã bị xóa).
+     */
+    private void applyStockTransition(String bookingId, Long previousVaccineId, String previousStatus,
+                                      Long vaccineId, String status) {
+        StockState before = stockState(previousVaccineId, previousStatus);
+        StockState after = stockState(vaccineId, status);
+        boolean sameVaccine = Objects.equals(previousVaccineId, vaccineId);
+
+        if (before == after && sameVaccine) {
+            return;
+        }
+
+        // Giữ chỗ -> xác nhận cùng vaccine: dùng luôn phần đã giữ
+        if (before == StockState.RESERVED && after == StockState.CONSUMED && sameVaccine) {
+            stockReservationService.confirm(bookingId, vaccineId, 1);
+            return;
+        }
+
+        if (before == StockState.RESERVED) {
+            stockReservationService.release(bookingId);
+        } else if (before == StockState.CONSUMED) {
+            stockReservationService.restock(previousVaccineId, 1);
+        }
+
+        if (after == StockState.RESERVED) {
+            stockReservationService.reserve(bookingId, vaccineId, 1);
+        } else if (after == StockState.CONSUMED) {
+            stockReservationService.confirm(bookingId, vaccineId, 1);
+        }
     }
 
     /**
      * Chuyển đổi từ Booking entity sang BookingResponse DTO
      */
     private BookingResponse mapToBookingResponse(Booking booking) {
-        return new BookingResponse(
+        BookingResponse response = new BookingResponse(
                 booking.getBookingId(),
                 booking.getUserId().toString(),
                 booking.getPatientName(),
@@ -187,5 +371,7 @@ public class BookingService {
                 booking.getNotes(),
                 booking.getCreatedAt().format(DATETIME_FORMATTER)
         );
+        response.setVaccineId(booking.getVaccineId());
+        return response;
     }
 }
@@ -0,0 +1,259 @@
+package com.vactrack.service;
+
+import com.vactrack.util.TextNormalizer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Bộ nhớ đệm câu trả lời của trợ lí ảo, khóa theo câu hỏi đã chuẩn hóa (bỏ dấu, chữ thường, gộp khoảng trắng).
+ * Prompt hệ thống và few-shot cố định nên câu trả lời chỉ phụ thuộc vào câu hỏi.
+ * Tầng gần đúng (tùy chọn, mặc định tắt) so khớp theo trigram ký tự để câu hỏi gần giống nhau dùng chung câu trả lời.
+ * Vì một từ có thể đổi hẳn nghĩa câu, hai câu chỉ được coi là giống khi câu dài hơn là câu ngắn hơn chèn thêm
+ * tối đa max-extra-words từ (giữ nguyên thứ tự) và từ chèn thêm không phải từ phủ định ("không nên tiêm" khác "nên tiêm");
+ * các con số trong câu hỏi phải trùng khớp ("trẻ 2 tháng" khác "trẻ 4 tháng").
+ * Loại bỏ theo LRU khi đầy và theo TTL.
+ */
+@Component
+public class ChatResponseCache {
+
+    private static final int GRAM = 3;
+    private static final int MIN_GRAMS_FOR_SIMILARITY = 6;
+
+    // Từ phủ định/cấm đoán sau khi bỏ dấu ("đừng" và "dùng" cùng thành "dung" nên cũng bị chặn, chấp nhận miss)
+    private static final Set<String> NEGATIONS = Set.of(
+            "khong", "ko", "k", "kg", "chua", "chang", "cha", "dung", "cam", "tranh", "no", "not", "dont", "never");
+
+    private final boolean enabled;
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final boolean similarityEnabled;
+    private final double similarityThreshold;
+    private final int maxExtraWords;
+
+    // accessOrder = true: phần tử đầu là phần tử lâu nhất chưa dùng
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, Set<Entry>> postings = new HashMap<>();
+
+    private final Counter exactHits;
+    private final Counter similarHits;
+    private final Counter misses;
+
+    public ChatResponseCache(MeterRegistry meterRegistry,
+                             @Value("${chat.cache.enabled:true}") boolean enabled,
+                             @Value("${chat.cache.max-entries:1000}") int maxEntries,
+                             @Value("${chat.cache.ttl-minutes:1440}") long ttlMinutes,
+                             @Value("${chat.cache.similarity.enabled:false}") boolean similarityEnabled,
+                             @Value("${chat.cache.similarity.threshold:0.85}") double similarityThreshold,
+                             @Value("${chat.cache.similarity.max-extra-words:1}") int maxExtraWords) {
+        this.enabled = enabled;
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMinutes * 60_000;
+        this.similarityEnabled = similarityEnabled;
+        this.similarityThreshold = similarityThreshold;
+        this.maxExtraWords = maxExtraWords;
+
+        this.exactHits = Counter.builder("chat.cache.requests").tag("result", "hit").register(meterRegistry);
+        this.similarHits = Counter.builder("chat.cache.requests").tag("result", "similar").register(meterRegistry);
+        this.misses = Counter.builder("chat.cache.requests").tag("result", "miss").register(meterRegistry);
+        Gauge.builder("chat.cache.size", this, ChatResponseCache::size).register(meterRegistry);
+    }
+
+    private static final class Entry {
+        final String key;
+        final String answer;
+        final long expiresAt;
+        final Set<String> grams;
+        final List<String> words;
+        final String numbers;
+
+        Entry(String key, String answer, long expiresAt) {
+            this.key = key;
+            this.answer = answer;
+            this.expiresAt = expiresAt;
+            this.grams = grams(key);
+            this.words = words(key);
+            this.numbers = numbers(key);
+        }
+    }
+
+    /**
+     * Câu trả lời đã lưu cho câu hỏi này (hoặc câu hỏi đủ giống), null nếu không có
+     */
+    public String get(String question) {
+        if (!enabled) {
+            return null;
+        }
+        String key = TextNormalizer.fold(question);
+        if (key.isEmpty()) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                if (entry.expiresAt > now) {
+                    exactHits.increment();
+                    return entry.answer;
+                }
+                remove(entry);
+            }
+
+            if (similarityEnabled) {
+                Entry similar = findSimilar(key, now);
+                if (similar != null) {
+                    entries.get(similar.key); // đánh dấu vừa dùng cho LRU
+                    similarHits.increment();
+                    return similar.answer;
+                }
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    public void put(String question, String answer) {
+        if (!enabled || answer == null || answer.isBlank()) {
+            return;
+        }
+        String key = TextNormalizer.fold(question);
+        if (key.isEmpty()) {
+            return;
+        }
+        Entry entry = new Entry(key, answer, System.currentTimeMillis() + ttlMillis);
+
+        synchronized (this) {
+            Entry previous = entries.get(key);
+            if (previous != null) {
+                remove(previous);
+            }
+            entries.put(key, entry);
+            for (String gram : entry.grams) {
+                postings.computeIfAbsent(gram, g -> new HashSet<>()).add(entry);
+            }
+
+            Iterator<Entry> eldest = entries.values().iterator();
+            while (entries.size() > maxEntries && eldest.hasNext()) {
+                Entry evicted = eldest.next();
+                eldest.remove();
+                removePostings(evicted);
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    // Hệ số Dice trên tập trigram: 2|A∩B| / (|A| + |B|); chỉ xét các câu có chung ít nhất một trigram
+    private Entry findSimilar(String key, long now) {
+        Set<String> queryGrams = grams(key);
+        if (queryGrams.size() < MIN_GRAMS_FOR_SIMILARITY) {
+            return null;
+        }
+        List<String> queryWords = words(key);
+        String queryNumbers = numbers(key);
+
+        Map<Entry, Integer> shared = new HashMap<>();
+        for (String gram : queryGrams) {
+            Set<Entry> candidates = postings.get(gram);
+            if (candidates != null) {
+                for (Entry candidate : candidates) {
+                    shared.merge(candidate, 1, Integer::sum);
+                }
+            }
+        }
+
+        Entry best = null;
+        double bestScore = similarityThreshold;
+        List<Entry> expired = new ArrayList<>();
+        for (Map.Entry<Entry, Integer> candidate : shared.entrySet()) {
+            Entry entry = candidate.getKey();
+            if (entry.expiresAt <= now) {
+                expired.add(entry);
+                continue;
+            }
+            double score = 2.0 * candidate.getValue() / (queryGrams.size() + entry.grams.size());
+            if (score >= bestScore && entry.numbers.equals(queryNumbers) && sameWords(queryWords, entry.words)) {
+                best = entry;
+                bestScore = score;
+            }
+        }
+        expired.forEach(this::remove);
+        return best;
+    }
+
+    // Câu ngắn hơn là dãy con của câu dài hơn, thừa tối đa maxExtraWords từ và không từ thừa nào là từ phủ định
+    private boolean sameWords(List<String> a, List<String> b) {
+        List<String> shorter = a.size() <= b.size() ? a : b;
+        List<String> longer = shorter == a ? b : a;
+        if (longer.size() - shorter.size() > maxExtraWords) {
+            return false;
+        }
+        int matched = 0;
+        for (String word : longer) {
+            if (matched < shorter.size() && shorter.get(matched).equals(word)) {
+                matched++;
+            } else if (NEGATIONS.contains(word)) {
+                return false;
+            }
+        }
+        return matched == shorter.size();
+    }
+
+    private void remove(Entry entry) {
+        entries.remove(entry.key);
+        removePostings(entry);
+    }
+
+    private void removePostings(Entry entry) {
+        for (String gram : entry.grams) {
+            Set<Entry> candidates = postings.get(gram);
+            if (candidates != null && candidates.remove(entry) && candidates.isEmpty()) {
+                postings.remove(gram);
+            }
+        }
+    }
+
+    private static Set<String> grams(String key) {
+        Set<String> grams = new HashSet<>();
+        String padded = " " + key + " ";
+        for (int i = 0; i + GRAM <= padded.length(); i++) {
+            grams.add(padded.substring(i, i + GRAM));
+        }
+        return grams;
+    }
+
+    private static List<String> words(String key) {
+        return List.of(key.split(" "));
+    }
+
+    // Dãy các con số trong câu hỏi, ví dụ "tre 2 thang tuoi 6 mui" -> "2 6"
+    private static String numbers(String key) {
+        StringBuilder numbers = new StringBuilder();
+        boolean inNumber = false;
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if (c >= '0' && c <= '9') {
+                numbers.append(c);
+                inNumber = true;
+            } else if (inNumber) {
+                numbers.append(' ');
+                inNumber = false;
+            }
+        }
+        return numbers.toString().trim();
+    }
+}
@@ -0,0 +1,300 @@
+package com.vactrack.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vactrack.dto.ChatGPTRequest;
+import com.vactrack.exception.ApiException;
+import com.vactrack.model.Message;
+import com.vactrack.resilience.Dependencies;
+import com.vactrack.resilience.Dependency;
+import com.vactrack.util.SingleFlight;
+import com.vactrack.util.TextNormalizer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Gọi OpenAI chat completions qua HttpClient dùng chung (giữ kết nối, không bắt tay TLS lại mỗi lần).
+ * Chế độ stream đọc phản hồi SSE của OpenAI theo từng dòng khi dữ liệu về và đẩy ngay từng đoạn chữ
+ * cho trình duyệt, không có thread nào ngồi chờ. Số cuộc chat đồng thời do bulkhead của dependency openai giới hạn;
+ * OpenAI lỗi liên tục thì cầu dao mở và request bị từ chối ngay.
+ * Câu hỏi đã có trong ChatResponseCache được trả lời ngay, không gọi OpenAI.
+ */
+@Service
+public class ChatService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChatService.class);
+
+    private static final String SYSTEM_PROMPT = "Bạn là trợ lí ảo của VacTrack, chuyên cung cấp thông tin và tư vấn liên quan đến vaccine, lịch tiêm chủng và các hướng dẫn sơ cứu cơ bản. Trả lời ngắn gọn, rõ ràng và chuyên nghiệp. Luôn khuyến khích người dùng đến bác sĩ nếu tình trạng vượt quá khả năng tư vấn.";
+
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper;
+    private final ChatResponseCache responseCache;
+    private final SingleFlight singleFlight;
+    private final Dependency openai;
+    private final String apiUrl;
+    private final String apiKey;
+    private final Duration responseTimeout;
+    private final long streamTimeoutMs;
+
+    public ChatService(HttpClient httpClient,
+                       ObjectMapper objectMapper,
+                       ChatResponseCache responseCache,
+                       SingleFlight singleFlight,
+                       Dependencies dependencies,
+                       @Value("${openai.api.url:https://api.openai.com/v1/chat/completions}") String apiUrl,
+                       @Value("${openai.api.key}") String apiKey,
+                       @Value("${chat.response-timeout-ms:15000}") long responseTimeoutMs,
+                       @Value("${chat.stream-timeout-ms:120000}") long streamTimeoutMs) {
+        this.httpClient = httpClient;
+        this.objectMapper = objectMapper;
+        this.responseCache = responseCache;
+        this.singleFlight = singleFlight;
+        this.openai = dependencies.get(Dependencies.OPENAI);
+        this.apiUrl = apiUrl;
+        this.apiKey = apiKey;
+        this.responseTimeout = Duration.ofMillis(responseTimeoutMs);
+        this.streamTimeoutMs = streamTimeoutMs;
+    }
+
+    /**
+     * Gọi một lần và trả về nguyên JSON của OpenAI (API cũ /api/chat/ask)
+     */
+    public String ask(String message) {
+        String cached = responseCache.get(message);
+        if (cached != null) {
+            return cachedCompletion(cached);
+        }
+        // Câu hỏi giống nhau đến cùng lúc (trước khi kịp vào cache) chỉ gọi OpenAI một lần
+        return singleFlight.execute("chat", TextNormalizer.fold(message), () -> complete(message));
+    }
+
+    private String complete(String message) {
+        HttpRequest request = buildRequest(message, false);
+        Dependency.Permit permit = openai.acquire();
+        try {
+            HttpResponse<String> response = httpClient.send(request,
+                    HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+            record(permit, response.statusCode());
+            if (response.statusCode() >= 400) {
+                throw new ApiException("Chat upstream returned " + response.statusCode(), HttpStatus.BAD_GATEWAY);
+            }
+            permit.success();
+            JsonNode content = objectMapper.readTree(response.body())
+                    .path("choices").path(0).path("message").path("content");
+            if (content.isTextual()) {
+                responseCache.put(message, content.asText());
+            }
+            return response.body();
+        } catch (IOException e) {
+            permit.failure();
+            throw new ApiException("Chat upstream error: " + e.getMessage(), HttpStatus.BAD_GATEWAY);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ApiException("Chat request interrupted", HttpStatus.SERVICE_UNAVAILABLE);
+        } finally {
+            permit.release();
+        }
+    }
+
+    /**
+     * Bắt đầu một cuộc chat dạng stream. Mỗi đoạn chữ được gửi thành một sự kiện "token",
+     * kết thúc bằng "done" hoặc "error". Hàm trả về ngay, dữ liệu được đẩy trên thread của HttpClient.
+     */
+    public SseEmitter stream(String message) {
+        String cached = responseCache.get(message);
+        if (cached != null) {
+            SseEmitter emitter = new SseEmitter(streamTimeoutMs);
+            try {
+                emitter.send(SseEmitter.event().name("token").data(cached));
+                emitter.send(SseEmitter.event().name("done").data(""));
+                emitter.complete();
+            } catch (IOException e) {
+                emitter.completeWithError(e);
+            }
+            return emitter;
+        }
+
+        HttpRequest request = buildRequest(message, true);
+        Dependency.Permit permit = openai.acquire();
+        SseEmitter emitter = new SseEmitter(streamTimeoutMs);
+        // Trình duyệt ngắt hoặc hết giờ: trả lượt gọi, không tính là lỗi của OpenAI
+        emitter.onCompletion(permit::release);
+        emitter.onTimeout(permit::release);
+        emitter.onError(error -> permit.release());
+
+        CompletionSubscriber subscriber = new CompletionSubscriber(emitter, message, permit);
+        HttpResponse.BodyHandler<Void> bodyHandler = responseInfo -> {
+            record(permit, responseInfo.statusCode());
+            if (responseInfo.statusCode() >= 400) {
+                subscriber.fail("Chat upstream returned " + responseInfo.statusCode());
+                return HttpResponse.BodySubscribers.discarding();
+            }
+            return HttpResponse.BodySubscribers.fromLineSubscriber(subscriber);
+        };
+        httpClient.sendAsync(request, bodyHandler)
+                .whenComplete((response, error) -> {
+                    if (error != null) {
+                        permit.failure();
+                        subscriber.fail("Chat upstream error: " + error.getMessage());
+                    }
+                });
+        return emitter;
+    }
+
+    // Giữ cấu trúc JSON của OpenAI để client của /ask không phải phân biệt
+    private String cachedCompletion(String answer) {
+        Map<String, Object> body = Map.of(
+                "object", "chat.completion",
+                "cached", true,
+                "choices", List.of(Map.of(
+                        "index", 0,
+                        "message", Map.of("role", "assistant", "content", answer),
+                        "finish_reason", "stop")));
+        try {
+            return objectMapper.writeValueAsString(body);
+        } catch (IOException e) {
+            throw new ApiException("Could not serialize cached answer", HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    // 5xx và 429 nghĩa là OpenAI đang quá tải hoặc lỗi; 4xx khác là do request, OpenAI vẫn khỏe
+    private static void record(Dependency.Permit permit, int status) {
+        if (status >= 500 || status == 429) {
+            permit.failure();
+        } else if (status >= 400) {
+            permit.success();
+        }
+    }
+
+    private HttpRequest buildRequest(String message, boolean stream) {
+        if (message == null || message.isBlank()) {
+            throw new ApiException("Message must not be empty", HttpStatus.BAD_REQUEST);
+        }
+
+        List<Message> messages = new ArrayList<>();
+        messages.add(new Message("system", SYSTEM_PROMPT));
+        // Few-shot mẫu
+        messages.add(new Message("user", "Khi nào nên tiêm vaccine cho trẻ em?"));
+        messages.add(new Message("assistant", "Trẻ em thường bắt đầu tiêm chủng từ 2 tháng tuổi, tuy nhiên bạn nên tham khảo ý kiến của bác sĩ để có lịch tiêm chủng chính xác."));
+        messages.add(new Message("user", message));
+
+        ChatGPTRequest chatRequest = new ChatGPTRequest("gpt-3.5-turbo", messages, 0.7, 150);
+        chatRequest.setStream(stream);
+
+        try {
+            return HttpRequest.newBuilder(URI.create(apiUrl))
+                    .timeout(responseTimeout)
+                    .header("Content-Type", "application/json")
+                    .header("Authorization", "Bearer " + apiKey)
+                    .header("Accept", stream ? "text/event-stream" : "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(chatRequest)))
+                    .build();
+        } catch (IOException e) {
+            throw new ApiException("Could not build chat request", HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * Nhận từng dòng SSE của OpenAI ("data: {...}" hoặc "data: [DONE]") và chuyển phần delta.content cho trình duyệt
+     */
+    private final class CompletionSubscriber implements Flow.Subscriber<String> {
+        private final SseEmitter emitter;
+        private final String question;
+        private final StringBuilder answer = new StringBuilder();
+        private final Dependency.Permit permit;
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private Flow.Subscription subscription;
+
+        CompletionSubscriber(SseEmitter emitter, String question, Dependency.Permit permit) {
+            this.emitter = emitter;
+            this.question = question;
+            this.permit = permit;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(String line) {
+            if (closed.get() || !line.startsWith("data:")) {
+                return;
+            }
+            String data = line.substring(5).trim();
+            if (data.equals("[DONE]")) {
+                // Chỉ lưu câu trả lời đã nhận đủ
+                responseCache.put(question, answer.toString());
+                complete();
+                return;
+            }
+            try {
+                JsonNode content = objectMapper.readTree(data).path("choices").path(0).path("delta").path("content");
+                if (content.isTextual() && !content.asText().isEmpty()) {
+                    answer.append(content.asText());
+                    emitter.send(SseEmitter.event().name("token").data(content.asText()));
+                }
+            } catch (IOException | IllegalStateException e) {
+                // Trình duyệt đã ngắt kết nối hoặc dòng không đọc được: dừng nhận tiếp từ OpenAI
+                logger.debug("Stopping chat stream: {}", e.getMessage());
+                permit.release();
+                closed.set(true);
+                subscription.cancel();
+                emitter.completeWithError(e);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            permit.failure();
+            fail("Chat upstream error: " + throwable.getMessage());
+        }
+
+        @Override
+        public void onComplete() {
+            complete();
+        }
+
+        void complete() {
+            permit.success();
+            if (closed.compareAndSet(false, true)) {
+                try {
+                    emitter.send(SseEmitter.event().name("done").data(""));
+                    emitter.complete();
+                } catch (IOException | IllegalStateException e) {
+                    emitter.completeWithError(e);
+                }
+            }
+        }
+
+        void fail(String message) {
+            if (closed.compareAndSet(false, true)) {
+                logger.warn(message);
+                try {
+                    emitter.send(SseEmitter.event().name("error").data(message));
+                    emitter.complete();
+                } catch (IOException | IllegalStateException e) {
+                    emitter.completeWithError(e);
+                }
+            }
+        }
+    }
+}
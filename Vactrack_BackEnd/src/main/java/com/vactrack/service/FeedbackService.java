@@ -5,6 +5,7 @@ import com.vactrack.dto.FeedbackRequest;
 import com.vactrack.dto.FeedbackResponse;
 import com.vactrack.model.Feedback;
 import com.vactrack.repository.FeedbackRepository;
+import com.vactrack.util.ResourceVersions;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
@@ -23,6 +24,9 @@ public class FeedbackService {
     @Autowired
     private FeedbackRepository feedbackRepository;
 
+    @Autowired
+    private ResourceVersions resourceVersions;
+
     private final DateTimeFormatter formatter = DateTimeFormatter.ISO_DATE_TIME;
 
     /**
@@ -44,7 +48,9 @@ public class FeedbackService {
                 request.getCreatedAt() :
                 LocalDateTime.now());
 
-        return feedbackRepository.save(feedback);
+        Feedback saved = feedbackRepository.save(feedback);
+        resourceVersions.bump(ResourceVersions.Resource.FEEDBACK);
+        return saved;
     }
 
     /**
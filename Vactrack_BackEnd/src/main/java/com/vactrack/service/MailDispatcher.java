@@ -0,0 +1,203 @@
+package com.vactrack.service;
+
+import com.vactrack.model.MailOutbox;
+import com.vactrack.repository.MailOutboxRepository;
+import com.vactrack.resilience.Dependencies;
+import com.vactrack.resilience.Dependency;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Gửi email trong outbox theo lô ở background.
+ * Mỗi lượt nhận (claim) các email đến hạn bằng một câu UPDATE có điều kiện trước khi gửi,
+ * nên nhiều node cùng quét outbox không gửi trùng email.
+ * Mỗi lô được gửi qua một kết nối SMTP duy nhất; email lỗi được thử lại với backoff tăng dần.
+ * Khi SMTP lỗi liên tục, cầu dao mở và các lượt quét bỏ qua cho tới khi thử lại thành công.
+ */
+@Component
+public class MailDispatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(MailDispatcher.class);
+
+    private final MailOutboxRepository mailOutboxRepository;
+    private final JavaMailSender mailSender;
+    private final Dependency smtp;
+
+    @Value("${mail.outbox.batch-size:50}")
+    private int batchSize;
+
+    @Value("${mail.outbox.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${mail.outbox.backoff-ms:5000}")
+    private long backoffMs;
+
+    @Value("${mail.outbox.max-backoff-ms:600000}")
+    private long maxBackoffMs;
+
+    // Thời gian giữ email đã nhận; quá hạn mà chưa gửi xong thì lượt quét khác nhận lại
+    @Value("${mail.outbox.lease-ms:300000}")
+    private long leaseMs;
+
+    public MailDispatcher(MailOutboxRepository mailOutboxRepository, JavaMailSender mailSender,
+                          Dependencies dependencies) {
+        this.mailOutboxRepository = mailOutboxRepository;
+        this.mailSender = mailSender;
+        this.smtp = dependencies.get(Dependencies.SMTP);
+    }
+
+    @Scheduled(fixedDelayString = "${mail.outbox.poll-interval-ms:2000}")
+    public void dispatch() {
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> dueIds = mailOutboxRepository.findDueIds(now, PageRequest.of(0, batchSize));
+        if (dueIds.isEmpty()) {
+            return;
+        }
+
+        // Email vẫn nằm trong outbox, lượt quét sau sẽ gửi
+        Dependency.Permit permit = smtp.tryAcquire();
+        if (permit == null) {
+            logger.debug("SMTP circuit open, postponing {} emails", dueIds.size());
+            return;
+        }
+        try {
+            String claim = UUID.randomUUID().toString();
+            LocalDateTime leaseUntil = now.plusNanos(leaseMs * 1_000_000L);
+            if (mailOutboxRepository.claim(dueIds, claim, now, leaseUntil) == 0) {
+                return; // node khác đã nhận hết
+            }
+            dispatch(mailOutboxRepository.findByClaimedByAndStatus(claim, "sending"), permit);
+        } finally {
+            permit.release();
+        }
+    }
+
+    private void dispatch(List<MailOutbox> due, Dependency.Permit permit) {
+
+        Map<MimeMessage, MailOutbox> batch = new IdentityHashMap<>();
+        for (MailOutbox mail : due) {
+            try {
+                batch.put(buildMessage(mail), mail);
+            } catch (MessagingException e) {
+                markForRetry(mail, e);
+            }
+        }
+
+        if (!batch.isEmpty()) {
+            send(batch, permit);
+        }
+
+        mailOutboxRepository.saveAll(due);
+    }
+
+    private void send(Map<MimeMessage, MailOutbox> batch, Dependency.Permit permit) {
+        List<MimeMessage> messages = new ArrayList<>(batch.keySet());
+        Map<Object, Exception> failedMessages = Collections.emptyMap();
+
+        try {
+            mailSender.send(messages.toArray(new MimeMessage[0]));
+        } catch (MailSendException e) {
+            // Chỉ những email trong failedMessages bị lỗi, phần còn lại đã gửi thành công
+            failedMessages = e.getFailedMessages();
+            if (failedMessages.isEmpty()) {
+                permit.failure();
+                batch.values().forEach(mail -> markForRetry(mail, e));
+                return;
+            }
+        } catch (MailException e) {
+            logger.warn("SMTP dispatch of {} emails failed: {}", batch.size(), e.getMessage());
+            permit.failure();
+            batch.values().forEach(mail -> markForRetry(mail, e));
+            return;
+        }
+        // Một phần email bị từ chối (địa chỉ sai...) vẫn nghĩa là SMTP đang hoạt động;
+        // không gửi được email nào hoặc lỗi kết nối (JavaMailSender báo cả khối trong failedMessages) là SMTP lỗi
+        if (failedMessages.size() >= messages.size()
+                || failedMessages.values().stream().anyMatch(MailDispatcher::isConnectionFailure)) {
+            logger.warn("SMTP dispatch failed for {} of {} emails", failedMessages.size(), messages.size());
+            permit.failure();
+        } else {
+            permit.success();
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        for (MimeMessage message : messages) {
+            MailOutbox mail = batch.get(message);
+            Exception failure = failedMessages.get(message);
+            if (failure != null) {
+                markForRetry(mail, failure);
+            } else {
+                mail.setStatus("sent");
+                mail.setClaimedBy(null);
+                mail.setSentAt(now);
+                mail.setLastError(null);
+            }
+        }
+        logger.debug("Dispatched {} emails, {} failed", messages.size(), failedMessages.size());
+    }
+
+    // Lỗi mạng/kết nối nằm đâu đó trong chuỗi cause (MessagingException giữ lỗi gốc làm cause)
+    private static boolean isConnectionFailure(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof IOException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private MimeMessage buildMessage(MailOutbox mail) throws MessagingException {
+        MimeMessage mimeMessage = mailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(mimeMessage, true, "UTF-8");
+
+        helper.setTo(mail.getRecipient());
+        helper.setSubject(mail.getSubject());
+        helper.setText(mail.getBody(), true);
+
+        return mimeMessage;
+    }
+
+    private void markForRetry(MailOutbox mail, Exception e) {
+        int attempts = mail.getAttempts() + 1;
+        mail.setAttempts(attempts);
+        mail.setLastError(truncate(e.getMessage()));
+        mail.setClaimedBy(null);
+
+        if (attempts >= maxAttempts) {
+            mail.setStatus("failed");
+            logger.error("Giving up on email {} to {} after {} attempts", mail.getId(), mail.getRecipient(), attempts);
+            return;
+        }
+
+        // Backoff luỹ thừa: backoffMs, 2*backoffMs, 4*backoffMs... tối đa maxBackoffMs
+        long delay = Math.min(maxBackoffMs, backoffMs << Math.min(attempts - 1, 20));
+        mail.setStatus("pending");
+        mail.setNextAttemptAt(LocalDateTime.now().plusNanos(delay * 1_000_000L));
+    }
+
+    private String truncate(String message) {
+        if (message == null) {
+            return null;
+        }
+        return message.length() > 1000 ? message.substring(0, 1000) : message;
+    }
+}
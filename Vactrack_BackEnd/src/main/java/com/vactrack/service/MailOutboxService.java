@@ -0,0 +1,37 @@
+package com.vactrack.service;
+
+import com.vactrack.model.MailOutbox;
+import com.vactrack.repository.MailOutboxRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+/**
+ * Ghi email vào outbox; việc gửi SMTP do MailDispatcher thực hiện ở background
+ */
+@Service
+public class MailOutboxService {
+
+    private final MailOutboxRepository mailOutboxRepository;
+
+    public MailOutboxService(MailOutboxRepository mailOutboxRepository) {
+        this.mailOutboxRepository = mailOutboxRepository;
+    }
+
+    @Transactional
+    public MailOutbox enqueue(String recipient, String subject, String htmlBody) {
+        LocalDateTime now = LocalDateTime.now();
+
+        MailOutbox mail = new MailOutbox();
+        mail.setRecipient(recipient);
+        mail.setSubject(subject);
+        mail.setBody(htmlBody);
+        mail.setStatus("pending");
+        mail.setAttempts(0);
+        mail.setNextAttemptAt(now);
+        mail.setCreatedAt(now);
+
+        return mailOutboxRepository.save(mail);
+    }
+}
@@ -1,16 +1,18 @@
 package com.vactrack.service;
 
+import com.vactrack.exception.ApiException;
 import com.vactrack.model.User;
 import com.vactrack.repository.UserRepository;
-import jakarta.mail.MessagingException;
-import jakarta.mail.internet.MimeMessage;
+import com.vactrack.security.OtpStore;
+import com.vactrack.security.TokenRevocationService;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.mail.javamail.JavaMailSender;
-import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.security.SecureRandom;
 import java.util.Optional;
 import java.util.Random;
 
@@ -21,10 +23,15 @@ public class OtpService {
     private UserRepository userRepository;
 
     @Autowired
-    private JavaMailSender mailSender;
+    private MailOutboxService mailOutboxService;
 
-    // Lưu OTP tạm vào bộ nhớ
-    private Map<String, String> otpStorage = new HashMap<>();
+    @Autowired
+    private TokenRevocationService tokenRevocationService;
+
+    @Autowired
+    private OtpStore otpStore;
+
+    private final SecureRandom otpRandom = new SecureRandom();
 
     private String generateRandomPassword() {
         int length = 10;
@@ -37,29 +44,35 @@ public class OtpService {
         return password.toString();
     }
 
+    /**
+     * Tạo OTP và ghi email vào outbox; trả về ngay, không chờ SMTP.
+     * OTP chỉ có hiệu lực sau khi email đã commit vào outbox, rollback không để lại OTP chưa từng được gửi.
+     */
+    @Transactional
     public void generateAndSendOtp(String email) {
         Optional<User> userOptional = userRepository.findByEmail(email);
         if (userOptional.isEmpty()) {
             throw new RuntimeException("Email không tồn tại");
         }
 
-        String otp = String.valueOf(100000 + new Random().nextInt(900000));
-        otpStorage.put(email, otp);
-
-        try {
-            sendOtpEmail(email, otp);
-        } catch (MessagingException e) {
-            throw new RuntimeException("Không thể gửi email OTP", e);
+        // Kiểm tra giới hạn ngay để trả 429 trước khi ghi outbox
+        if (!otpStore.tryAcquireIssue(email)) {
+            throw new ApiException("Bạn đã yêu cầu OTP quá nhiều lần, vui lòng thử lại sau",
+                    HttpStatus.TOO_MANY_REQUESTS);
         }
-    }
 
-    private void sendOtpEmail(String email, String otp) throws MessagingException {
-        MimeMessage mimeMessage = mailSender.createMimeMessage();
-        MimeMessageHelper helper = new MimeMessageHelper(mimeMessage, true, "UTF-8");
+        int otp = 100000 + otpRandom.nextInt(900000);
+        sendOtpEmail(email, String.valueOf(otp));
 
-        helper.setTo(email);
-        helper.setSubject("Mã Xác Thực (OTP) – Đặt Lại Mật Khẩu VacTrack");
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                otpStore.store(email, otp);
+            }
+        });
+    }
 
+    private void sendOtpEmail(String email, String otp) {
         String htmlContent = String.format(
                 "<p>Xin chào,</p>" +
                         "<p>Bạn vừa yêu cầu đặt lại mật khẩu cho tài khoản <strong>VacTrack</strong>.</p>" +
@@ -69,25 +82,27 @@ public class OtpService {
                         "<p>Nếu bạn không yêu cầu đặt lại mật khẩu, vui lòng bỏ qua email này.</p>" +
                         "<br><p>Trân trọng,<br><strong>Đội ngũ VacTrack</strong></p>", otp);
 
-        helper.setText(htmlContent, true); // Cho phép HTML
-
-        mailSender.send(mimeMessage);
+        mailOutboxService.enqueue(email, "Mã Xác Thực (OTP) – Đặt Lại Mật Khẩu VacTrack", htmlContent);
     }
 
     public boolean verifyOtp(String email, String inputOtp) {
-        return otpStorage.containsKey(email) && otpStorage.get(email).equals(inputOtp);
+        if (inputOtp == null || !inputOtp.matches("\\d{6}")) {
+            return false;
+        }
+        return otpStore.verify(email, Integer.parseInt(inputOtp)) == OtpStore.VerifyResult.VALID;
     }
 
     public void clearOtp(String email) {
-        otpStorage.remove(email);
+        otpStore.remove(email);
     }
 
-    public void sendNewPasswordEmail(String email, String newPassword) throws MessagingException {
-        MimeMessage mimeMessage = mailSender.createMimeMessage();
-        MimeMessageHelper helper = new MimeMessageHelper(mimeMessage, true, "UTF-8");
-
-        helper.setTo(email);
-        helper.setSubject("Mật khẩu mới – VacTrack");
+    /**
+     * Gọi trong transaction ghi mật khẩu mới để việc thu hồi token và email cùng commit với mật khẩu
+     */
+    @Transactional
+    public void sendNewPasswordEmail(String email, String newPassword) {
+        // Mật khẩu đã đổi: thu hồi các token đã phát hành của user
+        userRepository.findByEmail(email).ifPresent(tokenRevocationService::onPasswordReset);
 
         String htmlContent = String.format(
                 "<p>Xin chào,</p>" +
@@ -97,8 +112,7 @@ public class OtpService {
                         "<p>Bạn nên đăng nhập và thay đổi lại mật khẩu trong mục cài đặt để bảo mật hơn.</p>" +
                         "<br><p>Trân trọng,<br><strong>Đội ngũ VacTrack</strong></p>", newPassword);
 
-        helper.setText(htmlContent, true);
-        mailSender.send(mimeMessage);
+        mailOutboxService.enqueue(email, "Mật khẩu mới – VacTrack", htmlContent);
     }
 
 }
@@ -0,0 +1,309 @@
+package com.vactrack.service;
+
+import com.vactrack.repository.AppointmentRepository;
+import com.vactrack.util.TextNormalizer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Chỉ mục trigram trong bộ nhớ cho tên bệnh nhân của cuộc hẹn, đã bỏ dấu tiếng Việt.
+ * Trả về id các cuộc hẹn khớp trước khi truy vấn JPA, thay cho LIKE '%...%' phải quét toàn bảng.
+ * Danh sách id lưu dạng long[] đã sắp xếp (8 byte mỗi id, không boxing) để chịu được hàng chục triệu cuộc hẹn.
+ * Chuỗi tìm 1-2 ký tự không đủ tạo trigram nên khớp theo tiền tố của từng từ trong tên.
+ */
+@Component
+public class PatientNameIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(PatientNameIndex.class);
+
+    private static final int GRAM = 3;
+    private static final int BUILD_BATCH_SIZE = 10000;
+    // Khóa tiền tố từ ("^a", "^an") không trùng với trigram vì tên đã chuẩn hóa không chứa '^'
+    private static final char PREFIX_MARK = '^';
+
+    private final AppointmentRepository appointmentRepository;
+    private final int maxResults;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, IdList> postings = new HashMap<>();
+    private final IdNameMap foldedNames = new IdNameMap();
+    private volatile boolean ready;
+
+    public PatientNameIndex(AppointmentRepository appointmentRepository,
+                            @Value("${search.patient-index.max-results:5000}") int maxResults) {
+        this.appointmentRepository = appointmentRepository;
+        this.maxResults = maxResults;
+    }
+
+    /**
+     * Id (tăng dần) các cuộc hẹn có tên chứa chuỗi tìm kiếm (không phân biệt hoa thường và dấu);
+     * chuỗi dưới 3 ký tự thì khớp các tên có một từ bắt đầu bằng chuỗi đó.
+     * Trả về null khi chỉ mục chưa sẵn sàng hoặc kết quả vượt quá giới hạn, khi đó nên dùng truy vấn LIKE.
+     */
+    public long[] search(String query) {
+        if (!ready) {
+            return null;
+        }
+        String folded = TextNormalizer.fold(query);
+        if (folded.isEmpty()) {
+            return null;
+        }
+
+        lock.readLock().lock();
+        try {
+            boolean prefix = folded.length() < GRAM;
+            Set<String> keys = prefix ? Set.of(PREFIX_MARK + folded) : grams(folded);
+
+            List<IdList> lists = new ArrayList<>(keys.size());
+            for (String key : keys) {
+                IdList ids = postings.get(key);
+                if (ids == null) {
+                    return new long[0];
+                }
+                lists.add(ids);
+            }
+            lists.sort(Comparator.comparingInt(ids -> ids.size));
+
+            // Duyệt danh sách ngắn nhất, tìm nhị phân trong các danh sách còn lại rồi xác nhận bằng chuỗi con
+            IdList shortest = lists.get(0);
+            long[] result = new long[Math.min(shortest.size, maxResults + 1)];
+            int found = 0;
+            outer:
+            for (int i = 0; i < shortest.size; i++) {
+                long id = shortest.ids[i];
+                for (int j = 1; j < lists.size(); j++) {
+                    if (!lists.get(j).contains(id)) {
+                        continue outer;
+                    }
+                }
+                if (prefix || foldedNames.get(id).contains(folded)) {
+                    if (found == maxResults) {
+                        return null;
+                    }
+                    result[found++] = id;
+                }
+            }
+            return Arrays.copyOf(result, found);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Thêm hoặc cập nhật tên của một cuộc hẹn; trong transaction thì áp dụng sau khi commit
+     */
+    public void index(long appointmentId, String patientName) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    put(appointmentId, patientName);
+                }
+            });
+        } else {
+            put(appointmentId, patientName);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        long start = System.currentTimeMillis();
+        long afterId = 0;
+        int total = 0;
+
+        List<Object[]> batch;
+        do {
+            batch = appointmentRepository.findIdAndPatientNameAfter(afterId, PageRequest.of(0, BUILD_BATCH_SIZE));
+            for (Object[] row : batch) {
+                afterId = (Long) row[0];
+                put(afterId, (String) row[1]);
+            }
+            total += batch.size();
+        } while (batch.size() == BUILD_BATCH_SIZE);
+
+        lock.writeLock().lock();
+        try {
+            postings.values().forEach(IdList::trim);
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        ready = true;
+        logger.info("Indexed {} patient names in {} ms", total, System.currentTimeMillis() - start);
+    }
+
+    private void put(long id, String patientName) {
+        String folded = TextNormalizer.fold(patientName);
+
+        lock.writeLock().lock();
+        try {
+            String previous = foldedNames.put(id, folded);
+            if (previous != null) {
+                if (previous.equals(folded)) {
+                    return;
+                }
+                for (String key : keys(previous)) {
+                    IdList ids = postings.get(key);
+                    if (ids != null && ids.remove(id) && ids.size == 0) {
+                        postings.remove(key);
+                    }
+                }
+            }
+            for (String key : keys(folded)) {
+                postings.computeIfAbsent(key, k -> new IdList()).add(id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Trigram của cả tên cùng tiền tố 1 và 2 ký tự của từng từ
+    private static Set<String> keys(String folded) {
+        Set<String> keys = grams(folded);
+        for (String word : folded.split(" ")) {
+            for (int length = 1; length < GRAM && length <= word.length(); length++) {
+                keys.add(PREFIX_MARK + word.substring(0, length));
+            }
+        }
+        return keys;
+    }
+
+    private static Set<String> grams(String folded) {
+        Set<String> grams = new LinkedHashSet<>();
+        for (int i = 0; i + GRAM <= folded.length(); i++) {
+            grams.add(folded.substring(i, i + GRAM));
+        }
+        return grams;
+    }
+
+    /**
+     * Danh sách id tăng dần trên mảng long. Id mới thường lớn nhất nên thêm vào cuối là trường hợp phổ biến.
+     */
+    private static final class IdList {
+        long[] ids = new long[4];
+        int size;
+
+        void add(long id) {
+            if (size > 0 && ids[size - 1] >= id) {
+                int index = Arrays.binarySearch(ids, 0, size, id);
+                if (index >= 0) {
+                    return;
+                }
+                insertAt(-index - 1, id);
+                return;
+            }
+            insertAt(size, id);
+        }
+
+        private void insertAt(int index, long id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size + (size >> 1) + 1);
+            }
+            System.arraycopy(ids, index, ids, index + 1, size - index);
+            ids[index] = id;
+            size++;
+        }
+
+        boolean remove(long id) {
+            int index = Arrays.binarySearch(ids, 0, size, id);
+            if (index < 0) {
+                return false;
+            }
+            System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+            size--;
+            return true;
+        }
+
+        boolean contains(long id) {
+            return Arrays.binarySearch(ids, 0, size, id) >= 0;
+        }
+
+        void trim() {
+            if (ids.length > size) {
+                ids = Arrays.copyOf(ids, size);
+            }
+        }
+    }
+
+    /**
+     * Bảng băm id -> tên đã chuẩn hóa, địa chỉ mở và dò tuyến tính trên long[] để không tạo Long cho mỗi khóa
+     */
+    private static final class IdNameMap {
+        private static final long EMPTY = Long.MIN_VALUE;
+
+        private long[] keys = newKeys(1 << 10);
+        private String[] values = new String[1 << 10];
+        private int size;
+
+        String get(long id) {
+            int mask = keys.length - 1;
+            for (int i = slot(id, mask); keys[i] != EMPTY; i = (i + 1) & mask) {
+                if (keys[i] == id) {
+                    return values[i];
+                }
+            }
+            return null;
+        }
+
+        String put(long id, String value) {
+            if ((size + 1) * 4 > keys.length * 3) {
+                resize();
+            }
+            int mask = keys.length - 1;
+            int i = slot(id, mask);
+            for (; keys[i] != EMPTY; i = (i + 1) & mask) {
+                if (keys[i] == id) {
+                    String previous = values[i];
+                    values[i] = value;
+                    return previous;
+                }
+            }
+            keys[i] = id;
+            values[i] = value;
+            size++;
+            return null;
+        }
+
+        private void resize() {
+            long[] oldKeys = keys;
+            String[] oldValues = values;
+            keys = newKeys(oldKeys.length * 2);
+            values = new String[oldKeys.length * 2];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != EMPTY) {
+                    put(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+
+        private static int slot(long id, int mask) {
+            long h = id * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32)) & mask;
+        }
+
+        private static long[] newKeys(int capacity) {
+            long[] keys = new long[capacity];
+            Arrays.fill(keys, EMPTY);
+            return keys;
+        }
+    }
+}
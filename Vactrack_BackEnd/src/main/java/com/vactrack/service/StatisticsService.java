@@ -0,0 +1,450 @@
+package com.vactrack.service;
+
+import com.vactrack.exception.ApiException;
+import com.vactrack.model.Appointment;
+import com.vactrack.model.Booking;
+import com.vactrack.model.DailyRollup;
+import com.vactrack.model.SettingsSnapshot;
+import com.vactrack.repository.AppointmentRepository;
+import com.vactrack.repository.BookingRepository;
+import com.vactrack.repository.DailyRollupRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Thống kê cuộc hẹn và doanh thu từ bảng daily_rollups.
+ * Mỗi lần ghi Appointment/Booking cộng trừ đúng một dòng rollup, nên truy vấn thống kê chỉ tỉ lệ
+ * với số ngày trong khoảng thời gian chứ không phải số bản ghi.
+ * Phần cộng trừ được gom trong bộ nhớ sau khi transaction ghi commit và ghi xuống DB theo đợt,
+ * để các booking cùng ngày không phải xếp hàng trên một dòng rollup; thống kê vì vậy trễ tối đa một đợt.
+ */
+@Service
+public class StatisticsService {
+
+    private static final Logger logger = LoggerFactory.getLogger(StatisticsService.class);
+
+    public static final String SOURCE_APPOINTMENT = "appointment";
+    public static final String SOURCE_BOOKING = "booking";
+
+    private static final String CANCELED = "canceled";
+    // Dòng rollup cũ có thể còn lưu cách viết "cancelled"
+    private static final List<String> CANCELED_STATUSES = List.of(CANCELED, "cancelled");
+    // Khoảng 10 năm theo ngày; khoảng thời gian do người dùng nhập nên phải giới hạn số mốc
+    private static final int MAX_BUCKETS = 3660;
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+
+    private final DailyRollupRepository dailyRollupRepository;
+    private final AppointmentRepository appointmentRepository;
+    private final BookingRepository bookingRepository;
+    private final SystemSettingService systemSettingService;
+    private final TransactionTemplate requiresNewTemplate;
+    private final boolean backfillOnStartup;
+
+    // Phần cộng trừ đã commit nhưng chưa ghi vào daily_rollups
+    private final Map<PendingKey, Long> pending = new ConcurrentHashMap<>();
+
+    public StatisticsService(DailyRollupRepository dailyRollupRepository,
+                             AppointmentRepository appointmentRepository,
+                             BookingRepository bookingRepository,
+                             SystemSettingService systemSettingService,
+                             PlatformTransactionManager transactionManager,
+                             @Value("${statistics.backfill-on-startup:true}") boolean backfillOnStartup) {
+        this.dailyRollupRepository = dailyRollupRepository;
+        this.appointmentRepository = appointmentRepository;
+        this.bookingRepository = bookingRepository;
+        this.systemSettingService = systemSettingService;
+        this.requiresNewTemplate = new TransactionTemplate(transactionManager);
+        this.requiresNewTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.backfillOnStartup = backfillOnStartup;
+    }
+
+    /**
+     * Khóa của một dòng rollup; null nghĩa là bản ghi không được tính (chưa có ngày hẹn)
+     */
+    public static final class RollupKey {
+        private final LocalDate date;
+        private final String service;
+        private final String status;
+        private final String packageType;
+
+        private RollupKey(LocalDate date, String service, String status, String packageType) {
+            this.date = date;
+            this.service = normalize(service);
+            this.status = normalizeStatus(status);
+            this.packageType = normalize(packageType);
+        }
+
+        public static RollupKey of(Appointment appointment) {
+            if (appointment == null || appointment.getAppointmentDate() == null) {
+                return null;
+            }
+            return new RollupKey(appointment.getAppointmentDate(), appointment.getService(),
+                    appointment.getStatus(), null);
+        }
+
+        public static RollupKey of(Booking booking) {
+            if (booking == null || booking.getAppointmentDate() == null) {
+                return null;
+            }
+            return new RollupKey(booking.getAppointmentDate(), booking.getServiceType(),
+                    booking.getStatus(), booking.getPackageType());
+        }
+
+        private static String normalize(String value) {
+            return value != null ? value.trim() : "";
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof RollupKey)) return false;
+            RollupKey other = (RollupKey) o;
+            return date.equals(other.date) && service.equals(other.service)
+                    && status.equals(other.status) && packageType.equals(other.packageType);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(date, service, status, packageType);
+        }
+    }
+
+    /**
+     * Dạng chuẩn của trạng thái dùng cho rollup và bộ đếm: null thành "", bỏ khoảng trắng, chữ thường,
+     * "cancelled" gộp vào "canceled"
+     */
+    public static String normalizeStatus(String status) {
+        String normalized = status != null ? status.trim().toLowerCase(Locale.ROOT) : "";
+        return "cancelled".equals(normalized) ? CANCELED : normalized;
+    }
+
+    private static final class PendingKey {
+        final String source;
+        final RollupKey key;
+
+        PendingKey(String source, RollupKey key) {
+            this.source = source;
+            this.key = key;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof PendingKey)) return false;
+            PendingKey other = (PendingKey) o;
+            return source.equals(other.source) && key.equals(other.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(source, key);
+        }
+    }
+
+    /**
+     * Chuyển một bản ghi từ khóa cũ sang khóa mới (tạo mới: before = null, xóa: after = null).
+     * Chỉ được tính khi transaction hiện tại commit.
+     */
+    public void move(String source, RollupKey before, RollupKey after) {
+        if (Objects.equals(before, after)) {
+            return;
+        }
+        afterCommit(() -> {
+            if (before != null) {
+                add(source, before, -1);
+            }
+            if (after != null) {
+                add(source, after, 1);
+            }
+        });
+    }
+
+    /**
+     * Cộng dồn số bản ghi mới theo từng khóa, dùng khi nhập nhiều bản ghi một lúc
+     */
+    public void addAll(String source, Map<RollupKey, Long> counts) {
+        Map<RollupKey, Long> copy = new HashMap<>(counts);
+        afterCommit(() -> copy.forEach((key, count) -> add(source, key, count)));
+    }
+
+    /**
+     * Ghi phần cộng trừ đang gom xuống daily_rollups, mỗi dòng một transaction ngắn.
+     * Dòng ghi lỗi được giữ lại cho đợt sau.
+     */
+    @Scheduled(fixedDelayString = "${statistics.rollup.flush-interval-ms:1000}")
+    @PreDestroy
+    public synchronized void flush() {
+        for (PendingKey pendingKey : new ArrayList<>(pending.keySet())) {
+            Long delta = pending.remove(pendingKey);
+            if (delta == null || delta == 0) {
+                continue;
+            }
+            try {
+                requiresNewTemplate.executeWithoutResult(status -> increment(pendingKey.source, pendingKey.key, delta));
+            } catch (RuntimeException e) {
+                pending.merge(pendingKey, delta, Long::sum);
+                logger.warn("Could not flush {} rollup for {}, retrying later: {}",
+                        pendingKey.source, pendingKey.key.date, e.getMessage());
+            }
+        }
+    }
+
+    private void add(String source, RollupKey key, long delta) {
+        pending.merge(new PendingKey(source, key), delta, Long::sum);
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private void increment(String source, RollupKey key, long delta) {
+        int updated = dailyRollupRepository.increment(source, key.date, key.service, key.status, key.packageType, delta);
+        if (updated > 0) {
+            return;
+        }
+        if (delta < 0) {
+            logger.warn("Missing {} rollup row for {} / {} / {}, statistics need a rebuild",
+                    source, key.date, key.service, key.status);
+            return;
+        }
+
+        // Tạo dòng trong transaction riêng để hai request đồng thời không làm hỏng transaction của nhau
+        try {
+            requiresNewTemplate.executeWithoutResult(status -> dailyRollupRepository.saveAndFlush(newRow(source, key, 0)));
+        } catch (DataIntegrityViolationException e) {
+            logger.debug("Rollup row already created concurrently: {} / {}", source, key.date);
+        }
+        dailyRollupRepository.increment(source, key.date, key.service, key.status, key.packageType, delta);
+    }
+
+    private DailyRollup newRow(String source, RollupKey key, long count) {
+        DailyRollup row = new DailyRollup();
+        row.setSource(source);
+        row.setRollupDate(key.date);
+        row.setService(key.service);
+        row.setStatus(key.status);
+        row.setPackageType(key.packageType);
+        row.setRecordCount(count);
+        return row;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillIfEmpty() {
+        if (backfillOnStartup && dailyRollupRepository.count() == 0) {
+            // Gọi nội bộ không đi qua proxy nên phải tự mở transaction
+            requiresNewTemplate.execute(status -> rebuild());
+        }
+    }
+
+    /**
+     * Dựng lại toàn bộ rollup từ bảng appointments và bookings bằng truy vấn GROUP BY.
+     * Nên chạy lúc ít ghi: thay đổi xảy ra trong lúc dựng lại có thể bị ghi đè.
+     */
+    @Transactional
+    public synchronized Map<String, Object> rebuild() {
+        long start = System.currentTimeMillis();
+        // Phần đang gom thuộc các bản ghi đã commit, GROUP BY bên dưới đã tính chúng
+        pending.clear();
+
+        dailyRollupRepository.deleteBySource(SOURCE_APPOINTMENT);
+        dailyRollupRepository.deleteBySource(SOURCE_BOOKING);
+
+        Map<RollupKey, Long> appointmentCounts = new HashMap<>();
+        for (Object[] row : appointmentRepository.countByDateServiceAndStatus()) {
+            RollupKey key = new RollupKey((LocalDate) row[0], (String) row[1], (String) row[2], null);
+            appointmentCounts.merge(key, ((Number) row[3]).longValue(), Long::sum);
+        }
+
+        Map<RollupKey, Long> bookingCounts = new HashMap<>();
+        for (Object[] row : bookingRepository.countByDateServiceStatusAndPackage()) {
+            RollupKey key = new RollupKey((LocalDate) row[0], (String) row[1], (String) row[2], (String) row[3]);
+            bookingCounts.merge(key, ((Number) row[4]).longValue(), Long::sum);
+        }
+
+        List<DailyRollup> rows = new ArrayList<>(appointmentCounts.size() + bookingCounts.size());
+        appointmentCounts.forEach((key, count) -> rows.add(newRow(SOURCE_APPOINTMENT, key, count)));
+        bookingCounts.forEach((key, count) -> rows.add(newRow(SOURCE_BOOKING, key, count)));
+        dailyRollupRepository.saveAll(rows);
+
+        logger.info("Rebuilt {} daily rollup rows in {} ms", rows.size(), System.currentTimeMillis() - start);
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("rows", rows.size());
+        result.put("durationMs", System.currentTimeMillis() - start);
+        return result;
+    }
+
+    public LocalDate defaultStart(String period, LocalDate endDate) {
+        if ("day".equals(period)) {
+            return endDate.minusDays(30);
+        } else if ("week".equals(period)) {
+            return endDate.minusWeeks(12);
+        } else if ("year".equals(period)) {
+            return endDate.minusYears(5);
+        }
+        return endDate.minusMonths(12);
+    }
+
+    /**
+     * Số cuộc hẹn theo từng mốc thời gian (ngày, tuần, tháng, năm), mốc trống có giá trị 0
+     */
+    public List<Map<String, Object>> getAppointmentSeries(String period, LocalDate from, LocalDate to) {
+        Map<LocalDate, Long> buckets = emptyBuckets(period, from, to);
+        for (Object[] row : dailyRollupRepository.sumByDate(SOURCE_APPOINTMENT, from, to)) {
+            buckets.merge(bucketOf(period, (LocalDate) row[0]), ((Number) row[1]).longValue(), Long::sum);
+        }
+
+        List<Map<String, Object>> result = new ArrayList<>(buckets.size());
+        buckets.forEach((date, count) -> {
+            Map<String, Object> point = new HashMap<>();
+            point.put("date", date.format(DATE_FORMATTER));
+            point.put("count", count);
+            result.add(point);
+        });
+        return result;
+    }
+
+    public Map<String, Long> getAppointmentCountsByService(LocalDate from, LocalDate to) {
+        return toCountMap(dailyRollupRepository.sumByService(SOURCE_APPOINTMENT, from, to));
+    }
+
+    public Map<String, Long> getAppointmentCountsByStatus(LocalDate from, LocalDate to) {
+        return toCountMap(dailyRollupRepository.sumByStatus(SOURCE_APPOINTMENT, from, to));
+    }
+
+    /**
+     * Doanh thu từ đặt lịch chưa hủy: số lượng theo gói nhân với giá gói hiện tại trong cài đặt
+     */
+    public Map<String, Object> getRevenue(String period, LocalDate from, LocalDate to) {
+        Map<String, Double> prices = packagePrices();
+        Map<LocalDate, Double> series = new LinkedHashMap<>();
+        emptyBuckets(period, from, to).keySet().forEach(date -> series.put(date, 0d));
+        Map<String, Double> byPackage = new LinkedHashMap<>();
+        double total = 0;
+
+        for (Object[] row : dailyRollupRepository.sumByDateAndPackage(SOURCE_BOOKING, CANCELED_STATUSES, from, to)) {
+            String packageType = (String) row[1];
+            double amount = ((Number) row[2]).longValue() * prices.getOrDefault(packageType.toLowerCase(Locale.ROOT), 0d);
+
+            series.merge(bucketOf(period, (LocalDate) row[0]), amount, Double::sum);
+            byPackage.merge(packageType.isEmpty() ? "Khác" : packageType, amount, Double::sum);
+            total += amount;
+        }
+
+        List<Map<String, Object>> timeSeries = new ArrayList<>(series.size());
+        series.forEach((date, amount) -> {
+            Map<String, Object> point = new HashMap<>();
+            point.put("date", date.format(DATE_FORMATTER));
+            point.put("amount", amount);
+            timeSeries.add(point);
+        });
+
+        List<Map<String, Object>> distribution = new ArrayList<>(byPackage.size());
+        byPackage.forEach((name, amount) -> {
+            Map<String, Object> item = new HashMap<>();
+            item.put("name", name);
+            item.put("amount", amount);
+            distribution.add(item);
+        });
+
+        Map<String, Object> revenue = new HashMap<>();
+        revenue.put("totalRevenue", total);
+        revenue.put("timeSeriesData", timeSeries);
+        revenue.put("packageDistribution", distribution);
+        return revenue;
+    }
+
+    // Booking lưu packageType là id hoặc tên gói, tra cả hai
+    private Map<String, Double> packagePrices() {
+        Map<String, Double> prices = new HashMap<>();
+        for (SettingsSnapshot.ServicePackage pkg : systemSettingService.getSnapshot().getServicePackages()) {
+            if (pkg.getName() != null) {
+                prices.put(pkg.getName().toLowerCase(Locale.ROOT), pkg.getPrice());
+            }
+            if (pkg.getId() != null) {
+                prices.put(pkg.getId().toLowerCase(Locale.ROOT), pkg.getPrice());
+            }
+        }
+        return prices;
+    }
+
+    private Map<String, Long> toCountMap(List<Object[]> rows) {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (Object[] row : rows) {
+            counts.merge((String) row[0], ((Number) row[1]).longValue(), Long::sum);
+        }
+        return counts;
+    }
+
+    private Map<LocalDate, Long> emptyBuckets(String period, LocalDate from, LocalDate to) {
+        if (to.isBefore(from)) {
+            throw new ApiException("startDate must not be after endDate", HttpStatus.BAD_REQUEST);
+        }
+        Map<LocalDate, Long> buckets = new LinkedHashMap<>();
+        for (LocalDate date = bucketOf(period, from); !date.isAfter(to); date = nextBucket(period, date)) {
+            if (buckets.size() == MAX_BUCKETS) {
+                throw new ApiException("Date range is too long for period '" + period + "', at most "
+                        + MAX_BUCKETS + " points", HttpStatus.BAD_REQUEST);
+            }
+            buckets.put(date, 0L);
+        }
+        return buckets;
+    }
+
+    private LocalDate bucketOf(String period, LocalDate date) {
+        if ("day".equals(period)) {
+            return date;
+        } else if ("week".equals(period)) {
+            return date.with(DayOfWeek.MONDAY);
+        } else if ("year".equals(period)) {
+            return date.withDayOfYear(1);
+        }
+        return date.withDayOfMonth(1);
+    }
+
+    private LocalDate nextBucket(String period, LocalDate bucket) {
+        if ("day".equals(period)) {
+            return bucket.plusDays(1);
+        } else if ("week".equals(period)) {
+            return bucket.plusWeeks(1);
+        } else if ("year".equals(period)) {
+            return bucket.plusYears(1);
+        }
+        return bucket.plusMonths(1);
+    }
+}
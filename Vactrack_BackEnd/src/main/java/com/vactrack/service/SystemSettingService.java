@@ -2,49 +2,70 @@ package com.vactrack.service;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vactrack.model.SettingsSnapshot;
 import com.vactrack.model.SystemSetting;
 import com.vactrack.repository.SystemSettingRepository;
+import com.vactrack.util.ResourceVersions;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Service
 public class SystemSettingService {
 
     private final SystemSettingRepository systemSettingRepository;
     private final ObjectMapper objectMapper;
+    private final ResourceVersions resourceVersions;
+    private final TransactionTemplate transactionTemplate;
+
+    // Ảnh chụp cài đặt hiện tại: đọc không cần truy vấn DB, thay thế nguyên khối khi cập nhật
+    private final AtomicReference<SettingsSnapshot> snapshot = new AtomicReference<>();
 
     @Autowired
-    public SystemSettingService(SystemSettingRepository systemSettingRepository, ObjectMapper objectMapper) {
+    public SystemSettingService(SystemSettingRepository systemSettingRepository, ObjectMapper objectMapper,
+                                ResourceVersions resourceVersions, PlatformTransactionManager transactionManager) {
         this.systemSettingRepository = systemSettingRepository;
         this.objectMapper = objectMapper;
+        this.resourceVersions = resourceVersions;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
     public Map<String, Object> getSettings() {
-        Map<String, Object> settings = new HashMap<>();
-
-        // Lấy cài đặt giờ làm việc
-        Map<String, Object> workingHours = getWorkingHours();
-        settings.put("workingHours", workingHours);
+        return getSnapshot().asMap();
+    }
 
-        // Lấy cài đặt thông báo
-        Map<String, Object> notifications = getNotificationSettings();
-        settings.put("notifications", notifications);
+    /**
+     * Cài đặt dạng có kiểu; nạp từ DB ở lần gọi đầu tiên
+     */
+    public SettingsSnapshot getSnapshot() {
+        SettingsSnapshot current = snapshot.get();
+        return current != null ? current : loadSnapshot();
+    }
 
-        // Lấy gói dịch vụ
-        List<Map<String, Object>> servicePackages = getServicePackages();
-        settings.put("servicePackages", servicePackages);
+    private synchronized SettingsSnapshot loadSnapshot() {
+        SettingsSnapshot current = snapshot.get();
+        if (current != null) {
+            return current;
+        }
 
-        return settings;
+        SettingsSnapshot loaded = new SettingsSnapshot(1, System.currentTimeMillis(),
+                getWorkingHours(), getNotificationSettings(), getServicePackages());
+        snapshot.set(loaded);
+        return loaded;
     }
 
     @SuppressWarnings("unchecked")
     private Map<String, Object> getWorkingHours() {
         SystemSetting setting = systemSettingRepository.findById("workingHours")
-                .orElse(createDefaultWorkingHours());
+                .orElseGet(this::createDefaultWorkingHours);
 
         try {
             return objectMapper.readValue(setting.getValue(), Map.class);
@@ -87,7 +108,7 @@ public class SystemSettingService {
     @SuppressWarnings("unchecked")
     private Map<String, Object> getNotificationSettings() {
         SystemSetting setting = systemSettingRepository.findById("notifications")
-                .orElse(createDefaultNotifications());
+                .orElseGet(this::createDefaultNotifications);
 
         try {
             return objectMapper.readValue(setting.getValue(), Map.class);
@@ -123,7 +144,7 @@ public class SystemSettingService {
     @SuppressWarnings("unchecked")
     private List<Map<String, Object>> getServicePackages() {
         SystemSetting setting = systemSettingRepository.findById("servicePackages")
-                .orElse(createDefaultServicePackages());
+                .orElseGet(this::createDefaultServicePackages);
 
         try {
             return objectMapper.readValue(setting.getValue(), List.class);
@@ -170,29 +191,65 @@ public class SystemSettingService {
         return packages;
     }
 
-    public Map<String, Object> updateSettings(Map<String, Object> updatedSettings) {
+    /**
+     * Ghi các nhóm cài đặt trong một transaction; ảnh chụp mới chỉ được công bố sau khi commit,
+     * nên lỗi giữa chừng không để ảnh chụp lệch với DB. Giữ khóa tới hết commit để các lần cập nhật nối tiếp nhau.
+     */
+    public synchronized Map<String, Object> updateSettings(Map<String, Object> updatedSettings) {
+        return transactionTemplate.execute(status -> writeSettings(updatedSettings));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> writeSettings(Map<String, Object> updatedSettings) {
+        Map<String, Object> current = getSnapshot().asMap();
+        Map<String, Object> workingHours = (Map<String, Object>) current.get("workingHours");
+        Map<String, Object> notifications = (Map<String, Object>) current.get("notifications");
+        List<Map<String, Object>> servicePackages = (List<Map<String, Object>>) current.get("servicePackages");
+
         // Cập nhật giờ làm việc
         if (updatedSettings.containsKey("workingHours")) {
-            updateWorkingHours((Map<String, Object>) updatedSettings.get("workingHours"));
+            workingHours = (Map<String, Object>) updatedSettings.get("workingHours");
+            updateWorkingHours(workingHours);
         }
 
         // Cập nhật cài đặt thông báo
         if (updatedSettings.containsKey("notifications")) {
-            updateNotifications((Map<String, Object>) updatedSettings.get("notifications"));
+            notifications = (Map<String, Object>) updatedSettings.get("notifications");
+            updateNotifications(notifications);
         }
 
         // Cập nhật gói dịch vụ
         if (updatedSettings.containsKey("servicePackages")) {
-            updateServicePackages((List<Map<String, Object>>) updatedSettings.get("servicePackages"));
+            servicePackages = (List<Map<String, Object>>) updatedSettings.get("servicePackages");
+            updateServicePackages(servicePackages);
         }
 
-        return getSettings();
+        // Dựng ảnh chụp mới từ dữ liệu vừa ghi, không đọc lại DB
+        SettingsSnapshot updated = new SettingsSnapshot(getSnapshot().getVersion() + 1, System.currentTimeMillis(),
+                workingHours, notifications, servicePackages);
+        afterCommit(() -> {
+            snapshot.set(updated);
+            resourceVersions.bump(ResourceVersions.Resource.SETTINGS);
+        });
+
+        return updated.asMap();
     }
 
-    private void updateWorkingHours(Map<String, Object> workingHours) {
-        SystemSetting setting = systemSettingRepository.findById("workingHours")
-                .orElse(new SystemSetting());
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
 
+    private void updateWorkingHours(Map<String, Object> workingHours) {
+        SystemSetting setting = new SystemSetting();
         setting.setKey("workingHours");
 
         try {
@@ -205,9 +262,7 @@ public class SystemSettingService {
     }
 
     private void updateNotifications(Map<String, Object> notifications) {
-        SystemSetting setting = systemSettingRepository.findById("notifications")
-                .orElse(new SystemSetting());
-
+        SystemSetting setting = new SystemSetting();
         setting.setKey("notifications");
 
         try {
@@ -220,9 +275,7 @@ public class SystemSettingService {
     }
 
     private void updateServicePackages(List<Map<String, Object>> servicePackages) {
-        SystemSetting setting = systemSettingRepository.findById("servicePackages")
-                .orElse(new SystemSetting());
-
+        SystemSetting setting = new SystemSetting();
         setting.setKey("servicePackages");
 
         try {
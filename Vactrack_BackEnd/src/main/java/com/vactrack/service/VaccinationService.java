@@ -1,37 +1,41 @@
 package com.vactrack.service;
 
-import com.vactrack.repository.AppointmentRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
+import java.time.YearMonth;
+import java.time.format.TextStyle;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 
 @Service
 public class VaccinationService {
 
-    private final AppointmentRepository appointmentRepository;
+    private final StatisticsService statisticsService;
 
     @Autowired
-    public VaccinationService(AppointmentRepository appointmentRepository) {
-        this.appointmentRepository = appointmentRepository;
+    public VaccinationService(StatisticsService statisticsService) {
+        this.statisticsService = statisticsService;
     }
 
     public List<Map<String, Object>> getMonthlyData() {
         List<Map<String, Object>> monthlyData = new ArrayList<>();
 
-        // Giả lập dữ liệu cho 12 tháng
-        String[] months = {"January", "February", "March", "April", "May", "June",
-                "July", "August", "September", "October", "November", "December"};
+        // 12 tháng gần nhất, tính cả tháng hiện tại
+        LocalDate endDate = LocalDate.now();
+        LocalDate startDate = YearMonth.from(endDate).minusMonths(11).atDay(1);
+
+        for (Map<String, Object> point : statisticsService.getAppointmentSeries("month", startDate, endDate)) {
+            LocalDate month = LocalDate.parse((String) point.get("date"));
 
-        for (String month : months) {
             Map<String, Object> data = new HashMap<>();
-            data.put("month", month);
-            data.put("count", (int) (Math.random() * 100)); // Random data for demonstration
+            data.put("month", month.getMonth().getDisplayName(TextStyle.FULL, Locale.ENGLISH));
+            data.put("year", month.getYear());
+            data.put("count", point.get("count"));
             monthlyData.add(data);
         }
 
@@ -39,66 +43,40 @@ public class VaccinationService {
     }
 
     public List<Map<String, Object>> getDistributionByService() {
+        return getDistributionByService(null, null);
+    }
+
+    public List<Map<String, Object>> getDistributionByService(LocalDate startDate, LocalDate endDate) {
         List<Map<String, Object>> distribution = new ArrayList<>();
 
-        // Giả lập phân phối theo loại dịch vụ
-        String[] services = {"BCG Vaccine", "Polio Vaccine", "Hepatitis B", "Measles", "MMR"};
-        int total = 100;
+        LocalDate from = startDate != null ? startDate : LocalDate.of(1900, 1, 1);
+        LocalDate to = endDate != null ? endDate : LocalDate.of(9999, 12, 31);
+        Map<String, Long> counts = statisticsService.getAppointmentCountsByService(from, to);
 
-        for (String service : services) {
-            Map<String, Object> data = new HashMap<>();
-            int percentage = (int) (Math.random() * 30) + 5; // 5% to 35%
-            data.put("service", service);
-            data.put("percentage", percentage);
-            distribution.add(data);
-            total -= percentage;
+        long total = counts.values().stream().mapToLong(Long::longValue).sum();
+        if (total == 0) {
+            return distribution;
         }
 
-        // Thêm phần còn lại nếu cần
-        if (total > 0) {
+        counts.forEach((service, count) -> {
             Map<String, Object> data = new HashMap<>();
-            data.put("service", "Others");
-            data.put("percentage", total);
+            data.put("service", service.isEmpty() ? "Others" : service);
+            data.put("count", count);
+            data.put("percentage", Math.round(count * 1000.0 / total) / 10.0);
             distribution.add(data);
-        }
+        });
 
         return distribution;
     }
 
     public List<Map<String, Object>> getTrendData(String period) {
-        List<Map<String, Object>> trendData = new ArrayList<>();
-        LocalDate startDate;
-        LocalDate endDate = LocalDate.now();
-        int increment;
-
-        // Xác định thời gian bắt đầu và cách tăng dựa trên period
-        if ("day".equals(period)) {
-            startDate = endDate.minusDays(30);
-            increment = 1;
-        } else if ("week".equals(period)) {
-            startDate = endDate.minusWeeks(12);
-            increment = 7;
-        } else if ("year".equals(period)) {
-            startDate = endDate.minusYears(5);
-            increment = 365;
-        } else { // month (default)
-            startDate = endDate.minusMonths(12);
-            increment = 30;
-        }
-
-        // Tạo dữ liệu xu hướng
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-        LocalDate current = startDate;
-
-        while (!current.isAfter(endDate)) {
-            Map<String, Object> data = new HashMap<>();
-            data.put("date", current.format(formatter));
-            data.put("count", (int) (Math.random() * 20)); // Random data
-            trendData.add(data);
+        return getTrendData(period, null, null);
+    }
 
-            current = current.plusDays(increment);
-        }
+    public List<Map<String, Object>> getTrendData(String period, LocalDate startDate, LocalDate endDate) {
+        LocalDate to = endDate != null ? endDate : LocalDate.now();
+        LocalDate from = startDate != null ? startDate : statisticsService.defaultStart(period, to);
 
-        return trendData;
+        return statisticsService.getAppointmentSeries(period, from, to);
     }
 }
@@ -0,0 +1,279 @@
+package com.vactrack.service;
+
+import com.vactrack.model.Vaccine;
+import com.vactrack.repository.VaccineRepository;
+import com.vactrack.util.TextNormalizer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * Chỉ mục nghịch đảo trong bộ nhớ cho danh mục vaccine (tên, nhà sản xuất, loại, nhóm tuổi, mô tả).
+ * Hỗ trợ khớp chính xác, khớp tiền tố và khớp gần đúng (sai 1-2 ký tự), không phân biệt dấu.
+ * Mỗi lần ghi tạo một bản chỉ mục mới rồi thay thế nguyên khối: chỉ vaccine vừa thay đổi được tách từ lại
+ * và chỉ danh sách của các từ nó có trước và sau khi đổi được chép ra sửa, các danh sách khác dùng chung với bản cũ.
+ * Ghi không đổi trường nào được chỉ mục (vd. tồn kho) thì giữ nguyên bản cũ.
+ */
+@Component
+public class VaccineSearchIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(VaccineSearchIndex.class);
+
+    private static final float NAME_WEIGHT = 5f;
+    private static final float MANUFACTURER_WEIGHT = 3f;
+    private static final float CATEGORY_WEIGHT = 2f;
+    private static final float AGE_GROUP_WEIGHT = 1f;
+    private static final float DESCRIPTION_WEIGHT = 1f;
+
+    private static final float EXACT_MATCH = 1f;
+    private static final float PREFIX_MATCH = 0.7f;
+    private static final float FUZZY_MATCH = 0.4f;
+
+    private final VaccineRepository vaccineRepository;
+
+    // null cho tới khi dựng xong lần đầu
+    private volatile Snapshot snapshot;
+
+    public VaccineSearchIndex(VaccineRepository vaccineRepository) {
+        this.vaccineRepository = vaccineRepository;
+    }
+
+    private static final class Doc {
+        final long id;
+        final String category;
+        final String sortName;
+        final Map<String, Float> terms;
+
+        Doc(Vaccine vaccine) {
+            this.id = vaccine.getId();
+            this.category = vaccine.getCategory();
+            this.sortName = TextNormalizer.fold(vaccine.getName());
+            this.terms = new HashMap<>();
+            addTerms(vaccine.getName(), NAME_WEIGHT);
+            addTerms(vaccine.getManufacturer(), MANUFACTURER_WEIGHT);
+            addTerms(vaccine.getCategory(), CATEGORY_WEIGHT);
+            addTerms(vaccine.getAgeGroup(), AGE_GROUP_WEIGHT);
+            addTerms(vaccine.getDescription(), DESCRIPTION_WEIGHT);
+        }
+
+        // Cùng từ, cùng loại, cùng tên sắp xếp: chỉ mục không có gì để đổi
+        boolean sameIndexedFields(Doc other) {
+            return terms.equals(other.terms) && Objects.equals(category, other.category)
+                    && sortName.equals(other.sortName);
+        }
+
+        private void addTerms(String text, float weight) {
+            String folded = TextNormalizer.fold(text);
+            if (folded.isEmpty()) {
+                return;
+            }
+            for (String term : folded.split(" ")) {
+                terms.merge(term, weight, Math::max);
+            }
+        }
+    }
+
+    private static final class Snapshot {
+        final Map<Long, Doc> docs;
+        // Danh sách của từng từ không bị sửa sau khi đã công bố, bản mới chép lại danh sách nào cần đổi
+        final NavigableMap<String, Map<Long, Float>> postings;
+
+        private Snapshot(Map<Long, Doc> docs, NavigableMap<String, Map<Long, Float>> postings) {
+            this.docs = docs;
+            this.postings = postings;
+        }
+
+        Snapshot(Map<Long, Doc> docs) {
+            this.docs = docs;
+            this.postings = new TreeMap<>();
+            for (Doc doc : docs.values()) {
+                doc.terms.forEach((term, weight) ->
+                        postings.computeIfAbsent(term, key -> new HashMap<>()).put(doc.id, weight));
+            }
+        }
+
+        // Bản mới với old được thay bằng added (thêm khi old null, xóa khi added null)
+        Snapshot with(long id, Doc old, Doc added) {
+            Map<Long, Doc> newDocs = new HashMap<>(docs);
+            TreeMap<String, Map<Long, Float>> newPostings = new TreeMap<>(postings);
+            if (old != null) {
+                newDocs.remove(id);
+                for (String term : old.terms.keySet()) {
+                    if (added == null || !added.terms.containsKey(term)) {
+                        Map<Long, Float> posting = new HashMap<>(newPostings.get(term));
+                        posting.remove(id);
+                        if (posting.isEmpty()) {
+                            newPostings.remove(term);
+                        } else {
+                            newPostings.put(term, posting);
+                        }
+                    }
+                }
+            }
+            if (added != null) {
+                newDocs.put(id, added);
+                added.terms.forEach((term, weight) -> {
+                    Map<Long, Float> existing = newPostings.get(term);
+                    if (existing == null || !weight.equals(existing.get(id))) {
+                        Map<Long, Float> posting = existing != null ? new HashMap<>(existing) : new HashMap<>();
+                        posting.put(id, weight);
+                        newPostings.put(term, posting);
+                    }
+                });
+            }
+            return new Snapshot(newDocs, newPostings);
+        }
+    }
+
+    public boolean isReady() {
+        return snapshot != null;
+    }
+
+    /**
+     * Id các vaccine khớp mọi từ trong chuỗi tìm kiếm, sắp theo điểm giảm dần rồi theo tên
+     */
+    public List<Long> search(String query, String category) {
+        Snapshot current = snapshot;
+        String folded = TextNormalizer.fold(query);
+        if (current == null || folded.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        Map<Long, Float> scores = null;
+        for (String token : folded.split(" ")) {
+            Map<Long, Float> tokenScores = matchToken(current, token);
+            if (scores == null) {
+                scores = tokenScores;
+            } else {
+                scores.keySet().retainAll(tokenScores.keySet());
+                for (Map.Entry<Long, Float> entry : scores.entrySet()) {
+                    entry.setValue(entry.getValue() + tokenScores.get(entry.getKey()));
+                }
+            }
+            if (scores.isEmpty()) {
+                return Collections.emptyList();
+            }
+        }
+
+        List<Doc> matches = new ArrayList<>(scores.size());
+        for (Long id : scores.keySet()) {
+            Doc doc = current.docs.get(id);
+            if (category == null || category.equals(doc.category)) {
+                matches.add(doc);
+            }
+        }
+
+        Map<Long, Float> finalScores = scores;
+        matches.sort((a, b) -> {
+            int byScore = Float.compare(finalScores.get(b.id), finalScores.get(a.id));
+            return byScore != 0 ? byScore : a.sortName.compareTo(b.sortName);
+        });
+
+        List<Long> ids = new ArrayList<>(matches.size());
+        for (Doc doc : matches) {
+            ids.add(doc.id);
+        }
+        return ids;
+    }
+
+    private Map<Long, Float> matchToken(Snapshot current, String token) {
+        Map<Long, Float> tokenScores = new HashMap<>();
+
+        Map<Long, Float> exact = current.postings.get(token);
+        if (exact != null) {
+            exact.forEach((id, weight) -> tokenScores.merge(id, weight * EXACT_MATCH, Math::max));
+        }
+
+        for (Map<Long, Float> prefixed : current.postings.subMap(token, false, token + Character.MAX_VALUE, false).values()) {
+            prefixed.forEach((id, weight) -> tokenScores.merge(id, weight * PREFIX_MATCH, Math::max));
+        }
+
+        // Chỉ thử khớp gần đúng khi không có kết quả chính xác/tiền tố và từ đủ dài để tránh nhiễu
+        if (tokenScores.isEmpty() && token.length() >= 4) {
+            int maxDistance = token.length() >= 8 ? 2 : 1;
+            for (Map.Entry<String, Map<Long, Float>> entry : current.postings.entrySet()) {
+                String term = entry.getKey();
+                if (Math.abs(term.length() - token.length()) <= maxDistance
+                        && editDistance(token, term, maxDistance) <= maxDistance) {
+                    entry.getValue().forEach((id, weight) -> tokenScores.merge(id, weight * FUZZY_MATCH, Math::max));
+                }
+            }
+        }
+
+        return tokenScores;
+    }
+
+    /**
+     * Thêm hoặc cập nhật một vaccine trong chỉ mục
+     */
+    public synchronized void put(Vaccine vaccine) {
+        Snapshot current = snapshot;
+        if (current == null || vaccine.getId() == null) {
+            return; // lần dựng đầu tiên sẽ đọc vaccine này từ DB
+        }
+        Doc old = current.docs.get(vaccine.getId());
+        Doc added = new Doc(vaccine);
+        if (old != null && old.sameIndexedFields(added)) {
+            return;
+        }
+        snapshot = current.with(vaccine.getId(), old, added);
+    }
+
+    public synchronized void remove(long vaccineId) {
+        Snapshot current = snapshot;
+        if (current == null || !current.docs.containsKey(vaccineId)) {
+            return;
+        }
+        snapshot = current.with(vaccineId, current.docs.get(vaccineId), null);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void rebuild() {
+        long start = System.currentTimeMillis();
+
+        Map<Long, Doc> docs = new HashMap<>();
+        for (Vaccine vaccine : vaccineRepository.findAll()) {
+            docs.put(vaccine.getId(), new Doc(vaccine));
+        }
+        snapshot = new Snapshot(docs);
+
+        logger.info("Indexed {} vaccines in {} ms", docs.size(), System.currentTimeMillis() - start);
+    }
+
+    // Khoảng cách Levenshtein, dừng sớm khi chắc chắn vượt maxDistance
+    private static int editDistance(String a, String b, int maxDistance) {
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = current[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin > maxDistance) {
+                return maxDistance + 1;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+}
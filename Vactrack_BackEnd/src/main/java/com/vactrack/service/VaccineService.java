@@ -1,37 +1,86 @@
 package com.vactrack.service;
 
+import com.vactrack.catalog.CatalogVaccine;
+import com.vactrack.catalog.VaccineCatalog;
+import com.vactrack.inventory.LotInventoryService;
+import com.vactrack.inventory.StockReservationService;
 import com.vactrack.model.Vaccine;
+import com.vactrack.model.VaccineLot;
 import com.vactrack.repository.VaccineRepository;
+import com.vactrack.util.ResourceVersions;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.time.LocalDate;
+import java.util.List;
 import java.util.Optional;
 
 @Service
 public class VaccineService {
 
     private final VaccineRepository vaccineRepository;
+    private final ResourceVersions resourceVersions;
+    private final VaccineSearchIndex vaccineSearchIndex;
+    private final VaccineCatalog vaccineCatalog;
+    private final StockReservationService stockReservationService;
+    private final LotInventoryService lotInventoryService;
 
     @Autowired
-    public VaccineService(VaccineRepository vaccineRepository) {
+    public VaccineService(VaccineRepository vaccineRepository, ResourceVersions resourceVersions,
+                          VaccineSearchIndex vaccineSearchIndex, VaccineCatalog vaccineCatalog,
+                          StockReservationService stockReservationService,
+                          LotInventoryService lotInventoryService) {
         this.vaccineRepository = vaccineRepository;
+        this.resourceVersions = resourceVersions;
+        this.vaccineSearchIndex = vaccineSearchIndex;
+        this.vaccineCatalog = vaccineCatalog;
+        this.stockReservationService = stockReservationService;
+        this.lotInventoryService = lotInventoryService;
     }
 
-    public Page<Vaccine> findVaccines(int page, int size, String category, String search) {
+    public Page<CatalogVaccine> findVaccines(int page, int size, String category, String search) {
+        boolean hasSearch = search != null && !search.isBlank();
+
+        // Đọc từ danh mục trong bộ nhớ; chỉ truy vấn DB khi danh mục hoặc chỉ mục chưa nạp xong
+        if (vaccineCatalog.isReady() && (!hasSearch || vaccineSearchIndex.isReady())) {
+            Pageable pageable = PageRequest.of(page, size);
+            return hasSearch
+                    ? searchVaccines(search, category, pageable)
+                    : vaccineCatalog.findPage(category, pageable);
+        }
+
         Pageable pageable = PageRequest.of(page, size, Sort.by("name").ascending());
-        return vaccineRepository.findWithFilters(category, search, pageable);
+        return vaccineRepository.findWithFilters(category, search, pageable).map(CatalogVaccine::from);
     }
 
-    public Optional<Vaccine> findById(Long id) {
-        return vaccineRepository.findById(id);
+    /**
+     * Tìm qua chỉ mục trong bộ nhớ, kết quả sắp theo độ liên quan
+     */
+    private Page<CatalogVaccine> searchVaccines(String search, String category, Pageable pageable) {
+        List<Long> ids = vaccineSearchIndex.search(search, category);
+
+        int from = (int) Math.min(pageable.getOffset(), ids.size());
+        int to = Math.min(from + pageable.getPageSize(), ids.size());
+        return new PageImpl<>(vaccineCatalog.findAllById(ids.subList(from, to)), pageable, ids.size());
+    }
+
+    public Optional<CatalogVaccine> findById(Long id) {
+        if (vaccineCatalog.isReady()) {
+            return vaccineCatalog.findById(id);
+        }
+        return vaccineRepository.findById(id).map(CatalogVaccine::from);
     }
 
     public Vaccine createVaccine(Vaccine vaccine) {
-        return vaccineRepository.save(vaccine);
+        return saveAndBump(vaccine);
     }
 
     public Vaccine updateVaccine(Long id, Vaccine vaccineDetails) {
@@ -49,26 +98,74 @@ public class VaccineService {
         vaccine.setDescription(vaccineDetails.getDescription());
         vaccine.setImageUrl(vaccineDetails.getImageUrl());
 
-        return vaccineRepository.save(vaccine);
+        return saveAndBump(vaccine);
     }
 
-    public Vaccine updateStock(Long id, int quantity, String action) {
-        Vaccine vaccine = vaccineRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Không tìm thấy vaccine với ID: " + id));
-
-        int currentStock = vaccine.getInStock();
+    /**
+     * Nhập/xuất kho. Nhập kèm số lô và hạn dùng sẽ tạo lô mới; xuất kho lấy từ các lô theo FEFO.
+     */
+    @Transactional
+    public Vaccine updateStock(Long id, int quantity, String action, String lotNumber, LocalDate expiryDate) {
+        if (quantity <= 0) {
+            throw new RuntimeException("Số lượng không hợp lệ");
+        }
 
+        // Cộng/trừ bằng một câu UPDATE có điều kiện thay vì đọc-sửa-ghi, tránh bán vượt khi ghi đồng thời
         if ("add".equals(action)) {
-            vaccine.setInStock(currentStock + quantity);
+            if (lotNumber != null || expiryDate != null) {
+                lotInventoryService.receive(id, quantity, lotNumber, expiryDate);
+            } else {
+                vaccineRepository.incrementStock(id, quantity);
+            }
         } else if ("remove".equals(action)) {
-            if (currentStock < quantity) {
+            int updated = vaccineRepository.decrementStock(id, quantity);
+            if (updated == 0 && vaccineRepository.existsById(id)) {
                 throw new RuntimeException("Số lượng tồn kho không đủ");
             }
-            vaccine.setInStock(currentStock - quantity);
+            if (updated > 0) {
+                lotInventoryService.allocate(id, quantity);
+            }
         } else {
             throw new RuntimeException("Hành động không hợp lệ");
         }
 
-        return vaccineRepository.save(vaccine);
+        Vaccine vaccine = vaccineRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("Không tìm thấy vaccine với ID: " + id));
+        publish(vaccine);
+        return vaccine;
+    }
+
+    public List<VaccineLot> findLots(Long id) {
+        return lotInventoryService.findAllocatableLots(id);
+    }
+
+    private Vaccine saveAndBump(Vaccine vaccine) {
+        Vaccine saved = vaccineRepository.save(vaccine);
+        publish(saved);
+        return saved;
+    }
+
+    // Trong transaction thì chỉ cập nhật danh mục, chỉ mục và bộ đếm sau khi commit,
+    // để rollback không để lại tồn kho chưa từng được ghi và request khác không thấy dữ liệu chưa commit.
+    // Đọc lại sau commit vì các transaction đồng thời có thể commit khác thứ tự lúc đọc bản ghi
+    private void publish(Vaccine vaccine) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            long vaccineId = vaccine.getId();
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    vaccineRepository.findById(vaccineId).ifPresent(VaccineService.this::apply);
+                }
+            });
+        } else {
+            apply(vaccine);
+        }
+    }
+
+    private void apply(Vaccine vaccine) {
+        vaccineCatalog.put(vaccine);
+        vaccineSearchIndex.put(vaccine);
+        stockReservationService.resync(vaccine.getId());
+        resourceVersions.bump(ResourceVersions.Resource.VACCINES);
     }
 }
@@ -0,0 +1,127 @@
+package com.vactrack.slot;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Lưới khung giờ của một ngày: mỗi ô là số chỗ đã dùng của một khung giờ.
+ * Giành chỗ bằng vòng CAS trên đúng ô đó, không khóa, nên nhiều request cùng khung giờ không xếp hàng chờ nhau.
+ * inFlight đếm các chỗ node này đã giành trên lưới mà chưa ghi vào slot_claims;
+ * changes tăng mỗi lần node này đổi ô, để sync biết số vừa đọc từ DB đã cũ hay chưa.
+ */
+final class DaySlots {
+
+    final LocalDate date;
+    final long settingsVersion;
+    final int openMinute;
+    final int slotMinutes;
+    final int capacity;
+    private final AtomicIntegerArray used;
+    private final AtomicIntegerArray inFlight;
+    private final AtomicIntegerArray changes;
+
+    DaySlots(LocalDate date, long settingsVersion, int openMinute, int closeMinute, int slotMinutes, int capacity) {
+        this.date = date;
+        this.settingsVersion = settingsVersion;
+        this.openMinute = openMinute;
+        this.slotMinutes = slotMinutes;
+        this.capacity = capacity;
+        this.used = new AtomicIntegerArray(Math.max(0, (closeMinute - openMinute) / slotMinutes));
+        this.inFlight = new AtomicIntegerArray(used.length());
+        this.changes = new AtomicIntegerArray(used.length());
+    }
+
+    int size() {
+        return used.length();
+    }
+
+    /**
+     * Chỉ số khung giờ chứa time, -1 nếu ngoài giờ làm việc
+     */
+    int indexOf(LocalTime time) {
+        int minute = time.getHour() * 60 + time.getMinute();
+        if (minute < openMinute) {
+            return -1;
+        }
+        int index = (minute - openMinute) / slotMinutes;
+        return index < used.length() ? index : -1;
+    }
+
+    LocalTime startOf(int index) {
+        int minute = openMinute + index * slotMinutes;
+        return LocalTime.of(minute / 60, minute % 60);
+    }
+
+    /**
+     * Giành một chỗ trên lưới; sau đó gọi recorded khi đã ghi vào slot_claims, hoặc abort nếu không ghi được
+     */
+    boolean tryClaim(int index) {
+        while (true) {
+            int current = used.get(index);
+            if (current >= capacity) {
+                return false;
+            }
+            if (used.compareAndSet(index, current, current + 1)) {
+                inFlight.incrementAndGet(index);
+                changes.incrementAndGet(index);
+                return true;
+            }
+        }
+    }
+
+    void recorded(int index) {
+        inFlight.decrementAndGet(index);
+        changes.incrementAndGet(index);
+    }
+
+    void abort(int index) {
+        inFlight.decrementAndGet(index);
+        release(index);
+    }
+
+    void release(int index) {
+        while (true) {
+            int current = used.get(index);
+            if (current <= 0) {
+                return;
+            }
+            if (used.compareAndSet(index, current, current - 1)) {
+                changes.incrementAndGet(index);
+                return;
+            }
+        }
+    }
+
+    // Dùng khi nạp từ DB: có thể vượt sức chứa nếu dữ liệu cũ đã đặt quá
+    void preload(int index, int count) {
+        used.addAndGet(index, count);
+    }
+
+    int changes(int index) {
+        return changes.get(index);
+    }
+
+    /**
+     * Hạ ô xuống theo số đã dùng đọc từ DB khi lưới của node này lệch (booking bị hủy ở node khác).
+     * seenChanges là changes(index) đọc trước khi truy vấn DB: node này đã đổi ô từ lúc đó thì số đọc được
+     * có thể đã cũ nên bỏ qua. Không bao giờ tăng ô và không hạ dưới count cộng các chỗ chưa ghi vào DB.
+     * Trả về true nếu ô còn chỗ.
+     */
+    boolean sync(int index, int count, int seenChanges) {
+        while (true) {
+            int current = used.get(index);
+            int target = count + inFlight.get(index);
+            if (changes.get(index) != seenChanges || target >= current) {
+                return current < capacity;
+            }
+            if (used.compareAndSet(index, current, target)) {
+                return target < capacity;
+            }
+        }
+    }
+
+    int remaining(int index) {
+        return Math.max(0, capacity - used.get(index));
+    }
+}
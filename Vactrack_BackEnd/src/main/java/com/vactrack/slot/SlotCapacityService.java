@@ -0,0 +1,294 @@
+package com.vactrack.slot;
+
+import com.vactrack.exception.ApiException;
+import com.vactrack.model.SettingsSnapshot;
+import com.vactrack.model.SlotClaim;
+import com.vactrack.repository.BookingRepository;
+import com.vactrack.repository.SlotClaimRepository;
+import com.vactrack.service.SystemSettingService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sức chứa theo khung giờ cho đặt lịch. Mỗi ngày được chia thành các khung slot-minutes phút
+ * trong giờ làm việc của cài đặt hệ thống, mỗi khung nhận tối đa capacity booking.
+ * Lưới của một ngày được dựng khi dùng tới, nạp số booking hiện có từ DB, rồi giữ trong bộ nhớ;
+ * đổi giờ làm việc thì lưới được dựng lại ở lần dùng tiếp theo.
+ * Lưới là cửa chặn đầu tiên trên từng node: chỗ chỉ thật sự được giành khi UPDATE có điều kiện
+ * trên dòng slot_claims của khung thành công, nên nhiều node dùng chung DB cũng không đặt quá sức chứa.
+ * UPDATE đó chạy trong transaction riêng và commit ngay, nên khóa dòng chỉ giữ trong một câu lệnh
+ * thay vì suốt transaction booking; booking rollback thì chỗ được trả lại bằng một transaction riêng khác.
+ * Khi trả chỗ, lưới được trả trước DB: trong khoảnh khắc giữa hai bước lưới có thể cho qua một yêu cầu
+ * mà DB từ chối, nhưng không bao giờ ngược lại.
+ */
+@Service
+public class SlotCapacityService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SlotCapacityService.class);
+
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("HH:mm");
+
+    private final BookingRepository bookingRepository;
+    private final SlotClaimRepository slotClaimRepository;
+    private final SystemSettingService systemSettingService;
+    private final TransactionTemplate requiresNewTemplate;
+    private final int slotMinutes;
+    private final int capacity;
+    private final int horizonDays;
+
+    private final Map<LocalDate, DaySlots> days = new ConcurrentHashMap<>();
+
+    public SlotCapacityService(BookingRepository bookingRepository,
+                               SlotClaimRepository slotClaimRepository,
+                               SystemSettingService systemSettingService,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${booking.slots.minutes:30}") int slotMinutes,
+                               @Value("${booking.slots.capacity:4}") int capacity,
+                               @Value("${booking.slots.horizon-days:90}") int horizonDays) {
+        this.bookingRepository = bookingRepository;
+        this.slotClaimRepository = slotClaimRepository;
+        this.systemSettingService = systemSettingService;
+        this.requiresNewTemplate = new TransactionTemplate(transactionManager);
+        this.requiresNewTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.slotMinutes = slotMinutes;
+        this.capacity = capacity;
+        this.horizonDays = horizonDays;
+    }
+
+    /**
+     * Giành một chỗ trong khung giờ chứa time; ném CONFLICT nếu khung đã đầy.
+     * Gọi trong transaction ghi booking thì chỗ được trả lại nếu transaction đó rollback.
+     */
+    public void claim(LocalDate date, LocalTime time) {
+        LocalDate today = LocalDate.now();
+        if (date.isBefore(today) || date.isAfter(today.plusDays(horizonDays))) {
+            throw new ApiException("Appointment date must be within the next " + horizonDays + " days",
+                    HttpStatus.BAD_REQUEST);
+        }
+
+        DaySlots slots = slots(date);
+        int index = slots.indexOf(time);
+        if (index < 0) {
+            throw new ApiException("Appointment time is outside working hours", HttpStatus.BAD_REQUEST);
+        }
+        if (!slots.tryClaim(index) && !(resync(slots, index) && slots.tryClaim(index))) {
+            throw fullyBooked(date, slots.startOf(index));
+        }
+
+        // Lưới của node này có thể đếm thiếu booking từ node khác, DB mới là nơi quyết định
+        LocalTime start = slots.startOf(index);
+        boolean claimed;
+        try {
+            claimed = claimRow(date, start, slots);
+        } catch (RuntimeException e) {
+            slots.abort(index);
+            throw e;
+        }
+        if (!claimed) {
+            slots.abort(index);
+            throw fullyBooked(date, start);
+        }
+        slots.recorded(index);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        releaseNow(slots, index);
+                        releaseRow(date, start);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Trả chỗ của một booking bị hủy, xóa hoặc đổi giờ, sau khi transaction hiện tại commit
+     */
+    public void release(LocalDate date, LocalTime time) {
+        if (date.isBefore(LocalDate.now())) {
+            return; // khung đã qua, không còn ai đặt được
+        }
+        DaySlots slots = slots(date);
+        int index = slots.indexOf(time);
+        if (index < 0) {
+            return;
+        }
+        LocalTime start = slots.startOf(index);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    releaseNow(slots, index);
+                    releaseRow(date, start);
+                }
+            });
+        } else {
+            releaseNow(slots, index);
+            releaseRow(date, start);
+        }
+    }
+
+    /**
+     * Các khung giờ còn chỗ trong khoảng ngày [from, to], trả lời hoàn toàn từ bộ nhớ sau lần dựng đầu
+     */
+    public List<Map<String, Object>> findAvailable(LocalDate from, LocalDate to) {
+        LocalDate today = LocalDate.now();
+        LocalDate start = from.isBefore(today) ? today : from;
+        LocalDate end = to.isAfter(today.plusDays(horizonDays)) ? today.plusDays(horizonDays) : to;
+
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (LocalDate date = start; !date.isAfter(end); date = date.plusDays(1)) {
+            DaySlots slots = slots(date);
+            for (int i = 0; i < slots.size(); i++) {
+                int remaining = slots.remaining(i);
+                if (remaining > 0) {
+                    Map<String, Object> slot = new LinkedHashMap<>();
+                    slot.put("date", date.format(DATE_FORMATTER));
+                    slot.put("time", slots.startOf(i).format(TIME_FORMATTER));
+                    slot.put("capacity", slots.capacity);
+                    slot.put("remaining", remaining);
+                    result.add(slot);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Bỏ lưới và các dòng slot_claims của các ngày đã qua
+     */
+    @Scheduled(cron = "0 5 0 * * *")
+    @Transactional
+    public void evictPastDays() {
+        LocalDate today = LocalDate.now();
+        days.keySet().removeIf(date -> date.isBefore(today));
+        slotClaimRepository.deleteBefore(today);
+    }
+
+    /**
+     * Giành một chỗ trên dòng slot_claims của khung, mỗi bước trong một transaction riêng ngắn.
+     * Khung chưa có dòng thì tạo dòng, bắt đầu từ số booking đã commit trong khung (dữ liệu có trước khi có bảng này).
+     */
+    private boolean claimRow(LocalDate date, LocalTime start, DaySlots slots) {
+        Boolean claimed = claimExistingRow(date, start, slots.capacity);
+        if (claimed != null) {
+            return claimed;
+        }
+
+        try {
+            requiresNewTemplate.executeWithoutResult(status -> {
+                SlotClaim row = new SlotClaim();
+                row.setSlotDate(date);
+                row.setSlotTime(start);
+                row.setUsed(countCommitted(date, start, slots));
+                slotClaimRepository.saveAndFlush(row);
+            });
+        } catch (DataIntegrityViolationException e) {
+            logger.debug("Slot claim row already created concurrently: {} {}", date, start);
+        }
+        return Boolean.TRUE.equals(claimExistingRow(date, start, slots.capacity));
+    }
+
+    // true nếu giành được, false nếu khung đầy, null nếu khung chưa có dòng
+    private Boolean claimExistingRow(LocalDate date, LocalTime start, int capacity) {
+        return requiresNewTemplate.execute(status -> {
+            if (slotClaimRepository.claim(date, start, capacity) > 0) {
+                return Boolean.TRUE;
+            }
+            return slotClaimRepository.existsBySlotDateAndSlotTime(date, start) ? Boolean.FALSE : null;
+        });
+    }
+
+    private void releaseRow(LocalDate date, LocalTime start) {
+        try {
+            requiresNewTemplate.executeWithoutResult(status -> slotClaimRepository.release(date, start));
+        } catch (RuntimeException e) {
+            // Chỉ làm khung thiếu đi một chỗ, không bao giờ đặt quá
+            logger.error("Could not release slot claim {} {}, the seat stays taken", date, start, e);
+        }
+    }
+
+    // Lưới báo đầy: đọc lại số đã dùng từ DB vì chỗ có thể đã được trả ở node khác
+    private boolean resync(DaySlots slots, int index) {
+        int seenChanges = slots.changes(index);
+        Integer used = slotClaimRepository.findUsed(slots.date, slots.startOf(index));
+        return used != null && used < slots.capacity && slots.sync(index, used, seenChanges);
+    }
+
+    private int countCommitted(LocalDate date, LocalTime start, DaySlots slots) {
+        int index = slots.indexOf(start);
+        int count = 0;
+        for (Object[] row : bookingRepository.countActiveByDateGroupByTime(date)) {
+            if (slots.indexOf((LocalTime) row[0]) == index) {
+                count += ((Number) row[1]).intValue();
+            }
+        }
+        return count;
+    }
+
+    private ApiException fullyBooked(LocalDate date, LocalTime start) {
+        return new ApiException("Time slot " + start.format(TIME_FORMATTER) + " on "
+                + date.format(DATE_FORMATTER) + " is fully booked", HttpStatus.CONFLICT);
+    }
+
+    // Ô có thể thuộc lưới cũ đã bị thay khi đổi giờ làm việc; khi đó lưới mới đã đếm lại từ DB
+    private void releaseNow(DaySlots slots, int index) {
+        if (days.get(slots.date) == slots) {
+            slots.release(index);
+        }
+    }
+
+    private DaySlots slots(LocalDate date) {
+        SettingsSnapshot settings = systemSettingService.getSnapshot();
+        DaySlots current = days.get(date);
+        if (current != null && current.settingsVersion == settings.getVersion()) {
+            return current;
+        }
+        return days.compute(date, (key, existing) ->
+                existing != null && existing.settingsVersion == settings.getVersion() ? existing : load(key, settings));
+    }
+
+    private DaySlots load(LocalDate date, SettingsSnapshot settings) {
+        SettingsSnapshot.WorkingHours hours = settings.getWorkingHours();
+        DayOfWeek day = date.getDayOfWeek();
+        int open = hours.getOpenMinute(day);
+        int close = hours.isClosed(day) ? open : hours.getCloseMinute(day);
+
+        DaySlots slots = new DaySlots(date, settings.getVersion(), open, close, slotMinutes, capacity);
+        if (slots.size() > 0) {
+            for (Object[] row : bookingRepository.countActiveByDateGroupByTime(date)) {
+                int index = slots.indexOf((LocalTime) row[0]);
+                if (index >= 0) {
+                    slots.preload(index, ((Number) row[1]).intValue());
+                }
+            }
+        }
+        logger.debug("Loaded {} slots for {}", slots.size(), date);
+        return slots;
+    }
+}
@@ -0,0 +1,87 @@
+package com.vactrack.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sinh mã booking dạng "BK" + 13 ký tự Crockford base32, không cần truy vấn DB.
+ * Giá trị 63 bit gồm: 41 bit mili giây kể từ 2024-01-01, 10 bit mã node, 12 bit số thứ tự trong cùng mili giây.
+ * Mã cùng độ dài nên thứ tự chuỗi trùng thứ tự thời gian, bản ghi mới luôn chèn vào cuối unique index.
+ * Mã node lấy từ booking.id.node nếu có, không thì thuê trong bảng node_leases để các node không trùng nhau.
+ */
+@Component
+public class BookingIdGenerator {
+
+    private static final Logger logger = LoggerFactory.getLogger(BookingIdGenerator.class);
+
+    private static final String PREFIX = "BK";
+    private static final char[] ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+    private static final int LENGTH = 13;
+
+    private static final long EPOCH = Instant.parse("2024-01-01T00:00:00Z").toEpochMilli();
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    static final int MAX_NODE = (1 << NODE_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    // >= 0 khi cấu hình cố định, -1 khi dùng mã node thuê từ DB
+    private final long fixedNode;
+    private final NodeIdLease nodeIdLease;
+
+    // (mili giây << SEQUENCE_BITS) | số thứ tự của mã cấp gần nhất
+    private final AtomicLong last = new AtomicLong();
+
+    @Autowired
+    public BookingIdGenerator(@Value("${booking.id.node:-1}") long configuredNode, NodeIdLease nodeIdLease) {
+        if (configuredNode > MAX_NODE) {
+            throw new IllegalArgumentException("booking.id.node must be between 0 and " + MAX_NODE);
+        }
+        this.fixedNode = configuredNode;
+        this.nodeIdLease = nodeIdLease;
+        if (configuredNode < 0) {
+            nodeIdLease.acquire(MAX_NODE);
+        } else {
+            logger.info("Using configured booking id node {}", configuredNode);
+        }
+    }
+
+    BookingIdGenerator(long node) {
+        this(node, null);
+    }
+
+    public String nextId() {
+        return PREFIX + encode(nextValue());
+    }
+
+    /**
+     * Giá trị số của mã kế tiếp. Hết số thứ tự trong một mili giây thì mượn mili giây kế tiếp,
+     * đồng hồ lùi thì tiếp tục từ giá trị cũ, nên không bao giờ lặp lại và không phải chờ.
+     */
+    long nextValue() {
+        long node = fixedNode >= 0 ? fixedNode : nodeIdLease.current();
+        long now = System.currentTimeMillis() - EPOCH;
+        while (true) {
+            long previous = last.get();
+            long candidate = (previous >>> SEQUENCE_BITS) < now ? now << SEQUENCE_BITS : previous + 1;
+            if (last.compareAndSet(previous, candidate)) {
+                long millis = candidate >>> SEQUENCE_BITS;
+                return (millis << (NODE_BITS + SEQUENCE_BITS)) | (node << SEQUENCE_BITS) | (candidate & SEQUENCE_MASK);
+            }
+        }
+    }
+
+    static String encode(long value) {
+        char[] chars = new char[LENGTH];
+        for (int i = LENGTH - 1; i >= 0; i--) {
+            chars[i] = ALPHABET[(int) (value & 31)];
+            value >>>= 5;
+        }
+        return new String(chars);
+    }
+}
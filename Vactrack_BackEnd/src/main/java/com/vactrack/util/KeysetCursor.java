@@ -0,0 +1,57 @@
+package com.vactrack.util;
+
+import com.vactrack.exception.ApiException;
+import org.springframework.http.HttpStatus;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Vị trí của bản ghi cuối cùng trong trang trước, theo thứ tự (ngày hẹn, giờ hẹn, id) giảm dần.
+ * Được mã hóa base64url để client chỉ cần gửi lại nguyên chuỗi.
+ */
+public final class KeysetCursor {
+
+    private final LocalDate date;
+    private final LocalTime time;
+    private final long id;
+
+    public KeysetCursor(LocalDate date, LocalTime time, long id) {
+        this.date = date;
+        this.time = time;
+        this.id = id;
+    }
+
+    public LocalDate getDate() {
+        return date;
+    }
+
+    public LocalTime getTime() {
+        return time;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String encode() {
+        String raw = date + "|" + time + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static KeysetCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|");
+            if (parts.length != 3) {
+                throw new IllegalArgumentException(raw);
+            }
+            return new KeysetCursor(LocalDate.parse(parts[0]), LocalTime.parse(parts[1]), Long.parseLong(parts[2]));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new ApiException("Cursor không hợp lệ", HttpStatus.BAD_REQUEST);
+        }
+    }
+}
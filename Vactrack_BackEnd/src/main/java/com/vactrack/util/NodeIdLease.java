@@ -0,0 +1,153 @@
+package com.vactrack.util;
+
+import com.vactrack.exception.ApiException;
+import com.vactrack.repository.NodeLeaseRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Thuê một mã node trong bảng node_leases để các instance dùng chung DB không bao giờ trùng mã node,
+ * kể cả khi chạy trên cùng máy hoặc tên máy trùng hash. Hợp đồng thuê được gia hạn định kỳ;
+ * gia hạn không được thì instance ngừng cấp mã cho tới khi thuê lại được, thay vì có thể cấp mã trùng.
+ * Các instance cần đồng bộ giờ hệ thống (NTP), độ lệch phải nhỏ hơn nhiều so với thời hạn thuê.
+ */
+@Component
+public class NodeIdLease {
+
+    private static final Logger logger = LoggerFactory.getLogger(NodeIdLease.class);
+
+    private final NodeLeaseRepository nodeLeaseRepository;
+    private final TransactionTemplate requiresNewTemplate;
+    private final long leaseMs;
+    private final String owner;
+
+    private volatile int nodeId = -1;
+    // Mốc (giờ hệ thống) mà sau đó node này không còn chắc giữ mã node
+    private volatile long validUntil;
+
+    public NodeIdLease(NodeLeaseRepository nodeLeaseRepository,
+                       PlatformTransactionManager transactionManager,
+                       @Value("${booking.id.lease-seconds:60}") long leaseSeconds) {
+        this.nodeLeaseRepository = nodeLeaseRepository;
+        this.requiresNewTemplate = new TransactionTemplate(transactionManager);
+        this.requiresNewTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.leaseMs = leaseSeconds * 1000;
+        this.owner = hostName() + "/" + UUID.randomUUID();
+    }
+
+    /**
+     * Thuê mã node nhỏ nhất còn trống (hoặc đã hết hạn) trong [0, maxNode]; ném IllegalStateException nếu hết mã
+     */
+    public synchronized int acquire(int maxNode) {
+        Set<Integer> taken = new HashSet<>(nodeLeaseRepository.findNodeIds());
+
+        for (int candidate = 0; candidate <= maxNode; candidate++) {
+            long start = System.currentTimeMillis();
+            if (taken.contains(candidate) ? takeOver(candidate) : insert(candidate)) {
+                nodeId = candidate;
+                validUntil = start + leaseMs;
+                logger.info("Leased booking id node {} as {}", candidate, owner);
+                return candidate;
+            }
+        }
+        throw new IllegalStateException("No free booking id node in node_leases, all " + (maxNode + 1) + " are leased");
+    }
+
+    /**
+     * Mã node đang giữ; ném SERVICE_UNAVAILABLE nếu hợp đồng thuê đã hết hạn mà chưa gia hạn được
+     */
+    public int current() {
+        int current = nodeId;
+        if (current < 0 || System.currentTimeMillis() >= validUntil) {
+            throw new ApiException("Booking id node lease expired, please retry shortly", HttpStatus.SERVICE_UNAVAILABLE);
+        }
+        return current;
+    }
+
+    @Scheduled(fixedDelayString = "${booking.id.lease-renew-ms:15000}", initialDelayString = "${booking.id.lease-renew-ms:15000}")
+    public synchronized void renew() {
+        if (nodeId < 0) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        try {
+            Integer renewed = requiresNewTemplate.execute(status ->
+                    nodeLeaseRepository.renew(nodeId, owner, expiry()));
+            if (renewed != null && renewed > 0) {
+                validUntil = start + leaseMs;
+                return;
+            }
+        } catch (RuntimeException e) {
+            logger.error("Could not renew booking id node {} lease", nodeId, e);
+            return; // thử lại ở lần sau, vẫn dùng được tới validUntil
+        }
+
+        // Instance khác đã lấy mã node này: ngừng cấp mã ngay rồi thuê mã khác
+        logger.error("Lost booking id node {} lease, acquiring a new node", nodeId);
+        validUntil = 0;
+        nodeId = -1;
+        try {
+            acquire(BookingIdGenerator.MAX_NODE);
+        } catch (RuntimeException e) {
+            logger.error("Could not lease a new booking id node", e);
+        }
+    }
+
+    @PreDestroy
+    public synchronized void release() {
+        if (nodeId < 0) {
+            return;
+        }
+        try {
+            requiresNewTemplate.execute(status ->
+                    nodeLeaseRepository.renew(nodeId, owner, LocalDateTime.now().minusSeconds(1)));
+        } catch (RuntimeException e) {
+            logger.warn("Could not release booking id node {} lease, it frees up when it expires", nodeId);
+        }
+        nodeId = -1;
+    }
+
+    private boolean insert(int candidate) {
+        try {
+            requiresNewTemplate.executeWithoutResult(status ->
+                    nodeLeaseRepository.insert(candidate, owner, expiry()));
+            return true;
+        } catch (DataIntegrityViolationException e) {
+            return false; // instance khác vừa thuê
+        }
+    }
+
+    private boolean takeOver(int candidate) {
+        Integer updated = requiresNewTemplate.execute(status ->
+                nodeLeaseRepository.takeOver(candidate, owner, LocalDateTime.now(), expiry()));
+        return updated != null && updated > 0;
+    }
+
+    private LocalDateTime expiry() {
+        return LocalDateTime.now().plusNanos(leaseMs * 1_000_000);
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "localhost";
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.vactrack.util;
+
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.WebRequest;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+/**
+ * Bộ đếm thay đổi cho các tài nguyên ít thay đổi, dùng để sinh ETag và Last-Modified.
+ * Mỗi lần ghi tăng phiên bản; request có If-None-Match khớp được trả 304 mà không truy vấn DB hay serialize JSON.
+ */
+@Component
+public class ResourceVersions {
+
+    public enum Resource {
+        SETTINGS, VACCINES, FEEDBACK
+    }
+
+    // Đổi sau mỗi lần khởi động để ETag cũ không trùng với bộ đếm mới bắt đầu lại từ 0
+    private final String bootNonce = Long.toString(System.currentTimeMillis(), 36);
+
+    private final AtomicLongArray versions = new AtomicLongArray(Resource.values().length);
+    private final AtomicLongArray lastModified = new AtomicLongArray(Resource.values().length);
+
+    public ResourceVersions() {
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < lastModified.length(); i++) {
+            lastModified.set(i, now);
+        }
+    }
+
+    /**
+     * Đánh dấu tài nguyên vừa thay đổi, gọi sau khi ghi DB thành công
+     */
+    public void bump(Resource resource) {
+        versions.incrementAndGet(resource.ordinal());
+        lastModified.accumulateAndGet(resource.ordinal(), System.currentTimeMillis(), Math::max);
+    }
+
+    public String etag(Resource resource) {
+        return "W/\"" + resource.name().toLowerCase() + "-" + bootNonce + "-"
+                + versions.get(resource.ordinal()) + "\"";
+    }
+
+    public long lastModified(Resource resource) {
+        return lastModified.get(resource.ordinal());
+    }
+
+    /**
+     * Trả 304 nếu client đã có phiên bản hiện tại, ngược lại mới tính body và gắn ETag/Last-Modified
+     */
+    public <T> ResponseEntity<T> conditional(WebRequest request, Resource resource,
+                                             CacheControl cacheControl, Supplier<T> body) {
+        String etag = etag(resource);
+        long modified = lastModified(resource);
+
+        if (request.checkNotModified(etag, modified)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(etag)
+                    .lastModified(modified)
+                    .cacheControl(cacheControl)
+                    .build();
+        }
+
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .lastModified(modified)
+                .cacheControl(cacheControl)
+                .body(body.get());
+    }
+}
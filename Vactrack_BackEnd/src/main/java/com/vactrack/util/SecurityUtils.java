@@ -1,61 +1,35 @@
 package com.vactrack.util;
 
 import com.vactrack.exception.ApiException;
-import com.vactrack.security.JwtTokenProvider;
-import org.springframework.beans.factory.annotation.Autowired;
+import com.vactrack.security.JwtPrincipal;
 import org.springframework.http.HttpStatus;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
-import org.springframework.web.context.request.RequestContextHolder;
-import org.springframework.web.context.request.ServletRequestAttributes;
-
-import jakarta.servlet.http.HttpServletRequest;
 
 @Component
 public class SecurityUtils {
 
-    private final JwtTokenProvider jwtTokenProvider;
-
-    @Autowired
-    public SecurityUtils(JwtTokenProvider jwtTokenProvider) {
-        this.jwtTokenProvider = jwtTokenProvider;
-    }
-
     /**
-     * Lấy ID của User hiện tại từ token
+     * Lấy ID của User hiện tại từ principal đã được JwtAuthenticationFilter xác thực
      */
-    public Long getCurrentUserId() {
-        String token = extractTokenFromRequest();
-        if (token == null) {
-            throw new ApiException("No authentication token found", HttpStatus.UNAUTHORIZED);
-        }
-
-        try {
-            String userIdString = jwtTokenProvider.extractUserId(token);
-            if (userIdString == null) {
-                throw new ApiException("Invalid authentication token", HttpStatus.UNAUTHORIZED);
-            }
-
-            return Long.parseLong(userIdString);
-        } catch (NumberFormatException e) {
-            throw new ApiException("Invalid user ID in token", HttpStatus.UNAUTHORIZED);
-        }
+    public long getCurrentUserId() {
+        return getCurrentPrincipal().getUserId();
     }
 
     /**
-     * Trích xuất token từ request hiện tại
+     * Lấy principal của request hiện tại, không parse lại token
      */
-    private String extractTokenFromRequest() {
-        ServletRequestAttributes attributes = (ServletRequestAttributes) RequestContextHolder.getRequestAttributes();
-        if (attributes == null) {
-            throw new ApiException("No request context found", HttpStatus.INTERNAL_SERVER_ERROR);
+    public JwtPrincipal getCurrentPrincipal() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null) {
+            throw new ApiException("No authentication token found", HttpStatus.UNAUTHORIZED);
         }
 
-        HttpServletRequest request = attributes.getRequest();
-        String authHeader = request.getHeader("Authorization");
-
-        if (authHeader != null && authHeader.startsWith("Bearer ")) {
-            return authHeader.substring(7);
+        if (!(authentication.getPrincipal() instanceof JwtPrincipal)) {
+            throw new ApiException("Invalid authentication token", HttpStatus.UNAUTHORIZED);
         }
-        return null;
+
+        return (JwtPrincipal) authentication.getPrincipal();
     }
 }
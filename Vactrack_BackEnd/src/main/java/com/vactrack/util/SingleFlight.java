@@ -0,0 +1,103 @@
+package com.vactrack.util;
+
+import com.vactrack.exception.ApiException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Gộp các request giống hệt nhau đang chạy đồng thời: request đầu tiên (leader) tính kết quả,
+ * các request đến sau cùng khóa chờ và dùng chung kết quả (hoặc lỗi) đó.
+ * Không lưu kết quả sau khi tính xong, request đến sau khi leader kết thúc sẽ tính lại.
+ * Thời gian chờ có giới hạn: quá hạn thì request tự tính, không phụ thuộc leader nữa.
+ */
+@Component
+public class SingleFlight {
+
+    private static final Logger logger = LoggerFactory.getLogger(SingleFlight.class);
+
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final long maxWaitMs;
+
+    private final Map<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    public SingleFlight(MeterRegistry meterRegistry,
+                        @Value("${singleflight.enabled:true}") boolean enabled,
+                        @Value("${singleflight.max-wait-ms:20000}") long maxWaitMs) {
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.maxWaitMs = maxWaitMs;
+        Gauge.builder("singleflight.inflight", inFlight, Map::size).register(meterRegistry);
+    }
+
+    /**
+     * Chạy work một lần cho mỗi (group, key) đang chạy. key phải đã chuẩn hóa:
+     * hai request chỉ được gộp khi kết quả của chúng chắc chắn giống nhau.
+     * Kết quả được dùng chung giữa các thread nên không được sửa sau khi trả về.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String group, String key, Supplier<T> work) {
+        if (!enabled) {
+            return work.get();
+        }
+
+        String flightKey = group + '\u0000' + key;
+        CompletableFuture<Object> flight = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(flightKey, flight);
+
+        if (existing == null) {
+            count(group, "leader");
+            try {
+                T result = work.get();
+                flight.complete(result);
+                return result;
+            } catch (RuntimeException | Error e) {
+                flight.completeExceptionally(e);
+                throw e;
+            } finally {
+                inFlight.remove(flightKey, flight);
+            }
+        }
+
+        try {
+            Object result = existing.get(maxWaitMs, TimeUnit.MILLISECONDS);
+            count(group, "coalesced");
+            return (T) result;
+        } catch (TimeoutException e) {
+            count(group, "timeout");
+            logger.warn("Gave up waiting {} ms for in-flight {} request, computing it separately", maxWaitMs, group);
+            return work.get();
+        } catch (ExecutionException e) {
+            count(group, "coalesced");
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ApiException("Interrupted while waiting for in-flight " + group + " request",
+                    HttpStatus.SERVICE_UNAVAILABLE);
+        }
+    }
+
+    private void count(String group, String result) {
+        meterRegistry.counter("singleflight.calls", "group", group, "result", result).increment();
+    }
+}
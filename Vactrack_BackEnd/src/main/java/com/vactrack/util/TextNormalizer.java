@@ -0,0 +1,54 @@
+package com.vactrack.util;
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Chuẩn hóa chuỗi để tìm kiếm: chữ thường, bỏ dấu tiếng Việt (kể cả đ → d),
+ * ký tự không phải chữ/số được gộp thành một khoảng trắng.
+ */
+public final class TextNormalizer {
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+
+    private TextNormalizer() {
+    }
+
+    public static String fold(String text) {
+        if (text == null || text.isEmpty()) {
+            return "";
+        }
+
+        String lower = text.toLowerCase(Locale.ROOT);
+        if (!isAscii(lower)) {
+            lower = COMBINING_MARKS.matcher(Normalizer.normalize(lower, Normalizer.Form.NFD)).replaceAll("");
+            lower = lower.replace('đ', 'd');
+        }
+
+        StringBuilder folded = new StringBuilder(lower.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < lower.length(); i++) {
+            char c = lower.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                if (pendingSpace && folded.length() > 0) {
+                    folded.append(' ');
+                }
+                folded.append(c);
+                pendingSpace = false;
+            } else {
+                pendingSpace = true;
+            }
+        }
+        return folded.toString();
+    }
+
+    private static boolean isAscii(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) >= 128) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,75 @@
+package com.vactrack.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+/**
+ * Hashed timer wheel đơn giản để hết hạn phần tử mà không phải quét toàn bộ dữ liệu.
+ * Mỗi lần advance chỉ xử lý các ô (bucket) đã đến hạn, chi phí tỉ lệ với số phần tử hết hạn.
+ * An toàn khi schedule từ nhiều thread; advance chỉ nên được gọi từ một thread.
+ */
+public class TimerWheel<T> {
+
+    private final List<Queue<Timeout<T>>> buckets;
+    private final long tickMillis;
+    private volatile long lastTick;
+
+    public TimerWheel(int bucketCount, long tickMillis) {
+        if (bucketCount <= 0 || tickMillis <= 0) {
+            throw new IllegalArgumentException("bucketCount and tickMillis must be positive");
+        }
+        this.buckets = new ArrayList<>(bucketCount);
+        for (int i = 0; i < bucketCount; i++) {
+            buckets.add(new ConcurrentLinkedQueue<>());
+        }
+        this.tickMillis = tickMillis;
+        this.lastTick = System.currentTimeMillis() / tickMillis;
+    }
+
+    /**
+     * Đăng ký phần tử hết hạn tại thời điểm deadline (epoch millis)
+     */
+    public void schedule(T item, long deadline) {
+        long tick = Math.max(deadline / tickMillis, lastTick + 1);
+        buckets.get((int) (tick % buckets.size())).add(new Timeout<>(item, deadline));
+    }
+
+    /**
+     * Xử lý các ô từ lần advance trước đến thời điểm now.
+     * Phần tử có deadline xa hơn một vòng quay được đưa lại vào wheel.
+     */
+    public void advance(long now, Consumer<T> onExpire) {
+        long currentTick = now / tickMillis;
+        long from = Math.max(lastTick + 1, currentTick - buckets.size() + 1);
+
+        for (long tick = from; tick <= currentTick; tick++) {
+            Queue<Timeout<T>> bucket = buckets.get((int) (tick % buckets.size()));
+            int pending = bucket.size();
+            for (int i = 0; i < pending; i++) {
+                Timeout<T> timeout = bucket.poll();
+                if (timeout == null) {
+                    break;
+                }
+                if (timeout.deadline <= now) {
+                    onExpire.accept(timeout.item);
+                } else {
+                    bucket.add(timeout);
+                }
+            }
+        }
+        lastTick = currentTick;
+    }
+
+    private static final class Timeout<T> {
+        private final T item;
+        private final long deadline;
+
+        private Timeout(T item, long deadline) {
+            this.item = item;
+            this.deadline = deadline;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.vactrack.catalog;
+
+import com.vactrack.model.Vaccine;
+import com.vactrack.repository.VaccineRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class VaccineCatalogTest {
+
+    private static final String[] NAMES = {"alpha", "Beta", "gamma", "Delta", "beta", "omega"};
+    private static final String[] CATEGORIES = {"child", "adult", null};
+
+    // Trạng thái "trong DB" để so danh mục cập nhật từng mục với một lần nạp lại toàn bộ
+    private final Map<Long, Vaccine> rows = new LinkedHashMap<>();
+    private VaccineRepository vaccineRepository;
+    private VaccineCatalog catalog;
+
+    @BeforeEach
+    void setUp() {
+        vaccineRepository = mock(VaccineRepository.class);
+        when(vaccineRepository.findAll()).thenAnswer(invocation -> new ArrayList<>(rows.values()));
+        catalog = new VaccineCatalog(vaccineRepository);
+        for (long id = 1; id <= 20; id++) {
+            rows.put(id, vaccine(id, NAMES[(int) (id % NAMES.length)], CATEGORIES[(int) (id % CATEGORIES.length)], 10));
+        }
+        catalog.reload();
+    }
+
+    @Test
+    void singleWritesMatchFullReload() {
+        Random random = new Random(42);
+        for (int i = 0; i < 500; i++) {
+            long id = 1 + random.nextInt(25);
+            if (random.nextInt(5) == 0) {
+                rows.remove(id);
+                catalog.remove(id);
+            } else {
+                // Phần lớn lần ghi chỉ đổi tồn kho, một số đổi tên hoặc loại
+                Vaccine current = rows.get(id);
+                String name = current != null && random.nextBoolean() ? current.getName() : NAMES[random.nextInt(NAMES.length)];
+                String category = current != null && random.nextBoolean() ? current.getCategory() : CATEGORIES[random.nextInt(CATEGORIES.length)];
+                Vaccine vaccine = vaccine(id, name, category, random.nextInt(100));
+                rows.put(id, vaccine);
+                catalog.put(vaccine);
+            }
+        }
+
+        VaccineCatalog reloaded = new VaccineCatalog(vaccineRepository);
+        reloaded.reload();
+
+        assertThat(ids(catalog, null)).containsExactlyElementsOf(ids(reloaded, null));
+        for (String category : CATEGORIES) {
+            if (category != null) {
+                assertThat(ids(catalog, category)).containsExactlyElementsOf(ids(reloaded, category));
+            }
+        }
+        for (long id = 1; id <= 25; id++) {
+            assertThat(catalog.findById(id).map(CatalogVaccine::getInStock))
+                    .isEqualTo(reloaded.findById(id).map(CatalogVaccine::getInStock));
+        }
+    }
+
+    @Test
+    void stockChangeKeepsPositionAndReplacesEntry() {
+        List<Long> before = ids(catalog, "child");
+        Vaccine changed = vaccine(before.get(0), rows.get(before.get(0)).getName(), "child", 99);
+        catalog.put(changed);
+
+        assertThat(ids(catalog, "child")).containsExactlyElementsOf(before);
+        assertThat(catalog.findPage("child", PageRequest.of(0, 1)).getContent().get(0).getInStock()).isEqualTo(99);
+    }
+
+    private static List<Long> ids(VaccineCatalog catalog, String category) {
+        List<Long> ids = new ArrayList<>();
+        catalog.findPage(category, PageRequest.of(0, 100)).forEach(vaccine -> ids.add(vaccine.getId()));
+        return ids;
+    }
+
+    private static Vaccine vaccine(long id, String name, String category, int inStock) {
+        Vaccine vaccine = new Vaccine();
+        vaccine.setId(id);
+        vaccine.setName(name);
+        vaccine.setCategory(category);
+        vaccine.setInStock(inStock);
+        return vaccine;
+    }
+}
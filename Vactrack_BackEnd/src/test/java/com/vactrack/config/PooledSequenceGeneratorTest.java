@@ -0,0 +1,86 @@
+package com.vactrack.config;
+
+import com.vactrack.model.Contact;
+import com.vactrack.repository.ContactRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@Import({HibernateConfig.class, SequenceAligner.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class PooledSequenceGeneratorTest {
+
+    @Autowired
+    private ContactRepository contactRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void idsComeFromTheSequenceInBlocks() {
+        long before = sequenceValue();
+
+        List<Contact> contacts = new ArrayList<>();
+        for (int i = 0; i < 120; i++) {
+            contacts.add(contact(i));
+        }
+        List<Long> ids = contactRepository.saveAll(contacts).stream().map(Contact::getId).toList();
+
+        assertThat(ids).doesNotHaveDuplicates().doesNotContainNull();
+        // 120 id chỉ cần vài lần lấy khối 50 từ sequence (cộng lần lấy đầu tiên của pooled), không phải 120 lần
+        assertThat(sequenceValue() - before).isLessThanOrEqualTo(4L * PooledSequenceGenerator.DEFAULT_ALLOCATION_SIZE);
+    }
+
+    @Test
+    void alignerMovesSequencePastExistingIds() {
+        // Dòng cũ có id do IDENTITY cấp, lớn hơn giá trị hiện tại của sequence
+        jdbcTemplate.update("INSERT INTO contacts (id, name, email, subject, message, created_at, status) "
+                + "VALUES (100000, 'old', 'old@example.com', 's', 'm', CURRENT_TIMESTAMP, 'new')");
+
+        SequenceAligner aligner = new SequenceAligner(dataSource, entityManagerFactory,
+                PooledSequenceGenerator.DEFAULT_ALLOCATION_SIZE);
+        aligner.afterSingletonsInstantiated();
+
+        // Pooled coi giá trị lấy được là cận trên của khối: khối kế tiếp bắt đầu sau id cũ
+        long required = 100000L + PooledSequenceGenerator.DEFAULT_ALLOCATION_SIZE;
+        assertThat(sequenceValue()).isEqualTo(required);
+
+        // Đã đủ cao thì chạy lại không đổi gì
+        aligner.afterSingletonsInstantiated();
+        assertThat(sequenceValue()).isEqualTo(required);
+        Long next = jdbcTemplate.queryForObject("SELECT NEXT VALUE FOR contacts_seq", Long.class);
+        assertThat(next - PooledSequenceGenerator.DEFAULT_ALLOCATION_SIZE + 1).isGreaterThan(100000L);
+    }
+
+    private long sequenceValue() {
+        return jdbcTemplate.queryForObject(
+                "SELECT BASE_VALUE FROM INFORMATION_SCHEMA.SEQUENCES WHERE UPPER(SEQUENCE_NAME) = 'CONTACTS_SEQ'", Long.class);
+    }
+
+    private static Contact contact(int i) {
+        Contact contact = new Contact();
+        contact.setName("Contact " + i);
+        contact.setEmail("contact" + i + "@example.com");
+        contact.setSubject("Subject");
+        contact.setMessage("Message");
+        return contact;
+    }
+}
@@ -0,0 +1,106 @@
+package com.vactrack.config;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Kiểm tra kế hoạch truy vấn (EXPLAIN của H2) của các truy vấn nóng sau khi migration đã chạy:
+ * mỗi truy vấn phải dùng đúng index, không quét toàn bảng.
+ */
+@DataJpaTest
+@Import({SchemaMigrationRunner.class, HibernateConfig.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class SchemaMigrationRunnerTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void bookingsByUserUseUserIndex() {
+        assertPlanUses("SELECT * FROM bookings WHERE user_id = 1", "IDX_BOOKINGS_USER_ID");
+    }
+
+    @Test
+    void slotCountsUseDateTimeIndex() {
+        assertPlanUses("SELECT appointment_time, COUNT(*) FROM bookings WHERE appointment_date = DATE '2026-01-05' "
+                + "AND (status IS NULL OR LOWER(status) NOT IN ('canceled', 'cancelled')) "
+                + "GROUP BY appointment_time", "IDX_BOOKINGS_DATE_TIME");
+    }
+
+    @Test
+    void childrenByUserUseUserIndex() {
+        assertPlanUses("SELECT * FROM children WHERE user_id = 1", "IDX_CHILDREN_USER_ID");
+    }
+
+    @Test
+    void appointmentFiltersUseStatusDateIndex() {
+        assertPlanUses("SELECT * FROM appointments WHERE status = 'pending' "
+                + "AND appointment_date BETWEEN DATE '2026-01-01' AND DATE '2026-01-31'", "IDX_APPOINTMENTS_STATUS_DATE");
+    }
+
+    @Test
+    void publicFeedbackUsesPublishedRatingIndex() {
+        assertPlanUses("SELECT * FROM feedback WHERE published = TRUE AND rating >= 4 "
+                + "ORDER BY created_at DESC LIMIT 10", "IDX_FEEDBACK_PUBLISHED_RATING_CREATED");
+    }
+
+    @Test
+    void contactsByStatusUseStatusIndex() {
+        assertPlanUses("SELECT * FROM contacts WHERE status = 'new' ORDER BY created_at DESC LIMIT 10",
+                "IDX_CONTACTS_STATUS_CREATED");
+    }
+
+    @Test
+    void allMigrationsAreRecordedOnce() {
+        List<Integer> versions = jdbcTemplate.queryForList("SELECT version FROM schema_version ORDER BY version", Integer.class);
+        assertThat(versions).containsExactly(1, 2, 3, 4, 5, 6, 7);
+
+        // Chạy lại (vd. node thứ hai khởi động) không tạo gì thêm và không lỗi
+        new SchemaMigrationRunner(dataSource, entityManagerFactory).afterSingletonsInstantiated();
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM schema_version", Integer.class)).isEqualTo(7);
+    }
+
+    @Test
+    void existingIndexOnSameColumnsIsReused() {
+        jdbcTemplate.execute("DROP INDEX idx_contacts_status_created");
+        jdbcTemplate.execute("CREATE INDEX idx_contacts_existing ON contacts (status, created_at)");
+        jdbcTemplate.update("DELETE FROM schema_version WHERE version = 7");
+        try {
+            new SchemaMigrationRunner(dataSource, entityManagerFactory).afterSingletonsInstantiated();
+
+            assertThat(indexNames("CONTACTS")).contains("IDX_CONTACTS_EXISTING").doesNotContain("IDX_CONTACTS_STATUS_CREATED");
+            assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM schema_version WHERE version = 7", Integer.class))
+                    .isEqualTo(1);
+        } finally {
+            jdbcTemplate.execute("DROP INDEX IF EXISTS idx_contacts_existing");
+            jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_contacts_status_created ON contacts (status, created_at)");
+        }
+    }
+
+    private void assertPlanUses(String sql, String index) {
+        String plan = jdbcTemplate.queryForObject("EXPLAIN " + sql, String.class);
+        assertThat(plan).as(plan).containsIgnoringCase(index).doesNotContainIgnoringCase("tableScan");
+    }
+
+    private List<String> indexNames(String table) {
+        return jdbcTemplate.queryForList("SELECT index_name FROM information_schema.indexes WHERE table_name = ?",
+                String.class, table);
+    }
+}
@@ -0,0 +1,199 @@
+package com.vactrack.config;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.JRE;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.Banner;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.http.HttpMessageConvertersAutoConfiguration;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.embedded.EmbeddedWebServerFactoryCustomizerAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.DispatcherServletAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.ServletWebServerFactoryAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.WebMvcAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tải nhỏ trên Tomcat thật với upstream chậm giả lập (500 ms mỗi lời gọi), gọi qua RestTemplate/HttpClient
+ * của WebConfig như ChatService. Pool chỉ 8 worker thread để thấy rõ: chế độ thread thường bị các request chờ
+ * upstream chiếm hết, request nhanh phải xếp hàng; chế độ virtual thread (JDK 21+) không bị giới hạn đó.
+ */
+class VirtualThreadLoadTest {
+
+    private static final int WORKERS = 8;
+    private static final int SLOW_REQUESTS = 48;
+    private static final long UPSTREAM_DELAY_MS = 500;
+    private static final long POOL_BOUND_MS = SLOW_REQUESTS / WORKERS * UPSTREAM_DELAY_MS;
+
+    private HttpServer upstream;
+    private ExecutorService upstreamExecutor;
+    private ConfigurableApplicationContext context;
+    private final HttpClient client = HttpClient.newBuilder().executor(Executors.newCachedThreadPool()).build();
+
+    @RestController
+    static class LoadController {
+
+        private final RestTemplate restTemplate;
+        private final String upstreamUrl;
+
+        LoadController(RestTemplate restTemplate, @Value("${test.upstream-url}") String upstreamUrl) {
+            this.restTemplate = restTemplate;
+            this.upstreamUrl = upstreamUrl;
+        }
+
+        @GetMapping("/slow")
+        String slow() {
+            return restTemplate.getForObject(upstreamUrl, String.class);
+        }
+
+        @GetMapping("/fast")
+        String fast() {
+            return "ok";
+        }
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    @ImportAutoConfiguration({ServletWebServerFactoryAutoConfiguration.class,
+            EmbeddedWebServerFactoryCustomizerAutoConfiguration.class, DispatcherServletAutoConfiguration.class,
+            WebMvcAutoConfiguration.class, HttpMessageConvertersAutoConfiguration.class,
+            TaskExecutionAutoConfiguration.class})
+    @Import({WebConfig.class, LoadController.class})
+    static class LoadApp {
+    }
+
+    @BeforeEach
+    void setUp() throws IOException {
+        upstreamExecutor = Executors.newCachedThreadPool();
+        upstream = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        upstream.setExecutor(upstreamExecutor);
+        upstream.createContext("/answer", this::answerSlowly);
+        upstream.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (context != null) {
+            context.close();
+        }
+        upstream.stop(0);
+        upstreamExecutor.shutdownNow();
+    }
+
+    @Test
+    void platformThreadsQueueBehindSlowUpstream() throws Exception {
+        int port = start(false);
+
+        long start = System.nanoTime();
+        List<CompletableFuture<HttpResponse<String>>> slow = fire(port, "/slow", SLOW_REQUESTS);
+        Thread.sleep(50);
+        long fastMs = timeFastRequest(port);
+        CompletableFuture.allOf(slow.toArray(new CompletableFuture[0])).get(30, TimeUnit.SECONDS);
+        long totalMs = elapsedMs(start);
+
+        assertThat(slow).allSatisfy(response -> assertThat(response.get().body()).isEqualTo("answer"));
+        // 48 lời gọi / 8 worker = 6 lượt chờ upstream: thông lượng bị chặn ở WORKERS / UPSTREAM_DELAY_MS
+        assertThat(totalMs).isGreaterThanOrEqualTo(POOL_BOUND_MS);
+        // Request không gọi upstream vẫn phải chờ một worker rảnh
+        assertThat(fastMs).isGreaterThanOrEqualTo(UPSTREAM_DELAY_MS / 2);
+    }
+
+    @Test
+    @EnabledForJreRange(min = JRE.JAVA_21)
+    void virtualThreadsKeepServingWhileUpstreamIsSlow() throws Exception {
+        int port = start(true);
+
+        long start = System.nanoTime();
+        List<CompletableFuture<HttpResponse<String>>> slow = fire(port, "/slow", SLOW_REQUESTS);
+        Thread.sleep(50);
+        long fastMs = timeFastRequest(port);
+        CompletableFuture.allOf(slow.toArray(new CompletableFuture[0])).get(30, TimeUnit.SECONDS);
+        long totalMs = elapsedMs(start);
+
+        assertThat(slow).allSatisfy(response -> assertThat(response.get().body()).isEqualTo("answer"));
+        // Mọi lời gọi chờ upstream cùng lúc: chưa bằng nửa giới hạn của pool dù máy test chỉ có một CPU
+        assertThat(totalMs).isLessThan(POOL_BOUND_MS / 2);
+        assertThat(fastMs).isLessThan(UPSTREAM_DELAY_MS);
+    }
+
+    // Tham số dòng lệnh để đè lên application.properties của ứng dụng
+    private int start(boolean virtualThreads) {
+        context = new SpringApplicationBuilder(LoadApp.class)
+                .bannerMode(Banner.Mode.OFF)
+                .run("--server.port=0",
+                        "--server.tomcat.threads.max=" + WORKERS,
+                        "--server.tomcat.threads.min-spare=" + WORKERS,
+                        "--spring.task.execution.pool.max-size=" + WORKERS,
+                        "--spring.threads.virtual.enabled=" + virtualThreads,
+                        "--test.upstream-url=http://127.0.0.1:" + upstream.getAddress().getPort() + "/answer");
+        int port = ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+
+        // Khởi tạo DispatcherServlet, kết nối và JIT trước khi đo
+        CompletableFuture.allOf(fire(port, "/slow", WORKERS).toArray(new CompletableFuture[0])).join();
+        return port;
+    }
+
+    private List<CompletableFuture<HttpResponse<String>>> fire(int port, String path, int count) {
+        List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            responses.add(client.sendAsync(request(port, path), HttpResponse.BodyHandlers.ofString()));
+        }
+        return responses;
+    }
+
+    private long timeFastRequest(int port) throws Exception {
+        long start = System.nanoTime();
+        HttpResponse<String> response = client.send(request(port, "/fast"), HttpResponse.BodyHandlers.ofString());
+        assertThat(response.body()).isEqualTo("ok");
+        return elapsedMs(start);
+    }
+
+    private static HttpRequest request(int port, String path) {
+        return HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + port + path)).build();
+    }
+
+    private static long elapsedMs(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    private void answerSlowly(HttpExchange exchange) throws IOException {
+        try {
+            Thread.sleep(UPSTREAM_DELAY_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        byte[] body = "answer".getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
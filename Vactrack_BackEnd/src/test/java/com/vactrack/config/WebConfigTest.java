@@ -0,0 +1,59 @@
+package com.vactrack.config;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.JRE;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.net.http.HttpClient;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WebConfigTest {
+
+    private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+            .withConfiguration(AutoConfigurations.of(TaskExecutionAutoConfiguration.class))
+            .withUserConfiguration(WebConfig.class)
+            .withPropertyValues("spring.task.execution.pool.max-size=64",
+                    "spring.task.execution.pool.queue-capacity=500");
+
+    @Test
+    void httpClientUsesBoundedTaskPoolByDefault() {
+        contextRunner.withPropertyValues("spring.threads.virtual.enabled=false").run(context -> {
+            Executor executor = context.getBean("applicationTaskExecutor", Executor.class);
+            assertThat(executor).isInstanceOf(ThreadPoolTaskExecutor.class);
+            assertThat(((ThreadPoolTaskExecutor) executor).getMaxPoolSize()).isEqualTo(64);
+            assertThat(((ThreadPoolTaskExecutor) executor).getQueueCapacity()).isEqualTo(500);
+            assertThat(context.getBean(HttpClient.class).executor()).containsSame(executor);
+        });
+    }
+
+    @Test
+    @EnabledForJreRange(min = JRE.JAVA_21)
+    void httpClientRunsOnVirtualThreadsWhenEnabled() {
+        contextRunner.withPropertyValues("spring.threads.virtual.enabled=true").run(context -> {
+            Executor executor = context.getBean("applicationTaskExecutor", Executor.class);
+            assertThat(executor).isInstanceOf(SimpleAsyncTaskExecutor.class);
+            assertThat(context.getBean(HttpClient.class).executor()).containsSame(executor);
+
+            CompletableFuture<String> threadName = new CompletableFuture<>();
+            ((SimpleAsyncTaskExecutor) executor).execute(() -> threadName.complete(Thread.currentThread().toString()));
+            assertThat(threadName.get()).contains("VirtualThread");
+        });
+    }
+
+    @Test
+    @EnabledForJreRange(max = JRE.JAVA_20)
+    void virtualModeFallsBackToPoolBeforeJdk21() {
+        contextRunner.withPropertyValues("spring.threads.virtual.enabled=true").run(context -> {
+            assertThat(context).hasNotFailed();
+            assertThat(context.getBean("applicationTaskExecutor")).isInstanceOf(ThreadPoolTaskExecutor.class);
+        });
+    }
+}
@@ -0,0 +1,165 @@
+package com.vactrack.inventory;
+
+import com.vactrack.repository.VaccineLotRepository;
+import com.vactrack.repository.VaccineRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class LotInventoryServiceTest {
+
+    private static final long VACCINE_ID = 1L;
+    private static final long LOT_A = 11L;
+    private static final long LOT_B = 12L;
+    private static final long LOT_C = 13L;
+
+    // Bảng vaccine_lots giả: số liều theo lô, trừ theo đúng điều kiện quantity >= :quantity của câu UPDATE
+    private final Map<Long, AtomicInteger> quantities = new LinkedHashMap<>();
+    private final Map<Long, LocalDate> expiries = new LinkedHashMap<>();
+    private VaccineLotRepository vaccineLotRepository;
+    private VaccineRepository vaccineRepository;
+    private LotInventoryService service;
+
+    @BeforeEach
+    void setUp() {
+        LocalDate today = LocalDate.now();
+        addLot(LOT_A, today.plusDays(10), 30);
+        addLot(LOT_B, today.plusDays(20), 30);
+        addLot(LOT_C, today.plusDays(30), 40);
+
+        vaccineLotRepository = mock(VaccineLotRepository.class);
+        when(vaccineLotRepository.findAllocatableRows(eq(VACCINE_ID), any())).thenAnswer(invocation -> {
+            List<Object[]> rows = new ArrayList<>();
+            quantities.forEach((id, quantity) -> {
+                if (quantity.get() > 0) {
+                    rows.add(new Object[]{id, "LOT-" + id, expiries.get(id), quantity.get()});
+                }
+            });
+            return rows;
+        });
+        when(vaccineLotRepository.consume(anyLong(), anyInt())).thenAnswer(invocation -> {
+            AtomicInteger quantity = quantities.get(invocation.<Long>getArgument(0));
+            int requested = invocation.getArgument(1);
+            int current;
+            do {
+                current = quantity.get();
+                if (current < requested) {
+                    return 0;
+                }
+            } while (!quantity.compareAndSet(current, current - requested));
+            return 1;
+        });
+        when(vaccineLotRepository.findActiveQuantity(anyLong())).thenAnswer(invocation -> {
+            int quantity = quantities.get(invocation.<Long>getArgument(0)).get();
+            return quantity > 0 ? quantity : null;
+        });
+
+        vaccineRepository = mock(VaccineRepository.class);
+        service = new LotInventoryService(vaccineLotRepository, vaccineRepository);
+    }
+
+    @Test
+    void concurrentAllocationsWithRollbacksKeepMemoryInStepWithLots() throws Exception {
+        AtomicInteger tasks = new AtomicInteger();
+        AtomicInteger committed = new AtomicInteger();
+
+        StripedStockCounterTest.runConcurrently(300, 32, () -> {
+            boolean commit = tasks.incrementAndGet() % 3 != 0;
+            List<LotInventoryService.Allocation> allocations = allocate(2, commit);
+            if (commit) {
+                allocations.forEach(allocation -> committed.addAndGet(allocation.getQuantity()));
+            }
+        });
+
+        assertThat(committed.get() + totalInLots()).isEqualTo(100);
+        // Bộ nhớ không bao giờ cấp quá số liều thật nên không có xung đột phải đọc lại
+        verify(vaccineLotRepository, never()).findActiveQuantity(anyLong());
+
+        // Phần còn lại trong bộ nhớ khớp đúng DB: lấy hết được, không thiếu không dư
+        int left = totalInLots();
+        assertThat(allocate(left + 5, true).stream().mapToInt(LotInventoryService.Allocation::getQuantity).sum())
+                .isEqualTo(left);
+        assertThat(totalInLots()).isZero();
+        assertThat(allocate(1, true)).isEmpty();
+    }
+
+    @Test
+    void lotTakenByAnotherNodeIsReadAloneAndAllocationContinues() {
+        allocate(1, true);
+        // Node khác trừ lô A trong DB, bản trong bộ nhớ ở node này chưa biết
+        quantities.get(LOT_A).addAndGet(-28);
+
+        List<LotInventoryService.Allocation> allocations = allocate(3, true);
+
+        assertThat(allocations).extracting(LotInventoryService.Allocation::getLotId).containsExactly(LOT_A, LOT_B);
+        assertThat(allocations).extracting(LotInventoryService.Allocation::getQuantity).containsExactly(1, 2);
+        assertThat(quantities.get(LOT_A)).hasValue(0);
+        assertThat(quantities.get(LOT_B)).hasValue(28);
+        verify(vaccineLotRepository, times(1)).findAllocatableRows(eq(VACCINE_ID), any());
+        verify(vaccineLotRepository).findActiveQuantity(LOT_A);
+        verify(vaccineLotRepository, never()).findActiveQuantity(LOT_B);
+    }
+
+    @Test
+    void expiryIsRecalculatedOnlyWhenALotRunsOut() {
+        allocate(10, true);
+        allocate(19, true);
+        verify(vaccineRepository, never()).updateExpiryDate(anyLong(), any());
+
+        allocate(1, true);
+        verify(vaccineRepository, times(1)).updateExpiryDate(anyLong(), any());
+    }
+
+    @Test
+    void rolledBackAllocationReturnsDosesToTheSameLot() {
+        assertThat(allocate(30, false)).extracting(LotInventoryService.Allocation::getLotId).containsExactly(LOT_A);
+
+        assertThat(allocate(30, true)).extracting(LotInventoryService.Allocation::getLotId).containsExactly(LOT_A);
+        assertThat(quantities.get(LOT_A)).hasValue(0);
+        assertThat(quantities.get(LOT_B)).hasValue(30);
+    }
+
+    // Một lần cấp phát trong transaction giả; rollback trả số liều về bảng trước khi chạy afterCompletion như DB thật
+    private List<LotInventoryService.Allocation> allocate(int quantity, boolean commit) {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            List<LotInventoryService.Allocation> allocations = service.allocate(VACCINE_ID, quantity);
+            if (!commit) {
+                allocations.forEach(allocation -> quantities.get(allocation.getLotId()).addAndGet(allocation.getQuantity()));
+            }
+            int status = commit ? TransactionSynchronization.STATUS_COMMITTED : TransactionSynchronization.STATUS_ROLLED_BACK;
+            TransactionSynchronizationManager.getSynchronizations().forEach(sync -> sync.afterCompletion(status));
+            return allocations;
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    private int totalInLots() {
+        return quantities.values().stream().mapToInt(AtomicInteger::get).sum();
+    }
+
+    private void addLot(long id, LocalDate expiryDate, int quantity) {
+        quantities.put(id, new AtomicInteger(quantity));
+        expiries.put(id, expiryDate);
+    }
+}
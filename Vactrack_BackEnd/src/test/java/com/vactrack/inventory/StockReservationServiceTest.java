@@ -0,0 +1,167 @@
+package com.vactrack.inventory;
+
+import com.vactrack.catalog.VaccineCatalog;
+import com.vactrack.exception.ApiException;
+import com.vactrack.repository.VaccineRepository;
+import com.vactrack.util.ResourceVersions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class StockReservationServiceTest {
+
+    private static final long VACCINE_ID = 1L;
+    private static final int STOCK = 50;
+
+    // Tồn kho "trong DB", trừ theo đúng điều kiện in_stock >= quantity của câu UPDATE
+    private final AtomicInteger inStock = new AtomicInteger(STOCK);
+    private VaccineRepository vaccineRepository;
+    private VaccineCatalog vaccineCatalog;
+    private ResourceVersions resourceVersions;
+    private StockReservationService service;
+
+    @BeforeEach
+    void setUp() {
+        vaccineRepository = mock(VaccineRepository.class);
+        when(vaccineRepository.findStockById(VACCINE_ID)).thenAnswer(invocation -> inStock.get());
+        when(vaccineRepository.findById(anyLong())).thenReturn(Optional.empty());
+        when(vaccineRepository.decrementStock(eq(VACCINE_ID), anyInt())).thenAnswer(invocation -> {
+            int quantity = invocation.getArgument(1);
+            int current;
+            do {
+                current = inStock.get();
+                if (current < quantity) {
+                    return 0;
+                }
+            } while (!inStock.compareAndSet(current, current - quantity));
+            return 1;
+        });
+
+        vaccineCatalog = mock(VaccineCatalog.class);
+        resourceVersions = mock(ResourceVersions.class);
+        service = new StockReservationService(vaccineRepository, mock(LotInventoryService.class),
+                vaccineCatalog, resourceVersions, 900, 8);
+    }
+
+    @Test
+    void concurrentBookingsNeverOversell() throws Exception {
+        AtomicInteger bookingIds = new AtomicInteger();
+        AtomicInteger reserved = new AtomicInteger();
+        AtomicInteger confirmed = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+
+        StripedStockCounterTest.runConcurrently(500, 64, () -> {
+            String bookingId = "B" + bookingIds.incrementAndGet();
+            try {
+                service.reserve(bookingId, VACCINE_ID, 1);
+                reserved.incrementAndGet();
+                service.confirm(bookingId, VACCINE_ID, 1);
+                confirmed.incrementAndGet();
+            } catch (ApiException e) {
+                assertThat(e.getStatus()).isEqualTo(HttpStatus.CONFLICT);
+                rejected.incrementAndGet();
+            }
+        });
+
+        assertThat(confirmed).hasValue(STOCK);
+        assertThat(reserved).hasValue(STOCK);
+        assertThat(rejected).hasValue(500 - STOCK);
+        assertThat(inStock).hasValue(0);
+        assertThat(service.available(VACCINE_ID)).isZero();
+    }
+
+    @Test
+    void releasedReservationCanBeBookedAgain() {
+        for (int i = 0; i < STOCK; i++) {
+            service.reserve("B" + i, VACCINE_ID, 1);
+        }
+        assertThatThrownBy(() -> service.reserve("late", VACCINE_ID, 1)).isInstanceOf(ApiException.class);
+
+        service.release("B0");
+        service.reserve("late", VACCINE_ID, 1);
+
+        assertThat(service.available(VACCINE_ID)).isZero();
+        assertThat(inStock).hasValue(STOCK);
+    }
+
+    @Test
+    void confirmWithoutReservationStillRespectsStock() {
+        inStock.set(1);
+
+        service.confirm("B1", VACCINE_ID, 1);
+
+        assertThatThrownBy(() -> service.confirm("B2", VACCINE_ID, 1))
+                .isInstanceOf(ApiException.class)
+                .hasMessageContaining("out of stock");
+        assertThat(inStock).hasValue(0);
+    }
+
+    @Test
+    void rolledBackConfirmReturnsDoseToCounter() {
+        service.reserve("B1", VACCINE_ID, 1);
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            service.confirm("B1", VACCINE_ID, 1);
+            // DB rollback trả lại liều đã trừ
+            inStock.incrementAndGet();
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertThat(service.available(VACCINE_ID)).isEqualTo(STOCK);
+        service.resync(VACCINE_ID);
+        assertThat(service.available(VACCINE_ID)).isEqualTo(STOCK);
+    }
+
+    @Test
+    void committedBookingOnlyUpdatesCatalogueStock() {
+        service.reserve("B1", VACCINE_ID, 2);
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            service.confirm("B1", VACCINE_ID, 2);
+            verify(vaccineCatalog, never()).updateStock(anyLong(), any());
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        // Không đọc lại cả vaccine, không dựng lại danh mục, không làm mất ETag của client
+        verify(vaccineCatalog).updateStock(VACCINE_ID, STOCK - 2);
+        verify(vaccineCatalog, never()).put(any());
+        verify(vaccineRepository, never()).findById(anyLong());
+        verifyNoInteractions(resourceVersions);
+    }
+
+    @Test
+    void stockRemovedOutsideReservationsIsCaughtByConditionalUpdate() {
+        service.reserve("B1", VACCINE_ID, 1);
+        // Xuất kho thủ công trong DB mà bộ đếm chưa biết
+        inStock.set(0);
+
+        assertThatThrownBy(() -> service.confirm("B1", VACCINE_ID, 1)).isInstanceOf(ApiException.class);
+        assertThat(inStock).hasValue(0);
+        assertThat(service.available(VACCINE_ID)).isZero();
+    }
+}
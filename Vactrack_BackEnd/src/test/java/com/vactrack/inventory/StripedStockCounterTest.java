@@ -0,0 +1,92 @@
+package com.vactrack.inventory;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StripedStockCounterTest {
+
+    @Test
+    void neverGrantsMoreThanStockUnderContention() throws Exception {
+        StripedStockCounter counter = new StripedStockCounter(8, 100);
+        AtomicInteger granted = new AtomicInteger();
+
+        runConcurrently(500, 64, () -> {
+            if (counter.tryAcquire(1)) {
+                granted.incrementAndGet();
+            }
+        });
+
+        assertThat(granted).hasValue(100);
+        assertThat(counter.available()).isZero();
+    }
+
+    @Test
+    void acquiresAcrossCellsWhenStockIsFragmented() {
+        // 10 liều chia cho 8 ô: không ô nào đủ 5 nên phải gom qua nhiều ô
+        StripedStockCounter counter = new StripedStockCounter(8, 10);
+
+        assertThat(counter.tryAcquire(5)).isTrue();
+        assertThat(counter.tryAcquire(5)).isTrue();
+        assertThat(counter.tryAcquire(1)).isFalse();
+        assertThat(counter.available()).isZero();
+    }
+
+    @Test
+    void failedMultiCellAcquireGivesBackPartialTake() {
+        StripedStockCounter counter = new StripedStockCounter(4, 3);
+
+        assertThat(counter.tryAcquire(4)).isFalse();
+        assertThat(counter.available()).isEqualTo(3);
+    }
+
+    @Test
+    void mixedQuantitiesAndReleasesKeepTotalConsistent() throws Exception {
+        StripedStockCounter counter = new StripedStockCounter(8, 1000);
+        AtomicInteger held = new AtomicInteger();
+
+        runConcurrently(2000, 32, () -> {
+            int quantity = 1 + (int) (Thread.currentThread().getId() % 3);
+            if (counter.tryAcquire(quantity)) {
+                held.addAndGet(quantity);
+                if (quantity == 2) {
+                    counter.release(quantity);
+                    held.addAndGet(-quantity);
+                }
+            }
+        });
+
+        assertThat(held.get()).isLessThanOrEqualTo(1000);
+        assertThat(counter.available() + held.get()).isEqualTo(1000);
+    }
+
+    static void runConcurrently(int tasks, int threads, Runnable task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>(tasks);
+            for (int i = 0; i < tasks; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    task.run();
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
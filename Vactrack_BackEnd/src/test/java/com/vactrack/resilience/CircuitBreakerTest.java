@@ -0,0 +1,141 @@
+package com.vactrack.resilience;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CircuitBreakerTest {
+
+    private static final long OPEN_MS = 1000;
+
+    private final CircuitBreaker breaker = new CircuitBreaker("test", 3, OPEN_MS, 2);
+
+    @Test
+    void opensAfterConsecutiveFailures() {
+        fail(0);
+        fail(0);
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.CLOSED);
+
+        fail(0);
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(breaker.tryAcquire(OPEN_MS - 1)).isEqualTo(CircuitBreaker.REJECTED);
+    }
+
+    @Test
+    void successResetsFailureCount() {
+        fail(0);
+        fail(0);
+        breaker.onSuccess(breaker.tryAcquire(0));
+        fail(0);
+        fail(0);
+
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void halfOpenLimitsProbesAndClosesAfterSuccesses() {
+        openAt(0);
+
+        long first = breaker.tryAcquire(OPEN_MS);
+        long second = breaker.tryAcquire(OPEN_MS);
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        assertThat(first).isNotEqualTo(CircuitBreaker.REJECTED);
+        assertThat(second).isNotEqualTo(CircuitBreaker.REJECTED);
+        assertThat(breaker.tryAcquire(OPEN_MS)).isEqualTo(CircuitBreaker.REJECTED);
+
+        breaker.onSuccess(first);
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        breaker.onSuccess(second);
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void failedProbeReopens() {
+        openAt(0);
+
+        breaker.onFailure(breaker.tryAcquire(OPEN_MS), OPEN_MS);
+
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(breaker.tryAcquire(OPEN_MS + 1)).isEqualTo(CircuitBreaker.REJECTED);
+        assertThat(breaker.tryAcquire(2 * OPEN_MS)).isNotEqualTo(CircuitBreaker.REJECTED);
+    }
+
+    @Test
+    void ignoredProbeFreesItsSlot() {
+        openAt(0);
+        long first = breaker.tryAcquire(OPEN_MS);
+        breaker.tryAcquire(OPEN_MS);
+
+        breaker.onIgnored(first);
+
+        assertThat(breaker.tryAcquire(OPEN_MS)).isNotEqualTo(CircuitBreaker.REJECTED);
+    }
+
+    @Test
+    void staleResultsFromPreviousStateAreIgnored() {
+        long beforeOpen = breaker.tryAcquire(0);
+        openAt(0);
+
+        breaker.onSuccess(beforeOpen);
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.OPEN);
+
+        long probe = breaker.tryAcquire(OPEN_MS);
+        breaker.onFailure(beforeOpen, OPEN_MS);
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        breaker.onSuccess(probe);
+    }
+
+    @Test
+    void dependencyRejectsWhileOpenAndCountsOnlyServiceFailures() {
+        Dependency dependency = new Dependency("test", 10, 0, 2, 60000, 1, new SimpleMeterRegistry());
+        AtomicInteger calls = new AtomicInteger();
+
+        // Lỗi do request (isFailure = false) không làm mở cầu dao
+        for (int i = 0; i < 3; i++) {
+            assertThatThrownBy(() -> dependency.call(() -> {
+                calls.incrementAndGet();
+                throw new IllegalArgumentException("bad request");
+            }, e -> !(e instanceof IllegalArgumentException))).isInstanceOf(IllegalArgumentException.class);
+        }
+        assertThat(dependency.tryAcquire()).isNotNull().satisfies(Dependency.Permit::release);
+
+        for (int i = 0; i < 2; i++) {
+            assertThatThrownBy(() -> dependency.call(() -> {
+                calls.incrementAndGet();
+                throw new IllegalStateException("timeout");
+            })).isInstanceOf(IllegalStateException.class);
+        }
+
+        // Cầu dao mở: từ chối ngay, không gọi dịch vụ
+        assertThatThrownBy(() -> dependency.call(calls::incrementAndGet))
+                .hasMessageContaining("temporarily unavailable");
+        assertThat(calls).hasValue(5);
+    }
+
+    @Test
+    void bulkheadRejectsWhenFull() {
+        Dependency dependency = new Dependency("test", 1, 0, 5, 60000, 1, new SimpleMeterRegistry());
+
+        Dependency.Permit held = dependency.tryAcquire();
+        assertThat(held).isNotNull();
+        assertThat(dependency.tryAcquire()).isNull();
+
+        held.success();
+        assertThat(dependency.tryAcquire()).isNotNull();
+    }
+
+    private void fail(long now) {
+        breaker.onFailure(breaker.tryAcquire(now), now);
+    }
+
+    private void openAt(long now) {
+        for (int i = 0; i < 3; i++) {
+            fail(now);
+        }
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+}
@@ -0,0 +1,59 @@
+package com.vactrack.security;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InMemoryOtpStoreTest {
+
+    private static final String EMAIL = "user@example.com";
+
+    private final InMemoryOtpStore store = new InMemoryOtpStore(300, 3, 3, 900);
+
+    @Test
+    void expiredOtpIsRemovedByWheelTick() {
+        store.store(EMAIL, 123456);
+        long now = System.currentTimeMillis();
+
+        store.expire(now + 10_000);
+        assertThat(store.size()).isEqualTo(1);
+
+        store.expire(now + 301_000);
+        assertThat(store.size()).isZero();
+        assertThat(store.verify(EMAIL, 123456)).isEqualTo(OtpStore.VerifyResult.NOT_FOUND);
+    }
+
+    @Test
+    void reissuedOtpKeepsItsOwnExpiry() throws InterruptedException {
+        store.store(EMAIL, 111111);
+        long first = System.currentTimeMillis();
+        Thread.sleep(1100);
+        store.store(EMAIL, 222222);
+
+        // Lịch hết hạn của OTP cũ không được xóa OTP mới đã thay thế nó
+        store.expire(first + 300_500);
+        assertThat(store.verify(EMAIL, 222222)).isEqualTo(OtpStore.VerifyResult.VALID);
+    }
+
+    @Test
+    void rateLimitResetsWhenWindowExpires() {
+        for (int i = 0; i < 3; i++) {
+            assertThat(store.tryAcquireIssue(EMAIL)).isTrue();
+        }
+        assertThat(store.tryAcquireIssue(" USER@example.com ")).isFalse();
+
+        // Cửa sổ đã bị tick xóa: email được cấp lại từ đầu
+        store.expire(System.currentTimeMillis() + 901_000);
+        assertThat(store.tryAcquireIssue(EMAIL)).isTrue();
+    }
+
+    @Test
+    void tooManyWrongAttemptsInvalidatesOtp() {
+        store.store(EMAIL, 123456);
+        for (int i = 0; i < 3; i++) {
+            assertThat(store.verify(EMAIL, 654321)).isEqualTo(OtpStore.VerifyResult.INVALID);
+        }
+        assertThat(store.verify(EMAIL, 123456)).isEqualTo(OtpStore.VerifyResult.TOO_MANY_ATTEMPTS);
+        assertThat(store.verify(EMAIL, 123456)).isEqualTo(OtpStore.VerifyResult.NOT_FOUND);
+    }
+}
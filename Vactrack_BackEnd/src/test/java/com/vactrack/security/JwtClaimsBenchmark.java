@@ -0,0 +1,119 @@
+package com.vactrack.security;
+
+import com.auth0.jwt.interfaces.DecodedJWT;
+import com.vactrack.model.User;
+import com.vactrack.repository.UserRepository;
+import com.vactrack.util.SecurityUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * Chi phí xử lý token cho một request đã xác thực, trước và sau khi có JwtPrincipal.
+ * Trước: filter verify token, sau đó mỗi lần service gọi SecurityUtils lại decode token để lấy userId.
+ * Sau: filter verify và đọc claims một lần, SecurityUtils đọc principal trong SecurityContext.
+ * Mỗi request giả định gọi SecurityUtils hai lần (BookingService và ChildService).
+ * "cached" là request có token đã nằm trong VerifiedTokenCache nên filter không verify lại.
+ *
+ * Chạy: java -cp <test classpath> com.vactrack.security.JwtClaimsBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtClaimsBenchmark {
+
+    private static final int USER_ID_LOOKUPS = 2;
+
+    private JwtTokenProvider provider;
+    private SecurityUtils securityUtils;
+    private String token;
+    private JwtPrincipal principal;
+
+    @Setup
+    public void setUp() {
+        provider = new JwtTokenProvider("benchmarkSecretKeyForJwtClaimsBenchmark", mock(UserRepository.class));
+        ReflectionTestUtils.setField(provider, "jwtExpiration", 3_600_000L);
+        securityUtils = new SecurityUtils();
+
+        User user = new User();
+        user.setId(42L);
+        user.setEmail("user42@example.com");
+        user.setRole("USER");
+        token = provider.generateTokenFromUser(user);
+        principal = provider.verifyClaims(token);
+
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities()));
+    }
+
+    @TearDown
+    public void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Benchmark
+    public void beforeFirstRequest(Blackhole blackhole) {
+        DecodedJWT jwt = provider.verify(token);
+        blackhole.consume(jwt.getSubject());
+        blackhole.consume(jwt.getClaim("role").asString());
+        blackhole.consume(Long.parseLong(jwt.getClaim("userId").asString()));
+        legacyUserIdLookups(blackhole);
+    }
+
+    @Benchmark
+    public void afterFirstRequest(Blackhole blackhole) {
+        blackhole.consume(provider.verifyClaims(token));
+        principalUserIdLookups(blackhole);
+    }
+
+    @Benchmark
+    public void beforeCachedRequest(Blackhole blackhole) {
+        legacyUserIdLookups(blackhole);
+    }
+
+    @Benchmark
+    public void afterCachedRequest(Blackhole blackhole) {
+        principalUserIdLookups(blackhole);
+    }
+
+    // SecurityUtils cũ: decode lại token ở mỗi lần gọi
+    private void legacyUserIdLookups(Blackhole blackhole) {
+        for (int i = 0; i < USER_ID_LOOKUPS; i++) {
+            blackhole.consume(Long.parseLong(provider.extractUserId(token)));
+        }
+    }
+
+    private void principalUserIdLookups(Blackhole blackhole) {
+        for (int i = 0; i < USER_ID_LOOKUPS; i++) {
+            blackhole.consume(securityUtils.getCurrentUserId());
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(JwtClaimsBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
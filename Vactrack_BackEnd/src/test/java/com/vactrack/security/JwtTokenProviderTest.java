@@ -0,0 +1,96 @@
+package com.vactrack.security;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.vactrack.model.User;
+import com.vactrack.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class JwtTokenProviderTest {
+
+    private static final String SECRET = "testSecretKeyForJwtTokenProviderTest";
+
+    private JwtTokenProvider provider;
+
+    @BeforeEach
+    void setUp() {
+        provider = new JwtTokenProvider(SECRET, mock(UserRepository.class));
+        ReflectionTestUtils.setField(provider, "jwtExpiration", 60_000L);
+    }
+
+    @Test
+    void verifyClaimsReadsAllClaimsFromOneDecode() {
+        long before = System.currentTimeMillis();
+        JwtPrincipal principal = provider.verifyClaims(provider.generateTokenFromUser(user(42L, "ADMIN", 3)));
+
+        assertThat(principal).isNotNull();
+        assertThat(principal.getUserId()).isEqualTo(42L);
+        assertThat(principal.getEmail()).isEqualTo("user42@example.com");
+        assertThat(principal.getName()).isEqualTo("user42@example.com");
+        assertThat(principal.getRole()).isEqualTo("ADMIN");
+        assertThat(principal.getTokenVersion()).isEqualTo(3);
+        assertThat(principal.getAuthorities()).extracting(Object::toString).containsExactly("ADMIN");
+        assertThat(principal.getExpiresAt()).isBetween(before + 59_000, System.currentTimeMillis() + 60_000);
+        assertThat(principal.isExpired(System.currentTimeMillis())).isFalse();
+    }
+
+    @Test
+    void rejectsTokenSignedWithAnotherKey() {
+        String token = JWT.create()
+                .withSubject("user1@example.com")
+                .withClaim("userId", "1")
+                .withExpiresAt(new Date(System.currentTimeMillis() + 60_000))
+                .sign(Algorithm.HMAC256("anotherSecretKeyThatIsNotOurs"));
+
+        assertThat(provider.verifyClaims(token)).isNull();
+        assertThat(provider.verifyClaims("not-a-token")).isNull();
+    }
+
+    @Test
+    void rejectsExpiredToken() {
+        ReflectionTestUtils.setField(provider, "jwtExpiration", -1_000L);
+
+        assertThat(provider.verifyClaims(provider.generateTokenFromUser(user(1L, "USER", 0)))).isNull();
+    }
+
+    @Test
+    void rejectsMissingOrMalformedUserId() {
+        assertThat(provider.verifyClaims(sign(null))).isNull();
+        assertThat(provider.verifyClaims(sign("abc"))).isNull();
+    }
+
+    @Test
+    void tokenWithoutVersionClaimIsVersionZero() {
+        JwtPrincipal principal = provider.verifyClaims(sign("7"));
+
+        assertThat(principal).isNotNull();
+        assertThat(principal.getTokenVersion()).isZero();
+        assertThat(principal.getRole()).isNull();
+        assertThat(principal.getAuthorities()).isEmpty();
+    }
+
+    // Token cũ: không có claim "ver" và "role"
+    private static String sign(String userId) {
+        return JWT.create()
+                .withSubject("user@example.com")
+                .withClaim("userId", userId)
+                .withExpiresAt(new Date(System.currentTimeMillis() + 60_000))
+                .sign(Algorithm.HMAC256(SECRET));
+    }
+
+    private static User user(Long id, String role, int tokenVersion) {
+        User user = new User();
+        user.setId(id);
+        user.setEmail("user" + id + "@example.com");
+        user.setRole(role);
+        user.setTokenVersion(tokenVersion);
+        return user;
+    }
+}
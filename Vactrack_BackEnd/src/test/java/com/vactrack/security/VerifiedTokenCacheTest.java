@@ -0,0 +1,101 @@
+package com.vactrack.security;
+
+import com.vactrack.model.User;
+import com.vactrack.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class VerifiedTokenCacheTest {
+
+    private static final long HOUR = 3_600_000L;
+
+    @Test
+    void fullCacheDropsLeastRecentlyUsedToken() {
+        // Một ngăn để thứ tự bỏ token xác định được
+        VerifiedTokenCache cache = new VerifiedTokenCache(1);
+        VerifiedTokenCache small = new VerifiedTokenCache(3);
+
+        cache.put("t1", principal("a@example.com", HOUR));
+        cache.put("t2", principal("b@example.com", HOUR));
+        assertThat(cache.get("t1")).isNull();
+        assertThat(cache.get("t2")).isNotNull();
+
+        for (int i = 0; i < 1000; i++) {
+            small.put("token-" + i, principal("user" + i + "@example.com", HOUR));
+        }
+        assertThat(small.size()).isLessThanOrEqualTo(3);
+        assertThat(small.get("token-999")).isNotNull();
+    }
+
+    @Test
+    void recentlyReadTokenSurvivesEviction() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(16 * 2);
+        // Điền đầy mọi ngăn, giữ lại token đầu tiên bằng cách đọc nó liên tục
+        cache.put("hot", principal("hot@example.com", HOUR));
+        for (int i = 0; i < 10_000; i++) {
+            cache.put("cold-" + i, principal("cold@example.com", HOUR));
+            assertThat(cache.get("hot")).isNotNull();
+        }
+        assertThat(cache.size()).isLessThanOrEqualTo(32);
+    }
+
+    @Test
+    void expiredTokenIsNotReturned() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(100);
+        cache.put("old", principal("a@example.com", -1));
+
+        assertThat(cache.get("old")).isNull();
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    void invalidateUserRemovesOnlyThatUsersTokens() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(1000);
+        for (int i = 0; i < 50; i++) {
+            cache.put("a-" + i, principal("A@Example.com", HOUR));
+            cache.put("b-" + i, principal("b@example.com", HOUR));
+        }
+
+        cache.invalidateUser("a@example.com");
+
+        assertThat(cache.size()).isEqualTo(50);
+        assertThat(cache.get("a-7")).isNull();
+        assertThat(cache.get("b-7")).isNotNull();
+    }
+
+    @Test
+    void roleChangeRevokesCachedTokensAfterCommit() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(100);
+        UserRepository userRepository = mock(UserRepository.class);
+        TokenVersionRegistry tokenVersions = mock(TokenVersionRegistry.class);
+        TokenRevocationService revocation = new TokenRevocationService(userRepository, tokenVersions, cache);
+        cache.put("t1", principal("a@example.com", HOUR));
+
+        User user = new User();
+        user.setId(7L);
+        user.setEmail("a@example.com");
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            revocation.onRoleChange(user);
+            verify(userRepository).incrementTokenVersion(7L);
+            // Chưa commit thì token vẫn còn trong cache
+            assertThat(cache.get("t1")).isNotNull();
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertThat(cache.get("t1")).isNull();
+        verify(tokenVersions).evict(7L);
+    }
+
+    private static JwtPrincipal principal(String email, long ttlMillis) {
+        return new JwtPrincipal(1L, email, "USER", System.currentTimeMillis() + ttlMillis, 0);
+    }
+}
@@ -0,0 +1,146 @@
+package com.vactrack.service;
+
+import com.vactrack.model.Appointment;
+import com.vactrack.repository.AppointmentRepository;
+import com.vactrack.util.KeysetCursor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tìm theo tên qua PatientNameIndex trên H2: phân trang keyset và tổng số của trang offset
+ * phải giống hệt đường LIKE cũ (tên ASCII chữ thường để LIKE và chỉ mục cùng ngữ nghĩa).
+ */
+@DataJpaTest
+@Import({AppointmentService.class, PatientNameIndex.class, AppointmentStatusCounters.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class AppointmentSearchTest {
+
+    private static final String[] FAMILY = {"nguyen", "tran", "le", "pham", "hoang"};
+    private static final String[] GIVEN = {"van an", "thi binh", "minh chau", "van nam", "thu ha"};
+    private static final String[] STATUSES = {"pending", "completed", "canceled"};
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+
+    @Autowired
+    private AppointmentService appointmentService;
+
+    @Autowired
+    private PatientNameIndex patientNameIndex;
+
+    @Autowired
+    private AppointmentStatusCounters statusCounters;
+
+    @MockBean
+    private StatisticsService statisticsService;
+
+    private AppointmentService likeService;
+    private List<Appointment> seeded;
+
+    @BeforeEach
+    void setUp() {
+        appointmentRepository.deleteAll();
+
+        // Nhiều cuộc hẹn trùng ngày giờ để thứ tự phải dựa vào id
+        Random random = new Random(7);
+        List<Appointment> appointments = new ArrayList<>();
+        for (int i = 0; i < 240; i++) {
+            Appointment appointment = new Appointment();
+            appointment.setPatientName(FAMILY[random.nextInt(FAMILY.length)] + " " + GIVEN[random.nextInt(GIVEN.length)]);
+            appointment.setAppointmentDate(LocalDate.of(2026, 5, 1 + random.nextInt(6)));
+            appointment.setAppointmentTime(LocalTime.of(8 + random.nextInt(3), 0));
+            appointment.setStatus(STATUSES[random.nextInt(STATUSES.length)]);
+            appointments.add(appointment);
+        }
+        seeded = appointmentRepository.saveAll(appointments);
+
+        patientNameIndex.build();
+        statusCounters.reload();
+        // Chỉ mục chưa dựng: AppointmentService dùng lại truy vấn LIKE
+        likeService = new AppointmentService(appointmentRepository, statisticsService, statusCounters,
+                new PatientNameIndex(appointmentRepository, 5000));
+    }
+
+    @Test
+    void keysetPagesThroughIndexMatchLikeQuery() {
+        for (String search : List.of("nguyen", "van a", "thi", "han")) {
+            for (String status : new String[]{null, "pending"}) {
+                List<Long> expected = seeded.stream()
+                        .filter(a -> a.getPatientName().contains(search))
+                        .filter(a -> status == null || status.equals(a.getStatus()))
+                        .sorted(Comparator.comparing(Appointment::getAppointmentDate)
+                                .thenComparing(Appointment::getAppointmentTime)
+                                .thenComparing(Appointment::getId).reversed())
+                        .map(Appointment::getId)
+                        .toList();
+
+                assertThat(walkKeyset(appointmentService, status, search)).as(search).isEqualTo(expected);
+                assertThat(walkKeyset(likeService, status, search)).as(search).isEqualTo(expected);
+            }
+        }
+    }
+
+    @Test
+    void offsetPageTotalsMatchLikeQuery() {
+        for (String search : List.of("nguyen", "minh chau", "ang")) {
+            long expected = seeded.stream().filter(a -> a.getPatientName().contains(search)).count();
+
+            assertThat(appointmentService.findAppointments(0, 10, null, search, null, null).getTotalElements())
+                    .as(search).isEqualTo(expected);
+            assertThat(likeService.findAppointments(0, 10, null, search, null, null).getTotalElements())
+                    .as(search).isEqualTo(expected);
+        }
+
+        LocalDate from = LocalDate.of(2026, 5, 3);
+        long inRange = seeded.stream()
+                .filter(a -> a.getPatientName().contains("tran") && "completed".equals(a.getStatus()))
+                .filter(a -> !a.getAppointmentDate().isBefore(from))
+                .count();
+        assertThat(appointmentService.findAppointments(0, 5, "completed", "tran", from, null).getTotalElements())
+                .isEqualTo(inRange);
+    }
+
+    @Test
+    void noMatchReturnsEmptyPages() {
+        assertThat(appointmentService.findAppointments(0, 10, null, "xyz", null, null).getTotalElements()).isZero();
+        assertThat(appointmentService.findAppointmentsAfter(null, 10, null, "xyz", null, null)).isEmpty();
+    }
+
+    @Test
+    void approximateCountUsesCountersWithoutSearch() {
+        long pending = seeded.stream().filter(a -> "pending".equals(a.getStatus())).count();
+
+        assertThat(appointmentService.approximateCount(null, null, null, null)).isEqualTo((long) seeded.size());
+        assertThat(appointmentService.approximateCount("Pending", null, null, null)).isEqualTo(pending);
+        assertThat(appointmentService.approximateCount(null, "nguyen", null, null)).isNull();
+    }
+
+    private static List<Long> walkKeyset(AppointmentService service, String status, String search) {
+        List<Long> ids = new ArrayList<>();
+        KeysetCursor cursor = null;
+        while (true) {
+            List<Appointment> page = service.findAppointmentsAfter(cursor, 7, status, search, null, null);
+            page.forEach(a -> ids.add(a.getId()));
+            if (page.size() < 7) {
+                return ids;
+            }
+            Appointment last = page.get(page.size() - 1);
+            cursor = new KeysetCursor(last.getAppointmentDate(), last.getAppointmentTime(), last.getId());
+        }
+    }
+}
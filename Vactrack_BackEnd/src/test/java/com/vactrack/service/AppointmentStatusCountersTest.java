@@ -0,0 +1,58 @@
+package com.vactrack.service;
+
+import com.vactrack.repository.AppointmentRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class AppointmentStatusCountersTest {
+
+    private AppointmentStatusCounters counters;
+
+    @BeforeEach
+    void setUp() {
+        AppointmentRepository repository = mock(AppointmentRepository.class);
+        // Dữ liệu cũ lẫn cách viết: GROUP BY trả về các nhóm khác nhau cho cùng một trạng thái
+        when(repository.countGroupByStatus()).thenReturn(List.of(
+                new Object[]{"completed", 3L},
+                new Object[]{"Completed ", 2L},
+                new Object[]{"cancelled", 1L},
+                new Object[]{"canceled", 1L},
+                new Object[]{null, 1L}));
+        counters = new AppointmentStatusCounters(repository);
+    }
+
+    @Test
+    void loadMergesSpellingsIntoOneBucket() {
+        assertThat(counters.snapshot()).containsExactlyInAnyOrderEntriesOf(Map.of(
+                "completed", 5L, "canceled", 2L, "", 1L));
+        assertThat(counters.count("Completed")).isEqualTo(5);
+        assertThat(counters.count(null)).isEqualTo(1);
+    }
+
+    @Test
+    void movesKeepBucketsAddingUpToTotal() {
+        counters.snapshot();
+
+        counters.created(null);
+        counters.created("Pending");
+        counters.move("pending", null);
+        counters.move("COMPLETED", "pending ");
+        counters.move("", "Cancelled");
+        // Chỉ khác cách viết thì không phải chuyển trạng thái
+        counters.move("completed", " Completed");
+
+        Map<String, Long> snapshot = counters.snapshot();
+        assertThat(snapshot.values().stream().mapToLong(Long::longValue).sum()).isEqualTo(10);
+        assertThat(snapshot).containsEntry("completed", 4L)
+                .containsEntry("pending", 1L)
+                .containsEntry("canceled", 3L)
+                .containsEntry("", 2L);
+    }
+}
@@ -0,0 +1,234 @@
+package com.vactrack.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vactrack.config.HibernateConfig;
+import com.vactrack.exception.ApiException;
+import com.vactrack.inventory.StockReservationService;
+import com.vactrack.model.Booking;
+import com.vactrack.repository.BookingRepository;
+import com.vactrack.slot.SlotCapacityService;
+import com.vactrack.util.BookingIdGenerator;
+import com.vactrack.util.SecurityUtils;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpStatus;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.when;
+
+/**
+ * Nhập booking hàng loạt trên H2: INSERT được gom batch, dòng lỗi (parse, khung giờ đầy, lỗi DB)
+ * được báo theo số dòng mà không làm mất các dòng khác, và giới hạn theo người dùng được giữ.
+ */
+@DataJpaTest(properties = {
+        "booking.import.chunk-size=100",
+        "booking.import.max-rows=1000",
+        "booking.import.max-bookings-per-user=1200",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@Import({BookingImportService.class, BookingService.class, HibernateConfig.class, BookingImportServiceTest.Jackson.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class BookingImportServiceTest {
+
+    private static final LocalDate FULL_DAY = LocalDate.of(2026, 6, 2);
+    private static final String HEADER = "patientName,patientDob,appointmentDate,appointmentTime,notes";
+
+    @TestConfiguration
+    static class Jackson {
+        @Bean
+        ObjectMapper objectMapper() {
+            return new ObjectMapper();
+        }
+    }
+
+    @Autowired
+    private BookingImportService importService;
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @MockBean
+    private SecurityUtils securityUtils;
+
+    @MockBean
+    private StatisticsService statisticsService;
+
+    @MockBean
+    private StockReservationService stockReservationService;
+
+    @MockBean
+    private SlotCapacityService slotCapacityService;
+
+    @MockBean
+    private BookingIdGenerator bookingIdGenerator;
+
+    @BeforeEach
+    void setUp() {
+        bookingRepository.deleteAll();
+        when(securityUtils.getCurrentUserId()).thenReturn(1L);
+        when(bookingIdGenerator.nextId()).thenAnswer(invocation -> UUID.randomUUID().toString());
+        doThrow(new ApiException("Slot is full", HttpStatus.CONFLICT))
+                .when(slotCapacityService).claim(eq(FULL_DAY), any(LocalTime.class));
+    }
+
+    @Test
+    void csvRowsAreInsertedInJdbcBatches() {
+        StringBuilder csv = new StringBuilder(HEADER).append('\n');
+        for (int i = 0; i < 300; i++) {
+            csv.append("Patient ").append(i).append(",2020-01-15,2026-06-01,09:30,\n");
+        }
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        Map<String, Object> result = importService.importBookings(new StringReader(csv.toString()), "csv");
+
+        assertThat(result).containsEntry("total", 300).containsEntry("created", 300).containsEntry("failed", 0);
+        assertThat(bookingRepository.count()).isEqualTo(300);
+        assertThat(statistics.getEntityInsertCount()).isEqualTo(300);
+        // Mỗi batch 50 dòng dùng một PreparedStatement; không batch thì mỗi dòng một câu lệnh
+        assertThat(statistics.getPrepareStatementCount()).isLessThan(40);
+    }
+
+    @Test
+    void badRowsAreReportedWithoutAbortingTheImport() {
+        String longName = "x".repeat(300);
+        String csv = HEADER + "\n"
+                + "An,2020-01-15,2026-06-01,09:30,\n"               // 2
+                + "Binh,2020-13-15,2026-06-01,09:30,\n"             // 3: tháng 13
+                + ",2020-01-15,2026-06-01,09:30,\n"                 // 4: thiếu tên
+                + "Chau,2020-01-15,2026-06-01,9h30,\n"              // 5: sai giờ
+                + "Dung,2020-01-15,2026-06-02,10:00,\n"             // 6: khung giờ đầy
+                + longName + ",2020-01-15,2026-06-01,09:30,\n"     // 7: quá dài cho cột, lỗi ở DB
+                + "\"Ha, Thu\",2020-01-15,2026-06-01,9:30,\"ghi chú \"\"A\"\"\"\n"; // 8
+
+        Map<String, Object> result = importService.importBookings(new StringReader(csv), "csv");
+
+        assertThat(result).containsEntry("total", 7).containsEntry("created", 2).containsEntry("failed", 5);
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> errors = (List<Map<String, Object>>) result.get("errors");
+        assertThat(errors).extracting(error -> error.get("line")).containsExactlyInAnyOrder(3, 4, 5, 6, 7);
+        assertThat(errors).filteredOn(error -> error.get("line").equals(6))
+                .extracting(error -> error.get("message")).containsExactly("Slot is full");
+
+        assertThat(bookingRepository.findAll()).extracting(Booking::getPatientName).containsExactlyInAnyOrder("An", "Ha, Thu");
+        Booking quoted = bookingRepository.findAll().stream()
+                .filter(booking -> booking.getPatientName().equals("Ha, Thu")).findFirst().orElseThrow();
+        assertThat(quoted.getNotes()).isEqualTo("ghi chú \"A\"");
+        assertThat(quoted.getAppointmentTime()).isEqualTo(LocalTime.of(9, 30));
+    }
+
+    @Test
+    void jsonLinesImport() {
+        String jsonl = "{\"patientName\":\"An\",\"patientDob\":\"2020-01-15\",\"appointmentDate\":\"2026-06-01\","
+                + "\"appointmentTime\":\"08:00\",\"status\":\"pending\"}\n"
+                + "{not json}\n"
+                + "{\"patientName\":\"Binh\",\"patientDob\":\"2020-02-20\",\"appointmentDate\":\"2026-06-03\","
+                + "\"appointmentTime\":\"14:15\"}\n";
+
+        Map<String, Object> result = importService.importBookings(new StringReader(jsonl), "jsonl");
+
+        assertThat(result).containsEntry("created", 2).containsEntry("failed", 1);
+        assertThat(bookingRepository.findAll()).extracting(Booking::getStatus).containsOnly("pending");
+    }
+
+    @Test
+    void rowLimitsAndPerUserCapAreEnforced() {
+        Map<String, Object> first = importService.importBookings(rows(1100), "csv");
+        // max-rows = 1000: phần còn lại bị bỏ qua và báo một lỗi
+        assertThat(first).containsEntry("created", 1000).containsEntry("failed", 1);
+
+        // Còn 200 trong giới hạn 1200 booking của người dùng
+        Map<String, Object> second = importService.importBookings(rows(300), "csv");
+        assertThat(second).containsEntry("created", 200);
+
+        assertThatThrownBy(() -> importService.importBookings(rows(1), "csv"))
+                .isInstanceOfSatisfying(ApiException.class,
+                        e -> assertThat(e.getStatus()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS));
+        assertThat(bookingRepository.countByUserId(1L)).isEqualTo(1200);
+    }
+
+    @Test
+    void secondImportForSameUserIsRejectedWhileFirstRuns() throws Exception {
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Reader slow = new StringReader(HEADER + "\nAn,2020-01-15,2026-06-01,09:30,\n") {
+            @Override
+            public int read(char[] buffer, int offset, int length) {
+                reading.countDown();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                try {
+                    return super.read(buffer, offset, length);
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        };
+
+        CompletableFuture<Map<String, Object>> running =
+                CompletableFuture.supplyAsync(() -> importService.importBookings(slow, "csv"));
+        assertThat(reading.await(10, TimeUnit.SECONDS)).isTrue();
+
+        assertThatThrownBy(() -> importService.importBookings(rows(1), "csv"))
+                .isInstanceOfSatisfying(ApiException.class,
+                        e -> assertThat(e.getStatus()).isEqualTo(HttpStatus.CONFLICT));
+
+        release.countDown();
+        assertThat(running.get(10, TimeUnit.SECONDS)).containsEntry("created", 1);
+    }
+
+    @Test
+    void datesAndTimesAreParsedWithoutFormatter() {
+        assertThat(BookingImportService.parseDate("2026-02-28")).isEqualTo(LocalDate.of(2026, 2, 28));
+        assertThat(BookingImportService.parseTime("7:05")).isEqualTo(LocalTime.of(7, 5));
+        assertThat(BookingImportService.parseTime("23:59")).isEqualTo(LocalTime.of(23, 59));
+
+        for (String invalid : new String[]{"2026/02/28", "2026-2-28", "20x6-02-28"}) {
+            assertThatThrownBy(() -> BookingImportService.parseDate(invalid)).isInstanceOf(IllegalArgumentException.class);
+        }
+        for (String invalid : new String[]{"0930", "9:3", "123:00", "9:3x"}) {
+            assertThatThrownBy(() -> BookingImportService.parseTime(invalid)).isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+
+    private static Reader rows(int count) {
+        StringBuilder csv = new StringBuilder(HEADER).append('\n');
+        for (int i = 0; i < count; i++) {
+            csv.append("Patient ").append(i).append(",2020-01-15,2026-06-01,09:30,\n");
+        }
+        return new StringReader(csv.toString());
+    }
+}
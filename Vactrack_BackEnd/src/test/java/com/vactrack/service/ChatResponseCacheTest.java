@@ -0,0 +1,111 @@
+package com.vactrack.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ChatResponseCacheTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void keyIgnoresDiacriticsCaseAndSpacing() {
+        ChatResponseCache cache = cache(true, 100, 60, false);
+        cache.put("Khi nào bé cần tiêm BCG?", "Ngay sau sinh");
+
+        assertThat(cache.get("khi nao be can tiem bcg")).isEqualTo("Ngay sau sinh");
+        assertThat(cache.get("  KHI NÀO   bé cần tiêm BCG ")).isEqualTo("Ngay sau sinh");
+        assertThat(cache.get("Khi nào bé cần tiêm lao?")).isNull();
+    }
+
+    @Test
+    void evictsLeastRecentlyUsed() {
+        ChatResponseCache cache = cache(true, 2, 60, false);
+        cache.put("cau hoi a", "A");
+        cache.put("cau hoi b", "B");
+        cache.get("cau hoi a");
+        cache.put("cau hoi c", "C");
+
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.get("cau hoi a")).isEqualTo("A");
+        assertThat(cache.get("cau hoi b")).isNull();
+        assertThat(cache.get("cau hoi c")).isEqualTo("C");
+    }
+
+    @Test
+    void expiredEntriesAreDropped() {
+        ChatResponseCache cache = cache(true, 100, 0, true);
+        cache.put("lich tiem cho tre 2 thang", "answer");
+
+        assertThat(cache.get("lich tiem cho tre 2 thang")).isNull();
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    void similarityTierIsOffByDefault() {
+        ChatResponseCache cache = cache(true, 100, 60, false);
+        cache.put("Lịch tiêm cho trẻ 2 tháng", "answer");
+
+        assertThat(cache.get("Lịch tiêm cho trẻ 2 tháng tuổi")).isNull();
+    }
+
+    @Test
+    void similarityTierOnlyMatchesSameMeaning() {
+        ChatResponseCache cache = cache(true, 100, 60, true);
+        cache.put("Lịch tiêm cho trẻ 2 tháng", "2 months");
+        cache.put("Nên tiêm vắc xin cúm cho trẻ", "flu");
+
+        // Thêm một từ, giữ thứ tự
+        assertThat(cache.get("Lịch tiêm cho trẻ 2 tháng tuổi")).isEqualTo("2 months");
+        // Khác số, thêm từ phủ định hoặc thừa quá một từ: không dùng chung câu trả lời
+        assertThat(cache.get("Lịch tiêm cho trẻ 4 tháng")).isNull();
+        assertThat(cache.get("Không nên tiêm vắc xin cúm cho trẻ")).isNull();
+        assertThat(cache.get("Lịch tiêm đầy đủ cho trẻ 2 tháng tuổi")).isNull();
+    }
+
+    @Test
+    void countsHitsMissesAndSize() {
+        ChatResponseCache cache = cache(true, 100, 60, true);
+        cache.put("Lịch tiêm cho trẻ 2 tháng", "answer");
+
+        cache.get("lich tiem cho tre 2 thang");
+        cache.get("Lịch tiêm cho trẻ 2 tháng tuổi");
+        cache.get("cau hoi khac");
+
+        assertThat(count("hit")).isEqualTo(1);
+        assertThat(count("similar")).isEqualTo(1);
+        assertThat(count("miss")).isEqualTo(1);
+        assertThat(meterRegistry.get("chat.cache.size").gauge().value()).isEqualTo(1);
+    }
+
+    @Test
+    void disabledCacheAndBlankAnswersStoreNothing() {
+        ChatResponseCache disabled = cache(false, 100, 60, false);
+        disabled.put("cau hoi", "answer");
+        assertThat(disabled.get("cau hoi")).isNull();
+
+        ChatResponseCache cache = cache(true, 100, 60, false);
+        cache.put("cau hoi", " ");
+        cache.put("?!", "answer");
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    void replacingAnAnswerKeepsOneEntry() {
+        ChatResponseCache cache = cache(true, 100, 60, true);
+        cache.put("Lịch tiêm cho trẻ 2 tháng", "old");
+        cache.put("lich tiem cho tre 2 thang", "new");
+
+        assertThat(cache.size()).isEqualTo(1);
+        assertThat(cache.get("Lịch tiêm cho trẻ 2 tháng tuổi")).isEqualTo("new");
+    }
+
+    private ChatResponseCache cache(boolean enabled, int maxEntries, long ttlMinutes, boolean similarity) {
+        return new ChatResponseCache(meterRegistry, enabled, maxEntries, ttlMinutes, similarity, 0.85, 1);
+    }
+
+    private double count(String result) {
+        return meterRegistry.get("chat.cache.requests").tag("result", result).counter().count();
+    }
+}
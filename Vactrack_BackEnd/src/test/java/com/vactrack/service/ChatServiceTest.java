@@ -0,0 +1,183 @@
+package com.vactrack.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.vactrack.controller.ChatController;
+import com.vactrack.dto.ClientChatRequest;
+import com.vactrack.exception.ApiException;
+import com.vactrack.resilience.Dependencies;
+import com.vactrack.util.SingleFlight;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.StringHttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+/**
+ * Chạy ChatService với một server HTTP cục bộ giả lập OpenAI (trả JSON hoặc stream SSE theo từng dòng)
+ */
+class ChatServiceTest {
+
+    private HttpServer server;
+    private final AtomicInteger upstreamCalls = new AtomicInteger();
+    private volatile int upstreamStatus = 200;
+    private volatile List<String> tokens = List.of("Xin", " chào", " bạn");
+
+    private ChatService chatService;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/v1/chat/completions", this::handle);
+        server.start();
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("resilience.openai.failure-threshold", "1")
+                .withProperty("resilience.openai.open-ms", "60000");
+        chatService = new ChatService(HttpClient.newHttpClient(), new ObjectMapper(),
+                new ChatResponseCache(meterRegistry, true, 100, 60, false, 0.85, 1),
+                new SingleFlight(meterRegistry, true, 20000),
+                new Dependencies(environment, meterRegistry),
+                "http://127.0.0.1:" + server.getAddress().getPort() + "/v1/chat/completions",
+                "test-key", 5000, 10000);
+        // Như HttpMessageConverters của Spring Boot: chuỗi ghi bằng UTF-8 (mặc định của Spring MVC là ISO-8859-1)
+        mockMvc = MockMvcBuilders.standaloneSetup(new ChatController(chatService))
+                .setMessageConverters(new StringHttpMessageConverter(StandardCharsets.UTF_8),
+                        new MappingJackson2HttpMessageConverter())
+                .build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void streamRelaysTokensInOrderThenDone() throws Exception {
+        String body = stream("Lịch tiêm cho trẻ 2 tháng?");
+
+        assertThat(body).containsSubsequence(
+                "event:token", "data:Xin",
+                "event:token", "data: chào",
+                "event:token", "data: bạn",
+                "event:done");
+        assertThat(upstreamCalls).hasValue(1);
+    }
+
+    @Test
+    void completedStreamIsServedFromCacheNextTime() throws Exception {
+        stream("Lịch tiêm cho trẻ 2 tháng?");
+        String body = stream("lich tiem cho tre 2 thang");
+
+        assertThat(body).containsSubsequence("event:token", "data:Xin chào bạn", "event:done");
+        assertThat(upstreamCalls).hasValue(1);
+        assertThat(chatService.ask("Lịch tiêm cho trẻ 2 tháng?")).contains("\"cached\":true", "Xin chào bạn");
+        assertThat(upstreamCalls).hasValue(1);
+    }
+
+    @Test
+    void upstreamOverloadEndsStreamWithErrorAndOpensCircuit() throws Exception {
+        upstreamStatus = 503;
+
+        String body = stream("Vaccine cúm tiêm mấy mũi?");
+
+        assertThat(body).contains("event:error", "503").doesNotContain("event:done");
+        // failure-threshold = 1: lời gọi kế tiếp bị từ chối ngay, không tới OpenAI
+        assertThatThrownBy(() -> chatService.stream("Câu hỏi khác"))
+                .isInstanceOfSatisfying(ApiException.class,
+                        e -> assertThat(e.getStatus()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE));
+        assertThat(upstreamCalls).hasValue(1);
+    }
+
+    @Test
+    void askReturnsUpstreamJsonAndCachesTheAnswer() {
+        String first = chatService.ask("Tiêm sởi lúc mấy tháng?");
+        String second = chatService.ask("Tiêm sởi lúc mấy tháng?");
+
+        assertThat(first).contains("\"content\":\"Xin chào bạn\"");
+        assertThat(second).contains("\"cached\":true");
+        assertThat(upstreamCalls).hasValue(1);
+    }
+
+    @Test
+    void badRequestFromUpstreamDoesNotOpenCircuit() {
+        upstreamStatus = 400;
+
+        assertThatThrownBy(() -> chatService.ask("Câu hỏi 1")).isInstanceOfSatisfying(ApiException.class,
+                e -> assertThat(e.getStatus()).isEqualTo(HttpStatus.BAD_GATEWAY));
+        upstreamStatus = 200;
+        assertThat(chatService.ask("Câu hỏi 2")).contains("Xin chào bạn");
+        assertThat(upstreamCalls).hasValue(2);
+    }
+
+    @Test
+    void rejectsEmptyMessage() {
+        assertThatThrownBy(() -> chatService.stream(" ")).isInstanceOfSatisfying(ApiException.class,
+                e -> assertThat(e.getStatus()).isEqualTo(HttpStatus.BAD_REQUEST));
+        assertThat(upstreamCalls).hasValue(0);
+    }
+
+    private String stream(String message) throws Exception {
+        MvcResult result = mockMvc.perform(post("/api/chat/stream")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(new ObjectMapper().writeValueAsString(new ClientChatRequest(message))))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        result.getAsyncResult(10000);
+        return result.getResponse().getContentAsString(StandardCharsets.UTF_8);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        upstreamCalls.incrementAndGet();
+        boolean stream = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8)
+                .contains("\"stream\":true");
+        try (OutputStream out = exchange.getResponseBody()) {
+            if (upstreamStatus != 200) {
+                byte[] error = "{\"error\":{\"message\":\"upstream\"}}".getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(upstreamStatus, error.length);
+                out.write(error);
+                return;
+            }
+            if (!stream) {
+                byte[] json = ("{\"object\":\"chat.completion\",\"choices\":[{\"index\":0,\"message\":"
+                        + "{\"role\":\"assistant\",\"content\":\"" + String.join("", tokens) + "\"},"
+                        + "\"finish_reason\":\"stop\"}]}").getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, json.length);
+                out.write(json);
+                return;
+            }
+            exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+            exchange.sendResponseHeaders(200, 0);
+            for (String token : tokens) {
+                out.write(("data: {\"choices\":[{\"index\":0,\"delta\":{\"content\":\"" + token + "\"}}]}\n\n")
+                        .getBytes(StandardCharsets.UTF_8));
+                out.flush();
+            }
+            out.write("data: [DONE]\n\n".getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
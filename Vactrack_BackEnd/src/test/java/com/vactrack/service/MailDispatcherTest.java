@@ -0,0 +1,124 @@
+package com.vactrack.service;
+
+import com.vactrack.model.MailOutbox;
+import com.vactrack.repository.MailOutboxRepository;
+import com.vactrack.resilience.Dependencies;
+import com.vactrack.resilience.Dependency;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Session;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.net.ConnectException;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class MailDispatcherTest {
+
+    private MailOutboxRepository repository;
+    private JavaMailSender mailSender;
+    private Dependencies dependencies;
+    private MailDispatcher dispatcher;
+    private List<MailOutbox> mails;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(MailOutboxRepository.class);
+        mailSender = mock(JavaMailSender.class);
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("resilience.smtp.failure-threshold", "1")
+                .withProperty("resilience.smtp.open-ms", "60000");
+        dependencies = new Dependencies(environment, new SimpleMeterRegistry());
+
+        dispatcher = new MailDispatcher(repository, mailSender, dependencies);
+        ReflectionTestUtils.setField(dispatcher, "batchSize", 50);
+        ReflectionTestUtils.setField(dispatcher, "maxAttempts", 5);
+        ReflectionTestUtils.setField(dispatcher, "backoffMs", 5000L);
+        ReflectionTestUtils.setField(dispatcher, "maxBackoffMs", 600000L);
+        ReflectionTestUtils.setField(dispatcher, "leaseMs", 300000L);
+
+        mails = List.of(mail(1L, "a@example.com"), mail(2L, "b@example.com"));
+        when(repository.findDueIds(any(), any())).thenReturn(List.of(1L, 2L));
+        when(repository.claim(anyList(), anyString(), any(), any())).thenReturn(2);
+        when(repository.findByClaimedByAndStatus(anyString(), any())).thenReturn(mails);
+        when(mailSender.createMimeMessage()).thenAnswer(invocation -> new MimeMessage(Session.getInstance(new Properties())));
+    }
+
+    @Test
+    void connectionFailureReportedPerMessageOpensCircuit() {
+        // JavaMailSenderImpl báo lỗi kết nối bằng MailSendException chứa mọi email của lô
+        failSend(2, new MessagingException("Could not connect", new ConnectException("Connection refused")));
+
+        dispatcher.dispatch();
+
+        assertThat(mails).allSatisfy(mail -> assertThat(mail.getStatus()).isEqualTo("pending"));
+        assertThat(smtp().tryAcquire()).isNull();
+    }
+
+    @Test
+    void rejectedRecipientKeepsCircuitClosed() {
+        failSend(1, new MessagingException("550 mailbox unavailable"));
+
+        dispatcher.dispatch();
+
+        assertThat(mails).extracting(MailOutbox::getStatus).containsExactlyInAnyOrder("pending", "sent");
+        Dependency.Permit permit = smtp().tryAcquire();
+        assertThat(permit).isNotNull();
+        permit.release();
+    }
+
+    @Test
+    void everyMessageRejectedCountsAsFailure() {
+        failSend(2, new MessagingException("554 transaction failed"));
+
+        dispatcher.dispatch();
+
+        assertThat(smtp().tryAcquire()).isNull();
+    }
+
+    private Dependency smtp() {
+        return dependencies.get(Dependencies.SMTP);
+    }
+
+    // failedCount email đầu tiên của lô (thứ tự bất kỳ) bị lỗi với cause đã cho
+    private void failSend(int failedCount, Exception cause) {
+        doAnswer(invocation -> {
+            Map<Object, Exception> failed = new LinkedHashMap<>();
+            Object[] messages = invocation.getArguments();
+            for (int i = 0; i < failedCount; i++) {
+                failed.put(messages[i], cause);
+            }
+            throw new MailSendException(failed);
+        }).when(mailSender).send(any(MimeMessage[].class));
+    }
+
+    private static MailOutbox mail(Long id, String recipient) {
+        MailOutbox mail = new MailOutbox();
+        mail.setId(id);
+        mail.setRecipient(recipient);
+        mail.setSubject("OTP");
+        mail.setBody("<p>123456</p>");
+        mail.setStatus("sending");
+        mail.setAttempts(0);
+        mail.setCreatedAt(LocalDateTime.now());
+        mail.setNextAttemptAt(LocalDateTime.now());
+        return mail;
+    }
+}
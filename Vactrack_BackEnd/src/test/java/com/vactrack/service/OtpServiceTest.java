@@ -0,0 +1,165 @@
+package com.vactrack.service;
+
+import com.vactrack.config.FakeMailSenderConfig;
+import com.vactrack.exception.ApiException;
+import com.vactrack.model.MailOutbox;
+import com.vactrack.model.User;
+import com.vactrack.repository.MailOutboxRepository;
+import com.vactrack.repository.UserRepository;
+import com.vactrack.resilience.Dependencies;
+import com.vactrack.security.InMemoryOtpStore;
+import com.vactrack.security.OtpStore;
+import com.vactrack.security.TokenRevocationService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class OtpServiceTest {
+
+    private static final String EMAIL = "user@example.com";
+    private static final Pattern OTP_IN_BODY = Pattern.compile(">(\\d{6})<");
+
+    private MailOutboxRepository outboxRepository;
+    private InMemoryOtpStore otpStore;
+    private OtpService otpService;
+    private List<MailOutbox> outbox;
+
+    @BeforeEach
+    void setUp() {
+        outbox = new ArrayList<>();
+        outboxRepository = mock(MailOutboxRepository.class);
+        when(outboxRepository.save(any(MailOutbox.class))).thenAnswer(invocation -> {
+            MailOutbox mail = invocation.getArgument(0);
+            mail.setId((long) outbox.size() + 1);
+            outbox.add(mail);
+            return mail;
+        });
+
+        UserRepository userRepository = mock(UserRepository.class);
+        when(userRepository.findByEmail(EMAIL)).thenReturn(Optional.of(new User()));
+
+        otpStore = new InMemoryOtpStore(300, 5, 3, 900);
+        otpService = new OtpService();
+        ReflectionTestUtils.setField(otpService, "userRepository", userRepository);
+        ReflectionTestUtils.setField(otpService, "mailOutboxService", new MailOutboxService(outboxRepository));
+        ReflectionTestUtils.setField(otpService, "tokenRevocationService", mock(TokenRevocationService.class));
+        ReflectionTestUtils.setField(otpService, "otpStore", otpStore);
+
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void rolledBackRequestLeavesNoValidOtp() {
+        otpService.generateAndSendOtp(EMAIL);
+        int otp = otpInLastMail();
+
+        complete(false);
+
+        assertThat(otpStore.verify(EMAIL, otp)).isEqualTo(OtpStore.VerifyResult.NOT_FOUND);
+    }
+
+    @Test
+    void otpBecomesValidAfterCommit() {
+        otpService.generateAndSendOtp(EMAIL);
+        int otp = otpInLastMail();
+
+        // Trước commit email chưa chắc được gửi nên OTP chưa dùng được
+        assertThat(otpStore.verify(EMAIL, otp)).isEqualTo(OtpStore.VerifyResult.NOT_FOUND);
+
+        complete(true);
+
+        assertThat(otpService.verifyOtp(EMAIL, String.format("%06d", otp))).isTrue();
+    }
+
+    @Test
+    void rateLimitRejectsBeforeWritingOutbox() {
+        for (int i = 0; i < 3; i++) {
+            otpService.generateAndSendOtp(EMAIL);
+        }
+
+        assertThatThrownBy(() -> otpService.generateAndSendOtp(EMAIL)).isInstanceOf(ApiException.class);
+        assertThat(outbox).hasSize(3);
+    }
+
+    @Test
+    void requestDoesNotWaitForSlowSmtp() {
+        long latencyMs = 500;
+
+        long start = System.nanoTime();
+        otpService.generateAndSendOtp(EMAIL);
+        long requestMs = (System.nanoTime() - start) / 1_000_000;
+        complete(true);
+
+        // SMTP giả chậm chỉ làm chậm dispatcher chạy nền, không làm chậm request
+        MailDispatcher dispatcher = dispatcher(new FakeMailSenderConfig().javaMailSender(latencyMs));
+        start = System.nanoTime();
+        dispatcher.dispatch();
+        long dispatchMs = (System.nanoTime() - start) / 1_000_000;
+
+        assertThat(requestMs).isLessThan(latencyMs);
+        assertThat(dispatchMs).isGreaterThanOrEqualTo(latencyMs);
+        assertThat(outbox).extracting(MailOutbox::getStatus).containsExactly("sent");
+    }
+
+    private MailDispatcher dispatcher(JavaMailSender mailSender) {
+        when(outboxRepository.findDueIds(any(), any())).thenReturn(List.of(1L));
+        when(outboxRepository.claim(anyList(), anyString(), any(), any())).thenReturn(1);
+        when(outboxRepository.findByClaimedByAndStatus(anyString(), any())).thenReturn(outbox);
+
+        Dependencies dependencies = new Dependencies(new MockEnvironment(), new SimpleMeterRegistry());
+        MailDispatcher dispatcher = new MailDispatcher(outboxRepository, mailSender, dependencies);
+        ReflectionTestUtils.setField(dispatcher, "batchSize", 50);
+        ReflectionTestUtils.setField(dispatcher, "maxAttempts", 5);
+        ReflectionTestUtils.setField(dispatcher, "backoffMs", 5000L);
+        ReflectionTestUtils.setField(dispatcher, "maxBackoffMs", 600000L);
+        ReflectionTestUtils.setField(dispatcher, "leaseMs", 300000L);
+        return dispatcher;
+    }
+
+    private int otpInLastMail() {
+        Matcher matcher = OTP_IN_BODY.matcher(outbox.get(outbox.size() - 1).getBody());
+        assertThat(matcher.find()).isTrue();
+        return Integer.parseInt(matcher.group(1));
+    }
+
+    // Giả lập kết thúc transaction của request
+    private void complete(boolean committed) {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        for (TransactionSynchronization synchronization : synchronizations) {
+            if (committed) {
+                synchronization.afterCommit();
+            }
+            synchronization.afterCompletion(committed
+                    ? TransactionSynchronization.STATUS_COMMITTED
+                    : TransactionSynchronization.STATUS_ROLLED_BACK);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.vactrack.service;
+
+import com.vactrack.repository.AppointmentRepository;
+import com.vactrack.util.TextNormalizer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class PatientNameIndexTest {
+
+    private static final String[] FAMILY = {"Nguyễn", "Trần", "Lê", "Phạm", "Hoàng", "Huỳnh", "Võ", "Đặng"};
+    private static final String[] MIDDLE = {"Văn", "Thị", "Minh", "Ngọc", "Đức", "Thu"};
+    private static final String[] GIVEN = {"An", "Bình", "Châu", "Dũng", "Giang", "Hà", "Khánh", "Linh", "Nam", "Phúc"};
+
+    private final Map<Long, String> names = new TreeMap<>();
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void matchesWithoutDiacriticsOrCase() {
+        names.put(1L, "Nguyễn Văn An");
+        names.put(2L, "Trần Thị Bình");
+        PatientNameIndex index = build(5000);
+
+        assertThat(index.search("nguyen")).containsExactly(1L);
+        assertThat(index.search("VĂN A")).containsExactly(1L);
+        assertThat(index.search("tran thi binh")).containsExactly(2L);
+        assertThat(index.search("đức")).isEmpty();
+    }
+
+    @Test
+    void shortQueriesMatchWordPrefixes() {
+        names.put(1L, "Nguyễn Văn An");
+        names.put(2L, "Hoàng Ngọc Hà");
+        names.put(3L, "Lê Thu Trang");
+        PatientNameIndex index = build(5000);
+
+        assertThat(index.search("ng")).containsExactly(1L, 2L);
+        assertThat(index.search("H")).containsExactly(2L);
+        // "an" nằm giữa "Trang" nhưng không phải đầu từ
+        assertThat(index.search("an")).containsExactly(1L);
+    }
+
+    @Test
+    void matchesBruteForceOnRandomNames() {
+        Random random = new Random(11);
+        for (long id = 1; id <= 3000; id++) {
+            names.put(id, randomName(random));
+        }
+        PatientNameIndex index = build(5000);
+
+        for (int i = 0; i < 300; i++) {
+            String name = names.get(1L + random.nextInt(names.size()));
+            int from = random.nextInt(name.length());
+            String query = name.substring(from, Math.min(name.length(), from + 1 + random.nextInt(8)));
+            if (TextNormalizer.fold(query).isEmpty()) {
+                continue;
+            }
+            assertThat(index.search(query)).as(query).containsExactly(bruteForce(query));
+        }
+    }
+
+    @Test
+    void updatesApplyOnlyAfterCommit() {
+        names.put(1L, "Nguyễn Văn An");
+        PatientNameIndex index = build(5000);
+
+        TransactionSynchronizationManager.initSynchronization();
+        index.index(2L, "Phạm Minh Khánh");
+        assertThat(index.search("khanh")).isEmpty();
+        complete(false);
+        assertThat(index.search("khanh")).isEmpty();
+
+        TransactionSynchronizationManager.initSynchronization();
+        index.index(1L, "Phạm Minh Khánh");
+        complete(true);
+        assertThat(index.search("khanh")).containsExactly(1L);
+        assertThat(index.search("nguyen")).isEmpty();
+        assertThat(index.search("ng")).isEmpty();
+    }
+
+    @Test
+    void fallsBackWhenNotReadyOrTooManyMatches() {
+        for (long id = 1; id <= 10; id++) {
+            names.put(id, "Nguyễn Văn " + GIVEN[(int) id - 1]);
+        }
+
+        PatientNameIndex notBuilt = new PatientNameIndex(repository(), 5000);
+        assertThat(notBuilt.search("nguyen")).isNull();
+
+        PatientNameIndex index = build(5);
+        assertThat(index.search("nguyen")).isNull();
+        assertThat(index.search("khanh")).containsExactly(7L);
+    }
+
+    private PatientNameIndex build(int maxResults) {
+        PatientNameIndex index = new PatientNameIndex(repository(), maxResults);
+        index.build();
+        return index;
+    }
+
+    // Đọc names theo lô giống truy vấn findIdAndPatientNameAfter
+    private AppointmentRepository repository() {
+        AppointmentRepository repository = mock(AppointmentRepository.class);
+        when(repository.findIdAndPatientNameAfter(anyLong(), any(Pageable.class))).thenAnswer(invocation -> {
+            long afterId = invocation.getArgument(0);
+            Pageable pageable = invocation.getArgument(1);
+            List<Object[]> rows = new ArrayList<>();
+            for (Map.Entry<Long, String> entry : ((TreeMap<Long, String>) names).tailMap(afterId, false).entrySet()) {
+                if (rows.size() == pageable.getPageSize()) {
+                    break;
+                }
+                rows.add(new Object[]{entry.getKey(), entry.getValue()});
+            }
+            return rows;
+        });
+        return repository;
+    }
+
+    private long[] bruteForce(String query) {
+        String folded = TextNormalizer.fold(query);
+        return names.entrySet().stream()
+                .filter(entry -> {
+                    String name = TextNormalizer.fold(entry.getValue());
+                    if (folded.length() >= 3) {
+                        return name.contains(folded);
+                    }
+                    return Arrays.stream(name.split(" ")).anyMatch(word -> word.startsWith(folded));
+                })
+                .mapToLong(Map.Entry::getKey)
+                .toArray();
+    }
+
+    private static String randomName(Random random) {
+        return FAMILY[random.nextInt(FAMILY.length)] + " " + MIDDLE[random.nextInt(MIDDLE.length)] + " "
+                + GIVEN[random.nextInt(GIVEN.length)];
+    }
+
+    private static void complete(boolean committed) {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        for (TransactionSynchronization synchronization : synchronizations) {
+            if (committed) {
+                synchronization.afterCommit();
+            }
+            synchronization.afterCompletion(committed
+                    ? TransactionSynchronization.STATUS_COMMITTED
+                    : TransactionSynchronization.STATUS_ROLLED_BACK);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.vactrack.service;
+
+import com.vactrack.repository.AppointmentRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.domain.Pageable;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tìm id cuộc hẹn theo tên: PatientNameIndex so với LIKE '%...%' trên bảng H2 trong bộ nhớ cùng dữ liệu.
+ * Cả hai trả về id tăng dần của mọi dòng khớp, chưa tính bước nạp entity của JPA.
+ * Chuỗi tìm là họ tên đầy đủ (vài trăm dòng khớp ở 1M), giống người dùng gõ tên trong ô tìm kiếm.
+ *
+ * Chạy: java -Xmx4g -cp <test classpath> com.vactrack.service.PatientNameSearchBenchmark
+ * Mức 10M cần khoảng 12 GB heap: thêm -p rows=10000000 và -jvmArgs -Xmx12g.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class PatientNameSearchBenchmark {
+
+    private static final String[] FAMILY = {"Nguyễn", "Trần", "Lê", "Phạm", "Hoàng", "Huỳnh", "Võ", "Đặng"};
+    private static final String[] MIDDLE = {"Văn", "Thị", "Minh", "Ngọc", "Đức", "Thu"};
+    private static final String[] GIVEN = {"An", "Bình", "Châu", "Dũng", "Giang", "Hà", "Khánh", "Linh", "Nam", "Phúc"};
+    private static final String[] QUERIES = {"Phạm Ngọc Linh Nam", "Võ Thu Hà Bình", "Trần Văn Khánh Dũng"};
+
+    @Param({"1000000", "10000000"})
+    public int rows;
+
+    private PatientNameIndex index;
+    private Connection connection;
+    private PreparedStatement like;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        String[] names = new String[rows];
+        Random random = new Random(42);
+        for (int i = 0; i < rows; i++) {
+            names[i] = FAMILY[random.nextInt(FAMILY.length)] + " " + MIDDLE[random.nextInt(MIDDLE.length)] + " "
+                    + GIVEN[random.nextInt(GIVEN.length)] + " " + GIVEN[random.nextInt(GIVEN.length)];
+        }
+
+        connection = DriverManager.getConnection("jdbc:h2:mem:names;DB_CLOSE_DELAY=-1");
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE appointments (id BIGINT PRIMARY KEY, patient_name VARCHAR(255))");
+        }
+        connection.setAutoCommit(false);
+        try (PreparedStatement insert = connection.prepareStatement("INSERT INTO appointments VALUES (?, ?)")) {
+            for (int i = 0; i < rows; i++) {
+                insert.setLong(1, i + 1);
+                insert.setString(2, names[i]);
+                insert.addBatch();
+                if (i % 10_000 == 9_999) {
+                    insert.executeBatch();
+                    connection.commit();
+                }
+            }
+            insert.executeBatch();
+            connection.commit();
+        }
+        like = connection.prepareStatement("SELECT id FROM appointments WHERE patient_name LIKE ? ORDER BY id");
+
+        index = new PatientNameIndex(repository(names), 5000);
+        index.build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP ALL OBJECTS");
+        }
+        connection.close();
+    }
+
+    @Benchmark
+    public long[] index() {
+        return index.search(nextQuery());
+    }
+
+    @Benchmark
+    public List<Long> likeQuery() throws SQLException {
+        like.setString(1, "%" + nextQuery() + "%");
+        List<Long> ids = new ArrayList<>();
+        try (ResultSet resultSet = like.executeQuery()) {
+            while (resultSet.next()) {
+                ids.add(resultSet.getLong(1));
+            }
+        }
+        return ids;
+    }
+
+    private String nextQuery() {
+        next = (next + 1) % QUERIES.length;
+        return QUERIES[next];
+    }
+
+    // Nguồn dữ liệu cho PatientNameIndex.build, đọc theo lô như findIdAndPatientNameAfter
+    private static AppointmentRepository repository(String[] names) {
+        AppointmentRepository repository = mock(AppointmentRepository.class);
+        when(repository.findIdAndPatientNameAfter(anyLong(), any(Pageable.class))).thenAnswer(invocation -> {
+            int from = (int) (long) invocation.getArgument(0, Long.class);
+            int to = Math.min(names.length, from + invocation.getArgument(1, Pageable.class).getPageSize());
+            List<Object[]> batch = new ArrayList<>(to - from);
+            for (int i = from; i < to; i++) {
+                batch.add(new Object[]{(long) i + 1, names[i]});
+            }
+            return batch;
+        });
+        return repository;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(PatientNameSearchBenchmark.class.getSimpleName())
+                .param("rows", "1000000")
+                .build()).run();
+    }
+}
@@ -0,0 +1,179 @@
+package com.vactrack.service;
+
+import com.vactrack.model.Booking;
+import com.vactrack.model.DailyRollup;
+import com.vactrack.model.SettingsSnapshot;
+import com.vactrack.repository.DailyRollupRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+/**
+ * Rollup theo ngày trên H2 thật: chỉ tính transaction đã commit, ghi theo đợt vẫn cộng đúng khi nhiều booking
+ * cùng ngày chạy đồng thời, và đặt lịch đã hủy (mọi cách viết) không tính vào doanh thu.
+ */
+@DataJpaTest
+@Import(StatisticsService.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class StatisticsServiceTest {
+
+    private static final LocalDate DAY = LocalDate.of(2026, 3, 2);
+
+    @Autowired
+    private StatisticsService statisticsService;
+
+    @Autowired
+    private DailyRollupRepository dailyRollupRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @MockBean
+    private SystemSettingService systemSettingService;
+
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    void setUp() {
+        dailyRollupRepository.deleteAll();
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        when(systemSettingService.getSnapshot()).thenReturn(new SettingsSnapshot(1, 0, Map.of(), Map.of(),
+                List.of(Map.of("id", "basic", "name", "Basic", "price", 100))));
+    }
+
+    @Test
+    void onlyCommittedWritesReachTheRollup() {
+        inTransaction(() -> statisticsService.move(StatisticsService.SOURCE_BOOKING, null, key("pending", "basic")));
+        transactionTemplate.executeWithoutResult(status -> {
+            statisticsService.move(StatisticsService.SOURCE_BOOKING, null, key("pending", "basic"));
+            status.setRollbackOnly();
+        });
+
+        // Chưa tới đợt ghi: dòng rollup chưa bị chạm trong transaction của booking
+        assertThat(dailyRollupRepository.count()).isZero();
+
+        statisticsService.flush();
+        assertThat(bookingCountsByStatus()).containsExactlyEntriesOf(Map.of("pending", 1L));
+    }
+
+    @Test
+    void concurrentBookingsOnOneDayAddUpExactly() throws Exception {
+        AtomicInteger committedPending = new AtomicInteger();
+        AtomicInteger committedConfirmed = new AtomicInteger();
+        AtomicInteger tasks = new AtomicInteger();
+        AtomicBoolean running = new AtomicBoolean(true);
+
+        ExecutorService executor = Executors.newFixedThreadPool(17);
+        try {
+            // Đợt ghi chạy song song với các transaction đang commit
+            Future<?> flusher = executor.submit(() -> {
+                while (running.get()) {
+                    statisticsService.flush();
+                }
+            });
+
+            List<Future<?>> bookings = new ArrayList<>();
+            for (int i = 0; i < 400; i++) {
+                bookings.add(executor.submit(() -> {
+                    int task = tasks.incrementAndGet();
+                    boolean confirm = task % 2 == 0;
+                    boolean rollback = task % 5 == 0;
+                    transactionTemplate.executeWithoutResult(status -> {
+                        statisticsService.move(StatisticsService.SOURCE_BOOKING, null, key("pending", "basic"));
+                        if (confirm) {
+                            statisticsService.move(StatisticsService.SOURCE_BOOKING,
+                                    key("pending", "basic"), key("confirmed", "basic"));
+                        }
+                        if (rollback) {
+                            status.setRollbackOnly();
+                        }
+                    });
+                    if (!rollback) {
+                        (confirm ? committedConfirmed : committedPending).incrementAndGet();
+                    }
+                }));
+            }
+            for (Future<?> booking : bookings) {
+                booking.get(30, TimeUnit.SECONDS);
+            }
+            running.set(false);
+            flusher.get(30, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+        statisticsService.flush();
+
+        assertThat(bookingCountsByStatus()).containsExactlyInAnyOrderEntriesOf(Map.of(
+                "pending", (long) committedPending.get(),
+                "confirmed", (long) committedConfirmed.get()));
+    }
+
+    @Test
+    void canceledBookingsAreNotRevenueWhateverTheSpelling() {
+        inTransaction(() -> {
+            statisticsService.move(StatisticsService.SOURCE_BOOKING, null, key("confirmed", "basic"));
+            statisticsService.move(StatisticsService.SOURCE_BOOKING, null, key("Cancelled", "basic"));
+            statisticsService.move(StatisticsService.SOURCE_BOOKING, null, key(" canceled ", "basic"));
+        });
+        statisticsService.flush();
+        // Dòng cũ ghi trước khi chuẩn hóa cách viết
+        DailyRollup legacy = new DailyRollup();
+        legacy.setSource(StatisticsService.SOURCE_BOOKING);
+        legacy.setRollupDate(DAY);
+        legacy.setService("Tiêm chủng");
+        legacy.setStatus("cancelled");
+        legacy.setPackageType("basic");
+        legacy.setRecordCount(5L);
+        dailyRollupRepository.save(legacy);
+
+        Map<String, Object> revenue = statisticsService.getRevenue("day", DAY, DAY);
+
+        assertThat(revenue.get("totalRevenue")).isEqualTo(100d);
+        assertThat(bookingCountsByStatus()).containsEntry("canceled", 2L);
+    }
+
+    private void inTransaction(Runnable action) {
+        transactionTemplate.executeWithoutResult(status -> action.run());
+    }
+
+    private Map<String, Long> bookingCountsByStatus() {
+        Map<String, Long> counts = new HashMap<>();
+        for (DailyRollup row : dailyRollupRepository.findAll()) {
+            if (StatisticsService.SOURCE_BOOKING.equals(row.getSource()) && row.getRecordCount() != 0) {
+                counts.merge(row.getStatus(), row.getRecordCount(), Long::sum);
+            }
+        }
+        return counts;
+    }
+
+    private static StatisticsService.RollupKey key(String status, String packageType) {
+        Booking booking = new Booking();
+        booking.setAppointmentDate(DAY);
+        booking.setServiceType("Tiêm chủng");
+        booking.setStatus(status);
+        booking.setPackageType(packageType);
+        return StatisticsService.RollupKey.of(booking);
+    }
+}
@@ -0,0 +1,116 @@
+package com.vactrack.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vactrack.model.SettingsSnapshot;
+import com.vactrack.model.SystemSetting;
+import com.vactrack.repository.SystemSettingRepository;
+import com.vactrack.util.ResourceVersions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+
+import java.time.DayOfWeek;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SystemSettingServiceTest {
+
+    private final RecordingTransactionManager transactionManager = new RecordingTransactionManager();
+    private final ResourceVersions resourceVersions = new ResourceVersions();
+    private SystemSettingRepository repository;
+    private SystemSettingService service;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(SystemSettingRepository.class);
+        when(repository.findById(anyString())).thenReturn(Optional.empty());
+        when(repository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        service = new SystemSettingService(repository, new ObjectMapper(), resourceVersions, transactionManager);
+    }
+
+    @Test
+    void midnightClosingTimeIsLocalTimeMax() {
+        SettingsSnapshot.WorkingHours hours = snapshot(Map.of(
+                "monday", Map.of("start", "08:00", "end", "24:00"),
+                "tuesday", Map.of("start", "08:00", "end", "24:30"))).getWorkingHours();
+
+        assertThat(hours.getCloseMinute(DayOfWeek.MONDAY)).isEqualTo(24 * 60);
+        assertThat(hours.getClose(DayOfWeek.MONDAY)).isEqualTo(LocalTime.MAX);
+        // Giờ không hợp lệ rơi về mặc định thay vì làm hỏng cả ảnh chụp
+        assertThat(hours.getClose(DayOfWeek.TUESDAY)).isEqualTo(LocalTime.of(17, 0));
+    }
+
+    @Test
+    void failedUpdateRollsBackAndKeepsPublishedSnapshot() {
+        SettingsSnapshot before = service.getSnapshot();
+        String etag = resourceVersions.etag(ResourceVersions.Resource.SETTINGS);
+        when(repository.save(any())).thenAnswer(invocation -> {
+            SystemSetting setting = invocation.getArgument(0);
+            if ("notifications".equals(setting.getKey())) {
+                throw new IllegalStateException("disk full");
+            }
+            return setting;
+        });
+
+        assertThatThrownBy(() -> service.updateSettings(Map.of(
+                "workingHours", Map.of("monday", Map.of("start", "09:00", "end", "12:00")),
+                "notifications", Map.of("emailEnabled", false))))
+                .isInstanceOf(IllegalStateException.class);
+
+        assertThat(transactionManager.rollbacks).isEqualTo(1);
+        assertThat(service.getSnapshot()).isSameAs(before);
+        assertThat(resourceVersions.etag(ResourceVersions.Resource.SETTINGS)).isEqualTo(etag);
+    }
+
+    @Test
+    void successfulUpdateIsPublishedAfterCommit() {
+        long version = service.getSnapshot().getVersion();
+
+        service.updateSettings(Map.of("workingHours", Map.of("monday", Map.of("start", "09:00", "end", "24:00"))));
+
+        assertThat(transactionManager.commits).isEqualTo(1);
+        assertThat(service.getSnapshot().getVersion()).isEqualTo(version + 1);
+        assertThat(service.getSnapshot().getWorkingHours().getOpen(DayOfWeek.MONDAY)).isEqualTo(LocalTime.of(9, 0));
+        assertThat(service.getSnapshot().getWorkingHours().getClose(DayOfWeek.MONDAY)).isEqualTo(LocalTime.MAX);
+    }
+
+    private static SettingsSnapshot snapshot(Map<String, Object> workingHours) {
+        return new SettingsSnapshot(1, 0, workingHours, Map.of(), List.of());
+    }
+
+    // Transaction giả nhưng chạy đủ vòng đời đồng bộ của Spring (afterCommit chỉ chạy khi commit)
+    private static final class RecordingTransactionManager extends AbstractPlatformTransactionManager {
+        int commits;
+        int rollbacks;
+
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+            commits++;
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+            rollbacks++;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.vactrack.service;
+
+import com.vactrack.model.Vaccine;
+import com.vactrack.repository.VaccineRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class VaccineSearchIndexTest {
+
+    private static final String[] NAMES = {"Vắc xin cúm", "Vaccine sởi", "Viêm gan B", "Phế cầu", "Cúm mùa"};
+    private static final String[] MANUFACTURERS = {"Sanofi", "GSK", "Pfizer", null};
+    private static final String[] CATEGORIES = {"child", "adult", null};
+    private static final String[] QUERIES = {"cum", "vac", "sanofi", "viem gan", "pfizr", "child", "phe", "soi", "mua"};
+
+    // Trạng thái "trong DB" để so chỉ mục cập nhật từng vaccine với một lần dựng lại toàn bộ
+    private final Map<Long, Vaccine> rows = new LinkedHashMap<>();
+    private VaccineRepository vaccineRepository;
+    private VaccineSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        vaccineRepository = mock(VaccineRepository.class);
+        when(vaccineRepository.findAll()).thenAnswer(invocation -> new ArrayList<>(rows.values()));
+        Random random = new Random(7);
+        for (long id = 1; id <= 15; id++) {
+            rows.put(id, randomVaccine(id, random));
+        }
+        index = new VaccineSearchIndex(vaccineRepository);
+        index.rebuild();
+    }
+
+    @Test
+    void singleWritesMatchFullRebuild() {
+        Random random = new Random(11);
+        for (int i = 0; i < 400; i++) {
+            long id = 1 + random.nextInt(20);
+            if (random.nextInt(5) == 0) {
+                rows.remove(id);
+                index.remove(id);
+            } else {
+                Vaccine vaccine = randomVaccine(id, random);
+                rows.put(id, vaccine);
+                index.put(vaccine);
+            }
+        }
+
+        VaccineSearchIndex rebuilt = new VaccineSearchIndex(vaccineRepository);
+        rebuilt.rebuild();
+
+        for (String query : QUERIES) {
+            for (String category : CATEGORIES) {
+                assertThat(index.search(query, category)).as(query + " / " + category)
+                        .containsExactlyElementsOf(rebuilt.search(query, category));
+            }
+        }
+    }
+
+    @Test
+    void renamedVaccineLeavesItsOldTerms() {
+        Vaccine vaccine = vaccine(100, "Bạch hầu", "GSK", "child");
+        index.put(vaccine);
+        assertThat(index.search("bach hau", null)).containsExactly(100L);
+
+        index.put(vaccine(100, "Uốn ván", "GSK", "child"));
+
+        assertThat(index.search("bach hau", null)).isEmpty();
+        assertThat(index.search("uon van", null)).containsExactly(100L);
+    }
+
+    private static Vaccine randomVaccine(long id, Random random) {
+        return vaccine(id, NAMES[random.nextInt(NAMES.length)] + " " + id,
+                MANUFACTURERS[random.nextInt(MANUFACTURERS.length)], CATEGORIES[random.nextInt(CATEGORIES.length)]);
+    }
+
+    private static Vaccine vaccine(long id, String name, String manufacturer, String category) {
+        Vaccine vaccine = new Vaccine();
+        vaccine.setId(id);
+        vaccine.setName(name);
+        vaccine.setManufacturer(manufacturer);
+        vaccine.setCategory(category);
+        vaccine.setInStock(10);
+        return vaccine;
+    }
+}
@@ -0,0 +1,281 @@
+package com.vactrack.slot;
+
+import com.vactrack.exception.ApiException;
+import com.vactrack.model.SettingsSnapshot;
+import com.vactrack.model.SlotClaim;
+import com.vactrack.repository.BookingRepository;
+import com.vactrack.repository.SlotClaimRepository;
+import com.vactrack.service.SystemSettingService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SlotCapacityServiceTest {
+
+    private static final int CAPACITY = 4;
+    private static final LocalDate DATE = LocalDate.now().plusDays(1);
+    private static final LocalTime TIME = LocalTime.of(9, 10);
+    private static final LocalTime SLOT = LocalTime.of(9, 0);
+
+    // Bảng slot_claims giả lập, dùng chung cho các node; UPDATE có điều kiện như trong repository
+    private final Map<String, AtomicInteger> table = new ConcurrentHashMap<>();
+    private volatile Blocker blockedClaim;
+    private SlotClaimRepository slotClaimRepository;
+    private BookingRepository bookingRepository;
+    private SystemSettingService systemSettingService;
+
+    @BeforeEach
+    void setUp() {
+        slotClaimRepository = mock(SlotClaimRepository.class);
+        when(slotClaimRepository.claim(any(), any(), anyInt())).thenAnswer(invocation -> {
+            Blocker blocker = blockedClaim;
+            if (blocker != null) {
+                blocker.await();
+            }
+            AtomicInteger used = table.get(key(invocation.getArgument(0), invocation.getArgument(1)));
+            int capacity = invocation.getArgument(2);
+            if (used == null) {
+                return 0;
+            }
+            synchronized (used) {
+                if (used.get() >= capacity) {
+                    return 0;
+                }
+                used.incrementAndGet();
+                return 1;
+            }
+        });
+        when(slotClaimRepository.release(any(), any())).thenAnswer(invocation -> {
+            AtomicInteger used = table.get(key(invocation.getArgument(0), invocation.getArgument(1)));
+            if (used == null) {
+                return 0;
+            }
+            synchronized (used) {
+                if (used.get() <= 0) {
+                    return 0;
+                }
+                used.decrementAndGet();
+                return 1;
+            }
+        });
+        when(slotClaimRepository.existsBySlotDateAndSlotTime(any(), any())).thenAnswer(invocation ->
+                table.containsKey(key(invocation.getArgument(0), invocation.getArgument(1))));
+        when(slotClaimRepository.findUsed(any(), any())).thenAnswer(invocation -> {
+            AtomicInteger used = table.get(key(invocation.getArgument(0), invocation.getArgument(1)));
+            return used != null ? used.get() : null;
+        });
+        when(slotClaimRepository.saveAndFlush(any())).thenAnswer(invocation -> {
+            SlotClaim row = invocation.getArgument(0);
+            if (table.putIfAbsent(key(row.getSlotDate(), row.getSlotTime()), new AtomicInteger(row.getUsed())) != null) {
+                throw new DataIntegrityViolationException("uk_slot_claim_slot");
+            }
+            return row;
+        });
+
+        bookingRepository = mock(BookingRepository.class);
+        systemSettingService = mock(SystemSettingService.class);
+        when(systemSettingService.getSnapshot())
+                .thenReturn(new SettingsSnapshot(1, 0, Map.of(), Map.of(), List.of()));
+    }
+
+    @Test
+    void concurrentClaimsOnTwoNodesNeverExceedCapacity() throws Exception {
+        SlotCapacityService node1 = newNode();
+        SlotCapacityService node2 = newNode();
+        AtomicInteger accepted = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+
+        runConcurrently(200, 32, i -> {
+            try {
+                (i % 2 == 0 ? node1 : node2).claim(DATE, TIME);
+                accepted.incrementAndGet();
+            } catch (ApiException e) {
+                assertThat(e.getStatus()).isEqualTo(HttpStatus.CONFLICT);
+                rejected.incrementAndGet();
+            }
+        });
+
+        assertThat(accepted).hasValue(CAPACITY);
+        assertThat(rejected).hasValue(200 - CAPACITY);
+        assertThat(used()).isEqualTo(CAPACITY);
+    }
+
+    @Test
+    void concurrentBookingTransactionsWithRollbacksKeepCountsExact() throws Exception {
+        SlotCapacityService node = newNode();
+        AtomicInteger committed = new AtomicInteger();
+
+        // Mỗi task là một transaction booking; một nửa rollback sau khi đã giành chỗ
+        runConcurrently(400, 32, i -> {
+            TransactionSynchronizationManager.initSynchronization();
+            int status = i % 2 == 0 ? TransactionSynchronization.STATUS_COMMITTED
+                    : TransactionSynchronization.STATUS_ROLLED_BACK;
+            try {
+                node.claim(DATE, TIME);
+            } catch (ApiException e) {
+                status = TransactionSynchronization.STATUS_ROLLED_BACK;
+            } finally {
+                List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+                TransactionSynchronizationManager.clearSynchronization();
+                for (TransactionSynchronization synchronization : synchronizations) {
+                    synchronization.afterCompletion(status);
+                }
+            }
+            if (status == TransactionSynchronization.STATUS_COMMITTED) {
+                committed.incrementAndGet();
+            }
+        });
+
+        assertThat(committed.get()).isBetween(1, CAPACITY);
+        assertThat(used()).isEqualTo(committed.get());
+        assertThat(remaining(node)).isEqualTo(CAPACITY - committed.get());
+    }
+
+    @Test
+    void claimDoesNotHoldTheRowForTheBookingTransaction() {
+        SlotCapacityService node = newNode();
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            node.claim(DATE, TIME);
+            // Chỗ trong DB đã commit ngay, node khác thấy được trong khi booking còn chạy
+            assertThat(used()).isEqualTo(1);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void resyncNeverDropsInFlightClaims() throws Exception {
+        SlotCapacityService node = newNode();
+        for (int i = 0; i < CAPACITY - 1; i++) {
+            node.claim(DATE, TIME);
+        }
+
+        // Chỗ cuối đã giành trên lưới nhưng câu UPDATE slot_claims còn đang chạy
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch proceed = new CountDownLatch(1);
+        blockedClaim = () -> {
+            entered.countDown();
+            proceed.await(10, TimeUnit.SECONDS);
+        };
+        Thread inFlight = new Thread(() -> node.claim(DATE, TIME));
+        inFlight.start();
+        assertThat(entered.await(10, TimeUnit.SECONDS)).isTrue();
+        blockedClaim = null;
+
+        // DB mới thấy 3 chỗ; resync không được hạ ô xuống 3 mà bỏ mất chỗ đang ghi
+        assertThat(used()).isEqualTo(CAPACITY - 1);
+        assertThatThrownBy(() -> node.claim(DATE, TIME)).isInstanceOf(ApiException.class);
+
+        proceed.countDown();
+        inFlight.join(10000);
+        assertThat(used()).isEqualTo(CAPACITY);
+    }
+
+    @Test
+    void seatReleasedOnAnotherNodeIsSeenAfterResync() {
+        SlotCapacityService node1 = newNode();
+        SlotCapacityService node2 = newNode();
+        for (int i = 0; i < CAPACITY; i++) {
+            node1.claim(DATE, TIME);
+        }
+        assertThatThrownBy(() -> node2.claim(DATE, TIME)).isInstanceOf(ApiException.class);
+
+        node2.release(DATE, TIME);
+
+        node1.claim(DATE, TIME);
+        assertThat(used()).isEqualTo(CAPACITY);
+    }
+
+    @Test
+    void cancellationReleasesOnlyAfterCommit() {
+        SlotCapacityService node = newNode();
+        node.claim(DATE, TIME);
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            node.release(DATE, TIME);
+            assertThat(used()).isEqualTo(1);
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        assertThat(used()).isZero();
+        assertThat(remaining(node)).isEqualTo(CAPACITY);
+    }
+
+    private SlotCapacityService newNode() {
+        return new SlotCapacityService(bookingRepository, slotClaimRepository, systemSettingService,
+                mock(PlatformTransactionManager.class), 30, CAPACITY, 90);
+    }
+
+    private int used() {
+        return table.get(key(DATE, SLOT)).get();
+    }
+
+    private static int remaining(SlotCapacityService node) {
+        return node.findAvailable(DATE, DATE).stream()
+                .filter(slot -> "09:00".equals(slot.get("time")))
+                .mapToInt(slot -> (Integer) slot.get("remaining"))
+                .findFirst().orElse(0);
+    }
+
+    private static String key(LocalDate date, LocalTime time) {
+        return date + " " + time;
+    }
+
+    private interface Blocker {
+        void await() throws InterruptedException;
+    }
+
+    private interface Task {
+        void run(int index);
+    }
+
+    private static void runConcurrently(int tasks, int threads, Task task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>(tasks);
+            for (int i = 0; i < tasks; i++) {
+                int index = i;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    task.run(index);
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.vactrack.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BookingIdGeneratorTest {
+
+    private static final int THREADS = 16;
+    private static final int IDS_PER_THREAD = 50_000;
+
+    @Test
+    void concurrentIdsAreUniqueAcrossThreadsAndNodes() throws Exception {
+        // Hai node cùng sinh mã trong cùng các mili giây, nhiều hơn 4096 mã/ms để phải mượn mili giây kế tiếp
+        BookingIdGenerator node0 = new BookingIdGenerator(0);
+        BookingIdGenerator node1 = new BookingIdGenerator(1);
+        Set<String> ids = ConcurrentHashMap.newKeySet();
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                BookingIdGenerator generator = t % 2 == 0 ? node0 : node1;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < IDS_PER_THREAD; i++) {
+                        ids.add(generator.nextId());
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(ids).hasSize(THREADS * IDS_PER_THREAD);
+    }
+
+    @Test
+    void idsFromOneNodeAreOrderedAsStrings() {
+        BookingIdGenerator generator = new BookingIdGenerator(7);
+
+        String previous = generator.nextId();
+        for (int i = 0; i < 20_000; i++) {
+            String id = generator.nextId();
+            assertThat(id).hasSize(15).startsWith("BK").isGreaterThan(previous);
+            previous = id;
+        }
+    }
+
+    @Test
+    void encodingPreservesNumericOrder() {
+        long[] values = {0, 1, 31, 32, 1L << 40, (1L << 62) - 1, Long.MAX_VALUE};
+        for (int i = 1; i < values.length; i++) {
+            assertThat(BookingIdGenerator.encode(values[i]))
+                    .isGreaterThan(BookingIdGenerator.encode(values[i - 1]));
+        }
+        assertThat(BookingIdGenerator.encode(0)).isEqualTo("0000000000000");
+    }
+
+    @Test
+    void nodeIsPartOfTheValue() {
+        long value0 = new BookingIdGenerator(0).nextValue();
+        long value5 = new BookingIdGenerator(5).nextValue();
+
+        assertThat((value0 >>> 12) & BookingIdGenerator.MAX_NODE).isZero();
+        assertThat((value5 >>> 12) & BookingIdGenerator.MAX_NODE).isEqualTo(5);
+    }
+
+    @Test
+    void rejectsNodeOutOfRange() {
+        assertThatThrownBy(() -> new BookingIdGenerator(BookingIdGenerator.MAX_NODE + 1))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,135 @@
+package com.vactrack.util;
+
+import com.vactrack.exception.ApiException;
+import com.vactrack.repository.NodeLeaseRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class NodeIdLeaseTest {
+
+    private record Lease(String owner, LocalDateTime expiresAt) {
+    }
+
+    // Bảng node_leases giả lập: khóa chính node_id và các câu UPDATE có điều kiện như trong repository
+    private final Map<Integer, Lease> table = new TreeMap<>();
+    private NodeLeaseRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(NodeLeaseRepository.class);
+        when(repository.findNodeIds()).thenAnswer(invocation -> {
+            synchronized (table) {
+                return new ArrayList<>(table.keySet());
+            }
+        });
+        when(repository.insert(anyInt(), anyString(), any())).thenAnswer(invocation -> {
+            synchronized (table) {
+                if (table.putIfAbsent(invocation.getArgument(0),
+                        new Lease(invocation.getArgument(1), invocation.getArgument(2))) != null) {
+                    throw new DataIntegrityViolationException("duplicate node_id");
+                }
+                return 1;
+            }
+        });
+        when(repository.takeOver(anyInt(), anyString(), any(), any())).thenAnswer(invocation -> {
+            synchronized (table) {
+                Integer nodeId = invocation.getArgument(0);
+                LocalDateTime now = invocation.getArgument(2);
+                Lease lease = table.get(nodeId);
+                if (lease == null || !lease.expiresAt().isBefore(now)) {
+                    return 0;
+                }
+                table.put(nodeId, new Lease(invocation.getArgument(1), invocation.getArgument(3)));
+                return 1;
+            }
+        });
+        when(repository.renew(anyInt(), anyString(), any())).thenAnswer(invocation -> {
+            synchronized (table) {
+                Integer nodeId = invocation.getArgument(0);
+                Lease lease = table.get(nodeId);
+                if (lease == null || !lease.owner().equals(invocation.getArgument(1))) {
+                    return 0;
+                }
+                table.put(nodeId, new Lease(lease.owner(), invocation.getArgument(2)));
+                return 1;
+            }
+        });
+    }
+
+    @Test
+    void instancesSharingTheTableGetDistinctNodes() {
+        NodeIdLease first = newLease();
+        NodeIdLease second = newLease();
+        NodeIdLease third = newLease();
+
+        assertThat(first.acquire(BookingIdGenerator.MAX_NODE)).isZero();
+        assertThat(second.acquire(BookingIdGenerator.MAX_NODE)).isEqualTo(1);
+        assertThat(third.acquire(BookingIdGenerator.MAX_NODE)).isEqualTo(2);
+        assertThat(second.current()).isEqualTo(1);
+    }
+
+    @Test
+    void releasedNodeCanBeTakenOver() {
+        NodeIdLease first = newLease();
+        first.acquire(BookingIdGenerator.MAX_NODE);
+        first.release();
+
+        NodeIdLease second = newLease();
+        assertThat(second.acquire(BookingIdGenerator.MAX_NODE)).isZero();
+        assertThatThrownBy(first::current).isInstanceOf(ApiException.class);
+    }
+
+    @Test
+    void failsWhenAllNodesAreLeased() {
+        newLease().acquire(1);
+        newLease().acquire(1);
+
+        assertThatThrownBy(() -> newLease().acquire(1)).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void lostLeaseStopsIssuingUntilANewNodeIsLeased() {
+        NodeIdLease first = newLease();
+        first.acquire(BookingIdGenerator.MAX_NODE);
+
+        // Hợp đồng hết hạn (vd. GC pause dài) và instance khác lấy mất node 0
+        ReflectionTestUtils.setField(first, "validUntil", 0L);
+        table.put(0, new Lease("other", LocalDateTime.now().minusSeconds(1)));
+        NodeIdLease second = newLease();
+        assertThat(second.acquire(BookingIdGenerator.MAX_NODE)).isZero();
+
+        assertThatThrownBy(first::current).isInstanceOf(ApiException.class);
+        first.renew();
+        assertThat(first.current()).isEqualTo(1);
+        assertThat(second.current()).isZero();
+    }
+
+    @Test
+    void generatorUsesLeasedNode() {
+        newLease().acquire(BookingIdGenerator.MAX_NODE);
+        NodeIdLease lease = newLease();
+        BookingIdGenerator generator = new BookingIdGenerator(-1, lease);
+
+        assertThat((generator.nextValue() >>> 12) & BookingIdGenerator.MAX_NODE).isEqualTo(1);
+    }
+
+    private NodeIdLease newLease() {
+        return new NodeIdLease(repository, mock(PlatformTransactionManager.class), 60);
+    }
+}
@@ -0,0 +1,200 @@
+package com.vactrack.util;
+
+import com.vactrack.exception.ApiException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SingleFlightTest {
+
+    private static final int CALLERS = 16;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<Thread> callerThreads = new ArrayList<>();
+    private final ThreadPoolExecutor executor = (ThreadPoolExecutor) Executors.newFixedThreadPool(CALLERS, runnable -> {
+        Thread thread = new Thread(runnable);
+        synchronized (callerThreads) {
+            callerThreads.add(thread);
+        }
+        return thread;
+    });
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void identicalConcurrentCallsShareOneComputation() throws Exception {
+        SingleFlight singleFlight = new SingleFlight(meterRegistry, true, 20_000);
+        AtomicInteger computations = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        List<Future<String>> results = submit(CALLERS, () -> singleFlight.execute("stats", "2026-05|month", () -> {
+            computations.incrementAndGet();
+            await(release);
+            return "result";
+        }));
+        awaitAllBlocked();
+        release.countDown();
+
+        for (Future<String> result : results) {
+            assertThat(result.get(10, TimeUnit.SECONDS)).isEqualTo("result");
+        }
+        assertThat(computations).hasValue(1);
+        assertThat(calls("stats", "leader")).isEqualTo(1);
+        assertThat(calls("stats", "coalesced")).isEqualTo(CALLERS - 1);
+        assertThat(meterRegistry.get("singleflight.inflight").gauge().value()).isZero();
+    }
+
+    @Test
+    void differentKeysAndGroupsAreNotCoalesced() throws Exception {
+        SingleFlight singleFlight = new SingleFlight(meterRegistry, true, 20_000);
+        AtomicInteger computations = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        Supplier<String> work = () -> {
+            computations.incrementAndGet();
+            await(release);
+            return "result";
+        };
+
+        List<Future<String>> results = new ArrayList<>();
+        results.add(executor.submit(() -> singleFlight.execute("stats", "a", work)));
+        results.add(executor.submit(() -> singleFlight.execute("stats", "b", work)));
+        results.add(executor.submit(() -> singleFlight.execute("chat", "a", work)));
+        awaitAllBlocked();
+        release.countDown();
+
+        for (Future<String> result : results) {
+            result.get(10, TimeUnit.SECONDS);
+        }
+        assertThat(computations).hasValue(3);
+    }
+
+    @Test
+    void waitersReceiveTheLeadersFailure() throws Exception {
+        SingleFlight singleFlight = new SingleFlight(meterRegistry, true, 20_000);
+        CountDownLatch release = new CountDownLatch(1);
+
+        List<Future<String>> results = submit(4, () -> singleFlight.execute("chat", "q", () -> {
+            await(release);
+            throw new ApiException("upstream down", HttpStatus.SERVICE_UNAVAILABLE);
+        }));
+        awaitAllBlocked();
+        release.countDown();
+
+        for (Future<String> result : results) {
+            assertThatThrownBy(() -> result.get(10, TimeUnit.SECONDS))
+                    .isInstanceOf(ExecutionException.class)
+                    .cause().isInstanceOf(ApiException.class).hasMessage("upstream down");
+        }
+    }
+
+    @Test
+    void waiterComputesItselfAfterMaxWait() throws Exception {
+        SingleFlight singleFlight = new SingleFlight(meterRegistry, true, 50);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<String> leader = executor.submit(() -> singleFlight.execute("stats", "k", () -> {
+            await(release);
+            return "leader";
+        }));
+        awaitAllBlocked();
+
+        // Leader còn treo: request sau chỉ chờ 50 ms rồi tự tính
+        assertThat(singleFlight.execute("stats", "k", () -> "own")).isEqualTo("own");
+        assertThat(calls("stats", "timeout")).isEqualTo(1);
+
+        release.countDown();
+        assertThat(leader.get(10, TimeUnit.SECONDS)).isEqualTo("leader");
+    }
+
+    @Test
+    void completedResultsAreNotCached() {
+        SingleFlight singleFlight = new SingleFlight(meterRegistry, true, 20_000);
+        AtomicInteger computations = new AtomicInteger();
+
+        singleFlight.execute("stats", "k", computations::incrementAndGet);
+        singleFlight.execute("stats", "k", computations::incrementAndGet);
+
+        assertThat(computations).hasValue(2);
+        assertThat(calls("stats", "coalesced")).isZero();
+    }
+
+    @Test
+    void disabledRunsEveryCall() throws Exception {
+        SingleFlight singleFlight = new SingleFlight(meterRegistry, false, 20_000);
+        AtomicInteger computations = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        List<Future<Integer>> results = submit(4, () -> singleFlight.execute("stats", "k", () -> {
+            int n = computations.incrementAndGet();
+            await(release);
+            return n;
+        }));
+        awaitAllBlocked();
+        release.countDown();
+
+        for (Future<Integer> result : results) {
+            result.get(10, TimeUnit.SECONDS);
+        }
+        assertThat(computations).hasValue(4);
+    }
+
+    private <T> List<Future<T>> submit(int count, Supplier<T> call) {
+        List<Future<T>> futures = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            futures.add(executor.submit(call::get));
+        }
+        return futures;
+    }
+
+    // Chờ tới khi mọi thread gọi đã vào execute và đang chặn (leader chờ release, các thread khác chờ leader)
+    private void awaitAllBlocked() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (System.currentTimeMillis() < deadline) {
+            boolean allBlocked;
+            synchronized (callerThreads) {
+                allBlocked = !callerThreads.isEmpty() && callerThreads.stream().allMatch(thread ->
+                        thread.getState() == Thread.State.WAITING || thread.getState() == Thread.State.TIMED_WAITING);
+            }
+            if (allBlocked && executorQueueDrained()) {
+                return;
+            }
+            Thread.sleep(5);
+        }
+        throw new AssertionError("callers did not block in time");
+    }
+
+    private boolean executorQueueDrained() {
+        return executor.getQueue().isEmpty() && executor.getActiveCount() == callerThreads.size();
+    }
+
+    private double calls(String group, String result) {
+        return meterRegistry.find("singleflight.calls").tags("group", group, "result", result)
+                .counters().stream().mapToDouble(counter -> counter.count()).sum();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.vactrack.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TimerWheelTest {
+
+    private static final long TICK = 1000;
+
+    @Test
+    void tickExpiresOnlyDueItems() {
+        TimerWheel<String> wheel = new TimerWheel<>(8, TICK);
+        long now = System.currentTimeMillis();
+        wheel.schedule("a", now + 2 * TICK);
+        wheel.schedule("b", now + 4 * TICK);
+
+        List<String> expired = new ArrayList<>();
+        wheel.advance(now + TICK, expired::add);
+        assertThat(expired).isEmpty();
+
+        wheel.advance(now + 3 * TICK, expired::add);
+        assertThat(expired).containsExactly("a");
+
+        wheel.advance(now + 5 * TICK, expired::add);
+        assertThat(expired).containsExactly("a", "b");
+    }
+
+    @Test
+    void itemBeyondOneRevolutionWaitsForItsDeadline() {
+        TimerWheel<String> wheel = new TimerWheel<>(4, TICK);
+        long now = System.currentTimeMillis();
+        // Cùng ô với now + 2 tick nhưng ở vòng quay sau
+        wheel.schedule("late", now + 6 * TICK);
+
+        List<String> expired = new ArrayList<>();
+        wheel.advance(now + 3 * TICK, expired::add);
+        assertThat(expired).isEmpty();
+
+        wheel.advance(now + 7 * TICK, expired::add);
+        assertThat(expired).containsExactly("late");
+    }
+
+    @Test
+    void longPauseStillExpiresEverything() {
+        TimerWheel<Integer> wheel = new TimerWheel<>(4, TICK);
+        long now = System.currentTimeMillis();
+        for (int i = 1; i <= 3; i++) {
+            wheel.schedule(i, now + i * TICK);
+        }
+
+        // advance bị trễ nhiều vòng quay: mỗi ô chỉ cần xét một lần
+        List<Integer> expired = new ArrayList<>();
+        wheel.advance(now + 20 * TICK, expired::add);
+        assertThat(expired).containsExactlyInAnyOrder(1, 2, 3);
+    }
+}